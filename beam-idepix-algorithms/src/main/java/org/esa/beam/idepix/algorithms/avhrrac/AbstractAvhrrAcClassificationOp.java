@@ -1,6 +1,5 @@
 package org.esa.beam.idepix.algorithms.avhrrac;
 
-import com.bc.ceres.glevel.MultiLevelImage;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
@@ -19,6 +18,7 @@ import org.esa.beam.util.math.MathUtils;
 
 import javax.media.jai.RenderedOp;
 import javax.media.jai.operator.TransposeDescriptor;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Calendar;
@@ -121,6 +121,8 @@ public abstract class AbstractAvhrrAcClassificationOp extends PixelOperator {
 
     SunPosition sunPosition;
 
+    AvhrrAcSatelliteTrack satelliteTrack;
+
     String noaaId;
 
 
@@ -144,9 +146,10 @@ public abstract class AbstractAvhrrAcClassificationOp extends PixelOperator {
         }
     }
 
-    private RenderedOp flipImage(MultiLevelImage sourceImage) {
-        final RenderedOp verticalFlippedImage = TransposeDescriptor.create(sourceImage, TransposeDescriptor.FLIP_VERTICAL, null);
-        return TransposeDescriptor.create(verticalFlippedImage, TransposeDescriptor.FLIP_HORIZONTAL, null);
+    // a vertical plus a horizontal flip is a rotation by 180 degrees, done in one image operation:
+    // target pixel (x, y) is source pixel (width - 1 - x, height - 1 - y)
+    static RenderedOp flipImage(RenderedImage sourceImage) {
+        return TransposeDescriptor.create(sourceImage, TransposeDescriptor.ROTATE_180, null);
     }
 
     void readSchillerNets() {
@@ -157,8 +160,14 @@ public abstract class AbstractAvhrrAcClassificationOp extends PixelOperator {
         }
     }
 
+    void computeSatelliteTrack() {
+        satelliteTrack = new AvhrrAcSatelliteTrack(sourceProduct.getGeoCoding(),
+                                                   sourceProduct.getSceneRasterWidth(),
+                                                   sourceProduct.getSceneRasterHeight());
+    }
+
     GeoPos computeSatPosition(int y) {
-        return getGeoPos(sourceProduct.getSceneRasterWidth() / 2, y);
+        return satelliteTrack.getSatPosition(y);
     }
 
     void computeSunPosition() {
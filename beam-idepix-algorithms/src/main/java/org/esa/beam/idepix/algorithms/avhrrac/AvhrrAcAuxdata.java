@@ -6,6 +6,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 /**
@@ -26,7 +28,11 @@ public class AvhrrAcAuxdata {
 
     private static AvhrrAcAuxdata instance;
 
-    public static AvhrrAcAuxdata getInstance() {
+    // the tables are read-only after loading and shared by all products processed in the same JVM
+    private Line2ViewZenithTable vzaTable;
+    private final Map<String, Rad2BTTable> rad2BTTables = new HashMap<>();
+
+    public static synchronized AvhrrAcAuxdata getInstance() {
         if (instance == null) {
             instance = new AvhrrAcAuxdata();
         }
@@ -34,6 +40,45 @@ public class AvhrrAcAuxdata {
         return instance;
     }
 
+    /**
+     * Provides the shared view zenith table, which is loaded on the first request only.
+     *
+     * @return the view zenith table
+     * @throws IOException if the table cannot be read
+     */
+    public synchronized Line2ViewZenithTable getLine2ViewZenithTable() throws IOException {
+        if (vzaTable == null) {
+            vzaTable = createLine2ViewZenithTable();
+        }
+        return vzaTable;
+    }
+
+    /**
+     * Provides the shared radiance-to-BT table for the given NOAA satellite, which is loaded on the first request
+     * for the satellite generation only.
+     *
+     * @param noaaIdStringFromProduct - the NOAA satellite number
+     * @return the radiance-to-BT table
+     * @throws IOException if the table cannot be read
+     */
+    public synchronized Rad2BTTable getRad2BTTable(String noaaIdStringFromProduct) throws IOException {
+        final String noaaIdString = getRad2BTNoaaIdString(noaaIdStringFromProduct);
+        Rad2BTTable rad2BTTable = rad2BTTables.get(noaaIdString);
+        if (rad2BTTable == null) {
+            rad2BTTable = createRad2BTTable(noaaIdStringFromProduct);
+            rad2BTTables.put(noaaIdString, rad2BTTable);
+        }
+        return rad2BTTable;
+    }
+
+    private static String getRad2BTNoaaIdString(String noaaIdStringFromProduct) {
+        final int noaaId = Integer.parseInt(noaaIdStringFromProduct);
+        if (noaaId <= 11) {
+            return "11";
+        } else {
+            return "14";
+        }
+    }
 
     public Line2ViewZenithTable createLine2ViewZenithTable() throws IOException {
         final InputStream inputStream = getClass().getResourceAsStream(VZA_FILE_NAME);
@@ -67,13 +112,7 @@ public class AvhrrAcAuxdata {
     }
 
     public Rad2BTTable createRad2BTTable(String noaaIdStringFromProduct) throws IOException {
-        final int noaaId = Integer.parseInt(noaaIdStringFromProduct);
-        String noaaIdString;
-        if (noaaId <= 11) {
-            noaaIdString = "11";
-        } else {
-            noaaIdString = "14";
-        }
+        final String noaaIdString = getRad2BTNoaaIdString(noaaIdStringFromProduct);
         final String filename = RAD2BT_FILE_NAME_PREFIX + noaaIdString + ".txt";
         final InputStream inputStream = getClass().getResourceAsStream(filename);
         Rad2BTTable rad2BTTable = new Rad2BTTable();
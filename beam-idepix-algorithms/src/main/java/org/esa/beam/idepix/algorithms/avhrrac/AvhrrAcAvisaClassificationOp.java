@@ -5,8 +5,6 @@ import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
-import org.esa.beam.framework.gpf.annotations.SourceProduct;
-import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.framework.gpf.pointop.*;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
@@ -16,7 +14,6 @@ import org.esa.beam.util.math.MathUtils;
 import org.esa.beam.util.math.RsMathUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
@@ -35,130 +32,34 @@ import java.util.TimeZone;
         copyright = "(c) 2014 by Brockmann Consult",
         description = "Basic operator for pixel classification from AVHRR L1b data " +
                 "(uses old AVHRR AC test data (like '95070912_pr') read by avhrr-ac-directory-reader).")
-public class AvhrrAcAvisaClassificationOp extends PixelOperator {
-
-    // TODO: inherit from abstract classification operator, or remove if no longer needed
-
-    @SourceProduct(alias = "aacl1b", description = "The source product.")
-    Product sourceProduct;
-
-    @SourceProduct(alias = "waterMask")
-    private Product waterMaskProduct;
-
-    @TargetProduct(description = "The target product.")
-    Product targetProduct;
-
-    // AvhrrAc parameters
-    @Parameter(defaultValue = "true", label = " Copy input radiance bands (with albedo1/2 converted)")
-    boolean aacCopyRadiances = true;
-
-    @Parameter(defaultValue = "2", label = " Width of cloud buffer (# of pixels)")
-    int aacCloudBufferWidth;
-
-    @Parameter(defaultValue = "50", valueSet = {"50", "150"}, label = " Resolution of used land-water mask in m/pixel",
-            description = "Resolution in m/pixel")
-    int wmResolution;
-
-    @Parameter(defaultValue = "true", label = " Consider water mask fraction")
-    boolean aacUseWaterMaskFraction = true;
-
-    @Parameter(defaultValue = "false", label = " Flip source images (check before if needed!)")
-    private boolean flipSourceImages;
-
-//    @Parameter(defaultValue = "false",
-//               label = " Debug bands",
-//               description = "Write further useful bands to target product.")
-//    private boolean avhrracOutputDebug = false;
-
-    @Parameter(defaultValue = "2.15",
-            label = " NN cloud ambiguous lower boundary ",
-            description = " NN cloud ambiguous lower boundary ")
-    double avhrracSchillerNNCloudAmbiguousLowerBoundaryValue;
-
-    @Parameter(defaultValue = "3.45",
-            label = " NN cloud ambiguous/sure separation value ",
-            description = " NN cloud ambiguous cloud ambiguous/sure separation value ")
-    double avhrracSchillerNNCloudAmbiguousSureSeparationValue;
-
-    @Parameter(defaultValue = "4.45",
-            label = " NN cloud sure/snow separation value ",
-            description = " NN cloud ambiguous cloud sure/snow separation value ")
-    double avhrracSchillerNNCloudSureSnowSeparationValue;
-
-
-    @Parameter(defaultValue = "20.0",
-            label = " Reflectance 1 'brightness' threshold ",
-            description = " Reflectance 1 'brightness' threshold ")
-    double reflCh1Thresh;
-
-    @Parameter(defaultValue = "20.0",
-            label = " Reflectance 2 'brightness' threshold ",
-            description = " Reflectance 2 'brightness' threshold ")
-    double reflCh2Thresh;
-
-    @Parameter(defaultValue = "1.0",
-            label = " Reflectance 2/1 ratio threshold ",
-            description = " Reflectance 2/1 ratio threshold ")
-    double r2r1RatioThresh;
-
-    @Parameter(defaultValue = "1.0",
-            label = " Reflectance 3/1 ratio threshold ",
-            description = " Reflectance 3/1 ratio threshold ")
-    double r3r1RatioThresh;
-
-    @Parameter(defaultValue = "-30.0",
-            label = " Channel 4 brightness temperature threshold (C)",
-            description = " Channel 4 brightness temperature threshold (C)")
-    double btCh4Thresh;
-
-    @Parameter(defaultValue = "-30.0",
-            label = " Channel 5 brightness temperature threshold (C)",
-            description = " Channel 5 brightness temperature threshold (C)")
-    double btCh5Thresh;
-
-
-    private static final String SCHILLER_AVHRRAC_NET_NAME = "6x3_114.1.net";
-
-    private static final int ALBEDO_TO_RADIANCE = 0;
-    private static final int RADIANCE_TO_ALBEDO = 1;
+public class AvhrrAcAvisaClassificationOp extends AbstractAvhrrAcClassificationOp {
 
     private static final double NU_CH3 = 2694.0;
     private static final double NU_CH4 = 925.0;
     private static final double NU_CH5 = 839.0;
 
-    ThreadLocal<SchillerNeuralNetWrapper> avhrracNeuralNet;
-
-    AvhrrAcAuxdata.Line2ViewZenithTable vzaTable;
+    // AvhrrAc parameters
+    @Parameter(defaultValue = "true", label = " Copy input radiance bands (with albedo1/2 converted)")
+    boolean aacCopyRadiances = true;
 
-    private SunPosition sunPosition;
     private String dateString;
 
-
-    public Product getSourceProduct() {
-        // this is the source product for the ProductConfigurer
-        return sourceProduct;
-    }
-
     @Override
     public void prepareInputs() throws OperatorException {
         readSchillerNets();
         createTargetProduct();
         dateString = getProductDatestring();
         sunPosition = computeSunPosition(dateString);
+        computeSatelliteTrack();
 
         try {
-            vzaTable = AvhrrAcAuxdata.getInstance().createLine2ViewZenithTable();
+            vzaTable = AvhrrAcAuxdata.getInstance().getLine2ViewZenithTable();
         } catch (IOException e) {
             // todo
             e.printStackTrace();
         }
     }
 
-    @Override
-    protected void computePixel(int x, int y, Sample[] sourceSamples, WritableSample[] targetSamples) {
-        runAvhrrAcAlgorithm(x, y, sourceSamples, targetSamples);
-    }
-
     // package local for testing
     static double computeRelativeAzimuth(double vaaRad, double saaRad) {
         return correctRelAzimuthRange(vaaRad, saaRad);
@@ -260,15 +161,8 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
     }
 
 
-    private void readSchillerNets() {
-        try (InputStream is = getClass().getResourceAsStream(SCHILLER_AVHRRAC_NET_NAME)) {
-            avhrracNeuralNet = SchillerNeuralNetWrapper.create(is);
-        } catch (IOException e) {
-            throw new OperatorException("Cannot read Schiller neural nets: " + e.getMessage());
-        }
-    }
-
-    private void setClassifFlag(WritableSample[] targetSamples, AvhrrAcAlgorithm algorithm) {
+    @Override
+    void setClassifFlag(WritableSample[] targetSamples, AvhrrAcAlgorithm algorithm) {
         targetSamples[0].set(AvhrrAcConstants.F_INVALID, algorithm.isInvalid());
         targetSamples[0].set(AvhrrAcConstants.F_CLOUD, algorithm.isCloud());
         targetSamples[0].set(AvhrrAcConstants.F_CLOUD_AMBIGUOUS, algorithm.isCloudAmbiguous());
@@ -288,7 +182,8 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
 //        targetSamples[0].set(AvhrrAcConstants.F_LAND + 6, algorithm.isCh5BtAboveThresh());
     }
 
-    private void runAvhrrAcAlgorithm(int x, int y, Sample[] sourceSamples, WritableSample[] targetSamples) {
+    @Override
+    void runAvhrrAcAlgorithm(int x, int y, Sample[] sourceSamples, WritableSample[] targetSamples) {
         AvhrrAcAlgorithm aacAlgorithm = new AvhrrAcAlgorithm();
 
         final double sza = sourceSamples[0].getDouble();
@@ -323,7 +218,7 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
 
             float waterFraction = Float.NaN;
             // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-            if (getGeoPos(x, y).lat > -58f) {
+            if (pointPosition.lat > -58f) {
                 waterFraction = sourceSamples[AvhrrAcConstants.SRC_USGS_WATERFRACTION].getFloat();
             }
 
@@ -339,7 +234,7 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
             aacAlgorithm.setRadiance(avhrrRadiance);
             aacAlgorithm.setWaterFraction(waterFraction);
 
-            double[] nnOutput = nnWrapper.getNeuralNet().calc(inputVector);
+            double[] nnOutput = nnWrapper.calc(this, inputVector);
 
             aacAlgorithm.setNnOutput(nnOutput);
             aacAlgorithm.setAmbiguousLowerBoundaryValue(avhrracSchillerNNCloudAmbiguousLowerBoundaryValue);
@@ -371,15 +266,17 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
         }
     }
 
-    private GeoPos computeSatPosition(int y) {
-        return getGeoPos(sourceProduct.getSceneRasterWidth() / 2, y);    // LAC_NADIR = 1024.5
-    }
-
     private int getDoy(String yymmdd) {
         return IdepixUtils.getDoyFromYYMMDD(yymmdd);
     }
 
-    private String getProductDatestring() {
+    @Override
+    void setNoaaId() {
+        // no channel 3b reflectances or albedo conversions which depend on the NOAA id are computed here
+    }
+
+    @Override
+    String getProductDatestring() {
         // provides datestring as DDMMYY !!!
         // NSS.LHRR.NM.D04167.S0710.E0714.B1026464.GC
 
@@ -403,14 +300,6 @@ public class AvhrrAcAvisaClassificationOp extends PixelOperator {
         return dateFormat.format(cal.getTime());
     }
 
-    private GeoPos getGeoPos(int x, int y) {
-        final GeoPos geoPos = new GeoPos();
-        final GeoCoding geoCoding = sourceProduct.getGeoCoding();
-        final PixelPos pixelPos = new PixelPos(x, y);
-        geoCoding.getGeoPos(pixelPos, geoPos);
-        return geoPos;
-    }
-
     @Override
     protected void configureSourceSamples(SampleConfigurer sampleConfigurer) throws OperatorException {
         int index = 0;
@@ -106,8 +106,8 @@ public class AvhrrAcLtdr02C1ClassificationOp extends AbstractAvhrrAcClassificati
         }
 
         try {
-            vzaTable = AvhrrAcAuxdata.getInstance().createLine2ViewZenithTable();
-            rad2BTTable = AvhrrAcAuxdata.getInstance().createRad2BTTable(noaaId);
+            vzaTable = AvhrrAcAuxdata.getInstance().getLine2ViewZenithTable();
+            rad2BTTable = AvhrrAcAuxdata.getInstance().getRad2BTTable(noaaId);
         } catch (IOException e) {
             throw new OperatorException("Failed to get VZA from auxdata - cannot proceed: ", e);
         }
@@ -129,10 +129,6 @@ public class AvhrrAcLtdr02C1ClassificationOp extends AbstractAvhrrAcClassificati
         }
     }
 
-    GeoPos computeSatPosition(int y) {
-        return getGeoPos(sourceProduct.getSceneRasterWidth() / 2, y);    // LAC_NADIR = 1024.5
-    }
-
     @Override
     void runAvhrrAcAlgorithm(int x, int y, Sample[] sourceSamples, WritableSample[] targetSamples) {
         AvhrrAcAlgorithm aacAlgorithm = new AvhrrAcAlgorithm();
@@ -176,7 +172,7 @@ public class AvhrrAcLtdr02C1ClassificationOp extends AbstractAvhrrAcClassificati
 
             float waterFraction = Float.NaN;
             // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-            if (getGeoPos(x, y).lat > -58f) {
+            if (pointPosition.lat > -58f) {
                 waterFraction = sourceSamples[AvhrrAcConstants.SRC_USGS_WATERFRACTION].getFloat();
             }
 
@@ -199,7 +195,7 @@ public class AvhrrAcLtdr02C1ClassificationOp extends AbstractAvhrrAcClassificati
             aacAlgorithm.setRadiance(avhrrRadiance);
             aacAlgorithm.setWaterFraction(waterFraction);
 
-            double[] nnOutput = nnWrapper.getNeuralNet().calc(inputVector);
+            double[] nnOutput = nnWrapper.calc(this, inputVector);
 
             aacAlgorithm.setNnOutput(nnOutput);
             aacAlgorithm.setAmbiguousLowerBoundaryValue(avhrracSchillerNNCloudAmbiguousLowerBoundaryValue);
@@ -9,9 +9,12 @@ import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
-import org.esa.beam.idepix.CloudBuffer;
-import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.morphology.Morphology;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.TileAccess;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
 
@@ -58,6 +61,7 @@ public class AvhrrAcPostProcessOp extends Operator {
     private Band refl1Band;
     private Band refl2Band;
     private GeoCoding geoCoding;
+    private boolean coastlineFromWaterFraction;
 
     private RectangleExtender rectCalculator;
 
@@ -73,6 +77,9 @@ public class AvhrrAcPostProcessOp extends Operator {
             waterFractionBand = waterMaskProduct.getBand("land_water_fraction");
 
             geoCoding = l1bProduct.getGeoCoding();
+            // for other geocodings, the water fraction is always 0 or 100 (TS, OD, 20140502)
+            coastlineFromWaterFraction = !(geoCoding instanceof TiePointGeoCoding) &&
+                    !(geoCoding instanceof CrsGeoCoding);
 
             origCloudFlagBand = avhrrCloudProduct.getBand(IdepixUtils.IDEPIX_PIXEL_CLASSIF_FLAGS);
             rt3Band = avhrrCloudProduct.getBand("rt_3");
@@ -81,8 +88,9 @@ public class AvhrrAcPostProcessOp extends Operator {
             refl2Band = avhrrCloudProduct.getBand("refl_2");
 
 
-            int extendedWidth = 64;
-            int extendedHeight = 64; // todo: what do we need?
+            // the coastline refinement needs the direct neighbours only
+            int extendedWidth = computeCloudShadow ? 64 : 1;
+            int extendedHeight = computeCloudShadow ? 64 : 1; // todo: what do we need for cloud shadow?
 
             rectCalculator = new RectangleExtender(new Rectangle(l1bProduct.getSceneRasterWidth(),
                                                                  l1bProduct.getSceneRasterHeight()),
@@ -109,131 +117,160 @@ public class AvhrrAcPostProcessOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
-        final Tile waterFractionTile = getSourceTile(waterFractionBand, srcRectangle);
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    boolean isCloud = sourceFlagTile.getSampleBit(x, y, AvhrrAcConstants.F_CLOUD);
-                    boolean isSnowIce = sourceFlagTile.getSampleBit(x, y, AvhrrAcConstants.F_SNOW_ICE);
-                    combineFlags(x, y, sourceFlagTile, targetTile);
-
-                    if (refineClassificationNearCoastlines) {
-                        if (isNearCoastline(x, y, waterFractionTile, srcRectangle)) {
-                            targetTile.setSample(x, y, AvhrrAcConstants.F_COASTLINE, true);
-                            refineSnowIceFlaggingForCoastlines(x, y, sourceFlagTile, targetTile);
-                            if (isCloud) {
-                                refineCloudFlaggingForCoastlines(x, y, sourceFlagTile, waterFractionTile, targetTile, srcRectangle);
-                            }
-                        }
-                    }
-                    boolean isCloudAfterRefinement = targetTile.getSampleBit(x, y, AvhrrAcConstants.F_CLOUD);
-                    if (isCloudAfterRefinement) {
-                        targetTile.setSample(x, y, AvhrrAcConstants.F_SNOW_ICE, false);
-                    }
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final int[] sourceFlags = TileAccess.getInts(getSourceTile(origCloudFlagBand, srcRectangle));
+            BitPlane nearCoastline = null;
+            if (refineClassificationNearCoastlines) {
+                final int[] waterFractions = TileAccess.getInts(getSourceTile(waterFractionBand, srcRectangle));
+                if (coastlineFromWaterFraction) {
+                    nearCoastline = computeWaterFractionChanges(waterFractions, srcRectangle);
+                } else {
+                    nearCoastline = computeCoastline(waterFractions, srcRectangle).dilate3x3();
                 }
             }
-        }
+            checkForCancellation();
+            targetTile.setSamples(postProcess(sourceFlags, srcRectangle, targetRectangle, nearCoastline));
 
-        if (computeCloudShadow) {
-            // todo: we need something modified, as we have no CTP
+            if (computeCloudShadow) {
+                // todo: we need something modified, as we have no CTP
+            }
         }
     }
 
-    private void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        int sourceFlags = sourceFlagTile.getSampleInt(x, y);
-        int computedFlags = targetTile.getSampleInt(x, y);
-        targetTile.setSample(x, y, sourceFlags | computedFlags);
-    }
-
-    private boolean isCoastlinePixel(int x, int y, Tile waterFractionTile) {
-        boolean isCoastline = false;
-        // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-        if (getGeoPos(x, y).lat > -58f) {
-            final int waterFraction = waterFractionTile.getSampleInt(x, y);
-            // values bigger than 100 indicate no data
-            if (waterFraction <= 100) {
-                // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
-                // is always 0 or 100!! (TS, OD, 20140502)
-                isCoastline = waterFraction < 100 && waterFraction > 0;
+    /**
+     * Coastline refinement of the flags of the target rectangle.
+     *
+     * @param sourceFlags     - the classification flags of the source rectangle, line by line
+     * @param srcRectangle    - the source rectangle, containing the target rectangle
+     * @param targetRectangle - the target rectangle
+     * @param nearCoastline   - the pixels of the source rectangle near a coastline, or null if the classification
+     *                        is not refined near coastlines
+     *
+     * @return the refined flags of the target rectangle, line by line
+     */
+    static int[] postProcess(int[] sourceFlags, Rectangle srcRectangle, Rectangle targetRectangle,
+                             BitPlane nearCoastline) {
+        final int xOffset = targetRectangle.x - srcRectangle.x;
+        final int yOffset = targetRectangle.y - srcRectangle.y;
+        final int[] targetFlags = new int[targetRectangle.width * targetRectangle.height];
+        for (int y = 0; y < targetRectangle.height; y++) {
+            final int sourceOffset = (y + yOffset) * srcRectangle.width + xOffset;
+            for (int x = 0; x < targetRectangle.width; x++) {
+                int flags = sourceFlags[sourceOffset + x];
+                if (nearCoastline != null && nearCoastline.get(x + xOffset, y + yOffset)) {
+                    flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_COASTLINE);
+                    // refine snow/ice flagging for coastlines
+                    flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_SNOW_ICE, false);
+                    // refine cloud flagging for coastlines
+                    if (BitSetter.isFlagSet(flags, AvhrrAcConstants.F_CLOUD) &&
+                            isCloudRemovedNearCoastline(x + xOffset, y + yOffset, sourceFlags, srcRectangle,
+                                                        targetRectangle, nearCoastline)) {
+                        flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_CLOUD, false);
+                        flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_CLOUD_SURE, false);
+                        flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_CLOUD_AMBIGUOUS, false);
+                    }
+                }
+                if (BitSetter.isFlagSet(flags, AvhrrAcConstants.F_CLOUD)) {
+                    flags = BitSetter.setFlag(flags, AvhrrAcConstants.F_SNOW_ICE, false);
+                }
+                targetFlags[y * targetRectangle.width + x] = flags;
             }
         }
-        return isCoastline;
+        return targetFlags;
     }
 
-    private GeoPos getGeoPos(int x, int y) {
-        final GeoPos geoPos = new GeoPos();
-        final PixelPos pixelPos = new PixelPos(x, y);
-        geoCoding.getGeoPos(pixelPos, geoPos);
-        return geoPos;
-    }
-
-    private boolean isNearCoastline(int x, int y, Tile waterFractionTile, Rectangle rectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
-        final int waterFractionCenter = waterFractionTile.getSampleInt(x, y);
-        for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-            for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                if (rectangle.contains(i, j)) {
-                    if (!(l1bProduct.getGeoCoding() instanceof TiePointGeoCoding) &&
-                            !(l1bProduct.getGeoCoding() instanceof CrsGeoCoding)) {
-                        if (waterFractionTile.getSampleInt(i, j) != waterFractionCenter) {
-                            return true;
-                        }
-                    } else {
-                        if (isCoastlinePixel(i, j, waterFractionTile)) {
-                            return true;
-                        }
+    // x and y are relative to the source rectangle
+    private static boolean isCloudRemovedNearCoastline(int x, int y, int[] sourceFlags, Rectangle srcRectangle,
+                                                       Rectangle targetRectangle, BitPlane nearCoastline) {
+        final int left = Math.max(x - 1, 0);
+        final int right = Math.min(x + 1, srcRectangle.width - 1);
+        final int top = Math.max(y - 1, 0);
+        final int bottom = Math.min(y + 1, srcRectangle.height - 1);
+        int cloudCount = 0;
+        boolean hasInlandCloudNeighbour = false;
+        for (int j = top; j <= bottom; j++) {
+            for (int i = left; i <= right; i++) {
+                if (BitSetter.isFlagSet(sourceFlags[j * srcRectangle.width + i], AvhrrAcConstants.F_CLOUD)) {
+                    cloudCount++;
+                    // a cloud near the coastline is kept if it has a cloudy neighbour in the target rectangle
+                    // which is not near the coastline
+                    if (targetRectangle.contains(srcRectangle.x + i, srcRectangle.y + j) &&
+                            !nearCoastline.get(i, j)) {
+                        hasInlandCloudNeighbour = true;
                     }
                 }
             }
         }
-        return false;
+        // a cloud is also kept if it is surrounded by clouds
+        return !hasInlandCloudNeighbour && !Morphology.isSurrounded(cloudCount);
     }
 
-    private void refineCloudFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile waterFractionTile, Tile targetTile, Rectangle srcRectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, srcRectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, srcRectangle.x + srcRectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, srcRectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, srcRectangle.y + srcRectangle.height - 1);
-        boolean removeCloudFlag = true;
-        if (CloudShadowFronts.isPixelSurrounded(x, y, sourceFlagTile, AvhrrAcConstants.F_CLOUD)) {
-            removeCloudFlag = false;
-        } else {
-            Rectangle targetTileRectangle = targetTile.getRectangle();
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    boolean is_cloud = sourceFlagTile.getSampleBit(i, j, AvhrrAcConstants.F_CLOUD);
-                    if (is_cloud && targetTileRectangle.contains(i, j) && !isNearCoastline(i, j, waterFractionTile, srcRectangle)) {
-                        removeCloudFlag = false;
-                        break;
+    /**
+     * Near coastline test if the coastline cannot be taken from the water fraction values (i.e. for pixel
+     * geocodings, where the water fraction is always 0 or 100): a pixel is near the coastline if the water
+     * fraction changes within its 3x3 box. Each pair of neighbours is compared once.
+     *
+     * @param waterFractions - the water fractions of the rectangle, line by line
+     * @param rectangle      - the rectangle
+     *
+     * @return the pixels of the rectangle near a coastline
+     */
+    static BitPlane computeWaterFractionChanges(int[] waterFractions, Rectangle rectangle) {
+        final int width = rectangle.width;
+        final int height = rectangle.height;
+        final BitPlane nearCoastline = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            final int offset = y * width;
+            final int lowerOffset = offset + width;
+            final boolean hasLowerRow = y + 1 < height;
+            for (int x = 0; x < width; x++) {
+                final int waterFraction = waterFractions[offset + x];
+                // compare with the right, lower left, lower and lower right neighbours
+                if (x + 1 < width && waterFractions[offset + x + 1] != waterFraction) {
+                    nearCoastline.set(x, y, true);
+                    nearCoastline.set(x + 1, y, true);
+                }
+                if (hasLowerRow) {
+                    if (x > 0 && waterFractions[lowerOffset + x - 1] != waterFraction) {
+                        nearCoastline.set(x, y, true);
+                        nearCoastline.set(x - 1, y + 1, true);
+                    }
+                    if (waterFractions[lowerOffset + x] != waterFraction) {
+                        nearCoastline.set(x, y, true);
+                        nearCoastline.set(x, y + 1, true);
+                    }
+                    if (x + 1 < width && waterFractions[lowerOffset + x + 1] != waterFraction) {
+                        nearCoastline.set(x, y, true);
+                        nearCoastline.set(x + 1, y + 1, true);
                     }
                 }
             }
         }
-
-        if (removeCloudFlag) {
-            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD, false);
-            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD_SURE, false);
-            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD_AMBIGUOUS, false);
-        }
+        return nearCoastline;
     }
 
-    private void refineSnowIceFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        final boolean isSnowIce = sourceFlagTile.getSampleBit(x, y, AvhrrAcConstants.F_SNOW_ICE);
-        if (isSnowIce) {
-            targetTile.setSample(x, y, AvhrrAcConstants.F_SNOW_ICE, false);
+    private BitPlane computeCoastline(int[] waterFractions, Rectangle rectangle) {
+        final BitPlane coastline = new BitPlane(rectangle.width, rectangle.height);
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int y = 0; y < rectangle.height; y++) {
+            for (int x = 0; x < rectangle.width; x++) {
+                final int waterFraction = waterFractions[y * rectangle.width + x];
+                // values bigger than 100 indicate no data
+                if (waterFraction > 0 && waterFraction < 100) {
+                    // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
+                    pixelPos.setLocation(rectangle.x + x, rectangle.y + y);
+                    geoCoding.getGeoPos(pixelPos, geoPos);
+                    if (geoPos.lat > -58f) {
+                        coastline.set(x, y, true);
+                    }
+                }
+            }
         }
+        return coastline;
     }
 
     public static class Spi extends OperatorSpi {
@@ -0,0 +1,33 @@
+package org.esa.beam.idepix.algorithms.avhrrac;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+
+/**
+ * Satellite positions along an AVHRR swath, taken as the geo-position of the centre column of each row.
+ * The positions only depend on the row, so they are determined once per product instead of once per pixel.
+ */
+class AvhrrAcSatelliteTrack {
+
+    private final float[] lat;
+    private final float[] lon;
+
+    AvhrrAcSatelliteTrack(GeoCoding geoCoding, int sceneWidth, int sceneHeight) {
+        lat = new float[sceneHeight];
+        lon = new float[sceneHeight];
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int y = 0; y < sceneHeight; y++) {
+            // LAC_NADIR = 1024.5
+            pixelPos.setLocation(sceneWidth / 2, y);
+            geoCoding.getGeoPos(pixelPos, geoPos);
+            lat[y] = geoPos.lat;
+            lon[y] = geoPos.lon;
+        }
+    }
+
+    GeoPos getSatPosition(int y) {
+        return new GeoPos(lat[y], lon[y]);
+    }
+}
@@ -123,9 +123,10 @@ public class AvhrrAcTestClassificationOp extends AbstractAvhrrAcClassificationOp
         readSchillerNets();
         createTargetProduct();
         computeSunPosition();
+        computeSatelliteTrack();
 
         try {
-            vzaTable = AvhrrAcAuxdata.getInstance().createLine2ViewZenithTable();
+            vzaTable = AvhrrAcAuxdata.getInstance().getLine2ViewZenithTable();
         } catch (IOException e) {
             throw new OperatorException("Failed to get VZA from auxdata - cannot proceed: ", e);
         }
@@ -272,7 +273,7 @@ public class AvhrrAcTestClassificationOp extends AbstractAvhrrAcClassificationOp
 
             float waterFraction = Float.NaN;
             // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-            if (getGeoPos(x, y).lat > -58f) {
+            if (pointPosition.lat > -58f) {
                 waterFraction = sourceSamples[AvhrrAcConstants.SRC_USGS_WATERFRACTION].getFloat();
             }
 
@@ -286,7 +287,7 @@ public class AvhrrAcTestClassificationOp extends AbstractAvhrrAcClassificationOp
             inputVector[5] = Math.sqrt(avhrrRadiance[3]);
             inputVector[6] = Math.sqrt(avhrrRadiance[4]);
 
-            double[] nnOutput = nnWrapper.getNeuralNet().calc(inputVector);
+            double[] nnOutput = nnWrapper.calc(this, inputVector);
             aacAlgorithm.setNnOutput(nnOutput);
             aacAlgorithm.setRadiance(avhrrRadiance);
             aacAlgorithm.setWaterFraction(waterFraction);
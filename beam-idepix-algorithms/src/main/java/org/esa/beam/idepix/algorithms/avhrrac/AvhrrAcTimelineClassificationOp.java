@@ -123,7 +123,7 @@ public class AvhrrAcTimelineClassificationOp extends AbstractAvhrrAcClassificati
         }
 
         try {
-            vzaTable = AvhrrAcAuxdata.getInstance().createLine2ViewZenithTable();
+            vzaTable = AvhrrAcAuxdata.getInstance().getLine2ViewZenithTable();
         } catch (IOException e) {
             throw new OperatorException("Failed to get VZA from auxdata - cannot proceed: ", e);
         }
@@ -176,7 +176,7 @@ public class AvhrrAcTimelineClassificationOp extends AbstractAvhrrAcClassificati
             aacAlgorithm.setRadiance(avhrrRadiance);
             aacAlgorithm.setWaterFraction(waterFraction);
 
-            double[] nnOutput = nnWrapper.getNeuralNet().calc(inputVector);
+            double[] nnOutput = nnWrapper.calc(this, inputVector);
 
             aacAlgorithm.setNnOutput(nnOutput);
             aacAlgorithm.setAmbiguousLowerBoundaryValue(avhrracSchillerNNCloudAmbiguousLowerBoundaryValue);
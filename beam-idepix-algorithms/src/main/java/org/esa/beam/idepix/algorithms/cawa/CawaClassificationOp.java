@@ -0,0 +1,201 @@
+package org.esa.beam.idepix.algorithms.cawa;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.FlagCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.esa.beam.framework.gpf.annotations.Parameter;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+import org.esa.beam.gpf.operators.meris.MerisBasisOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.TileAccess;
+import org.esa.beam.util.ProductUtils;
+
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * MERIS pixel classification operator for CAWA which classifies land and water pixels in one tile computation,
+ * instead of the chain CawaLandClassificationOp/CawaWaterClassificationOp - CawaMergeLandWaterOp.
+ * <p/>
+ * The land/water mask is computed once per tile, then each pixel is classified only by the algorithm for its
+ * surface type (GA over land, CC over water), writing directly into the merged target bands.
+ */
+@OperatorMetadata(alias = "idepix.cawa.classification",
+        version = "2.2.1",
+        internal = true,
+        authors = "Olaf Danne",
+        copyright = "(c) 2016 by Brockmann Consult",
+        description = "MERIS land/water pixel classification operator for CAWA.")
+public class CawaClassificationOp extends MerisBasisOp {
+
+    @SourceProduct(alias = "l1b")
+    private Product l1bProduct;
+    @SourceProduct(alias = "rhotoa")
+    private Product rad2reflProduct;
+    @SourceProduct(alias = "ctp")
+    private Product ctpProduct;
+    @SourceProduct(alias = "pbaro")
+    private Product pbaroProduct;
+    @SourceProduct(alias = "pressureLise")
+    private Product pressureLiseProduct;
+    @SourceProduct(alias = "waterMask")
+    private Product waterMaskProduct;
+
+    @SourceProduct(optional = true)
+    private Product eraInterimProduct;
+
+    @Parameter(defaultValue = "false",
+            label = " Write NN value to the target product.",
+            description = " If applied, write NN value to the target product ")
+    private boolean outputSchillerNNValue;
+
+    @Parameter(defaultValue = "2.0",
+            label = " NN cloud ambiguous lower boundary (applied on WATER)",
+            description = " NN cloud ambiguous lower boundary (applied on WATER)")
+    double schillerWaterNNCloudAmbiguousLowerBoundaryValue;
+
+    @Parameter(defaultValue = "3.7",
+            label = " NN cloud ambiguous/sure separation value (applied on WATER)",
+            description = " NN cloud ambiguous cloud ambiguous/sure separation value (applied on WATER)")
+    double schillerWaterNNCloudAmbiguousSureSeparationValue;
+
+    @Parameter(defaultValue = "4.05",
+            label = " NN cloud sure/snow separation value (applied on WATER)",
+            description = " NN cloud ambiguous cloud sure/snow separation value (applied on WATER)")
+    double schillerWaterNNCloudSureSnowSeparationValue;
+
+    @Parameter(defaultValue = "2.0",
+            label = " NN cloud ambiguous lower boundary (applied on LAND)",
+            description = " NN cloud ambiguous lower boundary (applied on LAND)")
+    double schillerLandNNCloudAmbiguousLowerBoundaryValue;
+
+    @Parameter(defaultValue = "3.7",
+            label = " NN cloud ambiguous/sure separation value (applied on LAND)",
+            description = " NN cloud ambiguous cloud ambiguous/sure separation value (applied on LAND)")
+    double schillerLandNNCloudAmbiguousSureSeparationValue;
+
+    @Parameter(defaultValue = "4.05",
+            label = " NN cloud sure/snow separation value (applied on LAND)",
+            description = " NN cloud ambiguous cloud sure/snow separation value (applied on LAND)")
+    double schillerLandNNCloudSureSnowSeparationValue;
+
+    private CawaLandClassificationOp landClassificationOp;
+    private CawaWaterClassificationOp waterClassificationOp;
+
+    private Band cloudFlagBand;
+    private Band nnBand;
+    private Band wsBand;
+    private Band u10Band;
+    private Band v10Band;
+
+    @Override
+    public void initialize() throws OperatorException {
+        Product classificationProduct = createCompatibleProduct(l1bProduct, "mergedClassif", "mergedClassif");
+
+        cloudFlagBand = classificationProduct.addBand(IdepixUtils.IDEPIX_CLOUD_FLAGS, ProductData.TYPE_INT16);
+        FlagCoding flagCoding = CawaUtils.createCawaFlagCoding(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        cloudFlagBand.setSampleCoding(flagCoding);
+        classificationProduct.getFlagCodingGroup().add(flagCoding);
+
+        if (eraInterimProduct != null) {
+            ProductUtils.copyBand(CawaConstants.ERA_INTERIM_T2M_BAND_NAME, eraInterimProduct, classificationProduct, true);
+            ProductUtils.copyBand(CawaConstants.ERA_INTERIM_MSLP_BAND_NAME, eraInterimProduct, classificationProduct, true);
+            ProductUtils.copyBand(CawaConstants.ERA_INTERIM_TCWV_BAND_NAME, eraInterimProduct, classificationProduct, true);
+            wsBand = classificationProduct.addBand(CawaConstants.ERA_INTERIM_WINDSPEED_BAND_NAME, ProductData.TYPE_FLOAT32);
+            u10Band = eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_U10_BAND_NAME);
+            v10Band = eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_V10_BAND_NAME);
+        }
+
+        if (outputSchillerNNValue) {
+            nnBand = classificationProduct.addBand(CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME, ProductData.TYPE_FLOAT32);
+        }
+
+        createClassificationOps();
+
+        setTargetProduct(classificationProduct);
+    }
+
+    // the classification operators are only used for their algorithms, their target products are never computed
+    private void createClassificationOps() {
+        landClassificationOp = new CawaLandClassificationOp();
+        landClassificationOp.setSourceProduct("l1b", l1bProduct);
+        landClassificationOp.setSourceProduct("rhotoa", rad2reflProduct);
+        landClassificationOp.setSourceProduct("pressure", pbaroProduct);
+        landClassificationOp.setSourceProduct("pressureLise", pressureLiseProduct);
+        landClassificationOp.setSourceProduct("waterMask", waterMaskProduct);
+        landClassificationOp.setParameterDefaultValues();
+        landClassificationOp.setParameter("outputSchillerNNValue", outputSchillerNNValue);
+        landClassificationOp.setParameter("schillerNNCloudAmbiguousLowerBoundaryValue",
+                                          schillerLandNNCloudAmbiguousLowerBoundaryValue);
+        landClassificationOp.setParameter("schillerNNCloudAmbiguousSureSeparationValue",
+                                          schillerLandNNCloudAmbiguousSureSeparationValue);
+        landClassificationOp.setParameter("schillerNNCloudSureSnowSeparationValue",
+                                          schillerLandNNCloudSureSnowSeparationValue);
+        landClassificationOp.getTargetProduct();
+
+        waterClassificationOp = new CawaWaterClassificationOp();
+        waterClassificationOp.setSourceProduct("l1b", l1bProduct);
+        waterClassificationOp.setSourceProduct("rhotoa", rad2reflProduct);
+        waterClassificationOp.setSourceProduct("pressure", ctpProduct);
+        waterClassificationOp.setSourceProduct("pressureLise", pressureLiseProduct);
+        waterClassificationOp.setSourceProduct("waterMask", waterMaskProduct);
+        waterClassificationOp.setParameterDefaultValues();
+        waterClassificationOp.setParameter("outputSchillerNNValue", outputSchillerNNValue);
+        waterClassificationOp.setParameter("schillerNNCloudAmbiguousLowerBoundaryValue",
+                                           schillerWaterNNCloudAmbiguousLowerBoundaryValue);
+        waterClassificationOp.setParameter("schillerNNCloudAmbiguousSureSeparationValue",
+                                           schillerWaterNNCloudAmbiguousSureSeparationValue);
+        waterClassificationOp.setParameter("schillerNNCloudSureSnowSeparationValue",
+                                           schillerWaterNNCloudSureSnowSeparationValue);
+        waterClassificationOp.getTargetProduct();
+    }
+
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            final Tile cloudFlagTile = targetTiles.get(cloudFlagBand);
+            final Tile nnTile = nnBand != null ? targetTiles.get(nnBand) : null;
+
+            // same land/water decision as in both classification operators, invalid land pixels remain land pixels
+            final boolean[] isLand = landClassificationOp.computeLandMask(rectangle);
+            landClassificationOp.classifyLandPixels(rectangle, isLand, cloudFlagTile, nnTile);
+            waterClassificationOp.classifyWaterPixels(rectangle, isLand, cloudFlagTile, nnTile);
+
+            if (wsBand != null) {
+                final float[] u10 = TileAccess.getFloats(getSourceTile(u10Band, rectangle));
+                final float[] v10 = TileAccess.getFloats(getSourceTile(v10Band, rectangle));
+                targetTiles.get(wsBand).setSamples(CawaMergeLandWaterOp.computeWindSpeed(u10, v10));
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (landClassificationOp != null) {
+            landClassificationOp.dispose();
+        }
+        if (waterClassificationOp != null) {
+            waterClassificationOp.dispose();
+        }
+        super.dispose();
+    }
+
+    /**
+     * The Service Provider Interface (SPI) for the operator.
+     * It provides operator meta-data and is a factory for new operator instances.
+     */
+    public static class Spi extends OperatorSpi {
+
+        public Spi() {
+            super(CawaClassificationOp.class);
+        }
+    }
+
+}
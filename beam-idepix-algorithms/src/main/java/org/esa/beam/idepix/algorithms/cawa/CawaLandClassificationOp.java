@@ -17,12 +17,14 @@ import org.esa.beam.idepix.algorithms.globalbedo.GlobAlbedoAlgorithm;
 import org.esa.beam.idepix.algorithms.globalbedo.GlobAlbedoMerisAlgorithm;
 import org.esa.beam.idepix.operators.BarometricPressureOp;
 import org.esa.beam.idepix.operators.LisePressureOp;
+import org.esa.beam.idepix.operators.RayleighKernel;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.idepix.util.TileAccess;
 import org.esa.beam.meris.brr.HelperFunctions;
 import org.esa.beam.meris.brr.Rad2ReflOp;
 import org.esa.beam.meris.brr.RayleighCorrection;
-import org.esa.beam.meris.l2auxdata.Constants;
 import org.esa.beam.meris.l2auxdata.L2AuxData;
 import org.esa.beam.meris.l2auxdata.L2AuxDataException;
 import org.esa.beam.meris.l2auxdata.L2AuxDataProvider;
@@ -101,15 +103,13 @@ public class CawaLandClassificationOp extends Operator {
     private Band landWaterBand;
 
     private L2AuxData auxData;
-    private RayleighCorrection rayleighCorrection;
+    private ThreadLocal<RayleighKernel> rayleighKernel;
 
     private SchillerAlgorithm landNN = null;
 
     public static final String SCHILLER_MERIS_LAND_NET_NAME = "11x8x5x3_1062.5_land.net";
     ThreadLocal<SchillerNeuralNetWrapper> merisLandNeuralNet;
 
-    static final int MERIS_L1B_F_LAND = 4;
-
     @Override
     public void initialize() throws OperatorException {
         try {
@@ -123,7 +123,7 @@ public class CawaLandClassificationOp extends Operator {
         readSchillerNeuralNets();
         createTargetProduct();
 
-        rayleighCorrection = new RayleighCorrection(auxData);
+        rayleighKernel = RayleighKernel.createThreadLocal(new RayleighCorrection(auxData), null);
 
         landWaterBand = waterMaskProduct.getBand("land_water_fraction");
     }
@@ -173,67 +173,95 @@ public class CawaLandClassificationOp extends Operator {
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagBand);
+            Tile nnTargetTile = null;
+            if (outputSchillerNNValue) {
+                nnTargetTile = targetTiles.get(targetProduct.getBand(CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME));
+            }
+
+            final boolean[] isLand = computeLandMask(rectangle);
+            setNonLandPixels(rectangle, isLand, cloudFlagTargetTile, nnTargetTile);
+            classifyLandPixels(rectangle, isLand, cloudFlagTargetTile, nnTargetTile);
+        }
+    }
+
+    static void setNonLandPixels(Rectangle rectangle, boolean[] isLand, Tile cloudFlagTargetTile, Tile nnTargetTile) {
+        int index = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                if (!isLand[index++]) {
+                    cloudFlagTargetTile.setSample(x, y, CawaConstants.F_LAND, false);
+                    cloudFlagTargetTile.setSample(x, y, CawaConstants.F_CLOUD, false);
+                    cloudFlagTargetTile.setSample(x, y, CawaConstants.F_SNOW_ICE, false);
+                    if (nnTargetTile != null) {
+                        nnTargetTile.setSample(x, y, Float.NaN);
+                    }
+                }
+            }
+        }
+    }
+
+    boolean[] computeLandMask(Rectangle rectangle) {
+        final Tile waterFractionTile = getSourceTile(landWaterBand, rectangle);
+        final Band merisL1bFlagBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
+        final Tile merisL1bFlagTile = getSourceTile(merisL1bFlagBand, rectangle);
+        return CawaUtils.computeLandMask(rectangle, sourceProduct.getGeoCoding(), waterFractionTile, merisL1bFlagTile);
+    }
+
+    /**
+     * Classifies the land pixels of the rectangle with the GA algorithm, other pixels are left untouched.
+     *
+     * @param rectangle           the pixel rectangle
+     * @param isLand              the land mask of the rectangle, indexed line by line
+     * @param cloudFlagTargetTile the cloud flag tile to write to
+     * @param nnTargetTile        the NN value tile to write to, may be {@code null}
+     */
+    void classifyLandPixels(Rectangle rectangle, boolean[] isLand, Tile cloudFlagTargetTile, Tile nnTargetTile) {
         // MERIS variables
         final Tile p1Tile = getSourceTile(p1Band, rectangle);
         final Tile pbaroTile = getSourceTile(pbaroBand, rectangle);
         final Tile pscattTile = getSourceTile(pscattBand, rectangle);
-        final Tile waterFractionTile = getSourceTile(landWaterBand, rectangle);
-
-        final Band merisL1bFlagBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
-        final Tile merisL1bFlagTile = getSourceTile(merisL1bFlagBand, rectangle);
 
         final TiePointGrid merisSzaTpg = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
         final TiePointGrid merisSaaTpg = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME);
         final TiePointGrid merisVzaTpg = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME);
         final TiePointGrid merisVaaTpg = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME);
         final TiePointGrid merisEcmwTpg = sourceProduct.getTiePointGrid("atm_press");
-        final Tile merisSzaTile = getSourceTile(merisSzaTpg, rectangle);
-        final Tile merisSaaTile = getSourceTile(merisSaaTpg, rectangle);
-        final Tile merisVzaTile = getSourceTile(merisVzaTpg, rectangle);
-        final Tile merisVaaTile = getSourceTile(merisVaaTpg, rectangle);
-        final Tile merisEcmwfTile = getSourceTile(merisEcmwTpg, rectangle);
+        // geometry and pressure of the whole tile, indexed line by line
+        final float[] merisSza = TileAccess.getFloats(getSourceTile(merisSzaTpg, rectangle));
+        final float[] merisSaa = TileAccess.getFloats(getSourceTile(merisSaaTpg, rectangle));
+        final float[] merisVza = TileAccess.getFloats(getSourceTile(merisVzaTpg, rectangle));
+        final float[] merisVaa = TileAccess.getFloats(getSourceTile(merisVaaTpg, rectangle));
+        final float[] merisEcmwf = TileAccess.getFloats(getSourceTile(merisEcmwTpg, rectangle));
+        final RayleighKernel kernel = rayleighKernel.get();
 
         Tile[] merisReflectanceTiles = new Tile[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS];
         float[] merisReflectance = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS];
+        float[] merisBrr = new float[IdepixConstants.MERIS_BRR_BAND_NAMES.length];
         for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
             merisReflectanceTiles[i] = getSourceTile(merisReflBands[i], rectangle);
         }
 
-        final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
-        final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
-
-        Band nnTargetBand;
-        Tile nnTargetTile = null;
-        if (outputSchillerNNValue) {
-            nnTargetBand = targetProduct.getBand(CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME);
-            nnTargetTile = targetTiles.get(nnTargetBand);
-        }
         try {
             for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
                 checkForCancellation();
                 for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    final int waterFraction = waterFractionTile.getSampleInt(x, y);
-                    if (!isLandPixel(x, y, merisL1bFlagTile, waterFraction)) {
-                        cloudFlagTargetTile.setSample(x, y, CawaConstants.F_LAND, false);
-//                        cloudFlagTargetTile.setSample(x, y, CawaConstants.F_CLOUD_AMBIGUOUS, false);
-//                        cloudFlagTargetTile.setSample(x, y, CawaConstants.F_CLOUD_SURE, false);
-                        cloudFlagTargetTile.setSample(x, y, CawaConstants.F_CLOUD, false);
-                        cloudFlagTargetTile.setSample(x, y, CawaConstants.F_SNOW_ICE, false);
-                        if (nnTargetTile != null) {
-                            nnTargetTile.setSample(x, y, Float.NaN);
-                        }
-                    } else {
+                    final int index = (y - rectangle.y) * rectangle.width + (x - rectangle.x);
+                    if (isLand[index]) {
                         // set up pixel properties for given instruments...
                         GlobAlbedoAlgorithm globAlbedoAlgorithm = createMerisAlgorithm(p1Tile,
                                                                                        pbaroTile,
                                                                                        pscattTile,
-                                                                                       merisSzaTile,
-                                                                                       merisVzaTile,
-                                                                                       merisSaaTile,
-                                                                                       merisVaaTile,
-                                                                                       merisEcmwfTile,
+                                                                                       merisSza[index],
+                                                                                       merisVza[index],
+                                                                                       merisSaa[index],
+                                                                                       merisVaa[index],
+                                                                                       merisEcmwf[index],
+                                                                                       kernel,
                                                                                        merisReflectanceTiles,
                                                                                        merisReflectance,
+                                                                                       merisBrr,
                                                                                        y,
                                                                                        x);
 
@@ -331,30 +359,6 @@ public class CawaLandClassificationOp extends Operator {
         }
     }
 
-    private boolean isLandPixel(int x, int y, Tile merisL1bFlagTile, int waterFraction) {
-        // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-        if (getGeoPos(x, y).lat > -58f) {
-            // values bigger than 100 indicate no data
-            if (waterFraction <= 100) {
-                // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
-                // is always 0 or 100!! (TS, OD, 20140502)
-                return waterFraction == 0;
-            } else {
-                return merisL1bFlagTile.getSampleBit(x, y, MERIS_L1B_F_LAND);
-            }
-        } else {
-            return merisL1bFlagTile.getSampleBit(x, y, MERIS_L1B_F_LAND);
-        }
-    }
-
-    private GeoPos getGeoPos(int x, int y) {
-        final GeoPos geoPos = new GeoPos();
-        final GeoCoding geoCoding = getSourceProduct().getGeoCoding();
-        final PixelPos pixelPos = new PixelPos(x, y);
-        geoCoding.getGeoPos(pixelPos, geoPos);
-        return geoPos;
-    }
-
     private double calcScatteringAngle(double sza, double vza, double saa, double vaa) {
         final double sins = (float) Math.sin(sza * MathUtils.DTOR);
         final double sinv = (float) Math.sin(vza * MathUtils.DTOR);
@@ -395,13 +399,15 @@ public class CawaLandClassificationOp extends Operator {
     private GlobAlbedoAlgorithm createMerisAlgorithm(Tile p1Tile,
                                                      Tile pbaroTile,
                                                      Tile pscattTile,
-                                                     Tile merisSzaTile,
-                                                     Tile merisVzaTile,
-                                                     Tile merisSaaTile,
-                                                     Tile merisVaaTile,
-                                                     Tile merisEcmwfTile,
+                                                     double sza,
+                                                     double vza,
+                                                     double saa,
+                                                     double vaa,
+                                                     double press,
+                                                     RayleighKernel kernel,
                                                      Tile[] merisReflectanceTiles,
                                                      float[] merisReflectance,
+                                                     float[] merisBrr,
                                                      int y,
                                                      int x) {
         GlobAlbedoMerisAlgorithm gaAlgorithm = new GlobAlbedoMerisAlgorithm();
@@ -418,47 +424,15 @@ public class CawaLandClassificationOp extends Operator {
             inputVector[i] = Math.sqrt(merisReflectance[i]);
         }
 
-        gaAlgorithm.setNnOutput(nnWrapper.getNeuralNet().calc(inputVector));
+        gaAlgorithm.setNnOutput(nnWrapper.calc(this, inputVector));
 
-        // todo: we need Rayleigh correction term for 442nm here
+        final double deltaAzimuth = HelperFunctions.computeAzimuthDifference(vaa, saa);
 
-        final double sza = merisSzaTile.getSampleDouble(x, y);
-        final double sins = (float) Math.sin(sza * MathUtils.DTOR);
-        final double vza = merisVzaTile.getSampleDouble(x, y);
-        final double sinv = (float) Math.sin(vza * MathUtils.DTOR);
-        final double coss = (float) Math.cos(sza * MathUtils.DTOR);
-        final double cosv = (float) Math.cos(vza * MathUtils.DTOR);
-
-        final double vaa = merisVaaTile.getSampleDouble(x, y);
-        final double saa = merisSaaTile.getSampleDouble(x, y);
-        final double deltaAzimuth = (float) HelperFunctions.computeAzimuthDifference(vaa, saa);
-
-        //Rayleigh phase function coefficients, PR in DPM
-        final double[] phaseR = new double[Constants.RAYSCATT_NUM_SER];
-        //Rayleigh optical thickness, tauR0 in DPM
-        final double[] tauR = new double[Constants.L1_BAND_NUM];
-        //  Rayleigh correction
-        final double[] rhoRay = new double[Constants.L1_BAND_NUM];
-
-        /* Rayleigh phase function Fourier decomposition */
-        rayleighCorrection.phase_rayleigh(coss, cosv, sins, sinv, phaseR);
-
-        /* Rayleigh optical thickness */
-        double press = merisEcmwfTile.getSampleDouble(x, y); /* DPM #2.1.7-1 v1.1 */
-        rayleighCorrection.tau_rayleigh(press, tauR); /* DPM #2.1.7-2 */
-
-        /* Rayleigh reflectance - DPM #2.1.7-3 - v1.3 */
-        final double airMass = HelperFunctions.calculateAirMass((float) vza, (float) sza);
-        rayleighCorrection.ref_rayleigh(deltaAzimuth, sza, vza, coss, cosv, airMass, phaseR, tauR, rhoRay);
+        /* Rayleigh optical thickness and reflectance - DPM #2.1.7-2, #2.1.7-3 */
+        kernel.computeReflectance(sza, vza, deltaAzimuth, press);
 
         /* DPM #2.1.7-4 */
-        float[] merisBrr = new float[IdepixConstants.MERIS_BRR_BAND_NAMES.length];
-        int brrIndex = 0;
-        for (int band = Constants.bb412; band <= Constants.bb900; band++) {
-            if (band != 10 && band != 14) {
-                merisBrr[brrIndex] = (float) (merisReflectanceTiles[brrIndex].getSampleFloat(x, y) - rhoRay[band]);
-            }
-        }
+        RayleighKernel.computeBrr(merisReflectance, kernel.getRhoR(), merisBrr);
 
         /* Interpolate threshold on rayleigh corrected reflectance - DPM #2.1.7-9 */
         final float brr442Thresh = (float) calcRhoToa442ThresholdTerm(sza, vza, saa, vaa);
@@ -12,10 +12,13 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.gpf.operators.meris.MerisBasisOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.TileAccess;
 import org.esa.beam.util.ProductUtils;
 
 import java.awt.*;
+import java.util.Map;
 
 /**
  * MERIS water/land merge operator for CAWA.
@@ -53,6 +56,8 @@ public class CawaMergeLandWaterOp extends MerisBasisOp {
     private Band mergedNNBand;
 
     private Band wsBand;
+    private Band u10Band;
+    private Band v10Band;
 
     private boolean hasNNOutput;
 
@@ -74,6 +79,8 @@ public class CawaMergeLandWaterOp extends MerisBasisOp {
             ProductUtils.copyBand(CawaConstants.ERA_INTERIM_MSLP_BAND_NAME, eraInterimProduct, mergedClassifProduct, true);
             ProductUtils.copyBand(CawaConstants.ERA_INTERIM_TCWV_BAND_NAME, eraInterimProduct, mergedClassifProduct, true);
             wsBand = mergedClassifProduct.addBand(CawaConstants.ERA_INTERIM_WINDSPEED_BAND_NAME, ProductData.TYPE_FLOAT32);
+            u10Band = eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_U10_BAND_NAME);
+            v10Band = eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_V10_BAND_NAME);
         }
 
         hasNNOutput = landClassifProduct.containsBand(CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME) &&
@@ -88,62 +95,60 @@ public class CawaMergeLandWaterOp extends MerisBasisOp {
     }
 
     @Override
-    public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Rectangle rectangle = targetTile.getRectangle();
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            // the land flag is read once and selects the samples of all merged bands
+            final int[] landFlags = TileAccess.getInts(getSourceTile(landClassifBand, rectangle));
+            final int[] waterFlags = TileAccess.getInts(getSourceTile(waterClassifBand, rectangle));
+            final boolean[] isLand = getLandMask(landFlags);
+            targetTiles.get(mergedClassifBand).setSamples(select(isLand, landFlags, waterFlags));
+
+            if (hasNNOutput) {
+                final float[] landNN = TileAccess.getFloats(getSourceTile(landNNBand, rectangle));
+                final float[] waterNN = TileAccess.getFloats(getSourceTile(waterNNBand, rectangle));
+                targetTiles.get(mergedNNBand).setSamples(select(isLand, landNN, waterNN));
+            }
 
-        final Tile waterClassifTile = getSourceTile(waterClassifBand, rectangle);
-        final Tile landClassifTile = getSourceTile(landClassifBand, rectangle);
+            if (wsBand != null) {
+                final float[] u10 = TileAccess.getFloats(getSourceTile(u10Band, rectangle));
+                final float[] v10 = TileAccess.getFloats(getSourceTile(v10Band, rectangle));
+                targetTiles.get(wsBand).setSamples(computeWindSpeed(u10, v10));
+            }
+        }
+    }
 
-        Tile u10Tile = null;
-        Tile v10Tile = null;
-        if (eraInterimProduct != null) {
-           u10Tile = getSourceTile(eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_U10_BAND_NAME), rectangle);
-           v10Tile = getSourceTile(eraInterimProduct.getBand(CawaConstants.ERA_INTERIM_V10_BAND_NAME), rectangle);
+    static boolean[] getLandMask(int[] landClassifFlags) {
+        final boolean[] isLand = new boolean[landClassifFlags.length];
+        final int landMask = 1 << CawaConstants.F_LAND;
+        for (int i = 0; i < isLand.length; i++) {
+            isLand[i] = (landClassifFlags[i] & landMask) != 0;
         }
+        return isLand;
+    }
 
-        Tile waterNNTile = null;
-        Tile landNNTile = null;
-        if (hasNNOutput) {
-            waterNNTile = getSourceTile(waterNNBand, rectangle);
-            landNNTile = getSourceTile(landNNBand, rectangle);
+    // land pixels are taken from the land classification, all others from the water classification
+    static int[] select(boolean[] isLand, int[] landSamples, int[] waterSamples) {
+        final int[] samples = new int[isLand.length];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = isLand[i] ? landSamples[i] : waterSamples[i];
         }
+        return samples;
+    }
 
-        if (targetBand == mergedClassifBand) {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    boolean isLand = landClassifTile.getSampleBit(x, y, CawaConstants.F_LAND);
-                    final int sample = isLand ? landClassifTile.getSampleInt(x, y) : waterClassifTile.getSampleInt(x, y);
-                    targetTile.setSample(x, y, sample);
-                }
-            }
-        } else if (targetBand == wsBand) {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    float u10;
-                    float v10;
-                    if (u10Tile != null&& v10Tile != null) {
-                        u10 = u10Tile.getSampleFloat(x, y);
-                        v10 = v10Tile.getSampleFloat(x, y);
-                    } else {
-                        u10 = 10.0f;
-                        v10 = 10.0f;
-                    }
-                    final float ws = (float) Math.sqrt(u10*u10 + v10*v10);
-                    targetTile.setSample(x, y, ws);
-                }
-            }
-        }else if (hasNNOutput && targetBand == mergedNNBand) {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    boolean isLand = landClassifTile.getSampleBit(x, y, CawaConstants.F_LAND);
-                    final float sample = isLand ? landNNTile.getSampleFloat(x, y) : waterNNTile.getSampleFloat(x, y);
-                    targetTile.setSample(x, y, sample);
-                }
-            }
+    static float[] select(boolean[] isLand, float[] landSamples, float[] waterSamples) {
+        final float[] samples = new float[isLand.length];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = isLand[i] ? landSamples[i] : waterSamples[i];
+        }
+        return samples;
+    }
+
+    static float[] computeWindSpeed(float[] u10, float[] v10) {
+        final float[] ws = new float[u10.length];
+        for (int i = 0; i < ws.length; i++) {
+            ws[i] = (float) Math.sqrt(u10[i] * u10[i] + v10[i] * v10[i]);
         }
+        return ws;
     }
 
     /**
@@ -14,6 +14,7 @@ import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.IdepixProducts;
 import org.esa.beam.idepix.operators.BasisOp;
 import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixRoi;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 
@@ -87,17 +88,17 @@ public class CawaOp extends BasisOp {
             description = " NN cloud ambiguous cloud sure/snow separation value (applied on WATER)")
     double schillerWaterNNCloudSureSnowSeparationValue;
 
-    @Parameter(defaultValue = "1.1",
+    @Parameter(defaultValue = "2.0",
             label = " NN cloud ambiguous lower boundary (applied on LAND)",
             description = " NN cloud ambiguous lower boundary (applied on LAND)")
     double schillerLandNNCloudAmbiguousLowerBoundaryValue;
 
-    @Parameter(defaultValue = "2.7",
+    @Parameter(defaultValue = "3.7",
             label = " NN cloud ambiguous/sure separation value (applied on LAND)",
             description = " NN cloud ambiguous cloud ambiguous/sure separation value (has only effect for MERIS L1b products)")
     double schillerLandNNCloudAmbiguousSureSeparationValue;
 
-    @Parameter(defaultValue = "4.6",
+    @Parameter(defaultValue = "4.05",
             label = " NN cloud sure/snow separation value (applied on LAND)",
             description = " NN cloud ambiguous cloud sure/snow separation value (has only effect for MERIS L1b products)")
     double schillerLandNNCloudSureSnowSeparationValue;
@@ -116,6 +117,23 @@ public class CawaOp extends BasisOp {
             label = "Width of cloud buffer (# of pixels)")
     private int cloudBufferWidth;
 
+    @Parameter(defaultValue = "false",
+            description = "Classify land and water pixels in one operator instead of separate land, water and merge steps.",
+            label = " Use fused land/water classification")
+    private boolean useFusedClassification;
+
+    @Parameter(label = " Region of interest (WKT)",
+            description = "Optional region of interest as WKT geometry in geographic coordinates. " +
+                    "Only the tiles intersecting it are computed, all others are filled with the no-data value of " +
+                    "each band (NaN for floating point bands without one).")
+    private String roiWkt;
+
+    @Parameter(label = " Region of interest (mask)",
+            description = "Optional region of interest as mask name or band maths expression of the " +
+                    "source product. Only the tiles intersecting it are computed, all others are filled with the " +
+                    "no-data value of each band (NaN for floating point bands without one).")
+    private String roiMask;
+
 
     private static final int LAND_WATER_MASK_RESOLUTION = 50;
     private static final int OVERSAMPLING_FACTOR_X = 3;
@@ -146,9 +164,13 @@ public class CawaOp extends BasisOp {
         }
 
         preProcess();
-        computeWaterCloudProduct();
-        computeLandCloudProduct();
-        mergeLandWater();
+        if (useFusedClassification) {
+            computeFusedClassificationProduct();
+        } else {
+            computeWaterCloudProduct();
+            computeLandCloudProduct();
+            mergeLandWater();
+        }
         postProcess();
 
         targetProduct = postProcessingProduct;
@@ -161,6 +183,8 @@ public class CawaOp extends BasisOp {
 
         copyOutputBands();
         ProductUtils.copyFlagBands(sourceProduct, targetProduct, true);   // we need the L1b flag!
+        IdepixRoi.apply(targetProduct, sourceProduct, roiWkt, roiMask, cloudBufferWidth,
+                        IdepixUtils.IDEPIX_CLOUD_FLAGS);
 
 //        targetProduct = waterClassificationProduct;
     }
@@ -192,11 +216,11 @@ public class CawaOp extends BasisOp {
         landClassificationParameters.put("copyAllTiePoints", true);
         landClassificationParameters.put("outputSchillerNNValue",
                                          outputSchillerNNValue);
-        landClassificationParameters.put("ccSchillerNNCloudAmbiguousLowerBoundaryValue",
+        landClassificationParameters.put("schillerNNCloudAmbiguousLowerBoundaryValue",
                                          schillerLandNNCloudAmbiguousLowerBoundaryValue);
-        landClassificationParameters.put("ccSchillerNNCloudAmbiguousSureSeparationValue",
+        landClassificationParameters.put("schillerNNCloudAmbiguousSureSeparationValue",
                                          schillerLandNNCloudAmbiguousSureSeparationValue);
-        landClassificationParameters.put("ccSchillerNNCloudSureSnowSeparationValue",
+        landClassificationParameters.put("schillerNNCloudSureSnowSeparationValue",
                                          schillerLandNNCloudSureSnowSeparationValue);
     }
 
@@ -205,11 +229,11 @@ public class CawaOp extends BasisOp {
         waterClassificationParameters.put("copyAllTiePoints", true);
         waterClassificationParameters.put("outputSchillerNNValue",
                                           outputSchillerNNValue);
-        waterClassificationParameters.put("ccSchillerNNCloudAmbiguousLowerBoundaryValue",
+        waterClassificationParameters.put("schillerNNCloudAmbiguousLowerBoundaryValue",
                                           schillerWaterNNCloudAmbiguousLowerBoundaryValue);
-        waterClassificationParameters.put("ccSchillerNNCloudAmbiguousSureSeparationValue",
+        waterClassificationParameters.put("schillerNNCloudAmbiguousSureSeparationValue",
                                           schillerWaterNNCloudAmbiguousSureSeparationValue);
-        waterClassificationParameters.put("ccSchillerNNCloudSureSnowSeparationValue",
+        waterClassificationParameters.put("schillerNNCloudSureSnowSeparationValue",
                                           schillerWaterNNCloudSureSnowSeparationValue);
     }
 
@@ -237,12 +261,7 @@ public class CawaOp extends BasisOp {
         Map<String, Product> mergeInputProducts = new HashMap<>();
         mergeInputProducts.put("landClassif", landClassificationProduct);
         mergeInputProducts.put("waterClassif", waterClassificationProduct);
-        if (eraInterimProduct != null && isCawaEraInterimProductValid()) {
-            mergeInputProducts.put("eraInterimProduct", eraInterimProduct);
-        } else {
-            System.out.println("WARNING: ERA Interim product not available or invalid - will use default values.");
-            mergeInputProducts.put("eraInterimProduct", null);
-        }
+        mergeInputProducts.put("eraInterimProduct", getValidEraInterimProduct());
 
         Map<String, Object> mergeClassificationParameters = new HashMap<>();
         mergeClassificationParameters.put("copyAllTiePoints", true);
@@ -250,6 +269,37 @@ public class CawaOp extends BasisOp {
                                                         mergeClassificationParameters, mergeInputProducts);
     }
 
+    private void computeFusedClassificationProduct() {
+        Map<String, Product> input = new HashMap<>();
+        input.put("l1b", sourceProduct);
+        input.put("rhotoa", rad2reflProduct);
+        input.put("ctp", ctpProduct);
+        input.put("pbaro", pbaroProduct);
+        input.put("pressureLise", pressureLiseProduct);
+        input.put("waterMask", waterMaskProduct);
+        input.put("eraInterimProduct", getValidEraInterimProduct());
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("copyAllTiePoints", true);
+        params.put("outputSchillerNNValue", outputSchillerNNValue);
+        params.put("schillerWaterNNCloudAmbiguousLowerBoundaryValue", schillerWaterNNCloudAmbiguousLowerBoundaryValue);
+        params.put("schillerWaterNNCloudAmbiguousSureSeparationValue", schillerWaterNNCloudAmbiguousSureSeparationValue);
+        params.put("schillerWaterNNCloudSureSnowSeparationValue", schillerWaterNNCloudSureSnowSeparationValue);
+        params.put("schillerLandNNCloudAmbiguousLowerBoundaryValue", schillerLandNNCloudAmbiguousLowerBoundaryValue);
+        params.put("schillerLandNNCloudAmbiguousSureSeparationValue", schillerLandNNCloudAmbiguousSureSeparationValue);
+        params.put("schillerLandNNCloudSureSnowSeparationValue", schillerLandNNCloudSureSnowSeparationValue);
+        mergedClassificationProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(CawaClassificationOp.class),
+                                                        params, input);
+    }
+
+    private Product getValidEraInterimProduct() {
+        if (eraInterimProduct != null && isCawaEraInterimProductValid()) {
+            return eraInterimProduct;
+        }
+        System.out.println("WARNING: ERA Interim product not available or invalid - will use default values.");
+        return null;
+    }
+
     private void postProcess() {
         HashMap<String, Product> input = new HashMap<>();
         input.put("l1b", sourceProduct);
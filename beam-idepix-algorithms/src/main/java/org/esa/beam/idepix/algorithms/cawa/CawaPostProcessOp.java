@@ -14,6 +14,7 @@ import org.esa.beam.gpf.operators.meris.MerisBasisOp;
 //import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.CloudBuffer;
 import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.meris.brr.CloudClassificationOp;
 import org.esa.beam.util.ProductUtils;
@@ -107,90 +108,86 @@ public class CawaPostProcessOp extends MerisBasisOp {
 
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
-        Tile szaTile = getSourceTile(szaTPG, srcRectangle);
-        Tile saaTile = getSourceTile(saaTPG, srcRectangle);
-        Tile ctpTile = getSourceTile(ctpBand, srcRectangle);
-        Tile altTile = getSourceTile(altTPG, targetRectangle);
-        final Tile waterFractionTile = getSourceTile(waterFractionBand, srcRectangle);
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    boolean isCloud = sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
-                    combineFlags(x, y, sourceFlagTile, targetTile);
-
-                    if (refineClassificationNearCoastlines) {
-                        if (isNearCoastline(x, y, waterFractionTile, srcRectangle)) {
-                            targetTile.setSample(x, y, CawaConstants.F_COASTLINE, true);
-                            refineSnowIceFlaggingForCoastlines(x, y, sourceFlagTile, targetTile);
-                            if (isCloud) {
-                                refineCloudFlaggingForCoastlines(x, y, sourceFlagTile, waterFractionTile, targetTile, srcRectangle);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
+            Tile szaTile = getSourceTile(szaTPG, srcRectangle);
+            Tile saaTile = getSourceTile(saaTPG, srcRectangle);
+            Tile ctpTile = getSourceTile(ctpBand, srcRectangle);
+            Tile altTile = getSourceTile(altTPG, targetRectangle);
+            final Tile waterFractionTile = getSourceTile(waterFractionBand, srcRectangle);
+
+            IdepixUtils.combineFlags(sourceFlagTile, targetTile);
+            for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
+                checkForCancellation();
+                for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
+
+                    if (targetRectangle.contains(x, y)) {
+                        boolean isCloud = sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
+
+                        if (refineClassificationNearCoastlines) {
+                            if (isNearCoastline(x, y, waterFractionTile, srcRectangle)) {
+                                targetTile.setSample(x, y, CawaConstants.F_COASTLINE, true);
+                                refineSnowIceFlaggingForCoastlines(x, y, sourceFlagTile, targetTile);
+                                if (isCloud) {
+                                    refineCloudFlaggingForCoastlines(x, y, sourceFlagTile, waterFractionTile, targetTile, srcRectangle);
+                                }
                             }
                         }
-                    }
-                    boolean isCloudAfterRefinement = targetTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
-                    if (isCloudAfterRefinement) {
-                        targetTile.setSample(x, y, CawaConstants.F_SNOW_ICE, false);
+                        boolean isCloudAfterRefinement = targetTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
+                        if (isCloudAfterRefinement) {
+                            targetTile.setSample(x, y, CawaConstants.F_SNOW_ICE, false);
+                        }
                     }
                 }
             }
-        }
 
-        if (computeCloudShadow) {
-            CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
-                    geoCoding,
-                    srcRectangle,
-                    targetRectangle,
-                    szaTile, saaTile, ctpTile, altTile) {
-
-                @Override
-                protected boolean isCloudForShadow(int x, int y) {
-                    final boolean is_cloud_current;
-                    if (!targetTile.getRectangle().contains(x, y)) {
-                        is_cloud_current = sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
-                    } else {
-                        is_cloud_current = targetTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
-                    }
-                    if (is_cloud_current) {
-                        final boolean isNearCoastline = isNearCoastline(x, y, waterFractionTile, srcRectangle);
-                        if (!isNearCoastline) {
-                            return true;
+            if (computeCloudShadow) {
+                CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
+                        geoCoding,
+                        srcRectangle,
+                        targetRectangle,
+                        szaTile, saaTile, ctpTile, altTile) {
+
+                    @Override
+                    protected boolean isCloudForShadow(int x, int y) {
+                        final boolean is_cloud_current;
+                        if (!targetTile.getRectangle().contains(x, y)) {
+                            is_cloud_current = sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
+                        } else {
+                            is_cloud_current = targetTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
+                        }
+                        if (is_cloud_current) {
+                            final boolean isNearCoastline = isNearCoastline(x, y, waterFractionTile, srcRectangle);
+                            if (!isNearCoastline) {
+                                return true;
+                            }
                         }
+                        return false;
                     }
-                    return false;
-                }
 
-                @Override
-                protected boolean isCloudFree(int x, int y) {
-                    return !sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
-                }
+                    @Override
+                    protected boolean isCloudFree(int x, int y) {
+                        return !sourceFlagTile.getSampleBit(x, y, CawaConstants.F_CLOUD);
+                    }
 
-                @Override
-                protected boolean isSurroundedByCloud(int x, int y) {
-                    return isPixelSurrounded(x, y, sourceFlagTile, CawaConstants.F_CLOUD);
-                }
+                    @Override
+                    protected boolean isSurroundedByCloud(int x, int y) {
+                        return isPixelSurrounded(x, y, sourceFlagTile, CawaConstants.F_CLOUD);
+                    }
 
-                @Override
-                protected void setCloudShadow(int x, int y) {
-                    targetTile.setSample(x, y, CawaConstants.F_CLOUD_SHADOW, true);
-                }
-            };
-            cloudShadowFronts.computeCloudShadow();
+                    @Override
+                    protected void setCloudShadow(int x, int y) {
+                        targetTile.setSample(x, y, CawaConstants.F_CLOUD_SHADOW, true);
+                    }
+                };
+                cloudShadowFronts.computeCloudShadow();
+            }
         }
     }
 
-    private void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        int sourceFlags = sourceFlagTile.getSampleInt(x, y);
-        int computedFlags = targetTile.getSampleInt(x, y);
-        targetTile.setSample(x, y, sourceFlags | computedFlags);
-    }
-
     private boolean isCoastlinePixel(int x, int y, Tile waterFractionTile) {
         boolean isCoastline = false;
         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
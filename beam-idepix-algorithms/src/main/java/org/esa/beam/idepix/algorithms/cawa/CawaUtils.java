@@ -1,8 +1,12 @@
 package org.esa.beam.idepix.algorithms.cawa;
 
 import org.esa.beam.framework.datamodel.FlagCoding;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.PixelPos;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.util.BitSetter;
 
 import java.awt.*;
@@ -18,6 +22,47 @@ import java.awt.*;
 public class CawaUtils {
     // if possible, put here everything which is common for both land and water parts
 
+    static final int MERIS_L1B_F_LAND = 4;
+
+    /**
+     * Decides for each pixel of the rectangle whether it is classified by the land or by the water algorithm.
+     *
+     * @param rectangle         the pixel rectangle
+     * @param geoCoding         the geocoding of the L1b product
+     * @param waterFractionTile the land/water fraction from the water mask
+     * @param l1bFlagTile       the MERIS L1b flags
+     *
+     * @return the land pixels, indexed line by line
+     */
+    public static boolean[] computeLandMask(Rectangle rectangle, GeoCoding geoCoding,
+                                            Tile waterFractionTile, Tile l1bFlagTile) {
+        final boolean[] isLand = new boolean[rectangle.width * rectangle.height];
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        int index = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                pixelPos.setLocation(x, y);
+                geoCoding.getGeoPos(pixelPos, geoPos);
+                isLand[index++] = isLandPixel(geoPos.lat, waterFractionTile.getSampleInt(x, y),
+                                              l1bFlagTile.getSampleBit(x, y, MERIS_L1B_F_LAND));
+            }
+        }
+        return isLand;
+    }
+
+    static boolean isLandPixel(float lat, int waterFraction, boolean isL1bLand) {
+        // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
+        // values bigger than 100 indicate no data
+        if (lat > -58f && waterFraction <= 100) {
+            // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
+            // is always 0 or 100!! (TS, OD, 20140502)
+            return waterFraction == 0;
+        } else {
+            return isL1bLand;
+        }
+    }
+
     public static int setupCawaBitmasks(Product cloudProduct) {
 
         int index = 0;
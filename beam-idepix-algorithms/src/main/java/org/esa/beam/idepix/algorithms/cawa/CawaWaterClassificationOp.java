@@ -17,7 +17,9 @@ import org.esa.beam.idepix.operators.LisePressureOp;
 import org.esa.beam.idepix.operators.MerisClassificationOp;
 import org.esa.beam.idepix.seaice.SeaIceClassification;
 import org.esa.beam.idepix.seaice.SeaIceClassifier;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
 import org.esa.beam.meris.brr.HelperFunctions;
 import org.esa.beam.meris.brr.Rad2ReflOp;
@@ -36,6 +38,7 @@ import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Calendar;
+import java.util.Map;
 
 /**
  * MERIS pixel classification operator for CAWA.
@@ -76,7 +79,7 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
     private RayleighCorrection rayleighCorrection;
 
     private Band cloudFlagBand;
-    private SeaIceClassifier seaIceClassifier;
+    private LazyValue<SeaIceClassifier> seaIceClassifier;
     private Band ctpBand;
     private Band liseP1Band;
     private Band lisePScattBand;
@@ -204,11 +207,13 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
     private void initSeaIceClassifier() {
         final ProductData.UTC startTime = getSourceProduct().getStartTime();
         final int monthIndex = startTime.getAsCalendar().get(Calendar.MONTH);
-        try {
-            seaIceClassifier = new SeaIceClassifier(monthIndex + 1);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // the classification map is loaded when the first pixel is checked for sea ice
+        seaIceClassifier = new LazyValue<SeaIceClassifier>() {
+            @Override
+            protected SeaIceClassifier compute() throws IOException {
+                return SeaIceClassifier.getInstance(monthIndex + 1);
+            }
+        };
     }
 
     private void createTargetProduct() {
@@ -290,8 +295,56 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
     }
 
     @Override
-    public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
+            final Tile cloudFlagTile = targetTiles.get(cloudFlagBand);
+            final Tile nnOutputTile = nnOutputBand != null ? targetTiles.get(nnOutputBand) : null;
+
+            final boolean[] isLand = computeLandMask(targetRectangle);
+            final Tile l1bFlagTile = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME),
+                                                   targetRectangle);
+            setLandPixels(targetRectangle, isLand, l1bFlagTile, cloudFlagTile, nnOutputTile);
+            classifyWaterPixels(targetRectangle, isLand, cloudFlagTile, nnOutputTile);
+        }
+    }
+
+    // invalid land pixels are removed from the land mask, they are flagged as invalid by the water classification
+    static void setLandPixels(Rectangle rectangle, boolean[] isLand, Tile l1bFlagTile,
+                              Tile cloudFlagTile, Tile nnOutputTile) {
+        int index = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                if (isLand[index]) {
+                    if (l1bFlagTile.getSampleBit(x, y, Constants.L1_F_INVALID)) {
+                        isLand[index] = false;
+                    } else {
+                        cloudFlagTile.setSample(x, y, Constants.F_LAND, true);
+                        if (nnOutputTile != null) {
+                            nnOutputTile.setSample(x, y, Float.NaN);
+                        }
+                    }
+                }
+                index++;
+            }
+        }
+    }
+
+    boolean[] computeLandMask(Rectangle rectangle) {
+        final Tile waterFractionTile = getSourceTile(landWaterBand, rectangle);
+        final Tile l1bFlagTile = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME), rectangle);
+        return CawaUtils.computeLandMask(rectangle, l1bProduct.getGeoCoding(), waterFractionTile, l1bFlagTile);
+    }
+
+    /**
+     * Classifies the invalid and the water pixels of the rectangle with the CC algorithm, land pixels are left
+     * untouched. The NN is evaluated once per water pixel for the cloud flags and the NN value.
+     *
+     * @param targetRectangle the pixel rectangle
+     * @param isLand          the land mask of the rectangle, indexed line by line
+     * @param cloudFlagTile   the cloud flag tile to write to
+     * @param nnOutputTile    the NN value tile to write to, may be {@code null}
+     */
+    void classifyWaterPixels(Rectangle targetRectangle, boolean[] isLand, Tile cloudFlagTile, Tile nnOutputTile) {
         try {
             final Rectangle sourceRectangle = rectExtender.extend(targetRectangle);
             final SourceData sd = loadSourceTiles(sourceRectangle);
@@ -303,38 +356,35 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
 
             final PixelInfo pixelInfo = new PixelInfo();
 
+            int maskIndex = 0;
             for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
                 checkForCancellation();
                 pixelInfo.y = y;
                 for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                    if (isLand[maskIndex++]) {
+                        continue;
+                    }
                     final int i = (y - sourceRectangle.y) * sourceRectangle.width + (x - sourceRectangle.x);
                     pixelInfo.x = x;
                     pixelInfo.index = i;
                     if (!sd.l1Flags.getSampleBit(x, y, Constants.L1_F_INVALID)) {
                         final int waterFraction = waterFractionTile.getSampleInt(pixelInfo.x, pixelInfo.y);
 
-                        if (isLandPixel(pixelInfo, sd, waterFraction)) {
-                            if (band == cloudFlagBand) {
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, Constants.F_LAND, true);
-                            } else {
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, Float.NaN);
-                            }
-                        } else {
-                            pixelInfo.ecmwfPressure = sd.ecmwfPressure[i];
-                            pixelInfo.p1Pressure = liseP1Tile.getSampleFloat(x, y);
-                            pixelInfo.pscattPressure = lisePScattTile.getSampleFloat(x, y);
-                            pixelInfo.ctp = ctpTile.getSampleFloat(x, y);
-
-                            if (band == cloudFlagBand) {
-                                classifyCloud(sd, pixelInfo, targetTile, waterFraction);
-                            }
-                            if (outputSchillerNNValue && applyMERISSchillerNN && band == nnOutputBand) {
-                                final double[] nnOutput = getMerisNNOutput(sd, pixelInfo);
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, nnOutput[0]);
-                            }
+                        pixelInfo.ecmwfPressure = sd.ecmwfPressure[i];
+                        pixelInfo.p1Pressure = liseP1Tile.getSampleFloat(x, y);
+                        pixelInfo.pscattPressure = lisePScattTile.getSampleFloat(x, y);
+                        pixelInfo.ctp = ctpTile.getSampleFloat(x, y);
+
+                        final double nnOutput = applyMERISSchillerNN ? getMerisNNOutput(sd, pixelInfo)[0] : Double.NaN;
+                        classifyCloud(sd, pixelInfo, cloudFlagTile, waterFraction, nnOutput);
+                        if (nnOutputTile != null) {
+                            nnOutputTile.setSample(pixelInfo.x, pixelInfo.y, nnOutput);
                         }
                     } else {
-                        targetTile.setSample(pixelInfo.x, pixelInfo.y, IdepixConstants.F_INVALID, true);
+                        cloudFlagTile.setSample(pixelInfo.x, pixelInfo.y, IdepixConstants.F_INVALID, true);
+                        if (nnOutputTile != null) {
+                            nnOutputTile.setSample(pixelInfo.x, pixelInfo.y, Float.NaN);
+                        }
                     }
                 }
             }
@@ -343,22 +393,6 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
         }
     }
 
-    private boolean isLandPixel(PixelInfo pixelInfo, SourceData sd, int waterFraction) {
-        // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-        if (getGeoPos(pixelInfo).lat > -58f) {
-            // values bigger than 100 indicate no data
-            if (waterFraction <= 100) {
-                // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
-                // is always 0 or 100!! (TS, OD, 20140502)
-                return waterFraction == 0;
-            } else {
-                return sd.l1Flags.getSampleBit(pixelInfo.x, pixelInfo.y, Constants.L1_F_LAND);
-            }
-        } else {
-            return sd.l1Flags.getSampleBit(pixelInfo.x, pixelInfo.y, Constants.L1_F_LAND);
-        }
-    }
-
     private boolean isCoastlinePixel(PixelInfo pixelInfo, int waterFraction) {
         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
         // values bigger than 100 indicate no data
@@ -367,7 +401,8 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
         return getGeoPos(pixelInfo).lat > -58f && waterFraction <= 100 && waterFraction < 100 && waterFraction > 0;
     }
 
-    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, Tile targetTile, int waterFraction) {
+    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, Tile targetTile, int waterFraction,
+                              double nnOutput) {
 
         double sureThresh = cloudScreeningSure;
         boolean is_snow_ice = false;
@@ -422,21 +457,20 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
         boolean isCloudAmbiguous;
 
         if (applyMERISSchillerNN) {
-            double[] nnOutput = getMerisNNOutput(sd, pixelInfo);
             if (!targetTile.getSampleBit(pixelInfo.x, pixelInfo.y, IdepixConstants.F_INVALID)) {
                 targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD_AMBIGUOUS, false);
                 targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD_SURE, false);
                 targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD, false);
                 targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_SNOW_ICE, false);
-                isCloudAmbiguous = nnOutput[0] > schillerNNCloudAmbiguousLowerBoundaryValue &&
-                        nnOutput[0] <= schillerNNCloudAmbiguousSureSeparationValue;
+                isCloudAmbiguous = nnOutput > schillerNNCloudAmbiguousLowerBoundaryValue &&
+                        nnOutput <= schillerNNCloudAmbiguousSureSeparationValue;
                 if (isCloudAmbiguous) {
                     // this would be as 'CLOUD_AMBIGUOUS'...
                     targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD_AMBIGUOUS, true);
                     targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD, true);
                 }
                 // check for snow_ice separation below if needed, first set all to cloud
-                isCloudSure = nnOutput[0] > schillerNNCloudAmbiguousSureSeparationValue;
+                isCloudSure = nnOutput > schillerNNCloudAmbiguousSureSeparationValue;
                 if (isCloudSure) {
                     // this would be as 'CLOUD_SURE'...
                     targetTile.setSample(pixelInfo.x, pixelInfo.y, CawaConstants.F_CLOUD_SURE, true);
@@ -445,7 +479,7 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
 
                 is_snow_ice = false;
                 if (checkForSeaIce) {
-                    is_snow_ice = nnOutput[0] > schillerNNCloudSureSnowSeparationValue;
+                    is_snow_ice = nnOutput > schillerNNCloudSureSnowSeparationValue;
                 }
                 if (is_snow_ice) {
                     // this would be as 'SNOW/ICE'...
@@ -459,7 +493,7 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
                     isCloudSure = cloudProbValue > cloudScreeningAmbiguous;
                     // special case: set very bright clouds misclassified as snow_ice from NN but
                     // outside seaice climatology range to cloud
-                    if (!checkForSeaIce && nnOutput[0] > schillerNNCloudSureSnowSeparationValue) {
+                    if (!checkForSeaIce && nnOutput > schillerNNCloudSureSnowSeparationValue) {
                         isCloudSure = true;
                     }
                     isCloudAmbiguous = !isCloudSure && cloudProbValue > cloudScreeningAmbiguous && cloudProbValue < sureThresh;
@@ -496,7 +530,7 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
         for (int i = 0; i < nnInput.length; i++) {
             nnInput[i] = Math.sqrt(sd.rhoToa[i][pixelInfo.index]);
         }
-        return nnWrapper.getNeuralNet().calc(nnInput);
+        return nnWrapper.calc(this, nnInput);
     }
 
     private boolean isPixelClassifiedAsSeaice(GeoPos geoPos) {
@@ -515,7 +549,7 @@ public class CawaWaterClassificationOp extends MerisBasisOp {
                 lon = Math.min(lon, maxLon);
                 lat = Math.max(lat, minLat);
                 lat = Math.min(lat, maxLat);
-                final SeaIceClassification classification = seaIceClassifier.getClassification(lat, lon);
+                final SeaIceClassification classification = seaIceClassifier.get().getClassification(lat, lon);
                 if (classification.max >= CC_SEA_ICE_THRESHOLD) {
                     return true;
                 }
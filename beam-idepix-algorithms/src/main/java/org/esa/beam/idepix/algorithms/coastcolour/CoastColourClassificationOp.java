@@ -29,11 +29,18 @@ import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.gpf.operators.meris.MerisBasisOp;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.algorithms.SchillerAlgorithm;
+import org.esa.beam.idepix.morphology.BitPlane;
 import org.esa.beam.idepix.operators.LisePressureOp;
 import org.esa.beam.idepix.operators.MerisClassificationOp;
 import org.esa.beam.idepix.seaice.SeaIceClassification;
 import org.esa.beam.idepix.seaice.SeaIceClassifier;
+import org.esa.beam.idepix.util.GeometryTileProvider;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.idepix.util.TileAccess;
+import org.esa.beam.idepix.util.TileBufferPool;
 import org.esa.beam.meris.brr.HelperFunctions;
 import org.esa.beam.meris.brr.RayleighCorrection;
 import org.esa.beam.meris.dpm.PixelId;
@@ -49,6 +56,7 @@ import org.esa.beam.util.math.MathUtils;
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Calendar;
 
 //import org.esa.beam.meris.brr.Rad2ReflOp;
@@ -90,10 +98,6 @@ public class CoastColourClassificationOp extends MerisBasisOp {
     private static final int BAND_SLOPE_N_1 = MerisClassificationOp.BAND_SLOPE_N_1;
     private static final int BAND_SLOPE_N_2 = MerisClassificationOp.BAND_SLOPE_N_2;
 
-    private static final int BAND_FLH_7 = MerisClassificationOp.BAND_FLH_7;
-    private static final int BAND_FLH_8 = MerisClassificationOp.BAND_FLH_8;
-    private static final int BAND_FLH_9 = MerisClassificationOp.BAND_FLH_9;
-
     private static final double CC_RHO_TOA_442_THRESHOLD = 0.03;
     private static final double CC_DELTA_RHO_TOA_442_THRESHOLD = 0.03;
     private static final double CC_GLINT_THRESHOLD = 0.2;
@@ -118,6 +122,16 @@ public class CoastColourClassificationOp extends MerisBasisOp {
 
     private SchillerAlgorithm landWaterNN;
     private L2AuxData auxData;
+    private GeometryTileProvider geometryTileProvider;
+    // static, the pooled buffers live as long as the worker threads and must not refer to the operator
+    private static final TileBufferPool.Factory<SourceData> SOURCE_DATA_FACTORY =
+            new TileBufferPool.Factory<SourceData>() {
+                @Override
+                public SourceData create(int width, int height) {
+                    return new SourceData(width * height);
+                }
+            };
+    private final TileBufferPool<SourceData> sourceDataPool = new TileBufferPool<>(SOURCE_DATA_FACTORY);
     private PixelId pixelId;
     private RayleighCorrection rayleighCorrection;
 
@@ -129,7 +143,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
     private Band seaIceClimatologyOutputBand;
     private Band cloudProbabilityValueOutputBand;
     private Band mdsiOutputBand;
-    private SeaIceClassifier seaIceClassifier;
+    private LazyValue<SeaIceClassifier> seaIceClassifier;
     private Band ctpBand;
     private Band liseP1Band;
     private Band lisePScattBand;
@@ -218,6 +232,11 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         } catch (L2AuxDataException e) {
             throw new OperatorException("Could not load L2Auxdata", e);
         }
+        geometryTileProvider = new GeometryTileProvider(
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME));
 
         readSchillerNets();
 
@@ -247,11 +266,13 @@ public class CoastColourClassificationOp extends MerisBasisOp {
     private void initSeaIceClassifier() {
         final ProductData.UTC startTime = getSourceProduct().getStartTime();
         final int monthIndex = startTime.getAsCalendar().get(Calendar.MONTH);
-        try {
-            seaIceClassifier = new SeaIceClassifier(monthIndex + 1);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // the classification map is loaded when the first pixel is checked for sea ice
+        seaIceClassifier = new LazyValue<SeaIceClassifier>() {
+            @Override
+            protected SeaIceClassifier compute() throws IOException {
+                return SeaIceClassifier.getInstance(monthIndex + 1);
+            }
+        };
     }
 
     private void createTargetProduct() {
@@ -339,33 +360,21 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                                                 Color.GREEN.darker(), 0.5f));
     }
 
-    private SourceData loadSourceTiles(Rectangle rectangle) throws OperatorException {
-
-        SourceData sd = new SourceData();
-        sd.rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][0];
-        sd.radiance = new Tile[6];
-
+    private void loadSourceTiles(Rectangle rectangle, SourceData sd) throws OperatorException {
         for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
             sd.rhoToa[i] = (float[]) getSourceTile(
                     rhoToaProduct.getBand("reflec_" + (i + 1)),
                     rectangle).getRawSamples().getElems();
         }
-        sd.radiance[BAND_BRIGHT_N] = getSourceTile(
+        sd.radiance[BAND_BRIGHT_N] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_bright_n]),
-                rectangle);
-        sd.radiance[BAND_SLOPE_N_1] = getSourceTile(
+                rectangle));
+        sd.radiance[BAND_SLOPE_N_1] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_slope_n_1]),
-                rectangle);
-        sd.radiance[BAND_SLOPE_N_2] = getSourceTile(
+                rectangle));
+        sd.radiance[BAND_SLOPE_N_2] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_slope_n_2]),
-                rectangle);
-
-        sd.radiance[BAND_FLH_7] = getSourceTile(
-                l1bProduct.getBand(EnvisatConstants.MERIS_L1B_RADIANCE_7_BAND_NAME), rectangle);
-        sd.radiance[BAND_FLH_8] = getSourceTile(
-                l1bProduct.getBand(EnvisatConstants.MERIS_L1B_RADIANCE_8_BAND_NAME), rectangle);
-        sd.radiance[BAND_FLH_9] = getSourceTile(
-                l1bProduct.getBand(EnvisatConstants.MERIS_L1B_RADIANCE_9_BAND_NAME), rectangle);
+                rectangle));
 
         sd.detectorIndex = (short[]) getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_DETECTOR_INDEX_DS_NAME),
@@ -379,18 +388,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         sd.vaa = (float[]) getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME),
                                          rectangle).getRawSamples().getElems();
 
-        sd.sins = new float[sd.sza.length];
-        sd.sinv = new float[sd.vza.length];
-        sd.coss = new float[sd.sza.length];
-        sd.cosv = new float[sd.vza.length];
-        sd.deltaAzimuth = new float[sd.vza.length];
-        for (int i = 0; i < sd.sza.length; i++) {
-            sd.sins[i] = (float) Math.sin(sd.sza[i] * MathUtils.DTOR);
-            sd.sinv[i] = (float) Math.sin(sd.vza[i] * MathUtils.DTOR);
-            sd.coss[i] = (float) Math.cos(sd.sza[i] * MathUtils.DTOR);
-            sd.cosv[i] = (float) Math.cos(sd.vza[i] * MathUtils.DTOR);
-            sd.deltaAzimuth[i] = (float) HelperFunctions.computeAzimuthDifference(sd.vaa[i], sd.saa[i]);
-        }
+        geometryTileProvider.computeGeometry(rectangle, sd.sins, sd.coss, sd.sinv, sd.cosv, sd.deltaAzimuth);
         RasterDataNode altitudeRDN;
         if (l1bProduct.getProductType().equals(EnvisatConstants.MERIS_FSG_L1B_PRODUCT_TYPE_NAME)) {
             altitudeRDN = l1bProduct.getBand("altitude");
@@ -409,21 +407,28 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         sd.windv = (float[]) getSourceTile(l1bProduct.getTiePointGrid("merid_wind"),
                                            rectangle).getRawSamples().getElems();
 
-        sd.l1Flags = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME), rectangle);
-        return sd;
+        sd.l1Flags = TileAccess.getInts(getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME),
+                                                      rectangle));
     }
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         Rectangle targetRectangle = targetTile.getRectangle();
-        try {
+        SourceData sd = null;
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
             final Rectangle sourceRectangle = createSourceRectangle(band, targetRectangle);
-            final SourceData sd = loadSourceTiles(sourceRectangle);
+            if (isL1InvalidTile(sourceRectangle, targetRectangle)) {
+                // e.g. beyond the swath edges: set the invalid value in one go, without computing the source tiles
+                IdepixUtils.fillTile(targetTile, targetRectangle, getInvalidValue(band));
+                return;
+            }
+            sd = sourceDataPool.get(sourceRectangle);
+            loadSourceTiles(sourceRectangle, sd);
 
-            final Tile ctpTile = getSourceTile(ctpBand, sourceRectangle);
-            final Tile liseP1Tile = getSourceTile(liseP1Band, sourceRectangle);
-            final Tile lisePScattTile = getSourceTile(lisePScattBand, sourceRectangle);
-            final Tile waterFractionTile = getSourceTile(landWaterBand, sourceRectangle);
+            final float[] ctp = TileAccess.getFloats(getSourceTile(ctpBand, sourceRectangle));
+            final float[] liseP1 = TileAccess.getFloats(getSourceTile(liseP1Band, sourceRectangle));
+            final float[] lisePScatt = TileAccess.getFloats(getSourceTile(lisePScattBand, sourceRectangle));
+            final int[] waterFractions = TileAccess.getInts(getSourceTile(landWaterBand, sourceRectangle));
 
             final PixelInfo pixelInfo = new PixelInfo();
 
@@ -434,12 +439,12 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                     final int i = (y - sourceRectangle.y) * sourceRectangle.width + (x - sourceRectangle.x);
                     pixelInfo.x = x;
                     pixelInfo.index = i;
-                    if (!sd.l1Flags.getSampleBit(x, y, Constants.L1_F_INVALID)) {
+                    if (!isL1FlagSet(sd, i, Constants.L1_F_INVALID)) {
                         final boolean isLand;
                         final boolean isCoastline;
                         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
                         if (getGeoPos(pixelInfo).lat > -58f) {
-                            final int waterFraction = waterFractionTile.getSampleInt(pixelInfo.x, pixelInfo.y);
+                            final int waterFraction = waterFractions[i];
                             // values bigger than 100 indicate no data
                             if (waterFraction <= 100) {
                                 // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
@@ -448,11 +453,11 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                                 isLand = waterFraction == 0;
                             } else {
                                 isCoastline = false;
-                                isLand = sd.l1Flags.getSampleBit(x, y, Constants.L1_F_LAND);
+                                isLand = isL1FlagSet(sd, i, Constants.L1_F_LAND);
                             }
                         } else {
                             isCoastline = false;
-                            isLand = sd.l1Flags.getSampleBit(x, y, Constants.L1_F_LAND);
+                            isLand = isL1FlagSet(sd, i, Constants.L1_F_LAND);
                         }
 
                         pixelInfo.airMass = HelperFunctions.calculateAirMass(sd.vza[i], sd.sza[i]);
@@ -465,9 +470,9 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                         } else {
                             pixelInfo.ecmwfPressure = sd.ecmwfPressure[i];
                         }
-                        pixelInfo.p1Pressure = liseP1Tile.getSampleFloat(x, y);
-                        pixelInfo.pscattPressure = lisePScattTile.getSampleFloat(x, y);
-                        pixelInfo.ctp = ctpTile.getSampleFloat(x, y);
+                        pixelInfo.p1Pressure = liseP1[i];
+                        pixelInfo.pscattPressure = lisePScatt[i];
+                        pixelInfo.ctp = ctp[i];
 
                         if (band == cloudFlagBand) {
                             classifyCloud(sd, pixelInfo, targetTile, isLand, isCoastline);
@@ -502,15 +507,31 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                             targetTile.setSample(pixelInfo.x, pixelInfo.y, seaIceMaxValue);
                         }
                     } else {
-                        targetTile.setSample(pixelInfo.x, pixelInfo.y, CoastColourClassificationOp.F_INVALID, true);
+                        targetTile.setSample(pixelInfo.x, pixelInfo.y, getInvalidValue(band));
                     }
                 }
             }
         } catch (Exception e) {
             throw new OperatorException(e);
+        } finally {
+            if (sd != null) {
+                sd.clearSourceReferences();
+            }
         }
     }
 
+    // invalid pixels get only the invalid flag, the float bands get NaN
+    private double getInvalidValue(Band band) {
+        return band == cloudFlagBand ? BitSetter.setFlag(0, F_INVALID) : Double.NaN;
+    }
+
+    private boolean isL1InvalidTile(Rectangle sourceRectangle, Rectangle targetRectangle) {
+        final Tile l1FlagTile = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME),
+                                              sourceRectangle);
+        return BitPlane.createFromFlags(TileAccess.getInts(l1FlagTile), sourceRectangle, targetRectangle,
+                                        Constants.L1_F_INVALID).isFull();
+    }
+
     private Rectangle createSourceRectangle(Band band, Rectangle rectangle) {
         int x = rectangle.x;
         int y = rectangle.y;
@@ -680,7 +701,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         for (int i = 0; i < nnInput.length; i++) {
             nnInput[i] = Math.sqrt(sd.rhoToa[i][pixelInfo.index]);
         }
-        return nnWrapper.getNeuralNet().calc(nnInput);
+        return nnWrapper.calc(this, nnInput);
     }
 
     private boolean isPixelClassifiedAsSeaice(GeoPos geoPos) {
@@ -699,7 +720,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
                 lon = Math.min(lon, maxLon);
                 lat = Math.max(lat, minLat);
                 lat = Math.min(lat, maxLat);
-                final SeaIceClassification classification = seaIceClassifier.getClassification(lat, lon);
+                final SeaIceClassification classification = seaIceClassifier.get().getClassification(lat, lon);
                 if (classification.max >= CC_SEA_ICE_THRESHOLD) {
                     return true;
                 }
@@ -731,7 +752,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         final GeoPos geoPos = getGeoPos(pixelInfo);
         geoPos.lon += 180;
         geoPos.lat = 90.0f - geoPos.lat;
-        final SeaIceClassification classification = seaIceClassifier.getClassification(geoPos.lat, geoPos.lon);
+        final SeaIceClassification classification = seaIceClassifier.get().getClassification(geoPos.lat, geoPos.lon);
         return (float) classification.max;
     }
 
@@ -882,13 +903,13 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         boolean bright_f;
 
         /* Spectral slope processor.brr 1 */
-        boolean slope1_f = pixelId.isSpectraSlope1Flag(rhoAg, dc.radiance[BAND_SLOPE_N_1].getSampleFloat(pixelInfo.x, pixelInfo.y));
+        boolean slope1_f = pixelId.isSpectraSlope1Flag(rhoAg, dc.radiance[BAND_SLOPE_N_1][pixelInfo.index]);
         /* Spectral slope processor.brr 2 */
-        boolean slope2_f = pixelId.isSpectraSlope2Flag(rhoAg, dc.radiance[BAND_SLOPE_N_2].getSampleFloat(pixelInfo.x, pixelInfo.y));
+        boolean slope2_f = pixelId.isSpectraSlope2Flag(rhoAg, dc.radiance[BAND_SLOPE_N_2][pixelInfo.index]);
 
         boolean bright_toa_f = false;
         boolean bright_rc = (rhoAg[auxData.band_bright_n] > rhorc_442_thr)
-                || isSaturated(dc, pixelInfo.x, pixelInfo.y, BAND_BRIGHT_N, auxData.band_bright_n);
+                || isSaturated(dc, pixelInfo.index, BAND_BRIGHT_N, auxData.band_bright_n);
         if (isLand) {   /* land pixel */
             bright_f = bright_rc && slope1_f && slope2_f;
         } else {
@@ -914,8 +935,12 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         return (rhoToa865 - rhoToa885) / (rhoToa865 + rhoToa885);
     }
 
-    private boolean isSaturated(SourceData sd, int x, int y, int radianceBandId, int bandId) {
-        return sd.radiance[radianceBandId].getSampleFloat(x, y) > auxData.Saturation_L[bandId];
+    private boolean isSaturated(SourceData sd, int index, int radianceBandId, int bandId) {
+        return sd.radiance[radianceBandId][index] > auxData.Saturation_L[bandId];
+    }
+
+    private static boolean isL1FlagSet(SourceData sd, int index, int flagBit) {
+        return (sd.l1Flags[index] & (1 << flagBit)) != 0;
     }
 
     public static void addBitmasks(Product targetProduct) {
@@ -925,7 +950,7 @@ public class CoastColourClassificationOp extends MerisBasisOp {
     private static class SourceData {
 
         private float[][] rhoToa;
-        private Tile[] radiance;
+        private float[][] radiance;
         private short[] detectorIndex;
         private float[] sza;
         private float[] vza;
@@ -940,7 +965,33 @@ public class CoastColourClassificationOp extends MerisBasisOp {
         private float[] windv;
         private float[] altitude;
         private float[] ecmwfPressure;
-        private Tile l1Flags;
+        private int[] l1Flags;
+
+        private SourceData(int pixelCount) {
+            rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][];
+            radiance = new float[3][];
+            sins = new float[pixelCount];
+            sinv = new float[pixelCount];
+            coss = new float[pixelCount];
+            cosv = new float[pixelCount];
+            deltaAzimuth = new float[pixelCount];
+        }
+
+        // only the arrays allocated here are pooled, the source tiles and their samples must not be kept
+        private void clearSourceReferences() {
+            Arrays.fill(rhoToa, null);
+            Arrays.fill(radiance, null);
+            detectorIndex = null;
+            sza = null;
+            vza = null;
+            saa = null;
+            vaa = null;
+            windu = null;
+            windv = null;
+            altitude = null;
+            ecmwfPressure = null;
+            l1Flags = null;
+        }
     }
 
     private static class PixelInfo {
@@ -956,6 +1007,12 @@ public class CoastColourClassificationOp extends MerisBasisOp {
     }
 
 
+    @Override
+    public void dispose() {
+        sourceDataPool.dispose();
+        super.dispose();
+    }
+
     public static class Spi extends OperatorSpi {
 
         public Spi() {
@@ -3,7 +3,6 @@ package org.esa.beam.idepix.algorithms.coastcolour;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.FlagCoding;
 import org.esa.beam.framework.datamodel.Product;
-import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
@@ -11,10 +10,12 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.idepix.AlgorithmSelector;
+import org.esa.beam.idepix.IdepixChainBuilder;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.IdepixProducts;
 import org.esa.beam.idepix.operators.BasisOp;
 import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixRoi;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 
@@ -138,6 +139,18 @@ public class CoastColourOp extends BasisOp {
             description = " Apply NN for MERIS cloud classification purely (not combined with previous approach)")
     boolean ccApplyMERISAlternativeSchillerNNPure;
 
+    @Parameter(label = " Region of interest (WKT)",
+            description = "Optional region of interest as WKT geometry in geographic coordinates. " +
+                    "Only the tiles intersecting it are computed, all others are filled with the no-data value of " +
+                    "each band (NaN for floating point bands without one).")
+    private String roiWkt;
+
+    @Parameter(label = " Region of interest (mask)",
+            description = "Optional region of interest as mask name or band maths expression of the " +
+                    "source product. Only the tiles intersecting it are computed, all others are filled with the " +
+                    "no-data value of each band (NaN for floating point bands without one).")
+    private String roiMask;
+
 
     private static final int CC_LAND_MASK_RESOLUTION = 50;
     private static final int CC_OVERSAMPLING_FACTOR_X = 3;
@@ -145,6 +158,8 @@ public class CoastColourOp extends BasisOp {
 
     private Product smaProduct;
 
+    private IdepixChainBuilder chainBuilder;
+
 
     @Override
     public void initialize() throws OperatorException {
@@ -156,9 +171,12 @@ public class CoastColourOp extends BasisOp {
             throw new OperatorException(IdepixConstants.INPUT_INCONSISTENCY_ERROR_MESSAGE);
         }
         processCoastColour();
+        IdepixRoi.apply(targetProduct, sourceProduct, roiWkt, roiMask, ccCloudBufferWidth,
+                        CoastColourClassificationOp.CLOUD_FLAGS);
     }
 
     private void processCoastColour() {
+        chainBuilder = new IdepixChainBuilder();
         rad2reflProduct = IdepixProducts.computeRadiance2ReflectanceProduct(sourceProduct);
         ctpProduct = IdepixProducts.computeCloudTopPressureProduct(sourceProduct);
         pressureLiseProduct = IdepixProducts.computePressureLiseProduct(sourceProduct, rad2reflProduct,
@@ -197,7 +215,7 @@ public class CoastColourOp extends BasisOp {
         waterParameters.put("resolution", CC_LAND_MASK_RESOLUTION);
         waterParameters.put("subSamplingFactorX", CC_OVERSAMPLING_FACTOR_X);
         waterParameters.put("subSamplingFactorY", CC_OVERSAMPLING_FACTOR_Y);
-        Product waterMaskProduct = GPF.createProduct("LandWaterMask", waterParameters, sourceProduct);
+        Product waterMaskProduct = chainBuilder.createProduct("LandWaterMask", waterParameters, sourceProduct);
 
         Map<String, Product> cloudInputProducts = new HashMap<String, Product>(4);
         cloudInputProducts.put("l1b", sourceProduct);
@@ -219,8 +237,8 @@ public class CoastColourOp extends BasisOp {
         cloudClassificationParameters.put("ccAlternativeSchillerNNCloudAmbiguousSureSeparationValue", ccAlternativeSchillerNNCloudAmbiguousSureSeparationValue);
         cloudClassificationParameters.put("ccAlternativeSchillerNNCloudSureSnowSeparationValue", ccAlternativeSchillerNNCloudSureSnowSeparationValue);
         cloudClassificationParameters.put("ccApplyMERISAlternativeSchillerNNPure", ccApplyMERISAlternativeSchillerNNPure);
-        merisCloudProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(CoastColourClassificationOp.class),
-                                              cloudClassificationParameters, cloudInputProducts);
+        merisCloudProduct = chainBuilder.createProduct(OperatorSpi.getOperatorAlias(CoastColourClassificationOp.class),
+                                                       cloudClassificationParameters, cloudInputProducts);
     }
 
     private void computeCoastColourPostProcessProduct(Product smaProduct1) {
@@ -233,17 +251,15 @@ public class CoastColourOp extends BasisOp {
 
         Map<String, Object> params = new HashMap<String, Object>();
         params.put("cloudBufferWidth", ccCloudBufferWidth);
-        ccPostProcessingProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(CoastColourPostProcessOp.class), params, input);
-
-        final Product classifiedProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(CoastColourPostProcessOp.class),
-                                                            params, input);
+        final Product classifiedProduct =
+                chainBuilder.createProduct(OperatorSpi.getOperatorAlias(CoastColourPostProcessOp.class), params, input);
 
         input = new HashMap<>();
         input.put("classifiedProduct", classifiedProduct);
         params = new HashMap<>();
         params.put("cloudBufferWidth", ccCloudBufferWidth);
-        ccPostProcessingProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(CloudBufferOp.class),
-                                                  params, input);
+        ccPostProcessingProduct = chainBuilder.createProduct(OperatorSpi.getOperatorAlias(CloudBufferOp.class),
+                                                             params, input);
     }
 
     private void addBandsToTargetProduct() {
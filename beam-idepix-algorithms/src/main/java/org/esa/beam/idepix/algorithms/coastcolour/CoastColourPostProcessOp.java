@@ -14,8 +14,11 @@ import org.esa.beam.gpf.operators.meris.MerisBasisOp;
 import org.esa.beam.idepix.CloudBuffer;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.meris.brr.CloudClassificationOp;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
 
@@ -69,6 +72,7 @@ public class CoastColourPostProcessOp extends MerisBasisOp {
     private RectangleExtender rectCalculator;
 
     private GeoCoding geoCoding;
+    private boolean coastlineFromWaterFraction;
 
 
     @Override
@@ -108,6 +112,9 @@ public class CoastColourPostProcessOp extends MerisBasisOp {
             brr12nBand = rayleighProduct.getBand(IdepixConstants.SMA_SOURCE_BAND_NAMES[4]);
         }
         geoCoding = l1bProduct.getGeoCoding();
+        // for other geocodings, coastline could not be determined per pixel in classification
+        coastlineFromWaterFraction = !(geoCoding instanceof TiePointGeoCoding) &&
+                !(geoCoding instanceof CrsGeoCoding);
 
         rectCalculator = new RectangleExtender(new Rectangle(l1bProduct.getSceneRasterWidth(),
                                                              l1bProduct.getSceneRasterHeight()),
@@ -121,170 +128,155 @@ public class CoastColourPostProcessOp extends MerisBasisOp {
 
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
-        Tile szaTile = getSourceTile(szaTPG, srcRectangle);
-        Tile saaTile = getSourceTile(saaTPG, srcRectangle);
-        Tile ctpTile = getSourceTile(ctpBand, srcRectangle);
-        final Tile waterFractionTile = getSourceTile(landWaterBand, srcRectangle);
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-                if (targetRectangle.contains(x, y)) {
-                    boolean isCloud = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
-                    combineFlags(x, y, sourceFlagTile, targetTile);
-
-                    if (isNearCoastline(x, y, sourceFlagTile, waterFractionTile, srcRectangle)) {
-                        targetTile.setSample(x, y, CoastColourClassificationOp.F_COASTLINE, true);
-                        refineSnowIceFlaggingForCoastlines(x, y, sourceFlagTile, targetTile);
-                        if (isCloud) {
-                            refineCloudFlaggingForCoastlines(x, y, sourceFlagTile, waterFractionTile, targetTile, srcRectangle);
-                        }
-                    }
-                    boolean isCloudAfterRefinement = targetTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
-                }
-            }
-        }
-
-        if (smaProduct != null) {
-            Tile landAbundanceTile = getSourceTile(landAbundanceBand, targetRectangle);
-            Tile waterAbundanceTile = getSourceTile(waterAbundanceBand, targetRectangle);
-            Tile cloudAbundanceTile = getSourceTile(cloudAbundanceBand, targetRectangle);
-            Tile summaryErrorTile = getSourceTile(summaryErrorBand, targetRectangle);
-            Tile brr7nTile = getSourceTile(brr7nBand, targetRectangle);
-            Tile brr9nTile = getSourceTile(brr9nBand, targetRectangle);
-            Tile brr10nTile = getSourceTile(brr10nBand, targetRectangle);
-            Tile brr12nTile = getSourceTile(brr12nBand, targetRectangle);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            final Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
+            Tile szaTile = getSourceTile(szaTPG, srcRectangle);
+            Tile saaTile = getSourceTile(saaTPG, srcRectangle);
+            Tile ctpTile = getSourceTile(ctpBand, srcRectangle);
+            final Tile waterFractionTile = getSourceTile(landWaterBand, srcRectangle);
+
+            final int[] sourceFlags = sourceFlagTile.getSamplesInt();
+            final BitPlane cloud = BitPlane.createFromFlags(sourceFlags, srcRectangle, srcRectangle,
+                                                            CoastColourClassificationOp.F_CLOUD);
+            // the 3x3 coastline neighbourhood of each pixel, computed once for the whole source rectangle
+            final BitPlane nearCoastline = computeNearCoastline(sourceFlags, waterFractionTile.getSamplesInt(),
+                                                                srcRectangle);
+            // a cloud near the coastline is kept if it has a cloudy neighbour within the target rectangle
+            // which is not near the coastline
+            final BitPlane inlandCloud = BitPlane.createFromFlags(sourceFlags, srcRectangle, targetRectangle,
+                                                                  CoastColourClassificationOp.F_CLOUD);
+            final BitPlane nearCoastlineInTarget = nearCoastline.crop(targetRectangle.x - srcRectangle.x,
+                                                                      targetRectangle.y - srcRectangle.y,
+                                                                      targetRectangle.width, targetRectangle.height);
+            final BitPlane nearInlandCloud = inlandCloud.andNot(nearCoastlineInTarget).dilate3x3();
 
             for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
                 checkForCancellation();
+                final int sy = y - srcRectangle.y;
+                final int sourceOffset = sy * srcRectangle.width - srcRectangle.x;
                 for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
-                    computeMixedPixelFlag(x, y, landAbundanceTile, waterAbundanceTile,
-                                          cloudAbundanceTile, summaryErrorTile,
-                                          brr7nTile, brr9nTile, brr10nTile, brr12nTile, sourceFlagTile, targetTile);
+                    final int sx = x - srcRectangle.x;
+                    int flags = sourceFlags[sourceOffset + x];
+
+                    if (nearCoastline.get(sx, sy)) {
+                        flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_COASTLINE);
+                        // refine snow/ice flagging for coastlines
+                        flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_SNOW_ICE, false);
+                        // refine cloud flagging for coastlines
+                        if (cloud.get(sx, sy) && !cloud.isSurrounded(sx, sy) &&
+                                !nearInlandCloud.get(x - targetRectangle.x, y - targetRectangle.y)) {
+                            final boolean isLand = BitSetter.isFlagSet(flags, CoastColourClassificationOp.F_LAND);
+                            flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_CLOUD, false);
+                            flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_CLOUD_SURE, false);
+                            flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_CLOUD_AMBIGUOUS, false);
+                            flags = BitSetter.setFlag(flags, CoastColourClassificationOp.F_MIXED_PIXEL, !isLand);
+                        }
+                    }
+                    targetTile.setSample(x, y, flags);
                 }
             }
-        }
 
-        final CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
-                geoCoding,
-                srcRectangle,
-                targetRectangle,
-                szaTile, saaTile, ctpTile, null) {
-
-            @Override
-            protected boolean isCloudForShadow(int x, int y) {
-                final boolean is_cloud_current;
-                if (!targetRectangle.contains(x, y)) {
-                    is_cloud_current = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
-                } else {
-                    is_cloud_current = targetTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
-                }
-                if (is_cloud_current) {
-                    final boolean is_mixed_current = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_MIXED_PIXEL);
-                    final boolean isNearCoastline = isNearCoastline(x, y, sourceFlagTile, waterFractionTile, srcRectangle);
-                    if (!is_mixed_current && !isNearCoastline) {
-                        return true;
+            if (smaProduct != null) {
+                Tile landAbundanceTile = getSourceTile(landAbundanceBand, targetRectangle);
+                Tile waterAbundanceTile = getSourceTile(waterAbundanceBand, targetRectangle);
+                Tile cloudAbundanceTile = getSourceTile(cloudAbundanceBand, targetRectangle);
+                Tile summaryErrorTile = getSourceTile(summaryErrorBand, targetRectangle);
+                Tile brr7nTile = getSourceTile(brr7nBand, targetRectangle);
+                Tile brr9nTile = getSourceTile(brr9nBand, targetRectangle);
+                Tile brr10nTile = getSourceTile(brr10nBand, targetRectangle);
+                Tile brr12nTile = getSourceTile(brr12nBand, targetRectangle);
+
+                for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+                    checkForCancellation();
+                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                        computeMixedPixelFlag(x, y, landAbundanceTile, waterAbundanceTile,
+                                              cloudAbundanceTile, summaryErrorTile,
+                                              brr7nTile, brr9nTile, brr10nTile, brr12nTile, sourceFlagTile, targetTile);
                     }
                 }
-                return false;
             }
 
-            @Override
-            protected boolean isCloudFree(int x, int y) {
-                return !sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
-            }
+            final CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
+                    geoCoding,
+                    srcRectangle,
+                    targetRectangle,
+                    szaTile, saaTile, ctpTile, null) {
+
+                @Override
+                protected boolean isCloudForShadow(int x, int y) {
+                    final boolean is_cloud_current;
+                    if (!targetRectangle.contains(x, y)) {
+                        is_cloud_current = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
+                    } else {
+                        is_cloud_current = targetTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
+                    }
+                    if (is_cloud_current) {
+                        final boolean is_mixed_current = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_MIXED_PIXEL);
+                        final boolean isNearCoastline = nearCoastline.get(x - srcRectangle.x, y - srcRectangle.y);
+                        if (!is_mixed_current && !isNearCoastline) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
 
-            @Override
-            protected boolean isSurroundedByCloud(int x, int y) {
-                return isPixelSurrounded(x, y, sourceFlagTile, CoastColourClassificationOp.F_CLOUD);
-            }
+                @Override
+                protected boolean isCloudFree(int x, int y) {
+                    return !sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_CLOUD);
+                }
 
-            @Override
-            protected void setCloudShadow(int x, int y) {
-                targetTile.setSample(x, y, CoastColourClassificationOp.F_CLOUD_SHADOW, true);
-            }
-        };
-        cloudShadowFronts.computeCloudShadow();
-    }
+                @Override
+                protected boolean isSurroundedByCloud(int x, int y) {
+                    return cloud.isSurrounded(x - srcRectangle.x, y - srcRectangle.y);
+                }
 
-    private void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        int sourceFlags = sourceFlagTile.getSampleInt(x, y);
-        int computedFlags = targetTile.getSampleInt(x, y);
-        targetTile.setSample(x, y, sourceFlags | computedFlags);
+                @Override
+                protected void setCloudShadow(int x, int y) {
+                    targetTile.setSample(x, y, CoastColourClassificationOp.F_CLOUD_SHADOW, true);
+                }
+            };
+            cloudShadowFronts.computeCloudShadow();
+        }
     }
 
-    private boolean isNearCoastline(int x, int y, Tile sourceFlagTile, Tile waterFractionTile, Rectangle rectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
-
-        if (!(l1bProduct.getGeoCoding() instanceof TiePointGeoCoding) &&
-                !(l1bProduct.getGeoCoding() instanceof CrsGeoCoding)) {
-            final int waterFractionCenter = waterFractionTile.getSampleInt(x, y);
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    if (waterFractionTile.getSampleInt(i, j) != waterFractionCenter) {
-                        return true;
-                    }
-                }
-            }
+    private BitPlane computeNearCoastline(int[] sourceFlags, int[] waterFractions, Rectangle rectangle) {
+        if (coastlineFromWaterFraction) {
+            return computeWaterFractionChange(waterFractions, rectangle.width, rectangle.height);
         } else {
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    final boolean isAlreadyCoastline = sourceFlagTile.getSampleBit(i, j, CoastColourClassificationOp.F_COASTLINE);
-                    if (isAlreadyCoastline) {
-                        return true;
-                    }
-                }
-            }
+            // near coastline if a pixel in the 3x3 box is already flagged as coastline
+            return BitPlane.createFromFlags(sourceFlags, rectangle, rectangle,
+                                            CoastColourClassificationOp.F_COASTLINE).dilate3x3();
         }
-        return false;
     }
 
-    private boolean refineCloudFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile waterFractionTile, Tile targetTile, Rectangle srcRectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, srcRectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, srcRectangle.x + srcRectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, srcRectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, srcRectangle.y + srcRectangle.height - 1);
-        boolean removeCloudFlag = true;
-        if (CloudShadowFronts.isPixelSurrounded(x, y, sourceFlagTile, CoastColourClassificationOp.F_CLOUD)) {
-            removeCloudFlag = false;
-        } else {
-            Rectangle targetTileRectangle = targetTile.getRectangle();
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    boolean is_cloud = sourceFlagTile.getSampleBit(i, j, CoastColourClassificationOp.F_CLOUD);
-                    if (is_cloud && targetTileRectangle.contains(i, j) && !isNearCoastline(i, j, sourceFlagTile, waterFractionTile, srcRectangle)) {
-                        removeCloudFlag = false;
-                        break;
+    // near coastline if the water fraction changes within the 3x3 box
+    static BitPlane computeWaterFractionChange(int[] waterFractions, int width, int height) {
+        final BitPlane nearCoastline = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            final int top = Math.max(y - 1, 0);
+            final int bottom = Math.min(y + 1, height - 1);
+            for (int x = 0; x < width; x++) {
+                final int left = Math.max(x - 1, 0);
+                final int right = Math.min(x + 1, width - 1);
+                final int center = waterFractions[y * width + x];
+                boolean isNearCoastline = false;
+                for (int j = top; j <= bottom && !isNearCoastline; j++) {
+                    for (int i = left; i <= right; i++) {
+                        if (waterFractions[j * width + i] != center) {
+                            isNearCoastline = true;
+                            break;
+                        }
                     }
                 }
+                if (isNearCoastline) {
+                    nearCoastline.set(x, y, true);
+                }
             }
         }
-
-        if (removeCloudFlag) {
-            targetTile.setSample(x, y, CoastColourClassificationOp.F_CLOUD, false);
-            targetTile.setSample(x, y, CoastColourClassificationOp.F_CLOUD_SURE, false);
-            targetTile.setSample(x, y, CoastColourClassificationOp.F_CLOUD_AMBIGUOUS, false);
-            boolean is_land = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_LAND);
-            targetTile.setSample(x, y, CoastColourClassificationOp.F_MIXED_PIXEL, !is_land);
-        }
-        // return whether this is still a cloud
-        return !removeCloudFlag;
-    }
-
-    private void refineSnowIceFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        final boolean isSnowIce = sourceFlagTile.getSampleBit(x, y, CoastColourClassificationOp.F_SNOW_ICE);
-        if (isSnowIce) {
-            targetTile.setSample(x, y, CoastColourClassificationOp.F_SNOW_ICE, false);
-        }
+        return nearCoastline;
     }
 
     private void computeMixedPixelFlag(int x, int y, Tile landAbundanceTile, Tile waterAbundanceTile,
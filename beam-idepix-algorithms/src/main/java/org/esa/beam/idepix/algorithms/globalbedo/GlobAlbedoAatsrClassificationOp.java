@@ -12,6 +12,7 @@ import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.watermask.operator.WatermaskClassifier;
@@ -46,64 +47,66 @@ public class GlobAlbedoAatsrClassificationOp extends GlobAlbedoClassificationOp
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
-        // AATSR variables
-        final Band aatsrL1bFlagBand = sourceProduct.getBand(EnvisatConstants.AATSR_L1B_CLOUD_FLAGS_NADIR_BAND_NAME);
-        final Tile aatsrL1bFlagTile = getSourceTile(aatsrL1bFlagBand, rectangle);
-
-        Tile[] aatsrReflectanceTiles = new Tile[IdepixConstants.AATSR_REFL_WAVELENGTHS.length];
-        float[] aatsrReflectance = new float[IdepixConstants.AATSR_REFL_WAVELENGTHS.length];
-        for (int i = 0; i < IdepixConstants.AATSR_REFL_WAVELENGTHS.length; i++) {
-            aatsrReflectanceTiles[i] = getSourceTile(aatsrReflectanceBands[i], rectangle);
-        }
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            // AATSR variables
+            final Band aatsrL1bFlagBand = sourceProduct.getBand(EnvisatConstants.AATSR_L1B_CLOUD_FLAGS_NADIR_BAND_NAME);
+            final Tile aatsrL1bFlagTile = getSourceTile(aatsrL1bFlagBand, rectangle);
+
+            Tile[] aatsrReflectanceTiles = new Tile[IdepixConstants.AATSR_REFL_WAVELENGTHS.length];
+            float[] aatsrReflectance = new float[IdepixConstants.AATSR_REFL_WAVELENGTHS.length];
+            for (int i = 0; i < IdepixConstants.AATSR_REFL_WAVELENGTHS.length; i++) {
+                aatsrReflectanceTiles[i] = getSourceTile(aatsrReflectanceBands[i], rectangle);
+            }
 
-        Tile[] aatsrBtempTiles = new Tile[IdepixConstants.AATSR_TEMP_WAVELENGTHS.length];
-        for (int i = 0; i < IdepixConstants.AATSR_TEMP_WAVELENGTHS.length; i++) {
-            aatsrBtempTiles[i] = getSourceTile(aatsrBtempBands[i], rectangle);
-        }
+            Tile[] aatsrBtempTiles = new Tile[IdepixConstants.AATSR_TEMP_WAVELENGTHS.length];
+            for (int i = 0; i < IdepixConstants.AATSR_TEMP_WAVELENGTHS.length; i++) {
+                aatsrBtempTiles[i] = getSourceTile(aatsrBtempBands[i], rectangle);
+            }
 
-        GeoPos geoPos = null;
-        final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
-        final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
-        try {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-
-                    byte waterMaskSample = WatermaskClassifier.INVALID_VALUE;
-                    byte waterMaskFraction = WatermaskClassifier.INVALID_VALUE;
-                    if (!gaUseL1bLandWaterFlag) {
-                        final GeoCoding geoCoding = sourceProduct.getGeoCoding();
-                        if (geoCoding.canGetGeoPos()) {
-                            geoPos = geoCoding.getGeoPos(new PixelPos(x, y), geoPos);
-                            waterMaskSample = strategy.getWatermaskSample(geoPos.lat, geoPos.lon);
-                            waterMaskFraction = strategy.getWatermaskFraction(geoCoding, x, y);
+            GeoPos geoPos = null;
+            final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+            final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
+            try {
+                for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                    checkForCancellation();
+                    for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+
+                        byte waterMaskSample = WatermaskClassifier.INVALID_VALUE;
+                        byte waterMaskFraction = WatermaskClassifier.INVALID_VALUE;
+                        if (!gaUseL1bLandWaterFlag) {
+                            final GeoCoding geoCoding = sourceProduct.getGeoCoding();
+                            if (geoCoding.canGetGeoPos()) {
+                                geoPos = geoCoding.getGeoPos(new PixelPos(x, y), geoPos);
+                                waterMaskSample = strategy.getWatermaskSample(geoPos.lat, geoPos.lon);
+                                waterMaskFraction = strategy.getWatermaskFraction(geoCoding, x, y);
+                            }
                         }
-                    }
 
-                    // set up pixel properties for given instruments...
-                    GlobAlbedoAlgorithm globAlbedoAlgorithm = createAatsrAlgorithm(aatsrL1bFlagTile,
-                                                                                   aatsrReflectanceTiles, aatsrReflectance,
-                                                                                   aatsrBtempTiles,
-                                                                                   waterMaskSample,
-                                                                                   waterMaskFraction,
-                                                                                   y, x);
-
-                    setCloudFlag(cloudFlagTargetTile, y, x, globAlbedoAlgorithm);
-
-                    // for given instrument, compute more pixel properties and write to distinct band
-                    // currently not done
-//                    for (Band band : targetProduct.getBands()) {
-//                        final Tile targetTile = targetTiles.get(band);
-//                        setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
-//                    }
+                        // set up pixel properties for given instruments...
+                        GlobAlbedoAlgorithm globAlbedoAlgorithm = createAatsrAlgorithm(aatsrL1bFlagTile,
+                                                                                       aatsrReflectanceTiles, aatsrReflectance,
+                                                                                       aatsrBtempTiles,
+                                                                                       waterMaskSample,
+                                                                                       waterMaskFraction,
+                                                                                       y, x);
+
+                        setCloudFlag(cloudFlagTargetTile, y, x, globAlbedoAlgorithm);
+
+                        // for given instrument, compute more pixel properties and write to distinct band
+                        // currently not done
+    //                    for (Band band : targetProduct.getBands()) {
+    //                        final Tile targetTile = targetTiles.get(band);
+    //                        setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
+    //                    }
+                    }
                 }
+                // set cloud buffer flags...
+                setCloudBuffer(IdepixUtils.IDEPIX_CLOUD_FLAGS, cloudFlagTargetTile, rectangle);
+            } catch (Exception e) {
+                throw new OperatorException("Failed to provide GA cloud screening:\n" + e.getMessage(), e);
             }
-            // set cloud buffer flags...
-            setCloudBuffer(IdepixUtils.IDEPIX_CLOUD_FLAGS, cloudFlagTargetTile, rectangle);
-        } catch (Exception e) {
-            throw new OperatorException("Failed to provide GA cloud screening:\n" + e.getMessage(), e);
-        }
 
+        }
     }
 
     @Override
@@ -11,11 +11,15 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.algorithms.SchillerAlgorithm;
+import org.esa.beam.idepix.morphology.BitPlane;
 import org.esa.beam.idepix.operators.BarometricPressureOp;
 import org.esa.beam.idepix.operators.LisePressureOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.idepix.util.TileAccess;
 import org.esa.beam.meris.brr.Rad2ReflOp;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.watermask.operator.WatermaskClassifier;
 
@@ -64,6 +68,7 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
 
     private static final int MERIS_L1B_F_INVALID = 7;
     private static final int MERIS_L1B_F_LAND = 4;
+    private static final int INVALID_FLAGS = BitSetter.setFlag(0, IdepixConstants.F_INVALID);
 
     private Band[] merisReflBands;
     private Band[] merisBrrBands;
@@ -77,6 +82,39 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            classifyPixels(rectangle, targetTiles.get(cloudFlagBand), rectangle, targetTiles);
+        }
+    }
+
+    /**
+     * Classifies the pixels of the given rectangle. The cloud flags of all pixels go to the given cloud flag tile,
+     * the other target bands are only written within the target rectangle.
+     *
+     * @param rectangle           - the rectangle to classify
+     * @param cloudFlagTargetTile - the cloud flag tile, covering the rectangle to classify
+     * @param targetRectangle     - the target rectangle
+     * @param targetTiles         - the target tiles
+     */
+    void classifyPixels(Rectangle rectangle, Tile cloudFlagTargetTile, Rectangle targetRectangle,
+                        Map<Band, Tile> targetTiles) throws OperatorException {
+        final Band merisL1bFlagBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
+        final Tile merisL1bFlagTile = getSourceTile(merisL1bFlagBand, rectangle);
+        final BitPlane l1bInvalid = BitPlane.createFromFlags(TileAccess.getInts(merisL1bFlagTile), rectangle,
+                                                             rectangle, MERIS_L1B_F_INVALID);
+        if (l1bInvalid.isFull()) {
+            // e.g. beyond the swath edges: set the invalid flag in one go, without computing the source tiles
+            IdepixUtils.fillTile(cloudFlagTargetTile, rectangle, INVALID_FLAGS);
+            for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+                if (entry.getKey() != cloudFlagBand) {
+                    final Tile targetTile = entry.getValue();
+                    IdepixUtils.fillTile(targetTile, targetRectangle.intersection(targetTile.getRectangle()),
+                                         Double.NaN);
+                }
+            }
+            return;
+        }
+
         // MERIS variables
         final Tile brr442Tile = getSourceTile(brr442Band, rectangle);
         final Tile brr442ThreshTile = getSourceTile(brr442ThreshBand, rectangle);
@@ -84,9 +122,6 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
         final Tile pbaroTile = getSourceTile(pbaroBand, rectangle);
         final Tile pscattTile = getSourceTile(pscattBand, rectangle);
 
-        final Band merisL1bFlagBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
-        final Tile merisL1bFlagTile = getSourceTile(merisL1bFlagBand, rectangle);
-
         Tile[] merisBrrTiles = new Tile[IdepixConstants.MERIS_BRR_BAND_NAMES.length];
         float[] merisBrr = new float[IdepixConstants.MERIS_BRR_BAND_NAMES.length];
         for (int i = 0; i < IdepixConstants.MERIS_BRR_BAND_NAMES.length; i++) {
@@ -100,8 +135,6 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
         }
 
         GeoPos geoPos = null;
-        final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
-        final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
 
         final Band nnTargetBand = targetProduct.getBand("meris_land_nn_value");
         final Tile nnTargetTile = targetTiles.get(nnTargetBand);
@@ -109,6 +142,10 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
             for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
                 checkForCancellation();
                 for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    if (l1bInvalid.get(x - rectangle.x, y - rectangle.y)) {
+                        setInvalidPixel(cloudFlagTargetTile, y, x, targetRectangle, targetTiles);
+                        continue;
+                    }
 
                     byte waterMaskSample = WatermaskClassifier.INVALID_VALUE;
                     byte waterMaskFraction = WatermaskClassifier.INVALID_VALUE;
@@ -182,7 +219,9 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
                                 }
                             }
                         }
-                        nnTargetTile.setSample(x, y, nnOutput[0]);
+                        if (targetRectangle.contains(x, y)) {
+                            nnTargetTile.setSample(x, y, nnOutput[0]);
+                        }
                     } else {
                         if (landNN != null &&
                                 !cloudFlagTargetTile.getSampleBit(x, y, IdepixConstants.F_CLOUD) &&
@@ -215,9 +254,11 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
                     }
 
                     // for given instrument, compute more pixel properties and write to distinct band
-                    for (Band band : targetProduct.getBands()) {
-                        final Tile targetTile = targetTiles.get(band);
-                        setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
+                    if (targetRectangle.contains(x, y)) {
+                        for (Band band : targetProduct.getBands()) {
+                            final Tile targetTile = targetTiles.get(band);
+                            setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
+                        }
                     }
                 }
             }
@@ -229,6 +270,19 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
         }
     }
 
+    // invalid pixels only get the invalid flag, without running the algorithm and the NNs
+    private void setInvalidPixel(Tile cloudFlagTargetTile, int y, int x, Rectangle targetRectangle,
+                                 Map<Band, Tile> targetTiles) {
+        cloudFlagTargetTile.setSample(x, y, INVALID_FLAGS);
+        if (targetRectangle.contains(x, y)) {
+            for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+                if (entry.getKey() != cloudFlagBand) {
+                    entry.getValue().setSample(x, y, Double.NaN);
+                }
+            }
+        }
+    }
+
     @Override
     public void setBands() {
         merisReflBands = new Band[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS];
@@ -311,7 +365,7 @@ public class GlobAlbedoMerisClassificationOp extends GlobAlbedoClassificationOp
             inputVector[i] = Math.sqrt(merisReflectance[i]);
         }
 
-        gaAlgorithm.setNnOutput(nnWrapper.getNeuralNet().calc(inputVector));
+        gaAlgorithm.setNnOutput(nnWrapper.calc(this, inputVector));
 
         gaAlgorithm.setBrr(merisBrr);
         gaAlgorithm.setBrr442(brr442Tile.getSampleFloat(x, y));
@@ -0,0 +1,156 @@
+package org.esa.beam.idepix.algorithms.globalbedo;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.dataio.envisat.EnvisatConstants;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.esa.beam.framework.gpf.annotations.Parameter;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.util.RectangleExtender;
+
+import javax.media.jai.PlanarImage;
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operator for GlobAlbedo MERIS cloud screening which performs classification, post-processing (coastline
+ * refinement, cloud shadow, cloud buffer) and the final cloud buffer in one tile computation, instead of the chain
+ * GlobAlbedoMerisClassificationOp - GlobAlbedoMerisPostProcessOp - CloudBufferOp.
+ * <p/>
+ * The classification is computed for the target rectangle plus the margin the post-processing and the cloud buffer
+ * need, so the intermediate flag tiles never go through the tile cache. Results are identical to the chained
+ * operators with the same tiling.
+ * <p/>
+ * The margin is classified again by every tile it belongs to. Without cloud shadow it is the cloud buffer width plus
+ * 2 pixels, which is negligible. The cloud shadow search needs 16 (RR) resp. 64 (FR) pixels: for 512x512 FR
+ * tiles this is about 1.6 times the neural net work of the chained operators, which is then traded for not caching
+ * the intermediate flag tiles.
+ */
+@OperatorMetadata(alias = "idepix.globalbedo.meris.fused",
+                  version = "2.2",
+                  internal = true,
+                  authors = "Olaf Danne",
+                  copyright = "(c) 2016 by Brockmann Consult",
+                  description = "This operator provides post-processed cloud screening from MERIS data in one step.")
+public class GlobAlbedoMerisFusedOp extends GlobAlbedoMerisClassificationOp {
+
+    @SourceProduct(alias = "ctp")
+    private Product ctpProduct;
+
+    @Parameter(defaultValue = "true", label = " Use the LandCover advanced cloud buffer algorithm")
+    private boolean gaLcCloudBuffer;
+
+    @Parameter(defaultValue = "true", label = " Compute a cloud buffer")
+    private boolean gaComputeCloudBuffer;
+
+    @Parameter(defaultValue = "false",
+               label = " Compute cloud shadow",
+               description = " Compute cloud shadow with a preliminary algorithm")
+    private boolean gaComputeCloudShadow;
+
+    @Parameter(defaultValue = "true",
+               label = " Refine pixel classification near coastlines",
+               description = "Refine pixel classification near coastlines. ")
+    private boolean gaRefineClassificationNearCoastlines;
+
+    private Band waterFractionBand;
+    private Band ctpBand;
+    private TiePointGrid szaTPG;
+    private TiePointGrid saaTPG;
+    private TiePointGrid altTPG;
+
+    private Rectangle sceneRectangle;
+    private RectangleExtender rectCalculator;
+    private RectangleExtender bufferRectCalculator;
+    private GlobAlbedoMerisPostProcessing postProcessing;
+
+    @Override
+    public void extendTargetProduct() throws OperatorException {
+        super.extendTargetProduct();
+
+        HashMap<String, Object> waterParameters = new HashMap<>();
+        waterParameters.put("resolution", 50);
+        waterParameters.put("subSamplingFactorX", 3);
+        waterParameters.put("subSamplingFactorY", 3);
+        Product waterMaskProduct = GPF.createProduct("LandWaterMask", waterParameters, sourceProduct);
+        waterFractionBand = waterMaskProduct.getBand("land_water_fraction");
+
+        szaTPG = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
+        saaTPG = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME);
+        altTPG = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_DEM_ALTITUDE_DS_NAME);
+        ctpBand = ctpProduct.getBand("cloud_top_press");
+
+        sceneRectangle = new Rectangle(sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight());
+        rectCalculator = GlobAlbedoMerisPostProcessing.createRectangleExtender(sourceProduct, gaComputeCloudShadow);
+        bufferRectCalculator = new RectangleExtender(sceneRectangle, gaCloudBufferWidth, gaCloudBufferWidth);
+        postProcessing = new GlobAlbedoMerisPostProcessing(sourceProduct.getGeoCoding(),
+                                                           gaRefineClassificationNearCoastlines,
+                                                           gaComputeCloudBuffer,
+                                                           gaLcCloudBuffer,
+                                                           gaCloudBufferWidth,
+                                                           gaComputeCloudShadow);
+    }
+
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            final Rectangle srcRectangle = rectCalculator.extend(rectangle);
+            final Rectangle bufferRectangle = gaComputeCloudBuffer ? bufferRectCalculator.extend(rectangle) : rectangle;
+            final Rectangle classificationRectangle =
+                    GlobAlbedoMerisPostProcessing.getSourceFlagRectangle(srcRectangle, bufferRectangle, sceneRectangle);
+
+            final Tile classificationFlagTile = createTile(cloudFlagBand, classificationRectangle);
+            classifyPixels(classificationRectangle, classificationFlagTile, rectangle, targetTiles);
+
+            final Tile cloudFlagTile = targetTiles.get(cloudFlagBand);
+            final Tile waterFractionTile = getSourceTile(waterFractionBand, classificationRectangle);
+            Tile szaTile = null;
+            Tile saaTile = null;
+            Tile ctpTile = null;
+            Tile altTile = null;
+            if (gaComputeCloudShadow) {
+                szaTile = getSourceTile(szaTPG, srcRectangle);
+                saaTile = getSourceTile(saaTPG, srcRectangle);
+                ctpTile = getSourceTile(ctpBand, srcRectangle);
+                altTile = getSourceTile(altTPG, rectangle);
+            }
+            postProcessing.postProcess(cloudFlagTile, srcRectangle, classificationFlagTile, waterFractionTile,
+                                       szaTile, saaTile, ctpTile, altTile);
+
+            if (gaComputeCloudBuffer) {
+                final PlanarImage image = cloudFlagBand.getSourceImage();
+                postProcessing.computeCloudBuffer(cloudFlagTile, createTile(cloudFlagBand, bufferRectangle),
+                                                  classificationFlagTile, waterFractionTile, sceneRectangle,
+                                                  new Dimension(image.getTileWidth(), image.getTileHeight()),
+                                                  rectCalculator);
+            }
+        }
+    }
+
+    private static Tile createTile(Band band, Rectangle rectangle) {
+        final BandedSampleModel sampleModel = new BandedSampleModel(ImageManager.getDataBufferType(band.getDataType()),
+                                                                    rectangle.width, rectangle.height, 1);
+        final WritableRaster raster = Raster.createWritableRaster(sampleModel, rectangle.getLocation());
+        return new TileImpl(band, raster);
+    }
+
+    public static class Spi extends OperatorSpi {
+
+        public Spi() {
+            super(GlobAlbedoMerisFusedOp.class);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package org.esa.beam.idepix.algorithms.globalbedo;
+
+import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.TiePointGeoCoding;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.idepix.CloudBuffer;
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.util.RectangleExtender;
+
+import java.awt.*;
+
+/**
+ * Post-processing of the GlobAlbedo MERIS cloud classification for one tile:
+ * - coastline refinement
+ * - cloud buffer (LC algo as default)
+ * - cloud shadow (from Fronts)
+ * <p/>
+ * Used by {@link GlobAlbedoMerisPostProcessOp} and {@link GlobAlbedoMerisFusedOp}. The latter also applies the
+ * cloud buffer of {@link org.esa.beam.idepix.operators.CloudBufferOp} with {@link #computeCloudBuffer}.
+ */
+class GlobAlbedoMerisPostProcessing {
+
+    private final GeoCoding geoCoding;
+    private final boolean refineClassificationNearCoastlines;
+    private final boolean computeCloudBuffer;
+    private final boolean lcCloudBuffer;
+    private final int cloudBufferWidth;
+    private final boolean computeCloudShadow;
+
+    GlobAlbedoMerisPostProcessing(GeoCoding geoCoding,
+                                  boolean refineClassificationNearCoastlines,
+                                  boolean computeCloudBuffer,
+                                  boolean lcCloudBuffer,
+                                  int cloudBufferWidth,
+                                  boolean computeCloudShadow) {
+        this.geoCoding = geoCoding;
+        this.refineClassificationNearCoastlines = refineClassificationNearCoastlines;
+        this.computeCloudBuffer = computeCloudBuffer;
+        this.lcCloudBuffer = lcCloudBuffer;
+        this.cloudBufferWidth = cloudBufferWidth;
+        this.computeCloudShadow = computeCloudShadow;
+    }
+
+    /**
+     * @param l1bProduct - the MERIS L1b product
+     *
+     * @return the extender of a target rectangle to the source rectangle needed by the post-processing
+     */
+    static RectangleExtender createRectangleExtender(Product l1bProduct) {
+        int extendedWidth;
+        int extendedHeight;
+        if (l1bProduct.getProductType().startsWith("MER_F")) {
+            extendedWidth = 64;
+            extendedHeight = 64;
+        } else {
+            extendedWidth = 16;
+            extendedHeight = 16;
+        }
+
+        return new RectangleExtender(new Rectangle(l1bProduct.getSceneRasterWidth(),
+                                                   l1bProduct.getSceneRasterHeight()),
+                                     extendedWidth, extendedHeight
+        );
+    }
+
+    /**
+     * Without cloud shadow, the post-processing of a pixel only looks at the 3x3 neighbourhood of its 3x3
+     * neighbourhood, so a source rectangle extended by 2 pixels gives the same result as the one of
+     * {@link #createRectangleExtender(Product)}, which is needed for the cloud shadow search.
+     *
+     * @param l1bProduct         - the MERIS L1b product
+     * @param computeCloudShadow - whether the cloud shadow is computed
+     *
+     * @return the extender of a target rectangle to the smallest source rectangle needed by the post-processing
+     */
+    static RectangleExtender createRectangleExtender(Product l1bProduct, boolean computeCloudShadow) {
+        if (computeCloudShadow) {
+            return createRectangleExtender(l1bProduct);
+        }
+        return new RectangleExtender(new Rectangle(l1bProduct.getSceneRasterWidth(),
+                                                   l1bProduct.getSceneRasterHeight()), 2, 2);
+    }
+
+    /**
+     * The rectangle of classification flags {@link #postProcess} and {@link #computeCloudBuffer} need: the cloud
+     * flags of the buffer source rectangle are post-processed as part of their own tiles, which looks at the 3x3
+     * neighbourhood of the 3x3 neighbourhood of a pixel.
+     *
+     * @param srcRectangle    - the source rectangle of the post-processing
+     * @param bufferRectangle - the source rectangle of the cloud buffer
+     * @param sceneRectangle  - the scene rectangle
+     *
+     * @return the rectangle of classification flags
+     */
+    static Rectangle getSourceFlagRectangle(Rectangle srcRectangle, Rectangle bufferRectangle,
+                                            Rectangle sceneRectangle) {
+        final Rectangle neighbourhood = new Rectangle(bufferRectangle.x - 2, bufferRectangle.y - 2,
+                                                      bufferRectangle.width + 4, bufferRectangle.height + 4);
+        return srcRectangle.union(neighbourhood).intersection(sceneRectangle);
+    }
+
+    /**
+     * Post-processes the classification flags of the target tile.
+     *
+     * @param targetTile        - the target flag tile, initially zero
+     * @param srcRectangle      - the source rectangle, i.e. the extended target rectangle
+     * @param sourceFlagTile    - the classification flags, covering the source rectangle
+     * @param waterFractionTile - the land/water fraction, covering the source rectangle
+     * @param szaTile           - the sun zenith, covering the source rectangle (cloud shadow only)
+     * @param saaTile           - the sun azimuth, covering the source rectangle (cloud shadow only)
+     * @param ctpTile           - the cloud top pressure, covering the source rectangle (cloud shadow only)
+     * @param altTile           - the altitude, covering the target rectangle (cloud shadow only)
+     */
+    void postProcess(final Tile targetTile, final Rectangle srcRectangle, final Tile sourceFlagTile,
+                     final Tile waterFractionTile, Tile szaTile, Tile saaTile, Tile ctpTile, Tile altTile) {
+        final Rectangle targetRectangle = targetTile.getRectangle();
+
+        IdepixUtils.combineFlags(sourceFlagTile, targetTile);
+        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
+            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
+
+                if (targetRectangle.contains(x, y)) {
+                    boolean isCloud = sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
+
+                    if (refineClassificationNearCoastlines) {
+                        if (isNearCoastline(x, y, waterFractionTile, srcRectangle)) {
+                            targetTile.setSample(x, y, IdepixConstants.F_COASTLINE, true);
+                            refineSnowIceFlaggingForCoastlines(x, y, sourceFlagTile, targetTile);
+                            if (isCloud && isCloudRemovedNearCoastline(x, y, sourceFlagTile, waterFractionTile,
+                                                                       targetRectangle, srcRectangle)) {
+                                targetTile.setSample(x, y, IdepixConstants.F_CLOUD, false);
+                                targetTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, false);
+                                targetTile.setSample(x, y, IdepixConstants.F_CLOUD_AMBIGUOUS, false);
+                            }
+                        }
+                    }
+                    boolean isCloudAfterRefinement = targetTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
+                    if (isCloudAfterRefinement) {
+                        // set the CLEAR_* flags to false to have consistent flagging
+                        targetTile.setSample(x, y, IdepixConstants.F_CLEAR_LAND, false);
+                        targetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, false);
+                        targetTile.setSample(x, y, IdepixConstants.F_CLEAR_WATER, false);
+
+                        if (computeCloudBuffer && !lcCloudBuffer) {
+                            CloudBuffer.computeSimpleCloudBuffer(x, y,
+                                                                 targetTile,
+                                                                 srcRectangle,
+                                                                 cloudBufferWidth,
+                                                                 IdepixConstants.F_CLOUD_BUFFER);
+                        }
+                    }
+                }
+            }
+        }
+        IdepixUtils.consolidateCloudAndBuffer(targetTile);
+
+        if (computeCloudBuffer && lcCloudBuffer) {
+            CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
+        }
+
+        if (computeCloudShadow) {
+            CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
+                    geoCoding,
+                    srcRectangle,
+                    targetRectangle,
+                    szaTile, saaTile, ctpTile, altTile) {
+
+                @Override
+                protected boolean isCloudForShadow(int x, int y) {
+                    final boolean is_cloud_current;
+                    if (!targetTile.getRectangle().contains(x, y)) {
+                        is_cloud_current = sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
+                    } else {
+                        is_cloud_current = targetTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
+                    }
+                    if (is_cloud_current) {
+                        final boolean isNearCoastline = isNearCoastline(x, y, waterFractionTile, srcRectangle);
+                        if (!isNearCoastline) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                protected boolean isCloudFree(int x, int y) {
+                    return !sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
+                }
+
+                @Override
+                protected boolean isSurroundedByCloud(int x, int y) {
+                    return isPixelSurrounded(x, y, sourceFlagTile, IdepixConstants.F_CLOUD);
+                }
+
+                @Override
+                protected void setCloudShadow(int x, int y) {
+                    targetTile.setSample(x, y, IdepixConstants.F_CLOUD_SHADOW, true);
+                }
+            };
+            cloudShadowFronts.computeCloudShadow();
+        }
+    }
+
+    /**
+     * Applies the cloud buffer of {@link org.esa.beam.idepix.operators.CloudBufferOp} (simple cloud buffer) to a
+     * tile post-processed by {@link #postProcess}. The cloud flags within the buffer width around the tile are
+     * post-processed as part of the tiles they belong to, exactly as the cloud buffer operator gets them from the
+     * post-processing operator.
+     *
+     * @param targetTile        - the post-processed target flag tile
+     * @param bufferSourceTile  - a writable flag tile covering the target rectangle extended by the buffer width
+     * @param sourceFlagTile    - the classification flags, covering the buffer source rectangle extended by 2
+     * @param waterFractionTile - the land/water fraction, covering the same rectangle as the classification flags
+     * @param sceneRectangle    - the scene rectangle
+     * @param tileSize          - the tile size of the post-processing
+     * @param rectCalculator    - the extender of a tile rectangle to the source rectangle of the post-processing
+     */
+    void computeCloudBuffer(Tile targetTile, Tile bufferSourceTile, Tile sourceFlagTile, Tile waterFractionTile,
+                            Rectangle sceneRectangle, Dimension tileSize, RectangleExtender rectCalculator) {
+        final Rectangle targetRectangle = targetTile.getRectangle();
+        final Rectangle bufferRectangle = bufferSourceTile.getRectangle();
+        for (int y = bufferRectangle.y; y < bufferRectangle.y + bufferRectangle.height; y++) {
+            for (int x = bufferRectangle.x; x < bufferRectangle.x + bufferRectangle.width; x++) {
+                if (targetRectangle.contains(x, y)) {
+                    bufferSourceTile.setSample(x, y, targetTile.getSampleInt(x, y));
+                } else {
+                    final Rectangle tileRectangle = new Rectangle((x / tileSize.width) * tileSize.width,
+                                                                  (y / tileSize.height) * tileSize.height,
+                                                                  tileSize.width, tileSize.height)
+                            .intersection(sceneRectangle);
+                    final boolean isCloud = isCloud(x, y, sourceFlagTile, waterFractionTile, tileRectangle,
+                                                    rectCalculator.extend(tileRectangle));
+                    bufferSourceTile.setSample(x, y, IdepixConstants.F_CLOUD, isCloud);
+                }
+            }
+        }
+
+        CloudBuffer.computeSimpleCloudBuffer(bufferSourceTile,
+                                             targetTile,
+                                             cloudBufferWidth,
+                                             IdepixConstants.F_CLOUD,
+                                             IdepixConstants.F_CLOUD_BUFFER);
+
+        IdepixUtils.consolidateCloudAndBuffer(targetTile);
+    }
+
+    // the cloud flag of a pixel after the post-processing of the tile it belongs to
+    private boolean isCloud(int x, int y, Tile sourceFlagTile, Tile waterFractionTile,
+                            Rectangle tileRectangle, Rectangle srcRectangle) {
+        if (!sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLOUD)) {
+            return false;
+        }
+        return !(refineClassificationNearCoastlines &&
+                isNearCoastline(x, y, waterFractionTile, srcRectangle) &&
+                isCloudRemovedNearCoastline(x, y, sourceFlagTile, waterFractionTile, tileRectangle, srcRectangle));
+    }
+
+    private boolean isCoastlinePixel(int x, int y, Tile waterFractionTile) {
+        boolean isCoastline = false;
+        // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
+        if (getGeoPos(x, y).lat > -58f) {
+            final int waterFraction = waterFractionTile.getSampleInt(x, y);
+            // values bigger than 100 indicate no data
+            if (waterFraction <= 100) {
+                // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
+                // is always 0 or 100!! (TS, OD, 20140502)
+                isCoastline = waterFraction < 100 && waterFraction > 0;
+            }
+        }
+        return isCoastline;
+    }
+
+    private GeoPos getGeoPos(int x, int y) {
+        final GeoPos geoPos = new GeoPos();
+        final PixelPos pixelPos = new PixelPos(x, y);
+        geoCoding.getGeoPos(pixelPos, geoPos);
+        return geoPos;
+    }
+
+    private boolean isNearCoastline(int x, int y, Tile waterFractionTile, Rectangle rectangle) {
+        final int windowWidth = 1;
+        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
+        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
+        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
+        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
+        final int waterFractionCenter = waterFractionTile.getSampleInt(x, y);
+        for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
+            for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
+                if (rectangle.contains(i, j)) {
+                    if (!(geoCoding instanceof TiePointGeoCoding) &&
+                            !(geoCoding instanceof CrsGeoCoding)) {
+                        if (waterFractionTile.getSampleInt(i, j) != waterFractionCenter) {
+                            return true;
+                        }
+                    } else {
+                        if (isCoastlinePixel(i, j, waterFractionTile)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isCloudRemovedNearCoastline(int x, int y, Tile sourceFlagTile, Tile waterFractionTile,
+                                                Rectangle targetTileRectangle, Rectangle srcRectangle) {
+        final int windowWidth = 1;
+        final int LEFT_BORDER = Math.max(x - windowWidth, srcRectangle.x);
+        final int RIGHT_BORDER = Math.min(x + windowWidth, srcRectangle.x + srcRectangle.width - 1);
+        final int TOP_BORDER = Math.max(y - windowWidth, srcRectangle.y);
+        final int BOTTOM_BORDER = Math.min(y + windowWidth, srcRectangle.y + srcRectangle.height - 1);
+        boolean removeCloudFlag = true;
+        if (CloudShadowFronts.isPixelSurrounded(x, y, sourceFlagTile, IdepixConstants.F_CLOUD)) {
+            removeCloudFlag = false;
+        } else {
+            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
+                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
+                    boolean is_cloud = sourceFlagTile.getSampleBit(i, j, IdepixConstants.F_CLOUD);
+                    if (is_cloud && targetTileRectangle.contains(i, j) && !isNearCoastline(i, j, waterFractionTile, srcRectangle)) {
+                        removeCloudFlag = false;
+                        break;
+                    }
+                }
+            }
+        }
+        return removeCloudFlag;
+    }
+
+    private void refineSnowIceFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile targetTile) {
+        final boolean isSnowIce = sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLEAR_SNOW);
+        if (isSnowIce) {
+            targetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, false);
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.IdepixProducts;
 import org.esa.beam.idepix.operators.BasisOp;
 import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixRoi;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.meris.brr.LandClassificationOp;
 import org.esa.beam.meris.brr.Rad2ReflOp;
@@ -168,6 +169,11 @@ public class GlobAlbedoOp extends BasisOp {
                description = "Refine pixel classification near coastlines. ")
     private boolean gaRefineClassificationNearCoastlines;
 
+    @Parameter(defaultValue = "false",
+               label = " Classify and post-process MERIS in one step",
+               description = "Compute MERIS classification, post-processing and cloud buffer in one operator. ")
+    private boolean gaUseFusedMerisProcessing;
+
     @Parameter(defaultValue = "50", valueSet = {"50", "150"},
             label = " Resolution of used land-water mask in m/pixel",
             description = "Resolution of the used SRTM land-water mask in m/pixel")
@@ -178,6 +184,18 @@ public class GlobAlbedoOp extends BasisOp {
             description = "Use land-water flag from L1b product instead of SRTM mask")
     private boolean gaUseL1bLandWaterFlag;
 
+    @Parameter(label = " Region of interest (WKT)",
+            description = "Optional region of interest as WKT geometry in geographic coordinates. " +
+                    "Only the tiles intersecting it are computed, all others are filled with the no-data value of " +
+                    "each band (NaN for floating point bands without one).")
+    private String roiWkt;
+
+    @Parameter(label = " Region of interest (mask)",
+            description = "Optional region of interest as mask name or band maths expression of the " +
+                    "source product. Only the tiles intersecting it are computed, all others are filled with the " +
+                    "no-data value of each band (NaN for floating point bands without one).")
+    private String roiMask;
+
     private Map<String, Object> gaCloudClassificationParameters;
     private Product gaCloudProduct;
 
@@ -198,6 +216,8 @@ public class GlobAlbedoOp extends BasisOp {
         } else if (IdepixUtils.isValidProbavProduct(sourceProduct)) {
             processGlobAlbedoProbav();
         }
+        IdepixRoi.apply(targetProduct, sourceProduct, roiWkt, roiMask, gaCloudBufferWidth,
+                        IdepixUtils.IDEPIX_CLOUD_FLAGS);
     }
 
     private Map<String, Object> createGaVgtCloudClassificationParameters() {
@@ -249,12 +269,16 @@ public class GlobAlbedoOp extends BasisOp {
 
         gaCloudClassificationParameters = createGaMerisAndAatsrCloudClassificationParameters();
 
-        gaCloudProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(GlobAlbedoMerisClassificationOp.class),
-                gaCloudClassificationParameters, gaCloudInput);
-
         if (gaRefineClassificationNearCoastlines || gaComputeCloudShadow || gaComputeCloudBuffer) {
-            // Post Cloud Classification: coastline refinement, cloud shadow, cloud buffer
-            computeGlobAlbedoMerisPostProcessProduct();
+            if (gaUseFusedMerisProcessing) {
+                // classification, coastline refinement, cloud shadow and cloud buffer in one operator
+                computeGlobAlbedoMerisFusedProduct(gaCloudInput);
+            } else {
+                gaCloudProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(GlobAlbedoMerisClassificationOp.class),
+                        gaCloudClassificationParameters, gaCloudInput);
+                // Post Cloud Classification: coastline refinement, cloud shadow, cloud buffer
+                computeGlobAlbedoMerisPostProcessProduct();
+            }
 
             targetProduct = IdepixUtils.cloneProduct(gaCloudProduct);
             targetProduct.setAutoGrouping("radiance:rho_toa:brr");
@@ -262,9 +286,13 @@ public class GlobAlbedoOp extends BasisOp {
                 addRayleighCorrectionBands();
             }
 
-            Band cloudFlagBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
-            cloudFlagBand.setSourceImage(gaPostProcessingProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS).getSourceImage());
+            if (!gaUseFusedMerisProcessing) {
+                Band cloudFlagBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+                cloudFlagBand.setSourceImage(gaPostProcessingProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS).getSourceImage());
+            }
         } else {
+            gaCloudProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(GlobAlbedoMerisClassificationOp.class),
+                    gaCloudClassificationParameters, gaCloudInput);
             targetProduct = gaCloudProduct;
         }
         if (gaCopyCTP) {
@@ -402,6 +430,19 @@ public class GlobAlbedoOp extends BasisOp {
         }
     }
 
+    private void computeGlobAlbedoMerisFusedProduct(Map<String, Product> gaCloudInput) {
+        Map<String, Product> input = new HashMap<>(gaCloudInput);
+        input.put("ctp", ctpProduct);
+
+        Map<String, Object> params = new HashMap<>(gaCloudClassificationParameters);
+        params.put("gaLcCloudBuffer", gaLcCloudBuffer);
+        params.put("gaComputeCloudBuffer", gaComputeCloudBuffer);
+        params.put("gaComputeCloudShadow", gaComputeCloudShadow);
+        params.put("gaRefineClassificationNearCoastlines", gaRefineClassificationNearCoastlines);
+        gaCloudProduct = GPF.createProduct(OperatorSpi.getOperatorAlias(GlobAlbedoMerisFusedOp.class),
+                                           params, input);
+    }
+
     private void computeGlobAlbedoVgtPostProcessProduct() {
         HashMap<String, Product> input = new HashMap<>();
         input.put("l1b", sourceProduct);
@@ -11,6 +11,7 @@ import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
@@ -118,36 +119,38 @@ public class GlobAlbedoProbavPostProcessOp extends Operator {
     //JM&GK 20160212 Todo
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile cloudFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
-        final Tile smFlagTile = getSourceTile(origSmFlagBand, srcRectangle);
-        //JM&GK 20160212 Todo
-        final Tile blueTile = getSourceTile(blueBand, srcRectangle);
-        final Tile redTile = getSourceTile(redBand, srcRectangle);
-        final Tile nirTile = getSourceTile(nirBand, srcRectangle);
-        final Tile swirTile = getSourceTile(swirBand, srcRectangle);
-
-        Tile urbanTile = null;
-        if (urbanBand != null) {
-            urbanTile = getSourceTile(urbanBand, srcRectangle);
-        }
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    boolean isInvalid = targetTile.getSampleBit(x, y, IdepixConstants.F_INVALID);
-                    if (!isInvalid) {
-                        combineFlags(x, y, cloudFlagTile, targetTile);
-                        consolidateFlagging(x, y, smFlagTile, targetTile);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final Tile cloudFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
+            final Tile smFlagTile = getSourceTile(origSmFlagBand, srcRectangle);
+            //JM&GK 20160212 Todo
+            final Tile blueTile = getSourceTile(blueBand, srcRectangle);
+            final Tile redTile = getSourceTile(redBand, srcRectangle);
+            final Tile nirTile = getSourceTile(nirBand, srcRectangle);
+            final Tile swirTile = getSourceTile(swirBand, srcRectangle);
+
+            Tile urbanTile = null;
+            if (urbanBand != null) {
+                urbanTile = getSourceTile(urbanBand, srcRectangle);
+            }
 
-                        //JM&GK 20160212 Todo
-                        // JM, 20160630:deactivate!
-                        // refineHaze(x, y, blueTile, redTile, nirTile, swirTile, urbanTile, targetTile);
-                        setCloudShadow(x, y, smFlagTile, targetTile);
+            for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
+                checkForCancellation();
+                for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
+
+                    if (targetRectangle.contains(x, y)) {
+                        boolean isInvalid = targetTile.getSampleBit(x, y, IdepixConstants.F_INVALID);
+                        if (!isInvalid) {
+                            combineFlags(x, y, cloudFlagTile, targetTile);
+                            consolidateFlagging(x, y, smFlagTile, targetTile);
+
+                            //JM&GK 20160212 Todo
+                            // JM, 20160630:deactivate!
+                            // refineHaze(x, y, blueTile, redTile, nirTile, swirTile, urbanTile, targetTile);
+                            setCloudShadow(x, y, smFlagTile, targetTile);
+                        }
                     }
                 }
             }
@@ -8,6 +8,7 @@ import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
 import org.esa.beam.util.ProductUtils;
@@ -59,87 +60,89 @@ public class GlobAlbedoVgtClassificationOp extends GlobAlbedoClassificationOp {
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
-        // VGT variables
-        final Band smFlagBand = sourceProduct.getBand("SM");
-        final Tile smFlagTile = getSourceTile(smFlagBand, rectangle);
-
-        Tile[] vgtReflectanceTiles = new Tile[IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length];
-        float[] vgtReflectance = new float[IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length];
-        for (int i = 0; i < IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length; i++) {
-            vgtReflectanceTiles[i] = getSourceTile(vgtReflectanceBands[i], rectangle);
-        }
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            // VGT variables
+            final Band smFlagBand = sourceProduct.getBand("SM");
+            final Tile smFlagTile = getSourceTile(smFlagBand, rectangle);
+
+            Tile[] vgtReflectanceTiles = new Tile[IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length];
+            float[] vgtReflectance = new float[IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length];
+            for (int i = 0; i < IdepixConstants.VGT_REFLECTANCE_BAND_NAMES.length; i++) {
+                vgtReflectanceTiles[i] = getSourceTile(vgtReflectanceBands[i], rectangle);
+            }
 
-        GeoPos geoPos = null;
-        final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
-        final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
-
-        final Band nnTargetBand = targetProduct.getBand("vgt_nn_value");
-        final Tile nnTargetTile = targetTiles.get(nnTargetBand);
-
-        try {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-
-                    byte waterMaskSample = WatermaskClassifier.INVALID_VALUE;
-                    byte waterMaskFraction = WatermaskClassifier.INVALID_VALUE;
-                    if (!gaUseL1bLandWaterFlag) {
-                        final GeoCoding geoCoding = sourceProduct.getGeoCoding();
-                        if (geoCoding.canGetGeoPos()) {
-                            geoPos = geoCoding.getGeoPos(new PixelPos(x, y), geoPos);
-                            waterMaskSample = strategy.getWatermaskSample(geoPos.lat, geoPos.lon);
-                            waterMaskFraction = strategy.getWatermaskFraction(geoCoding, x, y);
+            GeoPos geoPos = null;
+            final Band cloudFlagTargetBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+            final Tile cloudFlagTargetTile = targetTiles.get(cloudFlagTargetBand);
+
+            final Band nnTargetBand = targetProduct.getBand("vgt_nn_value");
+            final Tile nnTargetTile = targetTiles.get(nnTargetBand);
+
+            try {
+                for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                    checkForCancellation();
+                    for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+
+                        byte waterMaskSample = WatermaskClassifier.INVALID_VALUE;
+                        byte waterMaskFraction = WatermaskClassifier.INVALID_VALUE;
+                        if (!gaUseL1bLandWaterFlag) {
+                            final GeoCoding geoCoding = sourceProduct.getGeoCoding();
+                            if (geoCoding.canGetGeoPos()) {
+                                geoPos = geoCoding.getGeoPos(new PixelPos(x, y), geoPos);
+                                waterMaskSample = strategy.getWatermaskSample(geoPos.lat, geoPos.lon);
+                                waterMaskFraction = strategy.getWatermaskFraction(geoCoding, x, y);
+                            }
                         }
-                    }
 
-                    // set up pixel properties for given instruments...
-                    GlobAlbedoAlgorithm globAlbedoAlgorithm = createVgtAlgorithm(smFlagTile, vgtReflectanceTiles,
-                                                                                 vgtReflectance,
-                                                                                 waterMaskSample,
-                                                                                 waterMaskFraction,
-                                                                                 y, x);
-
-                    setCloudFlag(cloudFlagTargetTile, y, x, globAlbedoAlgorithm);
-
-                    // apply improvement from NN approach...
-                    final double[] nnOutput = ((GlobAlbedoVgtAlgorithm) globAlbedoAlgorithm).getNnOutput();
-                    if (gaApplyVGTSchillerNN) {
-                        if (!cloudFlagTargetTile.getSampleBit(x, y, IdepixConstants.F_INVALID)) {
-                            cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_AMBIGUOUS, false);
-                            cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, false);
-                            cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, false);
-                            cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, false);
-                            if (nnOutput[0] > gaSchillerNNCloudAmbiguousLowerBoundaryValue &&
-                                    nnOutput[0] <= gaSchillerNNCloudAmbiguousSureSeparationValue) {
-                                // this would be as 'CLOUD_AMBIGUOUS'...
-                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_AMBIGUOUS, true);
-                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, true);
-                            }
-                            if (nnOutput[0] > gaSchillerNNCloudAmbiguousSureSeparationValue &&
-                                    nnOutput[0] <= gaSchillerNNCloudSureSnowSeparationValue) {
-                                // this would be as 'CLOUD_SURE'...
-                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, true);
-                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, true);
-                            }
-                            if (nnOutput[0] > gaSchillerNNCloudSureSnowSeparationValue) {
-                                // this would be as 'SNOW/ICE'...
-                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, true);
+                        // set up pixel properties for given instruments...
+                        GlobAlbedoAlgorithm globAlbedoAlgorithm = createVgtAlgorithm(smFlagTile, vgtReflectanceTiles,
+                                                                                     vgtReflectance,
+                                                                                     waterMaskSample,
+                                                                                     waterMaskFraction,
+                                                                                     y, x);
+
+                        setCloudFlag(cloudFlagTargetTile, y, x, globAlbedoAlgorithm);
+
+                        // apply improvement from NN approach...
+                        final double[] nnOutput = ((GlobAlbedoVgtAlgorithm) globAlbedoAlgorithm).getNnOutput();
+                        if (gaApplyVGTSchillerNN) {
+                            if (!cloudFlagTargetTile.getSampleBit(x, y, IdepixConstants.F_INVALID)) {
+                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_AMBIGUOUS, false);
+                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, false);
+                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, false);
+                                cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, false);
+                                if (nnOutput[0] > gaSchillerNNCloudAmbiguousLowerBoundaryValue &&
+                                        nnOutput[0] <= gaSchillerNNCloudAmbiguousSureSeparationValue) {
+                                    // this would be as 'CLOUD_AMBIGUOUS'...
+                                    cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_AMBIGUOUS, true);
+                                    cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, true);
+                                }
+                                if (nnOutput[0] > gaSchillerNNCloudAmbiguousSureSeparationValue &&
+                                        nnOutput[0] <= gaSchillerNNCloudSureSnowSeparationValue) {
+                                    // this would be as 'CLOUD_SURE'...
+                                    cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, true);
+                                    cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLOUD, true);
+                                }
+                                if (nnOutput[0] > gaSchillerNNCloudSureSnowSeparationValue) {
+                                    // this would be as 'SNOW/ICE'...
+                                    cloudFlagTargetTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, true);
+                                }
                             }
+                            nnTargetTile.setSample(x, y, nnOutput[0]);
                         }
-                        nnTargetTile.setSample(x, y, nnOutput[0]);
-                    }
 
-                    for (Band band : targetProduct.getBands()) {
-                        final Tile targetTile = targetTiles.get(band);
-                        setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
+                        for (Band band : targetProduct.getBands()) {
+                            final Tile targetTile = targetTiles.get(band);
+                            setPixelSamples(band, targetTile, y, x, globAlbedoAlgorithm);
+                        }
                     }
                 }
-            }
-            // set cloud buffer flags...
-            setCloudBuffer(IdepixUtils.IDEPIX_CLOUD_FLAGS, cloudFlagTargetTile, rectangle);
+                // set cloud buffer flags...
+                setCloudBuffer(IdepixUtils.IDEPIX_CLOUD_FLAGS, cloudFlagTargetTile, rectangle);
 
-        } catch (Exception e) {
-            throw new OperatorException("Failed to provide GA cloud screening:\n" + e.getMessage(), e);
+            } catch (Exception e) {
+                throw new OperatorException("Failed to provide GA cloud screening:\n" + e.getMessage(), e);
+            }
         }
     }
 
@@ -201,7 +204,7 @@ public class GlobAlbedoVgtClassificationOp extends GlobAlbedoClassificationOp {
         for (int i = 0; i < inputVector.length; i++) {
             inputVector[i] = Math.sqrt(vgtReflectanceSaturationCorrected[i]);
         }
-        gaAlgorithm.setNnOutput(nnWrapper.getNeuralNet().calc(inputVector));
+        gaAlgorithm.setNnOutput(nnWrapper.calc(this, inputVector));
 
         if (gaUseL1bLandWaterFlag) {
             final boolean isLand = smFlagTile.getSampleBit(x, y, SM_F_LAND);
@@ -16,8 +16,12 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.idepix.util.TileAccess;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 
 import java.awt.Rectangle;
@@ -44,6 +48,7 @@ public class Landsat8ClassificationOp extends Operator {
     private static final String NN_RESULT_BAND_NAME = "nnResult";
     private static final String DARK_GLINT_TEST_ONE_BAND_NAME = "darkGlintTest1";
     private static final String DARK_Glint_TEST_TWO_BAND_NAME = "darkGlintTest2";
+    private static final int INVALID_FLAGS = BitSetter.setFlag(0, Landsat8Constants.F_INVALID);
 
 
     @Parameter(defaultValue = "865",
@@ -286,54 +291,74 @@ public class Landsat8ClassificationOp extends Operator {
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws OperatorException {
-        // MERIS variables
-        Tile waterFractionTile = null;
-        if (waterMaskProduct != null) {
-            waterFractionTile = getSourceTile(landWaterBand, rectangle);
-        }
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
+            final Band l8FlagBand = sourceProduct.getBand(Landsat8Constants.Landsat8_FLAGS_NAME);
+            final Tile l8FlagTile = getSourceTile(l8FlagBand, rectangle);
+            final BitPlane l8Fill = BitPlane.createFromFlags(TileAccess.getInts(l8FlagTile), rectangle, rectangle,
+                                                             L8_F_DESIGNATED_FILL);
+            if (l8Fill.isFull()) {
+                // e.g. outside of the scene footprint: set the invalid flag in one go, without computing the source tiles
+                for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+                    final boolean isCloudFlagBand = entry.getKey().getName().equals(cloudFlagBandName);
+                    IdepixUtils.fillTile(entry.getValue(), rectangle, isCloudFlagBand ? INVALID_FLAGS : Double.NaN);
+                }
+                return;
+            }
 
-        Tile clostTile = null;
-        Tile otsuTile = null;
-        if (otsuProduct != null) {
-            clostTile = getSourceTile(clostBand, rectangle);
-            otsuTile = getSourceTile(otsuBand, rectangle);
-        }
+            // MERIS variables
+            Tile waterFractionTile = null;
+            if (waterMaskProduct != null) {
+                waterFractionTile = getSourceTile(landWaterBand, rectangle);
+            }
 
-        final Band l8FlagBand = sourceProduct.getBand(Landsat8Constants.Landsat8_FLAGS_NAME);
-        final Tile l8FlagTile = getSourceTile(l8FlagBand, rectangle);
+            Tile clostTile = null;
+            Tile otsuTile = null;
+            if (otsuProduct != null) {
+                clostTile = getSourceTile(clostBand, rectangle);
+                otsuTile = getSourceTile(otsuBand, rectangle);
+            }
 
-        Tile[] l8ReflectanceTiles = new Tile[Landsat8Constants.LANDSAT8_NUM_SPECTRAL_BANDS];
-        for (int i = 0; i < Landsat8Constants.LANDSAT8_NUM_SPECTRAL_BANDS; i++) {
-            l8ReflectanceTiles[i] = getSourceTile(l8ReflectanceBands[i], rectangle);
-        }
+            Tile[] l8ReflectanceTiles = new Tile[Landsat8Constants.LANDSAT8_NUM_SPECTRAL_BANDS];
+            for (int i = 0; i < Landsat8Constants.LANDSAT8_NUM_SPECTRAL_BANDS; i++) {
+                l8ReflectanceTiles[i] = getSourceTile(l8ReflectanceBands[i], rectangle);
+            }
 
-        final Tile cloudFlagTargetTile = targetTiles.get(targetProduct.getBand(cloudFlagBandName));
-        final Tile nnResultTargetTile = targetTiles.get(targetProduct.getBand(NN_RESULT_BAND_NAME));
-        final Tile darkGlintTest1TargetTile = targetTiles.get(targetProduct.getBand(DARK_GLINT_TEST_ONE_BAND_NAME));
-        final Tile darkGlintTest2TargetTile = targetTiles.get(targetProduct.getBand(DARK_Glint_TEST_TWO_BAND_NAME));
-
-        try {
-            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-                checkForCancellation();
-                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    // set up pixel properties for given instruments...
-                    Landsat8Algorithm landsat8Algorithm = createLandsat8Algorithm(
-                            l8ReflectanceTiles,
-                            l8FlagTile,
-                            waterFractionTile,
-                            clostTile,
-                            otsuTile,
-                            x, y
-                    );
-
-                    setCloudFlag(cloudFlagTargetTile, x, y, landsat8Algorithm);
-                    nnResultTargetTile.setSample(x, y, landsat8Algorithm.getNnResult()[0]);
-                    darkGlintTest1TargetTile.setSample(x, y, landsat8Algorithm.isDarkGlintTest1());
-                    darkGlintTest2TargetTile.setSample(x, y, landsat8Algorithm.isDarkGlintTest2());
+            final Tile cloudFlagTargetTile = targetTiles.get(targetProduct.getBand(cloudFlagBandName));
+            final Tile nnResultTargetTile = targetTiles.get(targetProduct.getBand(NN_RESULT_BAND_NAME));
+            final Tile darkGlintTest1TargetTile = targetTiles.get(targetProduct.getBand(DARK_GLINT_TEST_ONE_BAND_NAME));
+            final Tile darkGlintTest2TargetTile = targetTiles.get(targetProduct.getBand(DARK_Glint_TEST_TWO_BAND_NAME));
+
+            try {
+                for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                    checkForCancellation();
+                    for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                        if (l8Fill.get(x - rectangle.x, y - rectangle.y)) {
+                            // fill pixels only get the invalid flag, without running the algorithm and the NN
+                            cloudFlagTargetTile.setSample(x, y, INVALID_FLAGS);
+                            nnResultTargetTile.setSample(x, y, Double.NaN);
+                            darkGlintTest1TargetTile.setSample(x, y, false);
+                            darkGlintTest2TargetTile.setSample(x, y, false);
+                            continue;
+                        }
+                        // set up pixel properties for given instruments...
+                        Landsat8Algorithm landsat8Algorithm = createLandsat8Algorithm(
+                                l8ReflectanceTiles,
+                                l8FlagTile,
+                                waterFractionTile,
+                                clostTile,
+                                otsuTile,
+                                x, y
+                        );
+
+                        setCloudFlag(cloudFlagTargetTile, x, y, landsat8Algorithm);
+                        nnResultTargetTile.setSample(x, y, landsat8Algorithm.getNnResult()[0]);
+                        darkGlintTest1TargetTile.setSample(x, y, landsat8Algorithm.isDarkGlintTest1());
+                        darkGlintTest2TargetTile.setSample(x, y, landsat8Algorithm.isDarkGlintTest2());
+                    }
                 }
+            } catch (Exception e) {
+                throw new OperatorException("Failed to provide Landsat8 cloud screening:\n" + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            throw new OperatorException("Failed to provide Landsat8 cloud screening:\n" + e.getMessage(), e);
         }
     }
 
@@ -459,7 +484,7 @@ public class Landsat8ClassificationOp extends Operator {
             cloudNetInput[8] = Math.sqrt(l8Reflectance[9]);
             cloudNetInput[9] = Math.sqrt(l8Reflectance[10]);
         }
-        return neuralNetWrapper.getNeuralNet().calc(cloudNetInput);
+        return neuralNetWrapper.calc(this, cloudNetInput);
     }
 
 
@@ -16,6 +16,7 @@ import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.idepix.AlgorithmSelector;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixRoi;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 
@@ -242,6 +243,18 @@ public class Landsat8Op extends Operator {
             label = " Write OTSU bands (Clost and binary) bands to the target product")
     private boolean outputOtsuBands;
 
+    @Parameter(label = " Region of interest (WKT)",
+            description = "Optional region of interest as WKT geometry in geographic coordinates. " +
+                    "Only the tiles intersecting it are computed, all others are filled with the no-data value of " +
+                    "each band (NaN for floating point bands without one).")
+    private String roiWkt;
+
+    @Parameter(label = " Region of interest (mask)",
+            description = "Optional region of interest as mask name or band maths expression of the " +
+                    "source product. Only the tiles intersecting it are computed, all others are filled with the " +
+                    "no-data value of each band (NaN for floating point bands without one).")
+    private String roiMask;
+
     private static final int LAND_WATER_MASK_RESOLUTION = 50;
     private static final int OVERSAMPLING_FACTOR_X = 3;
     private static final int OVERSAMPLING_FACTOR_Y = 3;
@@ -295,6 +308,8 @@ public class Landsat8Op extends Operator {
         cloudFlagBand.setSourceImage(postProcessingProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS).getSourceImage());
 
         copyOutputBands();
+        IdepixRoi.apply(targetProduct, sourceProduct, roiWkt, roiMask, cloudBufferWidth,
+                        IdepixUtils.IDEPIX_CLOUD_FLAGS);
     }
 
     private void checkIfLandsatIsReadAsReflectance() {
@@ -412,7 +427,6 @@ public class Landsat8Op extends Operator {
         return Landsat8Utils.getHistogramBinAtNPercentOfMaximum(stx, 3.0);
     }
 
-
     /**
      * The Service Provider Interface (SPI) for the operator.
      * It provides operator meta-data and is a factory for new operator instances.
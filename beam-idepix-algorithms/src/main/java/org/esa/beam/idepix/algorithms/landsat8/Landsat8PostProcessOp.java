@@ -10,6 +10,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
@@ -104,37 +105,39 @@ public class Landsat8PostProcessOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
-        final Tile waterFractionTile = getSourceTile(waterFractionBand, srcRectangle);
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    combineFlags(x, y, sourceFlagTile, targetTile);
-
-                    postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
-                                Landsat8Constants.F_CLOUD_SHIMEZ,
-                                Landsat8Constants.F_CLOUD_SHIMEZ_BUFFER);
-                    postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
-                                Landsat8Constants.F_CLOUD_HOT,
-                                Landsat8Constants.F_CLOUD_HOT_BUFFER);
-                    postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
-                                Landsat8Constants.F_CLOUD_OTSU,
-                                Landsat8Constants.F_CLOUD_OTSU_BUFFER);
-                    postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
-                                Landsat8Constants.F_CLOUD_CLOST,
-                                Landsat8Constants.F_CLOUD_CLOST_BUFFER);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final Tile sourceFlagTile = getSourceTile(origCloudFlagBand, srcRectangle);
+            final Tile waterFractionTile = getSourceTile(waterFractionBand, srcRectangle);
+
+            IdepixUtils.combineFlags(sourceFlagTile, targetTile);
+            for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
+                checkForCancellation();
+                for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
+
+                    if (targetRectangle.contains(x, y)) {
+
+                        postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
+                                    Landsat8Constants.F_CLOUD_SHIMEZ,
+                                    Landsat8Constants.F_CLOUD_SHIMEZ_BUFFER);
+                        postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
+                                    Landsat8Constants.F_CLOUD_HOT,
+                                    Landsat8Constants.F_CLOUD_HOT_BUFFER);
+                        postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
+                                    Landsat8Constants.F_CLOUD_OTSU,
+                                    Landsat8Constants.F_CLOUD_OTSU_BUFFER);
+                        postProcess(x, y, targetTile, srcRectangle, sourceFlagTile, waterFractionTile,
+                                    Landsat8Constants.F_CLOUD_CLOST,
+                                    Landsat8Constants.F_CLOUD_CLOST_BUFFER);
+                    }
                 }
             }
-        }
 
-        if (computeCloudShadow) {
-            // todo: we need something modified, as we have no CTP
+            if (computeCloudShadow) {
+                // todo: we need something modified, as we have no CTP
+            }
         }
     }
 
@@ -157,12 +160,6 @@ public class Landsat8PostProcessOp extends Operator {
         }
     }
 
-    private void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        int sourceFlags = sourceFlagTile.getSampleInt(x, y);
-        int computedFlags = targetTile.getSampleInt(x, y);
-        targetTile.setSample(x, y, sourceFlags | computedFlags);
-    }
-
     private boolean isCoastlinePixel(int x, int y, Tile waterFractionTile) {
         boolean isCoastline = false;
         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
@@ -4,15 +4,18 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.ImageInfo;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.datamodel.RasterDataNode;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
-import org.esa.beam.jai.ImageManager;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.jai.SingleBandedSampleModel;
 
@@ -24,6 +27,7 @@ import javax.media.jai.operator.BandSelectDescriptor;
 import javax.media.jai.operator.FormatDescriptor;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.io.IOException;
 
 /**
@@ -59,9 +63,38 @@ public class OtsuBinarizeOp extends Operator {
             label = "OTSU processing mode (grey or binary target image)")
     private String otsuMode;
 
+    // the Otsu image needs the whole scene, it is only computed when the first tile of the Otsu band is requested
+    private final LazyValue<RenderedOp> otsuImage = new LazyValue<RenderedOp>() {
+        @Override
+        protected RenderedOp compute() throws OperatorException {
+            return createOtsuImage();
+        }
+    };
 
     @Override
     public void initialize() throws OperatorException {
+        Product otsuProduct;
+        if (otsuMode.equals("GREY")) {
+            otsuProduct = createGreyProduct();
+        } else {
+            otsuProduct = createBinarizedProduct();
+        }
+
+        ProductUtils.copyBand(ClostOp.CLOST_BAND_NAME, clostProduct, otsuProduct, true);
+        setTargetProduct(otsuProduct);
+    }
+
+    @Override
+    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            final Rectangle rectangle = targetTile.getRectangle();
+            final Raster otsuRaster = otsuImage.get().getData(rectangle);
+            targetTile.setSamples(otsuRaster.getSamples(rectangle.x, rectangle.y, rectangle.width, rectangle.height, 0,
+                                                        (int[]) null));
+        }
+    }
+
+    private RenderedOp createOtsuImage() {
         final Band redBand = sourceProduct.getBand(Landsat8Constants.LANDSAT8_RED_BAND_NAME);
         final Band greenBand = sourceProduct.getBand(Landsat8Constants.LANDSAT8_GREEN_BAND_NAME);
         final Band blueBand = sourceProduct.getBand(Landsat8Constants.LANDSAT8_BLUE_BAND_NAME);
@@ -81,23 +114,17 @@ public class OtsuBinarizeOp extends Operator {
         try {
             final ImageInfo clostImageInfo = ProductUtils.createImageInfo(rgbChannelNodes, true, ProgressMonitor.NULL);
             BufferedImage clostImageRgb = ProductUtils.createRgbImage(rgbChannelNodes, clostImageInfo, ProgressMonitor.NULL);
-            final BufferedImage clostImageGray = OtsuBinarize.toGray(clostImageRgb);
-            final BufferedImage clostImageBinarized = OtsuBinarize.binarize(clostImageGray);
-            Product otsuProduct;
-            if (otsuMode.equals("GREY")) {
-                otsuProduct = createGreyProduct(clostImageGray);
-            } else {
-                otsuProduct = createBinarizedProduct(clostImageBinarized);
+            BufferedImage clostImageOtsu = OtsuBinarize.toGray(clostImageRgb);
+            if (!otsuMode.equals("GREY")) {
+                clostImageOtsu = OtsuBinarize.binarize(clostImageOtsu);
             }
-
-            ProductUtils.copyBand(ClostOp.CLOST_BAND_NAME, clostProduct, otsuProduct, true);
-            setTargetProduct(otsuProduct);
+            return getBandSourceImage(PlanarImage.wrapRenderedImage(clostImageOtsu), 0);
         } catch (IOException e) {
             throw new OperatorException("Cannot do OTSU binarization: " + e.getMessage());
         }
     }
 
-    private Product createBinarizedProduct(BufferedImage sourceImage) {
+    private Product createBinarizedProduct() {
 
         Product product = new Product(sourceProduct.getName() + "_binary",
                 sourceProduct.getProductType() + " (binarized)",
@@ -107,10 +134,8 @@ public class OtsuBinarizeOp extends Operator {
         product.setGeoCoding(sourceProduct.getGeoCoding());
         product.setDescription("Product holding RGB Image transformed to binary");
 
-        final PlanarImage planarImage = PlanarImage.wrapRenderedImage(sourceImage);
-        RenderedOp bandImage = getBandSourceImage(planarImage, 0);
-        Band band = product.addBand(OTSU_BINARY_BAND_NAME, ImageManager.getProductDataType(bandImage.getSampleModel().getDataType()));
-        band.setSourceImage(bandImage);
+        // the RGB images of ProductUtils.createRgbImage have byte samples
+        Band band = product.addBand(OTSU_BINARY_BAND_NAME, ProductData.TYPE_UINT8);
         band.setUnit("dl");
         band.setDescription("RGB Image transformed to binary");
         final Band sourceProductReferenceBand = sourceProduct.getBand(Landsat8Constants.LANDSAT8_RED_BAND_NAME);
@@ -121,7 +146,7 @@ public class OtsuBinarizeOp extends Operator {
         return product;
     }
 
-    private Product createGreyProduct(BufferedImage sourceImage) {
+    private Product createGreyProduct() {
 
         Product product = new Product(sourceProduct.getName() + "_grey",
                 sourceProduct.getProductType() + " (greyscaled)",
@@ -131,10 +156,7 @@ public class OtsuBinarizeOp extends Operator {
         product.setGeoCoding(sourceProduct.getGeoCoding());
         product.setDescription("Product holding RGB Image transformed to greyscale");
 
-        final PlanarImage planarImage = PlanarImage.wrapRenderedImage(sourceImage);
-        RenderedOp bandImage = getBandSourceImage(planarImage, 0);
-        Band band = product.addBand(OTSU_GREY_BAND_NAME, ImageManager.getProductDataType(bandImage.getSampleModel().getDataType()));
-        band.setSourceImage(bandImage);
+        Band band = product.addBand(OTSU_GREY_BAND_NAME, ProductData.TYPE_UINT8);
         band.setUnit("dl");
         band.setDescription("RGB Image transformed to greyscale");
         final Band sourceProductReferenceBand = sourceProduct.getBand(Landsat8Constants.LANDSAT8_RED_BAND_NAME);
@@ -34,6 +34,7 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.gpf.operators.standard.BandMathsOp;
 import org.esa.beam.idepix.CloudBuffer;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.BitSetter;
 import org.esa.beam.watermask.operator.WatermaskClassifier;
@@ -104,25 +105,27 @@ public class MagicStickClassificationOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle rectangle = targetTile.getRectangle();
-        Tile cloudMaskTile = getSourceTile(cloudMaskBand, rectangle);
-        for (Tile.Pos pos : targetTile) {
-            boolean isCloud = cloudMaskTile.getSampleBoolean(pos.x, pos.y);
-            GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(pos.x + 0.5f, pos.y + 0.5f), null);
-            boolean isWater = true;
-            try {
-                isWater = watermaskClassifier.isWater(geoPos.lat, geoPos.lon);
-            } catch (IOException ignore) {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle rectangle = targetTile.getRectangle();
+            Tile cloudMaskTile = getSourceTile(cloudMaskBand, rectangle);
+            for (Tile.Pos pos : targetTile) {
+                boolean isCloud = cloudMaskTile.getSampleBoolean(pos.x, pos.y);
+                GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(pos.x + 0.5f, pos.y + 0.5f), null);
+                boolean isWater = true;
+                try {
+                    isWater = watermaskClassifier.isWater(geoPos.lat, geoPos.lon);
+                } catch (IOException ignore) {
+                }
+                int cloudFlag = 0;
+                cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLOUD, isCloud);
+                cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLEAR_LAND, !isCloud && !isWater);
+                cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLEAR_WATER, !isCloud && isWater);
+                cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_LAND, !isWater);
+                cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_WATER, isWater);
+                targetTile.setSample(pos.x, pos.y, cloudFlag);
             }
-            int cloudFlag = 0;
-            cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLOUD, isCloud);
-            cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLEAR_LAND, !isCloud && !isWater);
-            cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_CLEAR_WATER, !isCloud && isWater);
-            cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_LAND, !isWater);
-            cloudFlag = BitSetter.setFlag(cloudFlag, IdepixConstants.F_WATER, isWater);
-            targetTile.setSample(pos.x, pos.y, cloudFlag);
+            CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
         }
-        CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
     }
 
     /**
@@ -8,6 +8,7 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.pointop.*;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.StringUtils;
 
 import java.io.IOException;
@@ -140,6 +141,12 @@ public class OccciClassificationOp extends PixelOperator {
 
     @Override
     protected void computePixel(int x, int y, Sample[] sourceSamples, WritableSample[] targetSamples) {
+        if (isNoDataPixel(sourceSamples)) {
+            // e.g. beyond the swath edges: only the invalid flag is set, without running the algorithm and the NN
+            setInvalidPixel(targetSamples);
+            return;
+        }
+
         OccciAlgorithm algorithm;
 
         switch (sensorContext.getSensor()) {
@@ -158,6 +165,41 @@ public class OccciClassificationOp extends PixelOperator {
         setClassifFlag(targetSamples, algorithm);
     }
 
+    private boolean isNoDataPixel(Sample[] sourceSamples) {
+        final int offset = sensorContext.getSensor() == Sensor.SEAWIFS ? sensorContext.getSrcRadOffset() : 0;
+        return isNoDataPixel(sourceSamples, offset, sensorContext.getNumSpectralInputBands());
+    }
+
+    // A pixel is invalid only if none of its spectral inputs holds data. Single bands may be NaN or no-data
+    // for valid pixels, e.g. the MODIS 1 km ocean bands saturate over bright clouds.
+    static boolean isNoDataPixel(Sample[] sourceSamples, int offset, int numSpectralBands) {
+        for (int i = offset; i < offset + numSpectralBands; i++) {
+            final float value = sourceSamples[i].getFloat();
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            final RasterDataNode node = sourceSamples[i].getNode();
+            if (!node.isNoDataValueUsed() || value != node.getGeophysicalNoDataValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setInvalidPixel(WritableSample[] targetSamples) {
+        targetSamples[0].set(BitSetter.setFlag(0, OccciConstants.F_INVALID));
+        if (ocOutputDebug) {
+            targetSamples[1].set(Float.NaN);
+            targetSamples[2].set(Float.NaN);
+        }
+        targetSamples[3].set(Float.NaN);
+        if (ocOutputSeawifsRefl && sensorContext.getSensor() == Sensor.SEAWIFS) {
+            for (int i = 0; i < sensorContext.getNumSpectralInputBands(); i++) {
+                targetSamples[4 + i].set(Float.NaN);
+            }
+        }
+    }
+
     private void readSchillerNets() {
         try (
                 InputStream isMW = getClass().getResourceAsStream(SCHILLER_MODIS_WATER_NET_NAME);
@@ -245,7 +287,7 @@ public class OccciClassificationOp extends PixelOperator {
         final float emissive32Rad = sourceSamples[OccciConstants.MODIS_SRC_RAD_OFFSET + 11].getFloat();
         modisNeuralNetInput[9] = Math.sqrt(emissive32Rad);                  // EV_1KM_Emissive.32   (12020nm)
 
-        neuralNetOutput = modisAllNeuralNet.get().getNeuralNet().calc(modisNeuralNetInput);
+        neuralNetOutput = modisAllNeuralNet.get().calc(this, modisNeuralNetInput);
 
         occciAlgorithm.setNnOutput(neuralNetOutput);
         targetSamples[3].set(neuralNetOutput[0]);
@@ -279,7 +321,7 @@ public class OccciClassificationOp extends PixelOperator {
         }
         occciAlgorithm.setWaterFraction(waterFraction);
 
-        neuralNetOutput = seawifsNeuralNet.get().getNeuralNet().calc(seawifsNeuralNetInput);
+        neuralNetOutput = seawifsNeuralNet.get().calc(this, seawifsNeuralNetInput);
 
         occciAlgorithm.setNnOutput(neuralNetOutput);
         targetSamples[3].set(neuralNetOutput[0]);
@@ -318,7 +360,7 @@ public class OccciClassificationOp extends PixelOperator {
             viirsNeuralNetInput[i] = Math.sqrt(sourceSamples[i].getFloat());
         }
 
-        neuralNetOutput = viirsNeuralNet.get().getNeuralNet().calc(viirsNeuralNetInput);
+        neuralNetOutput = viirsNeuralNet.get().calc(this, viirsNeuralNetInput);
 
         occciAlgorithm.setNnOutput(neuralNetOutput);
 
@@ -17,8 +17,12 @@ import org.esa.beam.idepix.operators.LisePressureOp;
 import org.esa.beam.idepix.operators.MerisClassificationOp;
 import org.esa.beam.idepix.seaice.SeaIceClassification;
 import org.esa.beam.idepix.seaice.SeaIceClassifier;
+import org.esa.beam.idepix.util.GeometryTileProvider;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.idepix.util.TileBufferPool;
 import org.esa.beam.meris.brr.HelperFunctions;
 import org.esa.beam.meris.brr.RayleighCorrection;
 import org.esa.beam.meris.dpm.PixelId;
@@ -33,6 +37,7 @@ import org.esa.beam.util.math.MathUtils;
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Calendar;
 
 /**
@@ -70,12 +75,22 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
 
     private SchillerAlgorithm landWaterNN;
     private L2AuxData auxData;
+    private GeometryTileProvider geometryTileProvider;
+    // static, the pooled buffers live as long as the worker threads and must not refer to the operator
+    private static final TileBufferPool.Factory<SourceData> SOURCE_DATA_FACTORY =
+            new TileBufferPool.Factory<SourceData>() {
+                @Override
+                public SourceData create(int width, int height) {
+                    return new SourceData(width * height);
+                }
+            };
+    private final TileBufferPool<SourceData> sourceDataPool = new TileBufferPool<>(SOURCE_DATA_FACTORY);
     private PixelId pixelId;
     private RayleighCorrection rayleighCorrection;
 
     private Band cloudFlagBand;
     private Band whiteScattererBand;
-    private SeaIceClassifier seaIceClassifier;
+    private LazyValue<SeaIceClassifier> seaIceClassifier;
     private Band ctpBand;
     private Band liseP1Band;
     private Band lisePScattBand;
@@ -184,6 +199,11 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         } catch (L2AuxDataException e) {
             throw new OperatorException("Could not load L2Auxdata", e);
         }
+        geometryTileProvider = new GeometryTileProvider(
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME));
 
         readSchillerNets();
 
@@ -213,11 +233,13 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
     private void initSeaIceClassifier() {
         final ProductData.UTC startTime = getSourceProduct().getStartTime();
         final int monthIndex = startTime.getAsCalendar().get(Calendar.MONTH);
-        try {
-            seaIceClassifier = new SeaIceClassifier(monthIndex + 1);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // the classification map is loaded when the first pixel is checked for sea ice
+        seaIceClassifier = new LazyValue<SeaIceClassifier>() {
+            @Override
+            protected SeaIceClassifier compute() throws IOException {
+                return SeaIceClassifier.getInstance(monthIndex + 1);
+            }
+        };
     }
 
     private void createTargetProduct() {
@@ -237,12 +259,7 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         }
     }
 
-    private SourceData loadSourceTiles(Rectangle rectangle) throws OperatorException {
-
-        SourceData sd = new SourceData();
-        sd.rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][0];
-        sd.radiance = new Tile[6];
-
+    private void loadSourceTiles(Rectangle rectangle, SourceData sd) throws OperatorException {
         for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
             sd.rhoToa[i] = (float[]) getSourceTile(
                     rhoToaProduct.getBand("reflec_" + (i + 1)),
@@ -274,18 +291,7 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         sd.vaa = (float[]) getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME),
                                          rectangle).getRawSamples().getElems();
 
-        sd.sins = new float[sd.sza.length];
-        sd.sinv = new float[sd.vza.length];
-        sd.coss = new float[sd.sza.length];
-        sd.cosv = new float[sd.vza.length];
-        sd.deltaAzimuth = new float[sd.vza.length];
-        for (int i = 0; i < sd.sza.length; i++) {
-            sd.sins[i] = (float) Math.sin(sd.sza[i] * MathUtils.DTOR);
-            sd.sinv[i] = (float) Math.sin(sd.vza[i] * MathUtils.DTOR);
-            sd.coss[i] = (float) Math.cos(sd.sza[i] * MathUtils.DTOR);
-            sd.cosv[i] = (float) Math.cos(sd.vza[i] * MathUtils.DTOR);
-            sd.deltaAzimuth[i] = (float) HelperFunctions.computeAzimuthDifference(sd.vaa[i], sd.saa[i]);
-        }
+        geometryTileProvider.computeGeometry(rectangle, sd.sins, sd.coss, sd.sinv, sd.cosv, sd.deltaAzimuth);
 
         sd.ecmwfPressure = (float[]) getSourceTile(l1bProduct.getTiePointGrid("atm_press"),
                                                    rectangle).getRawSamples().getElems();
@@ -297,15 +303,16 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
                                            rectangle).getRawSamples().getElems();
 
         sd.l1Flags = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME), rectangle);
-        return sd;
     }
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         Rectangle targetRectangle = targetTile.getRectangle();
-        try {
+        SourceData sd = null;
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
             final Rectangle sourceRectangle = createSourceRectangle(band, targetRectangle);
-            final SourceData sd = loadSourceTiles(sourceRectangle);
+            sd = sourceDataPool.get(sourceRectangle);
+            loadSourceTiles(sourceRectangle, sd);
 
             final Tile ctpTile = getSourceTile(ctpBand, sourceRectangle);
             final Tile liseP1Tile = getSourceTile(liseP1Band, sourceRectangle);
@@ -354,6 +361,10 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
             }
         } catch (Exception e) {
             throw new OperatorException(e);
+        } finally {
+            if (sd != null) {
+                sd.clearSourceReferences();
+            }
         }
     }
 
@@ -576,7 +587,7 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         for (int i = 0; i < nnInput.length; i++) {
             nnInput[i] = Math.sqrt(sd.rhoToa[i][pixelInfo.index]);
         }
-        return nnWrapper.getNeuralNet().calc(nnInput);
+        return nnWrapper.calc(this, nnInput);
     }
 
     private boolean isPixelClassifiedAsSeaice(GeoPos geoPos) {
@@ -595,7 +606,7 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
                 lon = Math.min(lon, maxLon);
                 lat = Math.max(lat, minLat);
                 lat = Math.min(lat, maxLat);
-                final SeaIceClassification classification = seaIceClassifier.getClassification(lat, lon);
+                final SeaIceClassification classification = seaIceClassifier.get().getClassification(lat, lon);
                 if (classification.max >= CC_SEA_ICE_THRESHOLD) {
                     return true;
                 }
@@ -799,6 +810,30 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         private float[] windv;
         private float[] ecmwfPressure;
         private Tile l1Flags;
+
+        private SourceData(int pixelCount) {
+            rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][];
+            radiance = new Tile[6];
+            sins = new float[pixelCount];
+            sinv = new float[pixelCount];
+            coss = new float[pixelCount];
+            cosv = new float[pixelCount];
+            deltaAzimuth = new float[pixelCount];
+        }
+
+        // only the arrays allocated here are pooled, the source tiles and their samples must not be kept
+        private void clearSourceReferences() {
+            Arrays.fill(rhoToa, null);
+            Arrays.fill(radiance, null);
+            sza = null;
+            vza = null;
+            saa = null;
+            vaa = null;
+            windu = null;
+            windv = null;
+            ecmwfPressure = null;
+            l1Flags = null;
+        }
     }
 
     private static class PixelInfo {
@@ -813,6 +848,12 @@ public class OccciMerisClassificationOp extends MerisBasisOp {
         float ctp;
     }
 
+    @Override
+    public void dispose() {
+        sourceDataPool.dispose();
+        super.dispose();
+    }
+
     public static class Spi extends OperatorSpi {
         public Spi() {
             super(OccciMerisClassificationOp.class);
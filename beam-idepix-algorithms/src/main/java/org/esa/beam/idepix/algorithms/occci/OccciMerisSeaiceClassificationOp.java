@@ -15,9 +15,12 @@ import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.operators.MerisClassificationOp;
 import org.esa.beam.idepix.seaice.SeaIceClassification;
 import org.esa.beam.idepix.seaice.SeaIceClassifier;
+import org.esa.beam.idepix.util.GeometryTileProvider;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
-import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.idepix.util.TileBufferPool;
 import org.esa.beam.meris.l2auxdata.Constants;
 import org.esa.beam.meris.l2auxdata.L2AuxData;
 import org.esa.beam.meris.l2auxdata.L2AuxDataException;
@@ -30,7 +33,9 @@ import org.esa.beam.util.math.MathUtils;
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Map;
 
 //import org.esa.beam.meris.l2auxdata.Constants;
 
@@ -67,9 +72,19 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
     private static final double CC_SEA_ICE_THRESHOLD = 10.0;
 
     private L2AuxData auxData;
+    private GeometryTileProvider geometryTileProvider;
+    // static, the pooled buffers live as long as the worker threads and must not refer to the operator
+    private static final TileBufferPool.Factory<SourceData> SOURCE_DATA_FACTORY =
+            new TileBufferPool.Factory<SourceData>() {
+                @Override
+                public SourceData create(int width, int height) {
+                    return new SourceData(width * height);
+                }
+            };
+    private final TileBufferPool<SourceData> sourceDataPool = new TileBufferPool<>(SOURCE_DATA_FACTORY);
 
     private Band cloudFlagBand;
-    private SeaIceClassifier seaIceClassifier;
+    private LazyValue<SeaIceClassifier> seaIceClassifier;
     private Band landWaterBand;
     private Band nnOutputBand;
     private Band wetIceOutputBand;
@@ -160,6 +175,11 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         } catch (L2AuxDataException e) {
             throw new OperatorException("Could not load L2Auxdata", e);
         }
+        geometryTileProvider = new GeometryTileProvider(
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME),
+                l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME));
 
         readSchillerNets();
 
@@ -189,11 +209,13 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
     private void initSeaIceClassifier() {
         final ProductData.UTC startTime = getSourceProduct().getStartTime();
         final int monthIndex = startTime.getAsCalendar().get(Calendar.MONTH);
-        try {
-            seaIceClassifier = new SeaIceClassifier(monthIndex + 1);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // the classification map is loaded when the first pixel is checked for sea ice
+        seaIceClassifier = new LazyValue<SeaIceClassifier>() {
+            @Override
+            protected SeaIceClassifier compute() throws IOException {
+                return SeaIceClassifier.getInstance(monthIndex + 1);
+            }
+        };
     }
 
     private void createTargetProduct() {
@@ -212,12 +234,7 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         wetIceOutputBand.setNoDataValueUsed(true);
     }
 
-    private SourceData loadSourceTiles(Rectangle rectangle) throws OperatorException {
-
-        SourceData sd = new SourceData();
-        sd.rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][0];
-        sd.radiance = new Tile[6];
-
+    private void loadSourceTiles(Rectangle rectangle, SourceData sd) throws OperatorException {
         for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
             sd.rhoToa[i] = (float[]) getSourceTile(
                     rhoToaProduct.getBand("reflec_" + (i + 1)),
@@ -249,18 +266,7 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         sd.vaa = (float[]) getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME),
                                          rectangle).getRawSamples().getElems();
 
-        sd.sins = new float[sd.sza.length];
-        sd.sinv = new float[sd.vza.length];
-        sd.coss = new float[sd.sza.length];
-        sd.cosv = new float[sd.vza.length];
-        sd.deltaAzimuth = new float[sd.vza.length];
-        for (int i = 0; i < sd.sza.length; i++) {
-            sd.sins[i] = (float) Math.sin(sd.sza[i] * MathUtils.DTOR);
-            sd.sinv[i] = (float) Math.sin(sd.vza[i] * MathUtils.DTOR);
-            sd.coss[i] = (float) Math.cos(sd.sza[i] * MathUtils.DTOR);
-            sd.cosv[i] = (float) Math.cos(sd.vza[i] * MathUtils.DTOR);
-            sd.deltaAzimuth[i] = (float) HelperFunctions.computeAzimuthDifference(sd.vaa[i], sd.saa[i]);
-        }
+        geometryTileProvider.computeGeometry(rectangle, sd.sins, sd.coss, sd.sinv, sd.cosv, sd.deltaAzimuth);
 
         sd.windu = (float[]) getSourceTile(l1bProduct.getTiePointGrid("zonal_wind"),
                                            rectangle).getRawSamples().getElems();
@@ -269,20 +275,25 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
                                            rectangle).getRawSamples().getElems();
 
         sd.l1Flags = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME), rectangle);
-        return sd;
     }
 
     @Override
-    public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle targetRectangle = targetTile.getRectangle();
-        try {
-            final Rectangle sourceRectangle = createSourceRectangle(band, targetRectangle);
-            final SourceData sd = loadSourceTiles(sourceRectangle);
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm)
+            throws OperatorException {
+        final Tile cloudFlagTile = targetTiles.get(cloudFlagBand);
+        final Tile nnOutputTile = targetTiles.get(nnOutputBand);
+        final Tile wetIceOutputTile = targetTiles.get(wetIceOutputBand);
+        SourceData sd = null;
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
+            final Rectangle sourceRectangle = createSourceRectangle(cloudFlagBand, targetRectangle);
+            sd = sourceDataPool.get(sourceRectangle);
+            loadSourceTiles(sourceRectangle, sd);
+            computeGeoPositions(targetRectangle, sourceRectangle, sd);
 
             final Tile waterFractionTile = getSourceTile(landWaterBand, sourceRectangle);
 
             final PixelInfo pixelInfo = new PixelInfo();
-
+            // the net is evaluated once per pixel for all target bands, and only for water pixels
             for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
                 checkForCancellation();
                 pixelInfo.y = y;
@@ -294,22 +305,28 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
                         final int waterFraction = waterFractionTile.getSampleInt(pixelInfo.x, pixelInfo.y);
 
                         if (isLandPixel(pixelInfo, sd, waterFraction)) {
-                            if (band == cloudFlagBand) {
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, OccciConstants.F_LAND, true);
-                            } else {
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, Float.NaN);
+                            if (cloudFlagTile != null) {
+                                cloudFlagTile.setSample(pixelInfo.x, pixelInfo.y, OccciConstants.F_LAND, true);
                             }
-                        } else {
-                            if (band == cloudFlagBand) {
-                                classifyCloud(sd, pixelInfo, targetTile, waterFraction);
+                            if (nnOutputTile != null) {
+                                nnOutputTile.setSample(pixelInfo.x, pixelInfo.y, Float.NaN);
+                            }
+                            if (wetIceOutputTile != null) {
+                                wetIceOutputTile.setSample(pixelInfo.x, pixelInfo.y, Float.NaN);
                             }
-                            if (band == nnOutputBand) {
-                                final double[] nnOutput = getMerisNNOutput(sd, pixelInfo);
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, nnOutput[0]);
+                        } else {
+                            if (cloudFlagTile != null || nnOutputTile != null) {
+                                final double nnOutput = getMerisNNOutput(sd, pixelInfo)[0];
+                                if (cloudFlagTile != null) {
+                                    classifyCloud(sd, pixelInfo, cloudFlagTile, waterFraction, nnOutput);
+                                }
+                                if (nnOutputTile != null) {
+                                    nnOutputTile.setSample(pixelInfo.x, pixelInfo.y, nnOutput);
+                                }
                             }
-                            if (band == wetIceOutputBand) {
+                            if (wetIceOutputTile != null) {
                                 final float wetIceValue = getWetIceValue(sd, pixelInfo);
-                                targetTile.setSample(pixelInfo.x, pixelInfo.y, wetIceValue);
+                                wetIceOutputTile.setSample(pixelInfo.x, pixelInfo.y, wetIceValue);
                             }
                         }
                     }
@@ -317,12 +334,32 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
             }
         } catch (Exception e) {
             throw new OperatorException(e);
+        } finally {
+            if (sd != null) {
+                sd.clearSourceReferences();
+            }
+        }
+    }
+
+    // latitude and longitude of the target pixels, computed once per tile instead of once per check
+    private void computeGeoPositions(Rectangle targetRectangle, Rectangle sourceRectangle, SourceData sd) {
+        final GeoCoding geoCoding = getSourceProduct().getGeoCoding();
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                final int i = (y - sourceRectangle.y) * sourceRectangle.width + (x - sourceRectangle.x);
+                pixelPos.setLocation(x, y);
+                geoCoding.getGeoPos(pixelPos, geoPos);
+                sd.lat[i] = geoPos.lat;
+                sd.lon[i] = geoPos.lon;
+            }
         }
     }
 
     private boolean isLandPixel(PixelInfo pixelInfo, SourceData sd, int waterFraction) {
         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
-        if (getGeoPos(pixelInfo).lat > -58f) {
+        if (sd.lat[pixelInfo.index] > -58f) {
             // values bigger than 100 indicate no data
             if (waterFraction <= 100) {
                 // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
@@ -336,12 +373,12 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         }
     }
 
-    private boolean isCoastlinePixel(PixelInfo pixelInfo, int waterFraction) {
+    private boolean isCoastlinePixel(PixelInfo pixelInfo, SourceData sd, int waterFraction) {
         // the water mask ends at 59 Degree south, stop earlier to avoid artefacts
         // values bigger than 100 indicate no data
         // todo: this does not work if we have a PixelGeocoding. In that case, waterFraction
         // is always 0 or 100!! (TS, OD, 20140502)
-        return getGeoPos(pixelInfo).lat > -58f && waterFraction <= 100 && waterFraction < 100 && waterFraction > 0;
+        return sd.lat[pixelInfo.index] > -58f && waterFraction <= 100 && waterFraction < 100 && waterFraction > 0;
     }
 
     private Rectangle createSourceRectangle(Band band, Rectangle rectangle) {
@@ -370,25 +407,26 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         return new Rectangle(x, y, w, h);
     }
 
-    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, Tile targetTile, int waterFraction) {
-        final boolean isCoastline = isCoastlinePixel(pixelInfo, waterFraction);
+    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, Tile targetTile, int waterFraction,
+                              double nnOutput) {
+        final boolean isCoastline = isCoastlinePixel(pixelInfo, sd, waterFraction);
         targetTile.setSample(pixelInfo.x, pixelInfo.y, OccciConstants.F_COASTLINE, isCoastline);
 
         boolean is_glint_risk = !isCoastline && isGlintRisk(sd, pixelInfo);
         boolean checkForSeaIce = false;
         if (!isCoastline) {
             // over water
-            final GeoPos geoPos = getGeoPos(pixelInfo);
-            checkForSeaIce = ignoreSeaIceClimatology || isPixelClassifiedAsSeaice(geoPos);
+            final boolean isInSeaIceClimatology = isPixelClassifiedAsSeaice(sd.lat[pixelInfo.index],
+                                                                            sd.lon[pixelInfo.index]);
+            checkForSeaIce = ignoreSeaIceClimatology || isInSeaIceClimatology;
 
             // glint makes sense only if we have no sea ice
-            is_glint_risk = is_glint_risk && !isPixelClassifiedAsSeaice(geoPos);
+            is_glint_risk = is_glint_risk && !isInSeaIceClimatology;
         }
 
         boolean isCloudSure = false;
         boolean isCloudAmbiguous;
 
-        double nnOutput = getMerisNNOutput(sd, pixelInfo)[0];
         // latest net 8_671.3.net (4 CLASSES), 20160303:
         //  nnOutput <  0.55       : totally cloudy                      --> F_CLOUD_SURE
         //  0.55 < nnOutput <  1.5 : ice (clear + semi-transparent)      --> F_SNOW_ICE
@@ -522,10 +560,10 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
 //            nnInput[i] = sd.rhoToa[i][pixelInfo.index];   //  latest 'outer' NN 9_3282.3.net";
             nnInput[i] = Math.sqrt(sd.rhoToa[i][pixelInfo.index]);   //  latest NN 9x6_935.4.net";
         }
-        return nnWrapper.getNeuralNet().calc(nnInput);
+        return nnWrapper.calc(this, nnInput);
     }
 
-    private boolean isPixelClassifiedAsSeaice(GeoPos geoPos) {
+    private boolean isPixelClassifiedAsSeaice(float pixelLat, float pixelLon) {
         // check given pixel, but also neighbour cell from 1x1 deg sea ice climatology...
         final double maxLon = 360.0;
         final double minLon = 0.0;
@@ -535,13 +573,13 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         for (int y = -1; y <= 1; y++) {
             for (int x = -1; x <= 1; x++) {
                 // for sea ice climatology indices, we need to shift lat/lon onto [0,180]/[0,360]...
-                double lon = geoPos.lon + 180.0 + x * 1.0;
-                double lat = 90.0 - geoPos.lat + y * 1.0;
+                double lon = pixelLon + 180.0 + x * 1.0;
+                double lat = 90.0 - pixelLat + y * 1.0;
                 lon = Math.max(lon, minLon);
                 lon = Math.min(lon, maxLon);
                 lat = Math.max(lat, minLat);
                 lat = Math.min(lat, maxLat);
-                final SeaIceClassification classification = seaIceClassifier.getClassification(lat, lon);
+                final SeaIceClassification classification = seaIceClassifier.get().getClassification(lat, lon);
                 if (classification.max >= CC_SEA_ICE_THRESHOLD) {
                     return true;
                 }
@@ -555,14 +593,6 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         return (rhoGlint >= CC_GLINT_THRESHOLD * sd.rhoToa[Constants.bb865][pixelInfo.index]);
     }
 
-    private GeoPos getGeoPos(PixelInfo pixelInfo) {
-        final GeoPos geoPos = new GeoPos();
-        final GeoCoding geoCoding = getSourceProduct().getGeoCoding();
-        final PixelPos pixelPos = new PixelPos(pixelInfo.x, pixelInfo.y);
-        geoCoding.getGeoPos(pixelPos, geoPos);
-        return geoPos;
-    }
-
     private double computeChiW(SourceData sd, PixelInfo pixelInfo) {
         final double phiw = azimuth(sd.windu[pixelInfo.index], sd.windv[pixelInfo.index]);
         /* and "scattering" angle */
@@ -603,7 +633,7 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         return Interp.interpolate(auxData.rog.getJavaArray(), rogIndex);
     }
 
-    private class SourceData {
+    private static class SourceData {
 
         private float[][] rhoToa;
         private Tile[] radiance;
@@ -618,8 +648,35 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         private float[] deltaAzimuth;
         private float[] windu;
         private float[] windv;
+        private float[] lat;
+        private float[] lon;
         private Tile l1Flags;
 
+        private SourceData(int pixelCount) {
+            rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][];
+            radiance = new Tile[6];
+            sins = new float[pixelCount];
+            sinv = new float[pixelCount];
+            coss = new float[pixelCount];
+            cosv = new float[pixelCount];
+            deltaAzimuth = new float[pixelCount];
+            lat = new float[pixelCount];
+            lon = new float[pixelCount];
+        }
+
+        // only the arrays allocated here are pooled, the source tiles and their samples must not be kept
+        private void clearSourceReferences() {
+            Arrays.fill(rhoToa, null);
+            Arrays.fill(radiance, null);
+            sza = null;
+            vza = null;
+            saa = null;
+            vaa = null;
+            windu = null;
+            windv = null;
+            l1Flags = null;
+        }
+
         public float[][] getRhoToa() {
             return rhoToa;
         }
@@ -631,6 +688,12 @@ public class OccciMerisSeaiceClassificationOp extends MerisBasisOp {
         int y;
     }
 
+    @Override
+    public void dispose() {
+        sourceDataPool.dispose();
+        super.dispose();
+    }
+
     public static class Spi extends OperatorSpi {
         public Spi() {
             super(OccciMerisSeaiceClassificationOp.class);
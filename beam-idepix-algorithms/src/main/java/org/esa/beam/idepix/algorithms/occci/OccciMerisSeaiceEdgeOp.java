@@ -10,6 +10,8 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.SummedAreaTable;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
 
@@ -50,6 +52,8 @@ public class OccciMerisSeaiceEdgeOp extends Operator {
     private Band lonBand;
     private Band seaiceEdgeBand;
 
+    private GeoCoding geoCoding;
+
     private RectangleExtender rectCalculator;
 
     @Override
@@ -57,6 +61,10 @@ public class OccciMerisSeaiceEdgeOp extends Operator {
         rectCalculator = new RectangleExtender(new Rectangle(l3Product.getSceneRasterWidth(),
                                                              l3Product.getSceneRasterHeight()),
                                                seaiceBufferWidth, seaiceBufferWidth);
+        final GeoCoding l3GeoCoding = l3Product.getGeoCoding();
+        if (l3GeoCoding != null && l3GeoCoding.canGetGeoPos()) {
+            geoCoding = l3GeoCoding;
+        }
         createTargetProduct();
     }
 
@@ -89,70 +97,64 @@ public class OccciMerisSeaiceEdgeOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
 
-        final Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle extendedRectangle = rectCalculator.extend(targetRectangle);
+            final Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle extendedRectangle = rectCalculator.extend(targetRectangle);
 
-        final Tile seaiceSourceTile = getSourceTile(seaiceSourceBand, extendedRectangle);
-        Tile latTile = null;
-        if (latBand != null) {
-            latTile = getSourceTile(latBand, extendedRectangle);
-        }
-        Tile lonTile = null;
-        if (lonBand != null) {
-            lonTile = getSourceTile(lonBand, extendedRectangle);
-        }
+            final Tile seaiceSourceTile = getSourceTile(seaiceSourceBand, extendedRectangle);
+            final int[] seaiceSamples = seaiceSourceTile.getSamplesInt();
+            final SummedAreaTable seaiceCounts = SummedAreaTable.createClassCount(seaiceSamples, extendedRectangle, 1);
 
-        for (int y = extendedRectangle.y; y < extendedRectangle.y + extendedRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = extendedRectangle.x; x < extendedRectangle.x + extendedRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    if (seaiceSourceTile.getSampleInt(x, y) != 1) {
-                        checkForSeaiceEdge(x, y, seaiceSourceTile, latTile, lonTile, targetTile, targetRectangle);
-                    }
-                }
+            float[] latSamples = null;
+            float[] lonSamples = null;
+            if (latBand != null && lonBand != null) {
+                latSamples = getSourceTile(latBand, targetRectangle).getSamplesFloat();
+                lonSamples = getSourceTile(lonBand, targetRectangle).getSamplesFloat();
             }
-        }
-
-    }
 
-    private void checkForSeaiceEdge(int x, int y, Tile seaiceSourceTile, Tile latTile, Tile lonTile, Tile targetTile, Rectangle rectangle) {
-        final int LEFT_BORDER = Math.max(x - seaiceBufferWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + seaiceBufferWidth, rectangle.x + rectangle.width - seaiceBufferWidth);
-        final int TOP_BORDER = Math.max(y - seaiceBufferWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + seaiceBufferWidth, rectangle.y + rectangle.height - seaiceBufferWidth);
-
-        int surroundingPixelCount = 0;
-        for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-            for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                if (seaiceSourceTile.getRectangle().contains(i, j)) {
-                    boolean isSeaice = seaiceSourceTile.getSampleInt(i, j) == 1;
-                    if (isSeaice && rectangle.contains(i, j)) {
-                        surroundingPixelCount++;
+            // sea ice neighbours are counted within the target rectangle only, and the right and lower
+            // window borders keep a distance of the buffer width to the tile border
+            final int maxX = Math.min(targetRectangle.x + targetRectangle.width - seaiceBufferWidth,
+                                      targetRectangle.x + targetRectangle.width - 1);
+            final int maxY = Math.min(targetRectangle.y + targetRectangle.height - seaiceBufferWidth,
+                                      targetRectangle.y + targetRectangle.height - 1);
+
+            final PixelPos pixelPos = new PixelPos();
+            final GeoPos geoPos = new GeoPos();
+            for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+                checkForCancellation();
+                final int seaiceOffset = (y - extendedRectangle.y) * extendedRectangle.width - extendedRectangle.x;
+                final int latLonOffset = (y - targetRectangle.y) * targetRectangle.width - targetRectangle.x;
+                for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                    int marginalIceZone = 0;
+                    if (seaiceSamples[seaiceOffset + x] != 1) {
+                        final int surroundingPixelCount =
+                                seaiceCounts.getCount(Math.max(x - seaiceBufferWidth, targetRectangle.x),
+                                                      Math.max(y - seaiceBufferWidth, targetRectangle.y),
+                                                      Math.min(x + seaiceBufferWidth, maxX),
+                                                      Math.min(y + seaiceBufferWidth, maxY));
+                        if (surroundingPixelCount >= numSeaIceNeighboursThresh) {
+                            float lat = 0.0f;
+                            float lon = 0.0f;
+                            if (latSamples != null) {
+                                lat = latSamples[latLonOffset + x];
+                                lon = lonSamples[latLonOffset + x];
+                            } else if (geoCoding != null) {
+                                pixelPos.setLocation(x, y);
+                                geoCoding.getGeoPos(pixelPos, geoPos);
+                                lat = geoPos.getLat();
+                                lon = geoPos.getLon();
+                            }
+                            if (Math.abs(lat) < 86.0 && Math.abs(lon) < 179.9) {
+                                marginalIceZone = 1;
+                            }
+                        }
                     }
+                    targetTile.setSample(x, y, marginalIceZone);
                 }
             }
         }
-
-        float lat = 0.0f;
-        float lon = 0.0f;
-        if (latTile != null && lonTile != null) {
-            lat = latTile.getSampleFloat(x, y);
-            lon = lonTile.getSampleFloat(x, y);
-        } else {
-            final GeoCoding geoCoding = l3Product.getGeoCoding();
-            if (geoCoding != null && geoCoding.canGetGeoPos()) {
-                final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(x, y), null);
-                lat = geoPos.getLat();
-                lon = geoPos.getLon();
-            }
-        }
-        if (surroundingPixelCount >= numSeaIceNeighboursThresh && Math.abs(lat) < 86.0 && Math.abs(lon) < 179.9) {
-            targetTile.setSample(x, y, 1);
-        } else {
-            targetTile.setSample(x, y, 0);
-        }
     }
 
     public static class Spi extends OperatorSpi {
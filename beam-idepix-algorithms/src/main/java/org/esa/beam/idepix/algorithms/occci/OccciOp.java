@@ -13,6 +13,7 @@ import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.IdepixProducts;
 import org.esa.beam.idepix.operators.BasisOp;
 import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixRoi;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.ProductUtils;
 
@@ -252,6 +253,18 @@ public class OccciOp extends BasisOp {
             description = "Resolution in m/pixel")
     private int ocWaterMaskResolution;
 
+    @Parameter(label = " Region of interest (WKT)",
+            description = "Optional region of interest as WKT geometry in geographic coordinates. " +
+                    "Only the tiles intersecting it are computed, all others are filled with the no-data value of " +
+                    "each band (NaN for floating point bands without one).")
+    private String roiWkt;
+
+    @Parameter(label = " Region of interest (mask)",
+            description = "Optional region of interest as mask name or band maths expression of the " +
+                    "source product. Only the tiles intersecting it are computed, all others are filled with the " +
+                    "no-data value of each band (NaN for floating point bands without one).")
+    private String roiMask;
+
     private Product classifProduct;
     private Product waterMaskProduct;
     private Map<String, Object> waterClassificationParameters;
@@ -265,6 +278,8 @@ public class OccciOp extends BasisOp {
         }
 
         processOccci(createOccciCloudClassificationParameters());
+        IdepixRoi.apply(getTargetProduct(), sourceProduct, roiWkt, roiMask, cloudBufferWidth,
+                        OccciConstants.CLASSIF_BAND_NAME);
     }
 
     private void processOccci(Map<String, Object> occciCloudClassificationParameters) {
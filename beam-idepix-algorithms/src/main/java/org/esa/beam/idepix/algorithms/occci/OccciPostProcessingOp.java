@@ -11,7 +11,11 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.idepix.algorithms.CloudShadowFronts;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.morphology.FlagPlanes;
 import org.esa.beam.idepix.operators.BasisOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
 
@@ -62,6 +66,8 @@ public class OccciPostProcessingOp extends BasisOp {
     private TiePointGrid saaTPG;
     private TiePointGrid altTPG;
 
+    private boolean coastlineFromWaterFraction;
+
     @Override
     public void initialize() throws OperatorException {
         createTargetProduct();
@@ -73,6 +79,11 @@ public class OccciPostProcessingOp extends BasisOp {
 
         landWaterBand = waterMaskProduct.getBand("land_water_fraction");
 
+        // for other geocodings, coastline could not be determined per pixel in classification
+        final GeoCoding classifGeoCoding = classifProduct.getGeoCoding();
+        coastlineFromWaterFraction = !(classifGeoCoding instanceof TiePointGeoCoding) &&
+                !(classifGeoCoding instanceof CrsGeoCoding);
+
         if (computeCloudShadow && ctpProduct != null) {
             // applies for MERIS only
             szaTPG = reflProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
@@ -84,215 +95,164 @@ public class OccciPostProcessingOp extends BasisOp {
 
     @Override
     public void computeTile(Band targetBand, final Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Band classifFlagSourceBand = classifProduct.getBand(OccciConstants.CLASSIF_BAND_NAME);
-        final Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle extendedRectangle = rectCalculator.extend(targetRectangle);
-        final Tile classifFlagSourceTile = getSourceTile(classifFlagSourceBand, extendedRectangle);
-        final Tile waterFractionTile = getSourceTile(landWaterBand, extendedRectangle);
-
-        for (int y = extendedRectangle.y; y < extendedRectangle.y + extendedRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = extendedRectangle.x; x < extendedRectangle.x + extendedRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    boolean isCloud = classifFlagSourceTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
-                    combineFlags(x, y, classifFlagSourceTile, targetTile);
-
-                    if (!(classifProduct.getGeoCoding() instanceof TiePointGeoCoding) &&
-                            !(classifProduct.getGeoCoding() instanceof CrsGeoCoding)) {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            final Band classifFlagSourceBand = classifProduct.getBand(OccciConstants.CLASSIF_BAND_NAME);
+            final Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle extendedRectangle = rectCalculator.extend(targetRectangle);
+            final Tile classifFlagSourceTile = getSourceTile(classifFlagSourceBand, extendedRectangle);
+            final Tile waterFractionTile = getSourceTile(landWaterBand, extendedRectangle);
+
+            final int[] sourceFlags = classifFlagSourceTile.getSamplesInt();
+            final int[] waterFractions = waterFractionTile.getSamplesInt();
+
+            // neighbourhoods in the main loop are restricted to the target rectangle
+            final FlagPlanes flagPlanes = FlagPlanes.createFromFlags(sourceFlags, extendedRectangle, targetRectangle,
+                                                                     OccciConstants.F_LAND, OccciConstants.F_CLOUD);
+            final BitPlane land = flagPlanes.get(OccciConstants.F_LAND);
+            final BitPlane cloud = flagPlanes.get(OccciConstants.F_CLOUD);
+            final BitPlane nearCoastline = computeNearCoastline(sourceFlags, waterFractions,
+                                                                extendedRectangle, targetRectangle);
+            // a cloud near the coastline is kept if it has a cloudy neighbour which is not near the coastline
+            final BitPlane nearInlandCloud = cloud.andNot(nearCoastline).dilate3x3();
+
+            for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+                checkForCancellation();
+                final int py = y - targetRectangle.y;
+                final int sourceOffset = (y - extendedRectangle.y) * extendedRectangle.width - extendedRectangle.x;
+                for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                    final int px = x - targetRectangle.x;
+                    int flags = sourceFlags[sourceOffset + x];
+
+                    if (coastlineFromWaterFraction && isCoastline(px, py, land)) {
                         // in this case, coastline could not be determined per pixel earlier
-                        if (isCoastline(x, y, classifFlagSourceTile, targetRectangle)) {
-                            targetTile.setSample(x, y, OccciConstants.F_COASTLINE, true);
-                        }
+                        flags = BitSetter.setFlag(flags, OccciConstants.F_COASTLINE);
                     }
 
-                    if (isNearCoastline(x, y, targetTile, waterFractionTile, targetRectangle)) {
-                        refineSnowIceFlaggingForCoastlines(x, y, classifFlagSourceTile, targetTile);
-                        if (isCloud) {
-                            refineCloudFlaggingForCoastlines(x, y, classifFlagSourceTile, waterFractionTile, targetTile, targetRectangle);
+                    if (nearCoastline.get(px, py)) {
+                        // refine snow/ice flagging for coastlines
+                        if (BitSetter.isFlagSet(flags, OccciConstants.F_SNOW_ICE)) {
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_SNOW_ICE, false);
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_WHITE_ICE, false);
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_WET_ICE, false);
+                        }
+                        // refine cloud flagging for coastlines
+                        if (cloud.get(px, py) && !nearInlandCloud.get(px, py) && !cloud.isSurrounded(px, py)) {
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_CLOUD, false);
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_CLOUD_SURE, false);
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_CLOUD_AMBIGUOUS, false);
+                            flags = BitSetter.setFlag(flags, OccciConstants.F_MIXED_PIXEL, !land.get(px, py));
                         }
                     }
+                    targetTile.setSample(x, y, flags);
                 }
             }
-        }
 
-        if (computeCloudShadow) {
-            Tile szaTile = getSourceTile(szaTPG, extendedRectangle);
-            Tile saaTile = getSourceTile(saaTPG, extendedRectangle);
-            Tile ctpTile = getSourceTile(ctpBand, extendedRectangle);
-            Tile altTile = getSourceTile(altTPG, targetRectangle);
-            CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
-                    reflProduct.getGeoCoding(),
-                    extendedRectangle,
-                    targetRectangle,
-                    szaTile, saaTile, ctpTile, altTile) {
-
-                @Override
-                protected boolean isCloudForShadow(int x, int y) {
-                    final boolean is_cloud_current;
-                    if (!targetTile.getRectangle().contains(x, y)) {
-                        is_cloud_current = classifFlagSourceTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
-                    } else {
-                        is_cloud_current = targetTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
-                    }
-                    if (is_cloud_current) {
-                        final boolean isNearCoastline = isNearCoastline(x, y, classifFlagSourceTile, waterFractionTile, extendedRectangle);
-                        if (!isNearCoastline) {
-                            return true;
+            if (computeCloudShadow) {
+                // cloud shadow neighbourhoods are restricted to the extended rectangle
+                final BitPlane nearCoastlineExtended = computeNearCoastline(sourceFlags, waterFractions,
+                                                                            extendedRectangle, extendedRectangle);
+                Tile szaTile = getSourceTile(szaTPG, extendedRectangle);
+                Tile saaTile = getSourceTile(saaTPG, extendedRectangle);
+                Tile ctpTile = getSourceTile(ctpBand, extendedRectangle);
+                Tile altTile = getSourceTile(altTPG, targetRectangle);
+                CloudShadowFronts cloudShadowFronts = new CloudShadowFronts(
+                        reflProduct.getGeoCoding(),
+                        extendedRectangle,
+                        targetRectangle,
+                        szaTile, saaTile, ctpTile, altTile) {
+
+                    @Override
+                    protected boolean isCloudForShadow(int x, int y) {
+                        final boolean is_cloud_current;
+                        if (!targetTile.getRectangle().contains(x, y)) {
+                            is_cloud_current = classifFlagSourceTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
+                        } else {
+                            is_cloud_current = targetTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
                         }
+                        if (is_cloud_current) {
+                            final boolean isNearCoastline = nearCoastlineExtended.get(x - extendedRectangle.x,
+                                                                                      y - extendedRectangle.y);
+                            if (!isNearCoastline) {
+                                return true;
+                            }
+                        }
+                        return false;
                     }
-                    return false;
-                }
 
-                @Override
-                protected boolean isCloudFree(int x, int y) {
-                    return !classifFlagSourceTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
-                }
+                    @Override
+                    protected boolean isCloudFree(int x, int y) {
+                        return !classifFlagSourceTile.getSampleBit(x, y, OccciConstants.F_CLOUD);
+                    }
 
-                @Override
-                protected boolean isSurroundedByCloud(int x, int y) {
-                    return isPixelSurrounded(x, y, classifFlagSourceTile, OccciConstants.F_CLOUD);
-                }
+                    @Override
+                    protected boolean isSurroundedByCloud(int x, int y) {
+                        return isPixelSurrounded(x, y, classifFlagSourceTile, OccciConstants.F_CLOUD);
+                    }
 
-                @Override
-                protected void setCloudShadow(int x, int y) {
-                    targetTile.setSample(x, y, OccciConstants.F_CLOUD_SHADOW, true);
-                }
-            };
-            cloudShadowFronts.computeCloudShadow();
+                    @Override
+                    protected void setCloudShadow(int x, int y) {
+                        targetTile.setSample(x, y, OccciConstants.F_CLOUD_SHADOW, true);
+                    }
+                };
+                cloudShadowFronts.computeCloudShadow();
+            }
         }
     }
 
-    private boolean isCoastline(int x, int y, Tile sourceFlagTile, Rectangle rectangle) {
+    private static boolean isCoastline(int x, int y, BitPlane land) {
         // idea:
         // - consider 3x3 box
         // - consider the 8 pixels surrounding center
         // - assume center pixel as coastline if it is land and number of surrounding land/water pixels is
         //   almost the same: either 3/5, 4/4, or 5/3
         // --> very simple approach, works fairly well except for weird land edges
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
-
-        final boolean isLandCenter = sourceFlagTile.getSampleBit(x, y, OccciConstants.F_LAND);
-        if (isLandCenter) {
-            int landCount = 0;
-            int count = 0;
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    final boolean isCenter = (i == x && j == y);
-                    final boolean isLand = sourceFlagTile.getSampleBit(i, j, OccciConstants.F_LAND);
-                    if (!isCenter) {
-                        count++;
-                    }
-                    if (isLand && !isCenter) {
-                        landCount++;
-                    }
-                }
-            }
+        if (land.get(x, y)) {
+            final int boxWidth = Math.min(x + 1, land.getWidth() - 1) - Math.max(x - 1, 0) + 1;
+            final int boxHeight = Math.min(y + 1, land.getHeight() - 1) - Math.max(y - 1, 0) + 1;
+            final int count = boxWidth * boxHeight - 1;
+            final int landCount = land.count3x3(x, y) - 1;
             // also consider reduced boxes at product edge
             return (count >= 4 && landCount >= Math.max(count - 6, 1) && landCount <= count - 3);
         }
-
         return false;
     }
 
-    private boolean isNearCoastline(int x, int y, Tile sourceFlagTile, Tile waterFractionTile, Rectangle rectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
-
-        if (!(classifProduct.getGeoCoding() instanceof TiePointGeoCoding) &&
-                !(classifProduct.getGeoCoding() instanceof CrsGeoCoding)) {
-            final int waterFractionCenter = waterFractionTile.getSampleInt(x, y);
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    if (rectangle.contains(i, j)) {
-                        if (waterFractionTile.getSampleInt(i, j) != waterFractionCenter) {
-                            return true;
+    private BitPlane computeNearCoastline(int[] sourceFlags, int[] waterFractions,
+                                          Rectangle sourceRectangle, Rectangle rectangle) {
+        if (coastlineFromWaterFraction) {
+            // near coastline if the water fraction changes within the 3x3 box
+            final BitPlane nearCoastline = new BitPlane(rectangle.width, rectangle.height);
+            final int xOffset = rectangle.x - sourceRectangle.x;
+            final int yOffset = rectangle.y - sourceRectangle.y;
+            final int stride = sourceRectangle.width;
+            for (int y = 0; y < rectangle.height; y++) {
+                final int top = Math.max(y - 1, 0);
+                final int bottom = Math.min(y + 1, rectangle.height - 1);
+                for (int x = 0; x < rectangle.width; x++) {
+                    final int left = Math.max(x - 1, 0);
+                    final int right = Math.min(x + 1, rectangle.width - 1);
+                    final int center = waterFractions[(y + yOffset) * stride + x + xOffset];
+                    boolean isNearCoastline = false;
+                    for (int j = top; j <= bottom && !isNearCoastline; j++) {
+                        final int offset = (j + yOffset) * stride + xOffset;
+                        for (int i = left; i <= right; i++) {
+                            if (waterFractions[offset + i] != center) {
+                                isNearCoastline = true;
+                                break;
+                            }
                         }
                     }
-                }
-            }
-        } else {
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    if (rectangle.contains(i, j)) {
-                        boolean isAlreadyCoastline;
-                        isAlreadyCoastline = sourceFlagTile.getSampleBit(i, j, OccciConstants.F_COASTLINE);
-                        if (isAlreadyCoastline) {
-                            return true;
-                        }
+                    if (isNearCoastline) {
+                        nearCoastline.set(x, y, true);
                     }
                 }
             }
-        }
-
-
-        return false;
-    }
-
-    private boolean refineCloudFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile waterFractionTile, Tile targetTile, Rectangle rectangle) {
-        final int windowWidth = 1;
-        final int LEFT_BORDER = Math.max(x - windowWidth, rectangle.x);
-        final int RIGHT_BORDER = Math.min(x + windowWidth, rectangle.x + rectangle.width - 1);
-        final int TOP_BORDER = Math.max(y - windowWidth, rectangle.y);
-        final int BOTTOM_BORDER = Math.min(y + windowWidth, rectangle.y + rectangle.height - 1);
-        boolean removeCloudFlag = true;
-        if (isPixelSurrounded(x, y, sourceFlagTile, rectangle, OccciConstants.F_CLOUD)) {
-            removeCloudFlag = false;
+            return nearCoastline;
         } else {
-            Rectangle targetTileRectangle = targetTile.getRectangle();
-            for (int i = LEFT_BORDER; i <= RIGHT_BORDER; i++) {
-                for (int j = TOP_BORDER; j <= BOTTOM_BORDER; j++) {
-                    boolean is_cloud = sourceFlagTile.getSampleBit(i, j, OccciConstants.F_CLOUD);
-                    if (is_cloud && targetTileRectangle.contains(i, j) && !isNearCoastline(i, j, sourceFlagTile, waterFractionTile, rectangle)) {
-                        removeCloudFlag = false;
-                        break;
-                    }
-                }
-            }
+            // near coastline if a pixel in the 3x3 box is already flagged as coastline
+            return BitPlane.createFromFlags(sourceFlags, sourceRectangle, rectangle,
+                                            OccciConstants.F_COASTLINE).dilate3x3();
         }
-
-        if (removeCloudFlag) {
-            targetTile.setSample(x, y, OccciConstants.F_CLOUD, false);
-            targetTile.setSample(x, y, OccciConstants.F_CLOUD_SURE, false);
-            targetTile.setSample(x, y, OccciConstants.F_CLOUD_AMBIGUOUS, false);
-            boolean is_land = sourceFlagTile.getSampleBit(x, y, OccciConstants.F_LAND);
-            targetTile.setSample(x, y, OccciConstants.F_MIXED_PIXEL, !is_land);
-        }
-        // return whether this is still a cloud
-        return !removeCloudFlag;
-    }
-
-    private void refineSnowIceFlaggingForCoastlines(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        final boolean isSnowIce = sourceFlagTile.getSampleBit(x, y, OccciConstants.F_SNOW_ICE);
-        if (isSnowIce) {
-            targetTile.setSample(x, y, OccciConstants.F_SNOW_ICE, false);
-            targetTile.setSample(x, y, OccciConstants.F_WHITE_ICE, false);
-            targetTile.setSample(x, y, OccciConstants.F_WET_ICE, false);
-        }
-    }
-
-    private boolean isPixelSurrounded(int x, int y, Tile sourceFlagTile, Rectangle targetRectangle, int pixelFlag) {
-        // check if pixel is surrounded by other pixels flagged as 'pixelFlag'
-        int surroundingPixelCount = 0;
-        for (int i = x - 1; i <= x + 1; i++) {
-            for (int j = y - 1; j <= y + 1; j++) {
-                if (sourceFlagTile.getRectangle().contains(i, j)) {
-                    boolean is_flagged = sourceFlagTile.getSampleBit(i, j, pixelFlag);
-                    if (is_flagged && targetRectangle.contains(i, j)) {
-                        surroundingPixelCount++;
-                    }
-                }
-            }
-        }
-
-        return (surroundingPixelCount * 1.0 / 9 >= 0.7);  // at least 6 pixel in a 3x3 box
     }
 
     private void createTargetProduct() throws OperatorException {
@@ -310,12 +270,6 @@ public class OccciPostProcessingOp extends BasisOp {
         OccciUtils.setupOccciClassifBitmask(targetProduct);
     }
 
-    private void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
-        int sourceFlags = sourceFlagTile.getSampleInt(x, y);
-        int computedFlags = targetTile.getSampleInt(x, y);
-        targetTile.setSample(x, y, sourceFlags | computedFlags);
-    }
-
     /**
      * The Service Provider Interface (SPI) for the operator.
      * It provides operator meta-data and is a factory for new operator instances.
@@ -27,6 +27,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.IdepixProducts;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.meris.l2auxdata.Constants;
 import org.esa.beam.util.BitSetter;
@@ -141,61 +142,63 @@ public class FubScapeMClassificationOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle rectangle = targetTile.getRectangle();
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle rectangle = targetTile.getRectangle();
 
-        Tile[] reflectanceTiles = new Tile[num_of_visible_bands + 2];
-        for (int i = 1; i <= num_of_visible_bands + 1; i++) {
-            final Band reflBand = rad2reflProduct.getBand(RHO_TOA_BAND_PREFIX + "_" + i);
-            reflectanceTiles[i - 1] = getSourceTile(reflBand, rectangle);
-        }
-        final Band refl13Band = rad2reflProduct.getBand(RHO_TOA_BAND_PREFIX + "_" + 13);
-        reflectanceTiles[num_of_visible_bands + 1] = getSourceTile(refl13Band, rectangle);
-        final TiePointGrid altitudeGrid = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_DEM_ALTITUDE_DS_NAME);
-        Tile altitudeTile = getSourceTile(altitudeGrid, rectangle);
-        final Band l1FlagsBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
-        final Tile l1FlagsTile = getSourceTile(l1FlagsBand, rectangle);
-        TiePointGrid sunZenithGrid = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
-        final Tile sunZenithTile = getSourceTile(sunZenithGrid, rectangle);
-
-        Tile waterTile = null;
-        if (calculateLakes) {
-            waterTile = getSourceTile(waterProduct.getRasterDataNode("water_flags"), rectangle);
-        }
-
-        for (Tile.Pos pos : targetTile) {
-            float pAvTOA = 0;
-            for (int i = 0; i < num_of_visible_bands; i++) {
-                pAvTOA += reflectanceTiles[i].getSampleFloat(pos.x, pos.y);
+            Tile[] reflectanceTiles = new Tile[num_of_visible_bands + 2];
+            for (int i = 1; i <= num_of_visible_bands + 1; i++) {
+                final Band reflBand = rad2reflProduct.getBand(RHO_TOA_BAND_PREFIX + "_" + i);
+                reflectanceTiles[i - 1] = getSourceTile(reflBand, rectangle);
             }
-            pAvTOA /= num_of_visible_bands;
-            float p1TOA = reflectanceTiles[0].getSampleFloat(pos.x, pos.y);
-            float p8TOA = reflectanceTiles[7].getSampleFloat(pos.x, pos.y);
-            float p9TOA = reflectanceTiles[8].getSampleFloat(pos.x, pos.y);
-            float p13TOA = reflectanceTiles[9].getSampleFloat(pos.x, pos.y);
-            final float altitude = altitudeTile.getSampleFloat(pos.x, pos.y);
-            final float sunZenith = sunZenithTile.getSampleFloat(pos.x, pos.y);
-            final double musil = Math.cos(sunZenith * MathUtils.DTOR);
-
-            boolean isInvalid = l1FlagsTile.getSampleBit(pos.x, pos.y, Constants.L1_F_INVALID);
-            boolean certainlyCloud = pAvTOA > 0.3 || altitude > 2500 || (p1TOA > 0.23 && p1TOA > p9TOA) || musil < 0;
-            boolean presumablyCloud = pAvTOA > 0.27 || altitude > 2500 || (p1TOA > 0.2 && p1TOA > p8TOA) || musil < 0;
-
-            int cloudFlag = 0;
-            cloudFlag = BitSetter.setFlag(cloudFlag, 0, isInvalid);
-            cloudFlag = BitSetter.setFlag(cloudFlag, 1, certainlyCloud);
-            cloudFlag = BitSetter.setFlag(cloudFlag, 2, presumablyCloud);
-
-            boolean isOcean = false;
-            boolean isLakeOrCoastline = false;
+            final Band refl13Band = rad2reflProduct.getBand(RHO_TOA_BAND_PREFIX + "_" + 13);
+            reflectanceTiles[num_of_visible_bands + 1] = getSourceTile(refl13Band, rectangle);
+            final TiePointGrid altitudeGrid = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_DEM_ALTITUDE_DS_NAME);
+            Tile altitudeTile = getSourceTile(altitudeGrid, rectangle);
+            final Band l1FlagsBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
+            final Tile l1FlagsTile = getSourceTile(l1FlagsBand, rectangle);
+            TiePointGrid sunZenithGrid = sourceProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
+            final Tile sunZenithTile = getSourceTile(sunZenithGrid, rectangle);
+
+            Tile waterTile = null;
             if (calculateLakes) {
-                isOcean = waterTile.getSampleBit(pos.x, pos.y, 1);
-                isLakeOrCoastline = (waterTile.getSampleBit(pos.x, pos.y, 0) ||
-                        waterTile.getSampleBit(pos.x, pos.y, 2)) && p13TOA < reflectance_water_threshold;
+                waterTile = getSourceTile(waterProduct.getRasterDataNode("water_flags"), rectangle);
             }
-            cloudFlag = BitSetter.setFlag(cloudFlag, 3, isOcean && !isInvalid);
-            cloudFlag = BitSetter.setFlag(cloudFlag, 4, isLakeOrCoastline && !isInvalid);
 
-            targetTile.setSample(pos.x, pos.y, cloudFlag);
+            for (Tile.Pos pos : targetTile) {
+                float pAvTOA = 0;
+                for (int i = 0; i < num_of_visible_bands; i++) {
+                    pAvTOA += reflectanceTiles[i].getSampleFloat(pos.x, pos.y);
+                }
+                pAvTOA /= num_of_visible_bands;
+                float p1TOA = reflectanceTiles[0].getSampleFloat(pos.x, pos.y);
+                float p8TOA = reflectanceTiles[7].getSampleFloat(pos.x, pos.y);
+                float p9TOA = reflectanceTiles[8].getSampleFloat(pos.x, pos.y);
+                float p13TOA = reflectanceTiles[9].getSampleFloat(pos.x, pos.y);
+                final float altitude = altitudeTile.getSampleFloat(pos.x, pos.y);
+                final float sunZenith = sunZenithTile.getSampleFloat(pos.x, pos.y);
+                final double musil = Math.cos(sunZenith * MathUtils.DTOR);
+
+                boolean isInvalid = l1FlagsTile.getSampleBit(pos.x, pos.y, Constants.L1_F_INVALID);
+                boolean certainlyCloud = pAvTOA > 0.3 || altitude > 2500 || (p1TOA > 0.23 && p1TOA > p9TOA) || musil < 0;
+                boolean presumablyCloud = pAvTOA > 0.27 || altitude > 2500 || (p1TOA > 0.2 && p1TOA > p8TOA) || musil < 0;
+
+                int cloudFlag = 0;
+                cloudFlag = BitSetter.setFlag(cloudFlag, 0, isInvalid);
+                cloudFlag = BitSetter.setFlag(cloudFlag, 1, certainlyCloud);
+                cloudFlag = BitSetter.setFlag(cloudFlag, 2, presumablyCloud);
+
+                boolean isOcean = false;
+                boolean isLakeOrCoastline = false;
+                if (calculateLakes) {
+                    isOcean = waterTile.getSampleBit(pos.x, pos.y, 1);
+                    isLakeOrCoastline = (waterTile.getSampleBit(pos.x, pos.y, 0) ||
+                            waterTile.getSampleBit(pos.x, pos.y, 2)) && p13TOA < reflectance_water_threshold;
+                }
+                cloudFlag = BitSetter.setFlag(cloudFlag, 3, isOcean && !isInvalid);
+                cloudFlag = BitSetter.setFlag(cloudFlag, 4, isLakeOrCoastline && !isInvalid);
+
+                targetTile.setSample(pos.x, pos.y, cloudFlag);
+            }
         }
     }
 
@@ -19,17 +19,12 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.idepix.AlgorithmSelector;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.util.BitSetter;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 @SuppressWarnings({"FieldCanBeLocal"})
 @OperatorMetadata(alias = "idepix.scapem.lakes",
@@ -61,14 +56,17 @@ public class FubScapeMLakesOp extends Operator {
     private final static String water_flags = "water_flags";
     private GeoCoding geoCoding;
     private Product landWaterMaskProduct;
-    private int[][] lakeRegionMatrix;
     private float kmxpix;
     private int minimumOceanSizeInPixels;
-    private BufferedImage coastRegionImage;
     private int thicknessOfCoastInPixels;
-    private int regionCounter;
-    private Map<Integer, Integer> regionSizes;
-    private List<Region> regions;
+
+    // the water regions are labelled for the whole scene, on the first tile request only
+    private final LazyValue<FubScapeMWaterRegions> waterRegions = new LazyValue<FubScapeMWaterRegions>() {
+        @Override
+        protected FubScapeMWaterRegions compute() {
+            return computeWaterRegions();
+        }
+    };
 
     @Override
     public void initialize() throws OperatorException {
@@ -95,17 +93,14 @@ public class FubScapeMLakesOp extends Operator {
         setupCloudScreeningBitmasks(targetProduct);
 
         landWaterMaskProduct = GPF.createProduct("LandWaterMask", GPF.NO_PARAMS, sourceProduct);
-        coastRegionImage = new BufferedImage(sourceProduct.getSceneRasterWidth(),
-                                             sourceProduct.getSceneRasterHeight(), BufferedImage.TYPE_INT_RGB);
         kmxpix = 0.3f;
         if (sourceProduct.getProductType().equals(EnvisatConstants.MERIS_RR_L1B_PRODUCT_TYPE_NAME)) {
             kmxpix = 1.2f;
         }
         if (calculateLakes) {
+            // the water regions are computed tile-wise on first request, see computeWaterRegions()
             minimumOceanSizeInPixels = (int) (minimumOceanSize / kmxpix);
-            identifyLakeRegions();
             thicknessOfCoastInPixels = (int) (thicknessOfCoast / kmxpix) / 2;
-            identifyCoastRegions();
         }
         setTargetProduct(targetProduct);
     }
@@ -138,168 +133,47 @@ public class FubScapeMLakesOp extends Operator {
         return flagCoding;
     }
 
-    private void identifyCoastRegions() {
-        final Mask coastlineMask = sourceProduct.getMaskGroup().getByDisplayName("coastline");
-        final Band l1FlagsBand = sourceProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME);
-        for (int y = 0; y < l1FlagsBand.getSceneRasterHeight(); y++) {
-            for (int x = 0; x < l1FlagsBand.getSceneRasterWidth(); x++) {
-                if (coastlineMask != null) {   // todo: how to handle products without coastlines, or if this mask
-                    // is not available, e.g. in CC products it is named 'l1p_coastline'!
-                    final int isCoastline = coastlineMask.getSampleInt(x, y);
-                    if (isCoastline != 0) {
-                        for (int i = -thicknessOfCoastInPixels; i < thicknessOfCoastInPixels; i++) {
-                            int offset = -Math.abs(i) + thicknessOfCoastInPixels;
-                            for (int j = -offset; j < offset; j++) {
-                                if (isInBounds(x + j, y + i)) {
-                                    coastRegionImage.getRaster().setSample(x + j, y + i, 0, 1);
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    coastRegionImage.getRaster().setSample(x, y, 0, 0);
-                }
-            }
-        }
-    }
-
-    private void identifyLakeRegions() {
-        regionCounter = 0;
-        regionSizes = new HashMap<Integer, Integer>();
-        regions = new ArrayList<Region>();
-        lakeRegionMatrix = new int[sourceProduct.getSceneRasterWidth()][sourceProduct.getSceneRasterHeight()];
-        for (int i = 0; i < sourceProduct.getSceneRasterWidth(); i++) {
-            Arrays.fill(lakeRegionMatrix[i], 0);
-        }
+    private FubScapeMWaterRegions computeWaterRegions() {
+        final FubScapeMWaterRegions regions = new FubScapeMWaterRegions(sourceProduct.getSceneRasterWidth(),
+                                                                        sourceProduct.getSceneRasterHeight());
         final Band landWaterFractionBand = landWaterMaskProduct.getBand("land_water_fraction");
-        for (int y = 0; y < landWaterFractionBand.getSceneRasterHeight(); y++) {
-            for (int x = 0; x < landWaterFractionBand.getSceneRasterWidth(); x++) {
-                if (landWaterFractionBand.getSampleFloat(x, y) >= 50.0) {
-                    checkPixel(x, y);
-                }
-            }
-        }
-    }
-
-    private void checkPixel(int x, int y) {
-        int leftPixelRegionID = (isInBounds(x - 1, y)) ? lakeRegionMatrix[x - 1][y] : 0;
-        int upperPixelRegionID = (isInBounds(x, y - 1)) ? lakeRegionMatrix[x][y - 1] : 0;
-        if (leftPixelRegionID == 0 && upperPixelRegionID == 0) {
-            int regionID = ++regionCounter;
-            lakeRegionMatrix[x][y] = regionID;
-            regionSizes.put(regionID, 1);
-            regions.add(new Region(regionID));
-        } else {
-            if (leftPixelRegionID == 0) {
-                lakeRegionMatrix[x][y] = upperPixelRegionID;
-                regionSizes.put(upperPixelRegionID, regionSizes.get(upperPixelRegionID) + 1);
-            } else if (upperPixelRegionID == 0) {
-                lakeRegionMatrix[x][y] = leftPixelRegionID;
-                regionSizes.put(leftPixelRegionID, regionSizes.get(leftPixelRegionID) + 1);
-            } else {
-                if (leftPixelRegionID == upperPixelRegionID) {
-                    lakeRegionMatrix[x][y] = leftPixelRegionID;
-                    regionSizes.put(leftPixelRegionID, regionSizes.get(leftPixelRegionID) + 1);
-                } else {
-                    lakeRegionMatrix[x][y] = upperPixelRegionID;
-                    Region firstRegion = null;
-                    Region secondRegion = null;
-                    for (Region region : regions) {
-                        if (region.isResponsibleRegionFor(upperPixelRegionID)) {
-                            firstRegion = region;
-                        }
-                        if (region.isResponsibleRegionFor(leftPixelRegionID)) {
-                            secondRegion = region;
-                        }
-                        if (firstRegion != null && secondRegion != null) {
-                            break;
-                        }
-                    }
-                    if (firstRegion != null && secondRegion != null && firstRegion != secondRegion) {
-                        firstRegion.merge(secondRegion);
-                        regions.remove(secondRegion);
-                    }
-                }
-            }
+        regions.computeLakes(landWaterFractionBand.getGeophysicalImage(), minimumOceanSizeInPixels);
+        final Mask coastlineMask = sourceProduct.getMaskGroup().getByDisplayName("coastline");
+        if (coastlineMask != null) {   // todo: how to handle products without coastlines, or if this mask
+            // is not available, e.g. in CC products it is named 'l1p_coastline'!
+            regions.computeCoastBuffer(coastlineMask.getSourceImage(), thicknessOfCoastInPixels);
         }
-    }
-
-    private boolean isInBounds(int x, int y) {
-        return x >= 0 && y >= 0 && x < sourceProduct.getSceneRasterWidth() && y < sourceProduct.getSceneRasterHeight();
+        return regions;
     }
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        final Rectangle rectangle = targetTile.getRectangle();
-
-        Raster coastRegionData = coastRegionImage.getData(rectangle);
-        Tile waterFractionTile = getSourceTile(landWaterMaskProduct.getRasterDataNode("land_water_fraction"), rectangle);
-        for (Tile.Pos pos : targetTile) {
-            final boolean isAlongCoastline = coastRegionData.getSample(pos.x, pos.y, 0) == 1;
-            boolean isOcean;
-            boolean isLake = false;
-            if (calculateLakes) {
-                int regionID = lakeRegionMatrix[pos.x][pos.y];
-                if (regionID != 0) {
-                    for (Region region : regions) {
-                        if (region.isResponsibleRegionFor(regionID)) {
-                            isLake = !region.isOfMinimalSize();
-                            break;
-                        }
-                    }
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            final Rectangle rectangle = targetTile.getRectangle();
+
+            final FubScapeMWaterRegions regions = calculateLakes ? waterRegions.get() : null;
+            final Tile waterFractionTile = calculateLakes ? null :
+                    getSourceTile(landWaterMaskProduct.getRasterDataNode("land_water_fraction"), rectangle);
+            for (Tile.Pos pos : targetTile) {
+                boolean isAlongCoastline = false;
+                boolean isOcean;
+                boolean isLake = false;
+                if (calculateLakes) {
+                    final int regionFlags = regions.getFlags(pos.x, pos.y);
+                    isAlongCoastline = (regionFlags & FubScapeMWaterRegions.COAST_BIT) != 0;
+                    isLake = (regionFlags & FubScapeMWaterRegions.LAKE_BIT) != 0;
+                    final boolean isWater = (regionFlags & FubScapeMWaterRegions.WATER_BIT) != 0;
+                    isOcean = isWater && !isLake && !isAlongCoastline;
+                } else {
+                    isOcean = waterFractionTile.getSampleFloat(pos.x, pos.y) > 50;
                 }
-                isOcean = regionID != 0 && !isLake && !isAlongCoastline;
-            } else {
-                isOcean = waterFractionTile.getSampleFloat(pos.x, pos.y) > 50 && !isAlongCoastline;
-            }
-            int waterRegionFlag = 0;
-            waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 0, isAlongCoastline);
-            waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 1, isOcean);
-            if (calculateLakes) {
-                waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 2, isLake);
-            }
-            targetTile.setSample(pos.x, pos.y, waterRegionFlag);
-        }
-    }
-
-    private class Region {
-        private List<Integer> subRegions;
-        private int size;
-
-        Region(int regionID) {
-            subRegions = new ArrayList<>();
-            subRegions.add(regionID);
-            size = -1;
-        }
-
-        void merge(Region region) {
-            subRegions.addAll(region.getSubRegions());
-        }
-
-        List<Integer> getSubRegions() {
-            return subRegions;
-        }
-
-        public boolean isResponsibleRegionFor(int pixelID) {
-            for (Integer subRegion : subRegions) {
-                if (subRegion == pixelID) {
-                    return true;
+                int waterRegionFlag = 0;
+                waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 0, isAlongCoastline);
+                waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 1, isOcean);
+                if (calculateLakes) {
+                    waterRegionFlag = BitSetter.setFlag(waterRegionFlag, 2, isLake);
                 }
-            }
-            return false;
-        }
-
-        boolean isOfMinimalSize() {
-            if (size == -1) {
-                evaluateSize();
-            }
-            return size >= minimumOceanSizeInPixels;
-        }
-
-        private void evaluateSize() {
-            size = 0;
-            for (Integer subRegion : subRegions) {
-                size += regionSizes.get(subRegion);
+                targetTile.setSample(pos.x, pos.y, waterRegionFlag);
             }
         }
     }
@@ -0,0 +1,242 @@
+package org.esa.beam.idepix.algorithms.scapem;
+
+import java.awt.*;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+
+/**
+ * Tiled computation of the Scape-M water regions (lakes and coastline buffer).
+ * <p/>
+ * The land/water fraction and coastline images are streamed tile by tile in row-major tile order.
+ * Water pixels are labelled with a two-pass connected components algorithm (4-connectivity) backed by a
+ * union-find forest, so labels meeting across tile borders are merged. The coastline buffer is derived
+ * from a city-block distance transform. The result is kept in a single <code>byte</code> per pixel.
+ */
+class FubScapeMWaterRegions {
+
+    static final int COAST_BIT = 0x01;
+    static final int WATER_BIT = 0x02;
+    static final int LAKE_BIT = 0x04;
+
+    private static final int MAX_DISTANCE = 0xff;
+
+    private final int width;
+    private final int height;
+    private final byte[] regionFlags;
+
+    // union-find forest used during labelling only
+    private int[] parent;
+    private int[] size;
+    private int labelCount;
+
+    FubScapeMWaterRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.regionFlags = new byte[width * height];
+    }
+
+    /**
+     * Labels connected water regions (fraction >= 50%) and flags those which are smaller than the
+     * given minimum ocean size as lakes.
+     *
+     * @param waterFractionImage     - the (geophysical) land/water fraction image
+     * @param minimumOceanSizeInPixels - the minimum number of pixels of a water region to be ocean
+     */
+    void computeLakes(RenderedImage waterFractionImage, int minimumOceanSizeInPixels) {
+        int[] labels = new int[width * height];
+        parent = new int[1024];
+        size = new int[1024];
+        labelCount = 0;
+
+        float[] samples = null;
+        final Rectangle sceneRect = new Rectangle(0, 0, width, height);
+        for (int tileY = waterFractionImage.getMinTileY();
+             tileY < waterFractionImage.getMinTileY() + waterFractionImage.getNumYTiles(); tileY++) {
+            for (int tileX = waterFractionImage.getMinTileX();
+                 tileX < waterFractionImage.getMinTileX() + waterFractionImage.getNumXTiles(); tileX++) {
+                final Raster raster = waterFractionImage.getTile(tileX, tileY);
+                final Rectangle rect = raster.getBounds().intersection(sceneRect);
+                if (rect.isEmpty()) {
+                    continue;
+                }
+                samples = raster.getSamples(rect.x, rect.y, rect.width, rect.height, 0, samples);
+                labelTile(rect, samples, labels);
+            }
+        }
+
+        for (int i = 0; i < labels.length; i++) {
+            final int label = labels[i];
+            if (label != 0) {
+                final int root = find(label);
+                int flags = WATER_BIT;
+                if (size[root] < minimumOceanSizeInPixels) {
+                    flags |= LAKE_BIT;
+                }
+                regionFlags[i] |= flags;
+            }
+        }
+        parent = null;
+        size = null;
+    }
+
+    /**
+     * Flags all pixels within the given (half) thickness around coastline pixels. The buffer is the
+     * diamond used by the original Scape-M implementation, i.e. the union of the city-block discs of radius
+     * <code>thicknessInPixels - 1</code> around the coastline pixel and its left neighbour.
+     *
+     * @param coastlineImage    - the coastline mask image (non-zero for coastline pixels)
+     * @param thicknessInPixels - the half thickness of the coastline buffer in pixels
+     */
+    void computeCoastBuffer(RenderedImage coastlineImage, int thicknessInPixels) {
+        if (thicknessInPixels <= 0) {
+            return;
+        }
+        final int threshold = Math.min(thicknessInPixels, MAX_DISTANCE);
+        final byte[] distance = new byte[width * height];
+        Arrays.fill(distance, (byte) MAX_DISTANCE);
+
+        int[] samples = null;
+        final Rectangle sceneRect = new Rectangle(0, 0, width, height);
+        for (int tileY = coastlineImage.getMinTileY();
+             tileY < coastlineImage.getMinTileY() + coastlineImage.getNumYTiles(); tileY++) {
+            for (int tileX = coastlineImage.getMinTileX();
+                 tileX < coastlineImage.getMinTileX() + coastlineImage.getNumXTiles(); tileX++) {
+                final Raster raster = coastlineImage.getTile(tileX, tileY);
+                final Rectangle rect = raster.getBounds().intersection(sceneRect);
+                if (rect.isEmpty()) {
+                    continue;
+                }
+                samples = raster.getSamples(rect.x, rect.y, rect.width, rect.height, 0, samples);
+                for (int y = rect.y; y < rect.y + rect.height; y++) {
+                    final int srcOffset = (y - rect.y) * rect.width;
+                    for (int x = rect.x; x < rect.x + rect.width; x++) {
+                        if (samples[srcOffset + x - rect.x] != 0) {
+                            distance[y * width + x] = 0;
+                            if (x > 0) {
+                                distance[y * width + x - 1] = 0;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        computeCityBlockDistance(distance, width, height);
+
+        for (int i = 0; i < distance.length; i++) {
+            if ((distance[i] & 0xff) < threshold) {
+                regionFlags[i] |= COAST_BIT;
+            }
+        }
+    }
+
+    int getFlags(int x, int y) {
+        return regionFlags[y * width + x];
+    }
+
+    static void computeCityBlockDistance(byte[] distance, int width, int height) {
+        // forward pass
+        for (int y = 0; y < height; y++) {
+            final int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int d = distance[offset + x] & 0xff;
+                if (d == 0) {
+                    continue;
+                }
+                if (x > 0) {
+                    d = Math.min(d, (distance[offset + x - 1] & 0xff) + 1);
+                }
+                if (y > 0) {
+                    d = Math.min(d, (distance[offset - width + x] & 0xff) + 1);
+                }
+                distance[offset + x] = (byte) Math.min(d, MAX_DISTANCE);
+            }
+        }
+        // backward pass
+        for (int y = height - 1; y >= 0; y--) {
+            final int offset = y * width;
+            for (int x = width - 1; x >= 0; x--) {
+                int d = distance[offset + x] & 0xff;
+                if (d == 0) {
+                    continue;
+                }
+                if (x < width - 1) {
+                    d = Math.min(d, (distance[offset + x + 1] & 0xff) + 1);
+                }
+                if (y < height - 1) {
+                    d = Math.min(d, (distance[offset + width + x] & 0xff) + 1);
+                }
+                distance[offset + x] = (byte) Math.min(d, MAX_DISTANCE);
+            }
+        }
+    }
+
+    private void labelTile(Rectangle rect, float[] samples, int[] labels) {
+        for (int y = rect.y; y < rect.y + rect.height; y++) {
+            final int srcOffset = (y - rect.y) * rect.width;
+            for (int x = rect.x; x < rect.x + rect.width; x++) {
+                if (samples[srcOffset + x - rect.x] >= 50.0f) {
+                    final int index = y * width + x;
+                    // neighbours left and above are in this tile or in tiles which were labelled before
+                    final int left = x > 0 ? labels[index - 1] : 0;
+                    final int upper = y > 0 ? labels[index - width] : 0;
+                    int label;
+                    if (left == 0 && upper == 0) {
+                        label = newLabel();
+                    } else if (left == 0) {
+                        label = find(upper);
+                    } else if (upper == 0) {
+                        label = find(left);
+                    } else {
+                        label = union(upper, left);
+                    }
+                    labels[index] = label;
+                    size[label]++;
+                }
+            }
+        }
+    }
+
+    private int newLabel() {
+        final int label = ++labelCount;
+        if (label >= parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            size = Arrays.copyOf(size, size.length * 2);
+        }
+        parent[label] = label;
+        size[label] = 0;
+        return label;
+    }
+
+    private int find(int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // path compression
+        while (parent[label] != root) {
+            final int next = parent[label];
+            parent[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    private int union(int label1, int label2) {
+        final int root1 = find(label1);
+        final int root2 = find(label2);
+        if (root1 == root2) {
+            return root1;
+        }
+        if (size[root1] >= size[root2]) {
+            parent[root2] = root1;
+            size[root1] += size[root2];
+            return root1;
+        } else {
+            parent[root1] = root2;
+            size[root2] += size[root1];
+            return root2;
+        }
+    }
+}
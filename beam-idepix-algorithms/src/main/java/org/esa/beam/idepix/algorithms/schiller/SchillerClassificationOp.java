@@ -33,6 +33,7 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.CloudBuffer;
 import org.esa.beam.idepix.IdepixConstants;
 import org.esa.beam.idepix.algorithms.SchillerAlgorithm;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.BitSetter;
 import org.esa.beam.watermask.operator.WatermaskClassifier;
@@ -95,52 +96,54 @@ public class SchillerClassificationOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle rectangle = targetTile.getRectangle();
-        final Tile[] srcTiles = new Tile[16];
-        for (int i = 0; i < 15; i++) {
-            srcTiles[i] = getSourceTile(sourceProduct.getBand("reflec_" + (i + 1)), rectangle);
-        }
-        srcTiles[15] = getSourceTile(sourceProduct.getBand("l1_flags"), rectangle);
-        for (final Tile.Pos pos : targetTile) {
-            boolean isWater = true;
-            try {
-                GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(pos.x + 0.5f, pos.y + 0.5f), null);
-                isWater = watermaskClassifier.isWater(geoPos.lat, geoPos.lon);
-            } catch (IOException ignore) {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle rectangle = targetTile.getRectangle();
+            final Tile[] srcTiles = new Tile[16];
+            for (int i = 0; i < 15; i++) {
+                srcTiles[i] = getSourceTile(sourceProduct.getBand("reflec_" + (i + 1)), rectangle);
             }
+            srcTiles[15] = getSourceTile(sourceProduct.getBand("l1_flags"), rectangle);
+            for (final Tile.Pos pos : targetTile) {
+                boolean isWater = true;
+                try {
+                    GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(pos.x + 0.5f, pos.y + 0.5f), null);
+                    isWater = watermaskClassifier.isWater(geoPos.lat, geoPos.lon);
+                } catch (IOException ignore) {
+                }
 
-            boolean isCloud;
-            SchillerAlgorithm.Accessor accessor = new SchillerAlgorithm.Accessor() {
-                @Override
-                public double get(int index) {
-                    return srcTiles[index].getSampleDouble(pos.x, pos.y);
+                boolean isCloud;
+                SchillerAlgorithm.Accessor accessor = new SchillerAlgorithm.Accessor() {
+                    @Override
+                    public double get(int index) {
+                        return srcTiles[index].getSampleDouble(pos.x, pos.y);
+                    }
+                };
+                if (isWater) {
+                    isCloud = (double) waterNN.compute(accessor) > 1.35;
+                } else {
+                    isCloud = (double) landNN.compute(accessor) > 1.25;
                 }
-            };
-            if (isWater) {
-                isCloud = (double) waterNN.compute(accessor) > 1.35;
-            } else {
-                isCloud = (double) landNN.compute(accessor) > 1.25;
-            }
 
-            // snow
-            double rhoToa13 = srcTiles[12].getSampleDouble(pos.x, pos.y);
-            double rhoToa14 = srcTiles[13].getSampleDouble(pos.x, pos.y);
-            double mdsi = (rhoToa13 - rhoToa14) / (rhoToa13 + rhoToa14);
-            boolean isL1bBright = BitSetter.isFlagSet(srcTiles[15].getSampleInt(pos.x, pos.y), 5);
-            boolean isSnow = mdsi > 0.01 && isL1bBright;
-
-            // cloud flag
-            int resultFlag = 0;
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLOUD, isCloud);
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_LAND, !isWater && !isCloud && !isSnow);
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_WATER, isWater && !isCloud && !isSnow);
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_SNOW, !isWater && !isCloud && isSnow);
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_LAND, !isWater);
-            resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_WATER, isWater);
-
-            targetTile.setSample(pos.x, pos.y, resultFlag);
+                // snow
+                double rhoToa13 = srcTiles[12].getSampleDouble(pos.x, pos.y);
+                double rhoToa14 = srcTiles[13].getSampleDouble(pos.x, pos.y);
+                double mdsi = (rhoToa13 - rhoToa14) / (rhoToa13 + rhoToa14);
+                boolean isL1bBright = BitSetter.isFlagSet(srcTiles[15].getSampleInt(pos.x, pos.y), 5);
+                boolean isSnow = mdsi > 0.01 && isL1bBright;
+
+                // cloud flag
+                int resultFlag = 0;
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLOUD, isCloud);
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_LAND, !isWater && !isCloud && !isSnow);
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_WATER, isWater && !isCloud && !isSnow);
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_CLEAR_SNOW, !isWater && !isCloud && isSnow);
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_LAND, !isWater);
+                resultFlag = BitSetter.setFlag(resultFlag, IdepixConstants.F_WATER, isWater);
+
+                targetTile.setSample(pos.x, pos.y, resultFlag);
+            }
+            CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
         }
-        CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
     }
 
     /**
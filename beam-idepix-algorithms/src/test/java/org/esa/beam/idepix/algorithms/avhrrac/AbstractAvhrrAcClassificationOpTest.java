@@ -0,0 +1,59 @@
+package org.esa.beam.idepix.algorithms.avhrrac;
+
+import org.junit.Test;
+
+import javax.media.jai.RenderedOp;
+import javax.media.jai.TiledImage;
+import javax.media.jai.operator.TransposeDescriptor;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the single 180 degree rotation of {@link AbstractAvhrrAcClassificationOp#flipImage} against the previous
+ * vertical + horizontal flip.
+ */
+public class AbstractAvhrrAcClassificationOpTest {
+
+    // odd sizes, not a multiple of the tile size, so the center row and column and partial tiles are covered
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int TILE_SIZE = 8;
+
+    @Test
+    public void testFlipImageEqualsVerticalAndHorizontalFlip() {
+        final TiledImage sourceImage = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0,
+                                                      new BandedSampleModel(DataBuffer.TYPE_FLOAT,
+                                                                            TILE_SIZE, TILE_SIZE, 1), null);
+        final Random random = new Random(5);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                sourceImage.setSample(x, y, 0, random.nextFloat());
+            }
+        }
+
+        final RenderedOp verticalFlippedImage =
+                TransposeDescriptor.create(sourceImage, TransposeDescriptor.FLIP_VERTICAL, null);
+        final RenderedOp expectedImage =
+                TransposeDescriptor.create(verticalFlippedImage, TransposeDescriptor.FLIP_HORIZONTAL, null);
+        final RenderedOp flippedImage = AbstractAvhrrAcClassificationOp.flipImage(sourceImage);
+
+        assertEquals(WIDTH, flippedImage.getWidth());
+        assertEquals(HEIGHT, flippedImage.getHeight());
+        assertEquals(0, flippedImage.getMinX());
+        assertEquals(0, flippedImage.getMinY());
+        final Raster expected = expectedImage.getData();
+        final Raster flipped = flippedImage.getData();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final String pixel = "pixel " + x + "/" + y;
+                assertEquals(pixel, expected.getSampleFloat(x, y, 0), flipped.getSampleFloat(x, y, 0), 0.0f);
+                assertEquals(pixel, sourceImage.getSampleFloat(WIDTH - 1 - x, HEIGHT - 1 - y, 0),
+                             flipped.getSampleFloat(x, y, 0), 0.0f);
+            }
+        }
+    }
+}
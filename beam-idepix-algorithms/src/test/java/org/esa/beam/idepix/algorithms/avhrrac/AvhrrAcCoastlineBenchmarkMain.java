@@ -0,0 +1,230 @@
+package org.esa.beam.idepix.algorithms.avhrrac;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.util.TileAccess;
+
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+/**
+ * Benchmark for the coastline refinement done in {@link AvhrrAcPostProcessOp}: compares the previous loop over
+ * the source rectangle (extended by 64 pixels) with per-pixel 3x3 water fraction scans on the source tiles against
+ * the near coastline mask computed in one pass over the water fraction tile (source rectangle extended by 1 pixel),
+ * for 512x512 tiles of an AVHRR LAC swath (2048 x 12000 pixels, i.e. about half an orbit) with a fragmented
+ * coastline. Both include filling the source tiles, which GPF would do for the source rectangle.
+ * <p/>
+ * For AVHRR LAC (pixel geocoding) the near coastline test is the water fraction comparison, so no geocoding
+ * is involved in either case.
+ * <p/>
+ * Usage: AvhrrAcCoastlineBenchmarkMain [numRows]
+ */
+public class AvhrrAcCoastlineBenchmarkMain {
+
+    private static final int WIDTH = 2048;
+    private static final int TILE_SIZE = 512;
+    private static final int OLD_BORDER = 64;
+    private static final int BORDER = 1;
+
+    private static Band flagBand;
+    private static Band waterFractionBand;
+
+    public static void main(String[] args) {
+        final int height = args.length > 0 ? Integer.parseInt(args[0]) : 12000;
+        final int[] flags = new int[WIDTH * height];
+        final int[] waterFractions = new int[WIDTH * height];
+        createSwath(flags, waterFractions, height);
+        final Product product = new Product("benchmark", "AVHRR_LAC", WIDTH, height);
+        flagBand = product.addBand(AvhrrAcConstants.CLASSIF_BAND_NAME, ProductData.TYPE_INT32);
+        waterFractionBand = product.addBand("land_water_fraction", ProductData.TYPE_UINT8);
+
+        System.out.println("run;pixelScanMillis;coastlineMaskMillis;checksumsEqual");
+        for (int run = 0; run < 5; run++) {
+            long t0 = System.nanoTime();
+            final long checksumScans = refineWithPixelScans(flags, waterFractions, height);
+            long t1 = System.nanoTime();
+            final long checksumMask = refineWithCoastlineMask(flags, waterFractions, height);
+            long t2 = System.nanoTime();
+            System.out.println(run + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" +
+                                       (checksumScans == checksumMask));
+        }
+    }
+
+    private static void createSwath(int[] flags, int[] waterFractions, int height) {
+        // continents crossing the swath, islands, and cloud fields over both
+        final Random random = new Random(4711);
+        for (int y = 0; y < height; y++) {
+            final int coastX = WIDTH / 2 + (int) (600 * Math.sin(y / 700.0) + 40 * Math.sin(y / 13.0));
+            for (int x = 0; x < WIDTH; x++) {
+                waterFractions[y * WIDTH + x] = x < coastX ? 0 : 100;
+            }
+        }
+        for (int i = 0; i < 3000; i++) {
+            final int cx = random.nextInt(WIDTH);
+            final int cy = random.nextInt(height);
+            final int r = 1 + random.nextInt(12);
+            for (int y = Math.max(cy - r, 0); y < Math.min(cy + r, height); y++) {
+                for (int x = Math.max(cx - r, 0); x < Math.min(cx + r, WIDTH); x++) {
+                    waterFractions[y * WIDTH + x] = 0;
+                }
+            }
+        }
+        for (int i = 0; i < 6000; i++) {
+            final int cx = random.nextInt(WIDTH);
+            final int cy = random.nextInt(height);
+            final int r = 2 + random.nextInt(40);
+            for (int y = Math.max(cy - r, 0); y < Math.min(cy + r, height); y++) {
+                for (int x = Math.max(cx - r, 0); x < Math.min(cx + r, WIDTH); x++) {
+                    if (random.nextInt(10) > 0) {
+                        flags[y * WIDTH + x] |= 1 << AvhrrAcConstants.F_CLOUD;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < flags.length; i++) {
+            if (random.nextInt(5) == 0) {
+                flags[i] |= 1 << AvhrrAcConstants.F_SNOW_ICE;
+            }
+        }
+    }
+
+    private static long refineWithPixelScans(int[] flags, int[] waterFractions, int height) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < WIDTH; tileX += TILE_SIZE) {
+                final Rectangle target = getTileRectangle(tileX, tileY, height);
+                final Rectangle source = extend(target, OLD_BORDER, height);
+                final Tile sourceFlagTile = createTile(flagBand, DataBuffer.TYPE_INT, flags, source);
+                final Tile waterFractionTile = createTile(waterFractionBand, DataBuffer.TYPE_BYTE, waterFractions,
+                                                          source);
+                final Tile targetTile = createTile(flagBand, DataBuffer.TYPE_INT, null, target);
+                for (int y = source.y; y < source.y + source.height; y++) {
+                    for (int x = source.x; x < source.x + source.width; x++) {
+                        if (target.contains(x, y)) {
+                            final boolean isCloud = sourceFlagTile.getSampleBit(x, y, AvhrrAcConstants.F_CLOUD);
+                            targetTile.setSample(x, y, sourceFlagTile.getSampleInt(x, y) | targetTile.getSampleInt(x, y));
+                            if (isNearCoastline(x, y, waterFractionTile, source)) {
+                                targetTile.setSample(x, y, AvhrrAcConstants.F_COASTLINE, true);
+                                if (sourceFlagTile.getSampleBit(x, y, AvhrrAcConstants.F_SNOW_ICE)) {
+                                    targetTile.setSample(x, y, AvhrrAcConstants.F_SNOW_ICE, false);
+                                }
+                                if (isCloud) {
+                                    refineCloudFlagging(x, y, sourceFlagTile, waterFractionTile, targetTile, source);
+                                }
+                            }
+                            if (targetTile.getSampleBit(x, y, AvhrrAcConstants.F_CLOUD)) {
+                                targetTile.setSample(x, y, AvhrrAcConstants.F_SNOW_ICE, false);
+                            }
+                        }
+                    }
+                }
+                checksum += getChecksum(targetTile.getSamplesInt(), target);
+            }
+        }
+        return checksum;
+    }
+
+    private static long refineWithCoastlineMask(int[] flags, int[] waterFractions, int height) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < WIDTH; tileX += TILE_SIZE) {
+                final Rectangle target = getTileRectangle(tileX, tileY, height);
+                final Rectangle source = extend(target, BORDER, height);
+                final Tile sourceFlagTile = createTile(flagBand, DataBuffer.TYPE_INT, flags, source);
+                final Tile waterFractionTile = createTile(waterFractionBand, DataBuffer.TYPE_BYTE, waterFractions,
+                                                          source);
+                final Tile targetTile = createTile(flagBand, DataBuffer.TYPE_INT, null, target);
+                final BitPlane nearCoastline =
+                        AvhrrAcPostProcessOp.computeWaterFractionChanges(TileAccess.getInts(waterFractionTile),
+                                                                         source);
+                targetTile.setSamples(AvhrrAcPostProcessOp.postProcess(TileAccess.getInts(sourceFlagTile), source,
+                                                                       target, nearCoastline));
+                checksum += getChecksum(targetTile.getSamplesInt(), target);
+            }
+        }
+        return checksum;
+    }
+
+    private static void refineCloudFlagging(int x, int y, Tile sourceFlagTile, Tile waterFractionTile,
+                                            Tile targetTile, Rectangle source) {
+        boolean removeCloudFlag = true;
+        int cloudCount = 0;
+        for (int i = x - 1; i <= x + 1; i++) {
+            for (int j = y - 1; j <= y + 1; j++) {
+                if (source.contains(i, j) && sourceFlagTile.getSampleBit(i, j, AvhrrAcConstants.F_CLOUD)) {
+                    cloudCount++;
+                }
+            }
+        }
+        if (cloudCount * 1.0 / 9 >= 0.7) {
+            removeCloudFlag = false;
+        } else {
+            final Rectangle target = targetTile.getRectangle();
+            for (int i = Math.max(x - 1, source.x); i <= Math.min(x + 1, source.x + source.width - 1); i++) {
+                for (int j = Math.max(y - 1, source.y); j <= Math.min(y + 1, source.y + source.height - 1); j++) {
+                    if (sourceFlagTile.getSampleBit(i, j, AvhrrAcConstants.F_CLOUD) && target.contains(i, j) &&
+                            !isNearCoastline(i, j, waterFractionTile, source)) {
+                        removeCloudFlag = false;
+                        break;
+                    }
+                }
+            }
+        }
+        if (removeCloudFlag) {
+            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD, false);
+            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD_SURE, false);
+            targetTile.setSample(x, y, AvhrrAcConstants.F_CLOUD_AMBIGUOUS, false);
+        }
+    }
+
+    private static boolean isNearCoastline(int x, int y, Tile waterFractionTile, Rectangle rectangle) {
+        final int center = waterFractionTile.getSampleInt(x, y);
+        for (int i = Math.max(x - 1, rectangle.x); i <= Math.min(x + 1, rectangle.x + rectangle.width - 1); i++) {
+            for (int j = Math.max(y - 1, rectangle.y); j <= Math.min(y + 1, rectangle.y + rectangle.height - 1); j++) {
+                if (rectangle.contains(i, j) && waterFractionTile.getSampleInt(i, j) != center) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long getChecksum(int[] targetFlags, Rectangle target) {
+        long checksum = 0;
+        for (int i = 0; i < targetFlags.length; i++) {
+            checksum += targetFlags[i] * (long) ((target.x + i % target.width) % 31 + 1);
+        }
+        return checksum;
+    }
+
+    private static Tile createTile(Band band, int dataType, int[] samples, Rectangle rectangle) {
+        final WritableRaster raster = Raster.createWritableRaster(
+                new BandedSampleModel(dataType, rectangle.width, rectangle.height, 1), rectangle.getLocation());
+        if (samples != null) {
+            final int[] line = new int[rectangle.width];
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                System.arraycopy(samples, y * WIDTH + rectangle.x, line, 0, rectangle.width);
+                raster.setSamples(rectangle.x, y, rectangle.width, 1, 0, line);
+            }
+        }
+        return new TileImpl(band, raster);
+    }
+
+    private static Rectangle getTileRectangle(int tileX, int tileY, int height) {
+        return new Rectangle(tileX, tileY, Math.min(TILE_SIZE, WIDTH - tileX), Math.min(TILE_SIZE, height - tileY));
+    }
+
+    private static Rectangle extend(Rectangle rectangle, int border, int height) {
+        return new Rectangle(rectangle.x - border, rectangle.y - border,
+                             rectangle.width + 2 * border, rectangle.height + 2 * border)
+                .intersection(new Rectangle(WIDTH, height));
+    }
+}
@@ -0,0 +1,93 @@
+package org.esa.beam.idepix.algorithms.avhrrac;
+
+import javax.media.jai.JAI;
+import javax.media.jai.RenderedOp;
+import javax.media.jai.TiledImage;
+import javax.media.jai.operator.TransposeDescriptor;
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.util.Random;
+
+/**
+ * Benchmark for the source image flip done in {@link AbstractAvhrrAcClassificationOp#flipSourceImages()}:
+ * compares the previous vertical + horizontal flip chain with the single 180 degree rotation for the rasters
+ * of a full AVHRR GAC orbit (409 x 12800 pixels), read in 512x512 source rectangles as GPF does.
+ * <p/>
+ * Usage: AvhrrAcFlipBenchmarkMain [numRasters]
+ */
+public class AvhrrAcFlipBenchmarkMain {
+
+    private static final int WIDTH = 409;
+    private static final int HEIGHT = 12800;
+    private static final int TILE_SIZE = 512;
+
+    public static void main(String[] args) {
+        // 5 channels plus geometry and geolocation rasters
+        final int numRasters = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        final TiledImage[] sourceImages = new TiledImage[numRasters];
+        for (int i = 0; i < numRasters; i++) {
+            sourceImages[i] = createSourceImage(i);
+        }
+
+        System.out.println("run;doubleTransposeMillis;rotate180Millis;checksumsEqual");
+        for (int run = 0; run < 5; run++) {
+            JAI.getDefaultInstance().getTileCache().flush();
+            long t0 = System.nanoTime();
+            double checksumTranspose = 0.0;
+            for (TiledImage sourceImage : sourceImages) {
+                final RenderedOp verticalFlippedImage =
+                        TransposeDescriptor.create(sourceImage, TransposeDescriptor.FLIP_VERTICAL, null);
+                checksumTranspose += readTiles(
+                        TransposeDescriptor.create(verticalFlippedImage, TransposeDescriptor.FLIP_HORIZONTAL, null));
+            }
+            long t1 = System.nanoTime();
+
+            JAI.getDefaultInstance().getTileCache().flush();
+            long t2 = System.nanoTime();
+            double checksumRotate = 0.0;
+            for (TiledImage sourceImage : sourceImages) {
+                checksumRotate += readTiles(AbstractAvhrrAcClassificationOp.flipImage(sourceImage));
+            }
+            long t3 = System.nanoTime();
+            System.out.println(run + ";" + (t1 - t0) / 1000000 + ";" + (t3 - t2) / 1000000 + ";" +
+                                       (checksumTranspose == checksumRotate));
+        }
+    }
+
+    private static TiledImage createSourceImage(int seed) {
+        final SampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_FLOAT, TILE_SIZE, TILE_SIZE, 1);
+        final TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0, sampleModel, null);
+        final Random random = new Random(seed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setSample(x, y, 0, random.nextFloat());
+            }
+        }
+        return image;
+    }
+
+    // position weighted, so that a wrongly mirrored image gives a different checksum
+    private static double readTiles(RenderedImage image) {
+        double checksum = 0.0;
+        for (int tileY = 0; tileY < HEIGHT; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < WIDTH; tileX += TILE_SIZE) {
+                final Rectangle rect = new Rectangle(tileX, tileY,
+                                                     Math.min(TILE_SIZE, WIDTH - tileX),
+                                                     Math.min(TILE_SIZE, HEIGHT - tileY));
+                final Raster raster = image.getData(rect);
+                final float[] samples = raster.getSamples(rect.x, rect.y, rect.width, rect.height, 0,
+                                                          (float[]) null);
+                for (int i = 0; i < samples.length; i++) {
+                    final int x = rect.x + i % rect.width;
+                    final int y = rect.y + i / rect.width;
+                    checksum += samples[i] * (x + 1) * (y % 97 + 1);
+                }
+            }
+        }
+        return checksum;
+    }
+}
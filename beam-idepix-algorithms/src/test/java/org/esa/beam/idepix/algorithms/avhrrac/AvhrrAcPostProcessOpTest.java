@@ -0,0 +1,185 @@
+package org.esa.beam.idepix.algorithms.avhrrac;
+
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the coastline refinement of {@link AvhrrAcPostProcessOp} with precomputed near coastline masks against
+ * the previous per-pixel neighbourhood scans over the extended source rectangle.
+ */
+public class AvhrrAcPostProcessOpTest {
+
+    private static final int WIDTH = 83;
+    private static final int HEIGHT = 61;
+
+    private Rectangle sceneRectangle;
+    private int[] flags;
+    private int[] waterFractions;
+
+    @Before
+    public void setUp() {
+        sceneRectangle = new Rectangle(WIDTH, HEIGHT);
+        flags = new int[WIDTH * HEIGHT];
+        waterFractions = new int[WIDTH * HEIGHT];
+        final Random random = new Random(5);
+        for (int y = 0; y < HEIGHT; y++) {
+            // a wavy coastline, some islands and no data pixels
+            final int coast = 40 + (int) (10 * Math.sin(y / 6.0));
+            for (int x = 0; x < WIDTH; x++) {
+                final int index = y * WIDTH + x;
+                if (random.nextInt(40) == 0) {
+                    waterFractions[index] = 255;
+                } else {
+                    waterFractions[index] = x < coast || random.nextInt(30) == 0 ? 0 : 100;
+                }
+                final boolean patch = ((x / 4 + y / 3) % 3 == 0) && random.nextInt(5) > 0;
+                if (patch || random.nextInt(20) == 0) {
+                    flags[index] |= 1 << AvhrrAcConstants.F_CLOUD;
+                    flags[index] |= 1 << (random.nextBoolean() ? AvhrrAcConstants.F_CLOUD_SURE :
+                            AvhrrAcConstants.F_CLOUD_AMBIGUOUS);
+                }
+                if (random.nextInt(4) == 0) {
+                    flags[index] |= 1 << AvhrrAcConstants.F_SNOW_ICE;
+                }
+                if (waterFractions[index] == 0) {
+                    flags[index] |= 1 << AvhrrAcConstants.F_LAND;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testComputeWaterFractionChanges() {
+        final BitPlane nearCoastline = AvhrrAcPostProcessOp.computeWaterFractionChanges(waterFractions,
+                                                                                         sceneRectangle);
+        int count = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final boolean expected = isNearCoastline(x, y, sceneRectangle);
+                assertEquals("near coastline at " + x + "," + y, expected, nearCoastline.get(x, y));
+                if (expected) {
+                    count++;
+                }
+            }
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test
+    public void testPostProcessEqualsPixelScans() {
+        for (int tileSize = 7; tileSize <= 64; tileSize *= 3) {
+            for (int tileY = 0; tileY < HEIGHT; tileY += tileSize) {
+                for (int tileX = 0; tileX < WIDTH; tileX += tileSize) {
+                    final Rectangle targetRectangle = new Rectangle(tileX, tileY, tileSize, tileSize)
+                            .intersection(sceneRectangle);
+                    final Rectangle srcRectangle = new Rectangle(tileX - 1, tileY - 1, tileSize + 2, tileSize + 2)
+                            .intersection(sceneRectangle);
+                    final BitPlane nearCoastline =
+                            AvhrrAcPostProcessOp.computeWaterFractionChanges(copy(waterFractions, srcRectangle),
+                                                                             srcRectangle);
+                    final int[] targetFlags = AvhrrAcPostProcessOp.postProcess(copy(flags, srcRectangle),
+                                                                               srcRectangle, targetRectangle,
+                                                                               nearCoastline);
+                    final int[] expectedFlags = postProcessWithPixelScans(srcRectangle, targetRectangle);
+                    for (int i = 0; i < expectedFlags.length; i++) {
+                        assertEquals("flags at " + i + " of " + targetRectangle, expectedFlags[i], targetFlags[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPostProcessWithoutCoastlineRefinement() {
+        final int[] targetFlags = AvhrrAcPostProcessOp.postProcess(flags, sceneRectangle, sceneRectangle, null);
+        for (int i = 0; i < flags.length; i++) {
+            int expected = flags[i];
+            if ((expected & (1 << AvhrrAcConstants.F_CLOUD)) != 0) {
+                expected &= ~(1 << AvhrrAcConstants.F_SNOW_ICE);
+            }
+            assertEquals(expected, targetFlags[i]);
+        }
+    }
+
+    // the loops of the previous implementation, over the source rectangle
+    private int[] postProcessWithPixelScans(Rectangle srcRectangle, Rectangle targetRectangle) {
+        final int[] targetFlags = new int[targetRectangle.width * targetRectangle.height];
+        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
+            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
+                if (targetRectangle.contains(x, y)) {
+                    int targetFlag = flags[y * WIDTH + x];
+                    if (isNearCoastline(x, y, srcRectangle)) {
+                        targetFlag |= 1 << AvhrrAcConstants.F_COASTLINE;
+                        targetFlag &= ~(1 << AvhrrAcConstants.F_SNOW_ICE);
+                        if (isSet(x, y, AvhrrAcConstants.F_CLOUD) &&
+                                isCloudRemoved(x, y, srcRectangle, targetRectangle)) {
+                            targetFlag &= ~(1 << AvhrrAcConstants.F_CLOUD);
+                            targetFlag &= ~(1 << AvhrrAcConstants.F_CLOUD_SURE);
+                            targetFlag &= ~(1 << AvhrrAcConstants.F_CLOUD_AMBIGUOUS);
+                        }
+                    }
+                    if ((targetFlag & (1 << AvhrrAcConstants.F_CLOUD)) != 0) {
+                        targetFlag &= ~(1 << AvhrrAcConstants.F_SNOW_ICE);
+                    }
+                    targetFlags[(y - targetRectangle.y) * targetRectangle.width + x - targetRectangle.x] = targetFlag;
+                }
+            }
+        }
+        return targetFlags;
+    }
+
+    private boolean isCloudRemoved(int x, int y, Rectangle srcRectangle, Rectangle targetRectangle) {
+        int cloudCount = 0;
+        for (int j = y - 1; j <= y + 1; j++) {
+            for (int i = x - 1; i <= x + 1; i++) {
+                if (srcRectangle.contains(i, j) && isSet(i, j, AvhrrAcConstants.F_CLOUD)) {
+                    cloudCount++;
+                }
+            }
+        }
+        if (cloudCount * 1.0 / 9 >= 0.7) {
+            return false;
+        }
+        for (int j = y - 1; j <= y + 1; j++) {
+            for (int i = x - 1; i <= x + 1; i++) {
+                if (srcRectangle.contains(i, j) && isSet(i, j, AvhrrAcConstants.F_CLOUD) &&
+                        targetRectangle.contains(i, j) && !isNearCoastline(i, j, srcRectangle)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isNearCoastline(int x, int y, Rectangle rectangle) {
+        final int center = waterFractions[y * WIDTH + x];
+        for (int j = y - 1; j <= y + 1; j++) {
+            for (int i = x - 1; i <= x + 1; i++) {
+                if (rectangle.contains(i, j) && waterFractions[j * WIDTH + i] != center) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isSet(int x, int y, int flag) {
+        return (flags[y * WIDTH + x] & (1 << flag)) != 0;
+    }
+
+    private static int[] copy(int[] samples, Rectangle rectangle) {
+        final int[] copy = new int[rectangle.width * rectangle.height];
+        for (int y = 0; y < rectangle.height; y++) {
+            System.arraycopy(samples, (rectangle.y + y) * WIDTH + rectangle.x, copy, y * rectangle.width,
+                             rectangle.width);
+        }
+        return copy;
+    }
+}
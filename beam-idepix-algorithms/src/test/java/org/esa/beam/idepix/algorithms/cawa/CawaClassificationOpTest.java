@@ -0,0 +1,259 @@
+package org.esa.beam.idepix.algorithms.cawa;
+
+import org.esa.beam.dataio.envisat.EnvisatConstants;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.annotations.Parameter;
+import org.esa.beam.idepix.operators.BarometricPressureOp;
+import org.esa.beam.idepix.operators.LisePressureOp;
+import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.meris.l2auxdata.Constants;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.Raster;
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link CawaClassificationOp} gives the same flags and NN values as the chain of
+ * {@link CawaLandClassificationOp}, {@link CawaWaterClassificationOp} and {@link CawaMergeLandWaterOp}, on a
+ * synthetic MERIS RR product which covers land, water, coastline and invalid pixels north and south of the
+ * water mask limit.
+ */
+public class CawaClassificationOpTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 36;
+
+    private Product l1bProduct;
+    private Product rhoToaProduct;
+    private Product ctpProduct;
+    private Product pbaroProduct;
+    private Product liseProduct;
+    private Product waterMaskProduct;
+
+    @Before
+    public void setUp() throws Exception {
+        l1bProduct = createL1bProduct();
+        rhoToaProduct = createProduct("rhotoa");
+        for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
+            addBand(rhoToaProduct, "reflec_" + (i + 1), ProductData.TYPE_FLOAT32,
+                    "0.3 + 0.25 * sin(0.31 * X + 0.17 * Y + " + 0.1 * i + ")");
+        }
+        ctpProduct = createProduct("ctp");
+        addBand(ctpProduct, "cloud_top_press", ProductData.TYPE_FLOAT32, "650 + 300 * sin(0.2 * X - 0.3 * Y)");
+        pbaroProduct = createProduct("pbaro");
+        addBand(pbaroProduct, BarometricPressureOp.PRESSURE_BAROMETRIC, ProductData.TYPE_FLOAT32,
+                "1000 - 2 * Y");
+        liseProduct = createProduct("lise");
+        addBand(liseProduct, LisePressureOp.PRESSURE_LISE_P1, ProductData.TYPE_FLOAT32,
+                "700 + 250 * sin(0.13 * X + 0.41 * Y)");
+        addBand(liseProduct, LisePressureOp.PRESSURE_LISE_PSCATT, ProductData.TYPE_FLOAT32,
+                "600 + 300 * cos(0.27 * X - 0.11 * Y)");
+        waterMaskProduct = createProduct("waterMask");
+        // land, water and coastline, with columns without water mask data
+        addBand(waterMaskProduct, "land_water_fraction", ProductData.TYPE_INT16,
+                "floor(X) % 9 == 0 ? 255 : (floor(X) < 20 ? 0 : (floor(X) % 5 == 0 ? 40 : 100))");
+    }
+
+    @After
+    public void tearDown() {
+        for (Product product : new Product[]{l1bProduct, rhoToaProduct, ctpProduct, pbaroProduct, liseProduct,
+                waterMaskProduct}) {
+            product.dispose();
+        }
+    }
+
+    @Test
+    public void testIsLandPixel() {
+        assertTrue(CawaUtils.isLandPixel(45.0f, 0, false));
+        assertFalse(CawaUtils.isLandPixel(45.0f, 100, true));
+        // coastline pixels are water pixels
+        assertFalse(CawaUtils.isLandPixel(45.0f, 40, true));
+        // no water mask data, or south of the water mask: L1b land flag
+        assertTrue(CawaUtils.isLandPixel(45.0f, 255, true));
+        assertFalse(CawaUtils.isLandPixel(45.0f, 255, false));
+        assertTrue(CawaUtils.isLandPixel(-60.0f, 100, true));
+        assertFalse(CawaUtils.isLandPixel(-60.0f, 0, false));
+    }
+
+    @Test
+    public void testLandDefaultsEqualLandClassificationDefaults() throws Exception {
+        // the land thresholds used to be dropped, so the land classification ran with its own defaults:
+        // the defaults of Idepix.Cawa must not change that output
+        final String[] names = {
+                "AmbiguousLowerBoundaryValue", "AmbiguousSureSeparationValue", "SureSnowSeparationValue"
+        };
+        for (String name : names) {
+            final String landDefault = getDefaultValue(CawaLandClassificationOp.class, "schillerNNCloud" + name);
+            assertEquals(landDefault, getDefaultValue(CawaOp.class, "schillerLandNNCloud" + name));
+            assertEquals(landDefault, getDefaultValue(CawaClassificationOp.class, "schillerLandNNCloud" + name));
+        }
+    }
+
+    @Test
+    public void testFusedOpEqualsChainedOps() {
+        // thresholds differing from the defaults, to check that they are passed to the land and water algorithms
+        final double[] land = {0.5, 1.5, 2.5};
+        final double[] water = {1.0, 2.0, 3.0};
+
+        final Product merged = createChainedProduct(land, water);
+        final Product fused = createFusedProduct(land, water);
+        final Product fusedDefaults = createFusedProduct(new double[]{2.0, 3.7, 4.05}, new double[]{2.0, 3.7, 4.05});
+
+        final Raster mergedFlags = getData(merged, IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        final Raster mergedNN = getData(merged, CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME);
+        final Raster fusedFlags = getData(fused, IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        final Raster fusedNN = getData(fused, CawaConstants.SCHILLER_NN_OUTPUT_BAND_NAME);
+        final Raster defaultFlags = getData(fusedDefaults, IdepixUtils.IDEPIX_CLOUD_FLAGS);
+
+        int numLandPixels = 0;
+        int numDifferentToDefaults = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int flags = fusedFlags.getSample(x, y, 0);
+                assertEquals("flags at " + x + "," + y, mergedFlags.getSample(x, y, 0), flags);
+                assertEquals("NN value at " + x + "," + y,
+                             mergedNN.getSampleFloat(x, y, 0), fusedNN.getSampleFloat(x, y, 0), 0.0f);
+                if ((flags & (1 << CawaConstants.F_LAND)) != 0) {
+                    numLandPixels++;
+                }
+                if (flags != defaultFlags.getSample(x, y, 0)) {
+                    numDifferentToDefaults++;
+                }
+            }
+        }
+        assertTrue(numLandPixels > 0 && numLandPixels < WIDTH * HEIGHT);
+        assertTrue(numDifferentToDefaults > 0);
+
+        merged.dispose();
+        fused.dispose();
+        fusedDefaults.dispose();
+    }
+
+    @Test
+    public void testComputeWindSpeed() {
+        final float[] ws = CawaMergeLandWaterOp.computeWindSpeed(new float[]{3.0f, -6.0f, 0.0f},
+                                                                 new float[]{4.0f, 8.0f, 0.0f});
+        assertEquals(3, ws.length);
+        assertEquals(5.0f, ws[0], 1.0e-6f);
+        assertEquals(10.0f, ws[1], 1.0e-6f);
+        assertEquals(0.0f, ws[2], 0.0f);
+    }
+
+    private Product createChainedProduct(double[] land, double[] water) {
+        final CawaLandClassificationOp landOp = new CawaLandClassificationOp();
+        landOp.setSourceProduct("l1b", l1bProduct);
+        landOp.setSourceProduct("rhotoa", rhoToaProduct);
+        landOp.setSourceProduct("pressure", pbaroProduct);
+        landOp.setSourceProduct("pressureLise", liseProduct);
+        landOp.setSourceProduct("waterMask", waterMaskProduct);
+        setClassificationParameters(landOp, land);
+
+        final CawaWaterClassificationOp waterOp = new CawaWaterClassificationOp();
+        waterOp.setSourceProduct("l1b", l1bProduct);
+        waterOp.setSourceProduct("rhotoa", rhoToaProduct);
+        waterOp.setSourceProduct("pressure", ctpProduct);
+        waterOp.setSourceProduct("pressureLise", liseProduct);
+        waterOp.setSourceProduct("waterMask", waterMaskProduct);
+        setClassificationParameters(waterOp, water);
+
+        final CawaMergeLandWaterOp mergeOp = new CawaMergeLandWaterOp();
+        mergeOp.setSourceProduct("landClassif", landOp.getTargetProduct());
+        mergeOp.setSourceProduct("waterClassif", waterOp.getTargetProduct());
+        return mergeOp.getTargetProduct();
+    }
+
+    private static void setClassificationParameters(Operator op, double[] thresholds) {
+        op.setParameterDefaultValues();
+        op.setParameter("outputSchillerNNValue", true);
+        op.setParameter("schillerNNCloudAmbiguousLowerBoundaryValue", thresholds[0]);
+        op.setParameter("schillerNNCloudAmbiguousSureSeparationValue", thresholds[1]);
+        op.setParameter("schillerNNCloudSureSnowSeparationValue", thresholds[2]);
+    }
+
+    private Product createFusedProduct(double[] land, double[] water) {
+        final CawaClassificationOp op = new CawaClassificationOp();
+        op.setSourceProduct("l1b", l1bProduct);
+        op.setSourceProduct("rhotoa", rhoToaProduct);
+        op.setSourceProduct("ctp", ctpProduct);
+        op.setSourceProduct("pbaro", pbaroProduct);
+        op.setSourceProduct("pressureLise", liseProduct);
+        op.setSourceProduct("waterMask", waterMaskProduct);
+        op.setParameterDefaultValues();
+        op.setParameter("outputSchillerNNValue", true);
+        op.setParameter("schillerLandNNCloudAmbiguousLowerBoundaryValue", land[0]);
+        op.setParameter("schillerLandNNCloudAmbiguousSureSeparationValue", land[1]);
+        op.setParameter("schillerLandNNCloudSureSnowSeparationValue", land[2]);
+        op.setParameter("schillerWaterNNCloudAmbiguousLowerBoundaryValue", water[0]);
+        op.setParameter("schillerWaterNNCloudAmbiguousSureSeparationValue", water[1]);
+        op.setParameter("schillerWaterNNCloudSureSnowSeparationValue", water[2]);
+        return op.getTargetProduct();
+    }
+
+    private static Raster getData(Product product, String bandName) {
+        return product.getBand(bandName).getSourceImage().getData();
+    }
+
+    private static Product createL1bProduct() throws Exception {
+        final Product product = createProduct("l1b");
+        for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
+            addBand(product, EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[i], ProductData.TYPE_FLOAT32,
+                    "80 + 60 * sin(0.31 * X + 0.17 * Y + " + 0.1 * i + ") - 3 * " + i);
+        }
+        // every 6th pixel invalid, L1b land flag in a checker pattern
+        addBand(product, EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME, ProductData.TYPE_INT32,
+                "((floor(X) + floor(Y)) % 6 == 0 ? " + (1 << Constants.L1_F_INVALID) + " : 0) + " +
+                        "((3 * floor(X) + floor(Y)) % 4 < 2 ? " + (1 << CawaUtils.MERIS_L1B_F_LAND) + " : 0)");
+
+        addTiePointGrid(product, EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME, 35.0f, 0.3f, 0.4f);
+        addTiePointGrid(product, EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME, 130.0f, 0.2f, 0.1f);
+        addTiePointGrid(product, EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME, 2.0f, 0.9f, 0.0f);
+        addTiePointGrid(product, EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME, 100.0f, 0.1f, 0.0f);
+        addTiePointGrid(product, EnvisatConstants.MERIS_DEM_ALTITUDE_DS_NAME, 0.0f, 5.0f, 5.0f);
+        addTiePointGrid(product, "atm_press", 1013.0f, -0.2f, -0.3f);
+        addTiePointGrid(product, "zonal_wind", 3.0f, 0.05f, 0.0f);
+        addTiePointGrid(product, "merid_wind", -2.0f, 0.0f, 0.05f);
+        return product;
+    }
+
+    private static Product createProduct(String name) throws Exception {
+        final Product product = new Product(name, "MER_RR__1P", WIDTH, HEIGHT);
+        product.setStartTime(ProductData.UTC.parse("15-JUN-2005 10:00:00"));
+        product.setEndTime(ProductData.UTC.parse("15-JUN-2005 10:01:00"));
+        // latitudes from 50S to 68S, i.e. north and south of the water mask limit
+        product.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, WIDTH, HEIGHT, 10.0, -50.0, 0.5, 0.5));
+        product.setPreferredTileSize(16, 16);
+        return product;
+    }
+
+    private static void addBand(Product product, String name, int type, String expression) {
+        product.addBand(new VirtualBand(name, type, WIDTH, HEIGHT, expression));
+    }
+
+    private static void addTiePointGrid(Product product, String name, float value, float dx, float dy) {
+        final float[] tiePoints = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                tiePoints[y * WIDTH + x] = value + dx * x + dy * y;
+            }
+        }
+        product.addTiePointGrid(new TiePointGrid(name, WIDTH, HEIGHT, 0.5f, 0.5f, 1.0f, 1.0f, tiePoints));
+    }
+
+    private static String getDefaultValue(Class<?> opClass, String parameterName) throws NoSuchFieldException {
+        final Field field = opClass.getDeclaredField(parameterName);
+        return field.getAnnotation(Parameter.class).defaultValue();
+    }
+}
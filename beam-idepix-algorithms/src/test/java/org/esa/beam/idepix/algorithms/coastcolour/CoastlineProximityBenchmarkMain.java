@@ -0,0 +1,150 @@
+package org.esa.beam.idepix.algorithms.coastcolour;
+
+import org.esa.beam.idepix.morphology.BitPlane;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Benchmark for the coastline refinement as done in {@link CoastColourPostProcessOp}: compares the previous
+ * loop over the extended source rectangle with per-pixel 3x3 coastline scans against the target rectangle loop
+ * with a coastline proximity mask precomputed by one dilation, for tile sizes from 128 to 1024 on a
+ * 4480x4480 (MERIS FR like) scene with a shadow border of 64 pixels.
+ * <p/>
+ * Usage: CoastlineProximityBenchmarkMain
+ */
+public class CoastlineProximityBenchmarkMain {
+
+    private static final int SIZE = 4480;
+    private static final int BORDER = 64;
+    private static final int F_CLOUD = CoastColourClassificationOp.F_CLOUD;
+    private static final int F_COASTLINE = CoastColourClassificationOp.F_COASTLINE;
+
+    public static void main(String[] args) {
+        final int[] flags = createFlags();
+
+        System.out.println("tileSize;perPixelScanMillis;proximityMaskMillis;checksumsEqual");
+        for (int tileSize = 128; tileSize <= 1024; tileSize *= 2) {
+            // warm up
+            refineWithPerPixelScans(flags, tileSize);
+            refineWithProximityMask(flags, tileSize);
+
+            long t0 = System.nanoTime();
+            final long checksumScans = refineWithPerPixelScans(flags, tileSize);
+            long t1 = System.nanoTime();
+            final long checksumMask = refineWithProximityMask(flags, tileSize);
+            long t2 = System.nanoTime();
+            System.out.println(tileSize + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" +
+                                       (checksumScans == checksumMask));
+        }
+    }
+
+    private static int[] createFlags() {
+        // a wavy coastline through the scene and random cloud fields
+        final Random random = new Random(1234);
+        final int[] flags = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            final int coastX = SIZE / 2 + (int) (200 * Math.sin(y / 150.0)) + random.nextInt(3);
+            flags[y * SIZE + coastX] |= 1 << F_COASTLINE;
+        }
+        for (int i = 0; i < 2000; i++) {
+            final int cx = random.nextInt(SIZE);
+            final int cy = random.nextInt(SIZE);
+            final int r = 3 + random.nextInt(30);
+            for (int y = Math.max(cy - r, 0); y < Math.min(cy + r, SIZE); y++) {
+                for (int x = Math.max(cx - r, 0); x < Math.min(cx + r, SIZE); x++) {
+                    flags[y * SIZE + x] |= 1 << F_CLOUD;
+                }
+            }
+        }
+        return flags;
+    }
+
+    private static long refineWithPerPixelScans(int[] flags, int tileSize) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < SIZE; tileY += tileSize) {
+            for (int tileX = 0; tileX < SIZE; tileX += tileSize) {
+                final Rectangle target = getTileRectangle(tileX, tileY, tileSize);
+                final Rectangle source = extend(target);
+                for (int y = source.y; y < source.y + source.height; y++) {
+                    for (int x = source.x; x < source.x + source.width; x++) {
+                        if (target.contains(x, y) && isNearCoastline(flags, x, y, source)) {
+                            boolean keepCloud = false;
+                            if (isSet(flags, x, y, F_CLOUD)) {
+                                for (int j = Math.max(y - 1, source.y); j <= Math.min(y + 1, source.y + source.height - 1); j++) {
+                                    for (int i = Math.max(x - 1, source.x); i <= Math.min(x + 1, source.x + source.width - 1); i++) {
+                                        if (isSet(flags, i, j, F_CLOUD) && target.contains(i, j) &&
+                                                !isNearCoastline(flags, i, j, source)) {
+                                            keepCloud = true;
+                                        }
+                                    }
+                                }
+                                checksum += keepCloud ? 1 : 2;
+                            } else {
+                                checksum += 3;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static long refineWithProximityMask(int[] flags, int tileSize) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < SIZE; tileY += tileSize) {
+            for (int tileX = 0; tileX < SIZE; tileX += tileSize) {
+                final Rectangle target = getTileRectangle(tileX, tileY, tileSize);
+                final Rectangle source = extend(target);
+                final int[] sourceFlags = new int[source.width * source.height];
+                for (int y = 0; y < source.height; y++) {
+                    System.arraycopy(flags, (source.y + y) * SIZE + source.x, sourceFlags, y * source.width,
+                                     source.width);
+                }
+                final BitPlane nearCoastline = BitPlane.createFromFlags(sourceFlags, source, source, F_COASTLINE)
+                        .dilate3x3()
+                        .crop(target.x - source.x, target.y - source.y, target.width, target.height);
+                final BitPlane cloud = BitPlane.createFromFlags(sourceFlags, source, target, F_CLOUD);
+                final BitPlane nearInlandCloud = cloud.andNot(nearCoastline).dilate3x3();
+                for (int y = 0; y < target.height; y++) {
+                    for (int x = 0; x < target.width; x++) {
+                        if (nearCoastline.get(x, y)) {
+                            if (cloud.get(x, y)) {
+                                checksum += nearInlandCloud.get(x, y) ? 1 : 2;
+                            } else {
+                                checksum += 3;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static boolean isNearCoastline(int[] flags, int x, int y, Rectangle rectangle) {
+        for (int j = Math.max(y - 1, rectangle.y); j <= Math.min(y + 1, rectangle.y + rectangle.height - 1); j++) {
+            for (int i = Math.max(x - 1, rectangle.x); i <= Math.min(x + 1, rectangle.x + rectangle.width - 1); i++) {
+                if (isSet(flags, i, j, F_COASTLINE)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSet(int[] flags, int x, int y, int bit) {
+        return (flags[y * SIZE + x] & (1 << bit)) != 0;
+    }
+
+    private static Rectangle getTileRectangle(int tileX, int tileY, int tileSize) {
+        return new Rectangle(tileX, tileY, Math.min(tileSize, SIZE - tileX), Math.min(tileSize, SIZE - tileY));
+    }
+
+    private static Rectangle extend(Rectangle rectangle) {
+        return new Rectangle(rectangle.x - BORDER, rectangle.y - BORDER,
+                             rectangle.width + 2 * BORDER, rectangle.height + 2 * BORDER)
+                .intersection(new Rectangle(SIZE, SIZE));
+    }
+}
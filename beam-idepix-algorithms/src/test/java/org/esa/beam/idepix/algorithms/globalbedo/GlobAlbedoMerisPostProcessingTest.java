@@ -0,0 +1,255 @@
+package org.esa.beam.idepix.algorithms.globalbedo;
+
+import org.esa.beam.dataio.envisat.EnvisatConstants;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.operators.CloudBufferOp;
+import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.util.RectangleExtender;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the post-processing and cloud buffer of {@link GlobAlbedoMerisFusedOp} give the same flags as the
+ * chain {@link GlobAlbedoMerisPostProcessOp} - {@link CloudBufferOp}, tile by tile from the same classification
+ * flags. The classification itself is pixel-local and does not depend on the tiling.
+ * <p/>
+ * The synthetic MERIS RR product covers the German Bight coast, so that the land/water mask computed by the
+ * post-processing operator has land, water and coastline pixels.
+ */
+public class GlobAlbedoMerisPostProcessingTest {
+
+    private static final int WIDTH = 70;
+    private static final int HEIGHT = 45;
+    private static final int CLOUD_BUFFER_WIDTH = 2;
+
+    private Product l1bProduct;
+    private Product classificationProduct;
+    private Product ctpProduct;
+    private Band flagBand;
+    private Tile classificationFlagTile;
+    private Tile waterFractionTile;
+    private Rectangle sceneRectangle;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // the post-processing operator creates the land/water mask with GPF
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        l1bProduct = createProduct("l1b");
+        addTiePointGrid(l1bProduct, EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME, 35.0f);
+        addTiePointGrid(l1bProduct, EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME, 130.0f);
+        addTiePointGrid(l1bProduct, EnvisatConstants.MERIS_DEM_ALTITUDE_DS_NAME, 0.0f);
+        ctpProduct = createProduct("ctp");
+        final Band ctpBand = ctpProduct.addBand("cloud_top_press", ProductData.TYPE_FLOAT32);
+        final float[] ctp = new float[WIDTH * HEIGHT];
+        Arrays.fill(ctp, 700.0f);
+        ctpBand.setRasterData(ProductData.createInstance(ctp));
+
+        // the same land/water mask as computed by the post-processing operators
+        final HashMap<String, Object> waterParameters = new HashMap<>();
+        waterParameters.put("resolution", 50);
+        waterParameters.put("subSamplingFactorX", 3);
+        waterParameters.put("subSamplingFactorY", 3);
+        final Product waterMaskProduct = GPF.createProduct("LandWaterMask", waterParameters, l1bProduct);
+        final Band waterFractionBand = waterMaskProduct.getBand("land_water_fraction");
+        waterFractionTile = new TileImpl(waterFractionBand, waterFractionBand.getSourceImage().getData());
+
+        classificationProduct = createProduct("classification");
+        flagBand = classificationProduct.addBand(IdepixUtils.IDEPIX_CLOUD_FLAGS, ProductData.TYPE_INT32);
+        sceneRectangle = new Rectangle(WIDTH, HEIGHT);
+        classificationFlagTile = createTile(flagBand, sceneRectangle);
+        final int[] flags = new int[WIDTH * HEIGHT];
+        final Random random = new Random(42);
+        int numCoastlinePixels = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int waterFraction = waterFractionTile.getSampleInt(x, y);
+                if (waterFraction > 0 && waterFraction < 100) {
+                    numCoastlinePixels++;
+                }
+                // cloud patches and scattered single cloud pixels
+                final boolean patch = ((x / 5 + y / 4) % 3 == 0) && random.nextInt(4) > 0;
+                final boolean isCloud = patch || random.nextInt(25) == 0;
+                final boolean isLand = waterFraction < 100;
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_CLOUD, isCloud);
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_CLOUD_SURE, isCloud);
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_LAND, isLand);
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_CLEAR_LAND, !isCloud && isLand);
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_CLEAR_WATER, !isCloud && !isLand);
+                classificationFlagTile.setSample(x, y, IdepixConstants.F_CLEAR_SNOW, random.nextInt(10) == 0);
+                flags[y * WIDTH + x] = classificationFlagTile.getSampleInt(x, y);
+            }
+        }
+        assertTrue("coastline pixels in the test scene", numCoastlinePixels > 0);
+        flagBand.setRasterData(ProductData.createInstance(flags));
+        waterMaskProduct.dispose();
+    }
+
+    @After
+    public void tearDown() {
+        l1bProduct.dispose();
+        classificationProduct.dispose();
+        ctpProduct.dispose();
+    }
+
+    @Test
+    public void testFusedEqualsChainedWithLcCloudBuffer() {
+        assertFusedEqualsChained(true, true);
+    }
+
+    @Test
+    public void testFusedEqualsChainedWithSimpleCloudBuffer() {
+        assertFusedEqualsChained(true, false);
+    }
+
+    @Test
+    public void testFusedEqualsChainedWithoutCoastlineRefinement() {
+        assertFusedEqualsChained(false, true);
+    }
+
+    private void assertFusedEqualsChained(boolean refineClassificationNearCoastlines, boolean lcCloudBuffer) {
+        // chained: the post-processing operator, then the cloud buffer operator as set up by GlobAlbedoOp
+        final GlobAlbedoMerisPostProcessOp postProcessOp = new GlobAlbedoMerisPostProcessOp();
+        postProcessOp.setSourceProduct("l1b", l1bProduct);
+        postProcessOp.setSourceProduct("merisCloud", classificationProduct);
+        postProcessOp.setSourceProduct("ctp", ctpProduct);
+        postProcessOp.setParameterDefaultValues();
+        postProcessOp.setParameter("cloudBufferWidth", CLOUD_BUFFER_WIDTH);
+        postProcessOp.setParameter("gaLcCloudBuffer", lcCloudBuffer);
+        postProcessOp.setParameter("gaComputeCloudBuffer", true);
+        postProcessOp.setParameter("gaComputeCloudShadow", false);
+        postProcessOp.setParameter("gaRefineClassificationNearCoastlines", refineClassificationNearCoastlines);
+        final Product postProcessedProduct = postProcessOp.getTargetProduct();
+
+        final CloudBufferOp cloudBufferOp = new CloudBufferOp();
+        cloudBufferOp.setSourceProduct("classifiedProduct", postProcessedProduct);
+        cloudBufferOp.setParameterDefaultValues();
+        cloudBufferOp.setParameter("cloudBufferWidth", CLOUD_BUFFER_WIDTH);
+        final Product chainedProduct = cloudBufferOp.getTargetProduct();
+        final Raster chainedFlags = chainedProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS).getSourceImage().getData();
+
+        // the tiling of the post-processing operator, which the fused cloud buffer has to reproduce
+        final RenderedImage postProcessedImage =
+                postProcessedProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS).getSourceImage();
+        final Dimension tileSize = new Dimension(postProcessedImage.getTileWidth(), postProcessedImage.getTileHeight());
+        assertTrue(tileSize.width < WIDTH && tileSize.height < HEIGHT);
+
+        // fused: everything per tile from the classification flags around it, as in GlobAlbedoMerisFusedOp
+        final GlobAlbedoMerisPostProcessing postProcessing =
+                new GlobAlbedoMerisPostProcessing(l1bProduct.getGeoCoding(), refineClassificationNearCoastlines,
+                                                  true, lcCloudBuffer, CLOUD_BUFFER_WIDTH, false);
+        final RectangleExtender rectCalculator = GlobAlbedoMerisPostProcessing.createRectangleExtender(l1bProduct,
+                                                                                                       false);
+        final RectangleExtender bufferRectCalculator = new RectangleExtender(sceneRectangle,
+                                                                             CLOUD_BUFFER_WIDTH,
+                                                                             CLOUD_BUFFER_WIDTH);
+        int numCloudBufferPixels = 0;
+        for (Rectangle rectangle : getTileRectangles(tileSize)) {
+            final Rectangle srcRectangle = rectCalculator.extend(rectangle);
+            final Rectangle bufferRectangle = bufferRectCalculator.extend(rectangle);
+            final Rectangle flagRectangle = GlobAlbedoMerisPostProcessing.getSourceFlagRectangle(srcRectangle,
+                                                                                                 bufferRectangle,
+                                                                                                 sceneRectangle);
+            final Tile sourceFlagTile = copyTile(classificationFlagTile, flagRectangle);
+            final Tile sourceWaterFractionTile = copyTile(waterFractionTile, flagRectangle);
+            final Tile targetTile = createTile(flagBand, rectangle);
+            postProcessing.postProcess(targetTile, srcRectangle, sourceFlagTile, sourceWaterFractionTile,
+                                       null, null, null, null);
+            postProcessing.computeCloudBuffer(targetTile, createTile(flagBand, bufferRectangle),
+                                              sourceFlagTile, sourceWaterFractionTile,
+                                              sceneRectangle, tileSize, rectCalculator);
+
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    assertEquals("flags at " + x + "," + y,
+                                 chainedFlags.getSample(x, y, 0), targetTile.getSampleInt(x, y));
+                    if (targetTile.getSampleBit(x, y, IdepixConstants.F_CLOUD_BUFFER)) {
+                        numCloudBufferPixels++;
+                    }
+                }
+            }
+        }
+        assertTrue(numCloudBufferPixels > 0);
+
+        chainedProduct.dispose();
+        postProcessedProduct.dispose();
+    }
+
+    private Rectangle[] getTileRectangles(Dimension tileSize) {
+        final int numTilesX = (WIDTH + tileSize.width - 1) / tileSize.width;
+        final int numTilesY = (HEIGHT + tileSize.height - 1) / tileSize.height;
+        final Rectangle[] rectangles = new Rectangle[numTilesX * numTilesY];
+        for (int tileY = 0; tileY < numTilesY; tileY++) {
+            for (int tileX = 0; tileX < numTilesX; tileX++) {
+                rectangles[tileY * numTilesX + tileX] = new Rectangle(tileX * tileSize.width,
+                                                                      tileY * tileSize.height,
+                                                                      tileSize.width,
+                                                                      tileSize.height).intersection(sceneRectangle);
+            }
+        }
+        return rectangles;
+    }
+
+    private static Product createProduct(String name) throws Exception {
+        final Product product = new Product(name, "MER_RR__1P", WIDTH, HEIGHT);
+        product.setStartTime(ProductData.UTC.parse("15-JUN-2005 10:00:00"));
+        product.setEndTime(ProductData.UTC.parse("15-JUN-2005 10:01:00"));
+        // 8.0E - 8.7E, 54.1N - 53.65N: Jade Bight, Weser and Elbe estuaries
+        product.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, WIDTH, HEIGHT, 8.0, 54.1, 0.01, 0.01));
+        product.setPreferredTileSize(24, 16);
+        return product;
+    }
+
+    private static void addTiePointGrid(Product product, String name, float value) {
+        final float[] tiePoints = new float[WIDTH * HEIGHT];
+        Arrays.fill(tiePoints, value);
+        product.addTiePointGrid(new TiePointGrid(name, WIDTH, HEIGHT, 0.5f, 0.5f, 1.0f, 1.0f, tiePoints));
+    }
+
+    private static Tile copyTile(Tile tile, Rectangle rectangle) {
+        final Tile copy = createTile((Band) tile.getRasterDataNode(), rectangle);
+        copySamples(tile, copy);
+        return copy;
+    }
+
+    private static void copySamples(Tile sourceTile, Tile targetTile) {
+        final Rectangle rectangle = targetTile.getRectangle().intersection(sourceTile.getRectangle());
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                targetTile.setSample(x, y, sourceTile.getSampleInt(x, y));
+            }
+        }
+    }
+
+    private static Tile createTile(Band band, Rectangle rectangle) {
+        return new TileImpl(band, Raster.createWritableRaster(
+                new BandedSampleModel(DataBuffer.TYPE_INT, rectangle.width, rectangle.height, 1),
+                rectangle.getLocation()));
+    }
+}
@@ -0,0 +1,95 @@
+package org.esa.beam.idepix.algorithms.occci;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.gpf.pointop.Sample;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the invalid pixel check of {@link OccciClassificationOp}.
+ */
+public class OccciClassificationOpTest {
+
+    private static final float NO_DATA = -999f;
+
+    private Band[] bands;
+
+    @Before
+    public void setUp() {
+        final Product product = new Product("P", "P", 1, 1);
+        bands = new Band[3];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = product.addBand("refl_" + (i + 1), ProductData.TYPE_FLOAT32);
+            bands[i].setNoDataValue(NO_DATA);
+            bands[i].setNoDataValueUsed(true);
+        }
+    }
+
+    @Test
+    public void testIsNoDataPixel_allInputsValid() {
+        assertFalse(OccciClassificationOp.isNoDataPixel(createSamples(0.1f, 0.2f, 0.3f), 0, 3));
+    }
+
+    @Test
+    public void testIsNoDataPixel_someInputsMissing() {
+        // e.g. MODIS ocean bands saturated over bright clouds: the pixel must still be classified
+        assertFalse(OccciClassificationOp.isNoDataPixel(createSamples(0.8f, Float.NaN, NO_DATA), 0, 3));
+        assertFalse(OccciClassificationOp.isNoDataPixel(createSamples(NO_DATA, NO_DATA, 0.3f), 0, 3));
+    }
+
+    @Test
+    public void testIsNoDataPixel_allInputsMissing() {
+        assertTrue(OccciClassificationOp.isNoDataPixel(createSamples(Float.NaN, NO_DATA, Float.NaN), 0, 3));
+        assertTrue(OccciClassificationOp.isNoDataPixel(createSamples(NO_DATA, NO_DATA, NO_DATA), 0, 3));
+    }
+
+    @Test
+    public void testIsNoDataPixel_noDataValueNotUsed() {
+        bands[2].setNoDataValueUsed(false);
+        assertFalse(OccciClassificationOp.isNoDataPixel(createSamples(NO_DATA, NO_DATA, NO_DATA), 0, 3));
+    }
+
+    @Test
+    public void testIsNoDataPixel_offset() {
+        // only the spectral inputs starting at the offset are checked
+        final Sample[] samples = createSamples(0.1f, Float.NaN, NO_DATA);
+        assertTrue(OccciClassificationOp.isNoDataPixel(samples, 1, 2));
+        assertFalse(OccciClassificationOp.isNoDataPixel(samples, 0, 2));
+    }
+
+    private Sample[] createSamples(float... values) {
+        final Sample[] samples = new Sample[values.length];
+        for (int i = 0; i < values.length; i++) {
+            samples[i] = createSample(bands[i], values[i]);
+        }
+        return samples;
+    }
+
+    private static Sample createSample(final RasterDataNode node, final float value) {
+        return (Sample) Proxy.newProxyInstance(Sample.class.getClassLoader(), new Class[]{Sample.class},
+                                               new InvocationHandler() {
+                                                   @Override
+                                                   public Object invoke(Object proxy, Method method, Object[] args) {
+                                                       switch (method.getName()) {
+                                                           case "getFloat":
+                                                               return value;
+                                                           case "getNode":
+                                                               return node;
+                                                           default:
+                                                               throw new UnsupportedOperationException(
+                                                                       method.getName());
+                                                       }
+                                                   }
+                                               });
+    }
+}
@@ -0,0 +1,104 @@
+package org.esa.beam.idepix.algorithms.occci;
+
+import org.esa.beam.idepix.util.SummedAreaTable;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Benchmark for the sea ice neighbour counting as done in {@link OccciMerisSeaiceEdgeOp}:
+ * compares the previous nested window loops with the summed-area table approach for a
+ * sweep of buffer widths on a global 4320x2160 L3 grid, processed in 512x512 tiles.
+ * <p/>
+ * Usage: SeaiceEdgeCountBenchmarkMain [maxBufferWidth]
+ */
+public class SeaiceEdgeCountBenchmarkMain {
+
+    private static final int WIDTH = 4320;
+    private static final int HEIGHT = 2160;
+    private static final int TILE_SIZE = 512;
+
+    public static void main(String[] args) {
+        final int maxBufferWidth = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final int[] seaice = createSeaiceGrid();
+
+        System.out.println("bufferWidth;windowLoopsMillis;summedAreaTableMillis;checksumsEqual");
+        for (int bufferWidth = 1; bufferWidth <= maxBufferWidth; bufferWidth *= 2) {
+            // warm up
+            countWithWindowLoops(seaice, bufferWidth);
+            countWithSummedAreaTable(seaice, bufferWidth);
+
+            long t0 = System.nanoTime();
+            final long checksumLoops = countWithWindowLoops(seaice, bufferWidth);
+            long t1 = System.nanoTime();
+            final long checksumSat = countWithSummedAreaTable(seaice, bufferWidth);
+            long t2 = System.nanoTime();
+            System.out.println(bufferWidth + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" +
+                                       (checksumLoops == checksumSat));
+        }
+    }
+
+    private static int[] createSeaiceGrid() {
+        // sea ice north of 60N and south of 60S, with a noisy ice edge
+        final Random random = new Random(1234);
+        final int[] seaice = new int[WIDTH * HEIGHT];
+        final int iceRows = HEIGHT / 6;
+        for (int y = 0; y < HEIGHT; y++) {
+            final int distanceToPole = Math.min(y, HEIGHT - 1 - y);
+            for (int x = 0; x < WIDTH; x++) {
+                final int edge = iceRows + random.nextInt(40) - 20;
+                seaice[y * WIDTH + x] = distanceToPole < edge ? 1 : 0;
+            }
+        }
+        return seaice;
+    }
+
+    private static long countWithWindowLoops(int[] seaice, int bufferWidth) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < HEIGHT; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < WIDTH; tileX += TILE_SIZE) {
+                final Rectangle rect = getTileRectangle(tileX, tileY);
+                for (int y = rect.y; y < rect.y + rect.height; y++) {
+                    for (int x = rect.x; x < rect.x + rect.width; x++) {
+                        int count = 0;
+                        for (int j = Math.max(y - bufferWidth, rect.y);
+                             j <= Math.min(y + bufferWidth, rect.y + rect.height - 1); j++) {
+                            for (int i = Math.max(x - bufferWidth, rect.x);
+                                 i <= Math.min(x + bufferWidth, rect.x + rect.width - 1); i++) {
+                                if (seaice[j * WIDTH + i] == 1) {
+                                    count++;
+                                }
+                            }
+                        }
+                        checksum += count;
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static long countWithSummedAreaTable(int[] seaice, int bufferWidth) {
+        long checksum = 0;
+        for (int tileY = 0; tileY < HEIGHT; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < WIDTH; tileX += TILE_SIZE) {
+                final Rectangle rect = getTileRectangle(tileX, tileY);
+                final int[] samples = new int[rect.width * rect.height];
+                for (int y = 0; y < rect.height; y++) {
+                    System.arraycopy(seaice, (rect.y + y) * WIDTH + rect.x, samples, y * rect.width, rect.width);
+                }
+                final SummedAreaTable sat = SummedAreaTable.createClassCount(samples, rect, 1);
+                for (int y = rect.y; y < rect.y + rect.height; y++) {
+                    for (int x = rect.x; x < rect.x + rect.width; x++) {
+                        checksum += sat.getCount(x - bufferWidth, y - bufferWidth, x + bufferWidth, y + bufferWidth);
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static Rectangle getTileRectangle(int tileX, int tileY) {
+        return new Rectangle(tileX, tileY, Math.min(TILE_SIZE, WIDTH - tileX), Math.min(TILE_SIZE, HEIGHT - tileY));
+    }
+}
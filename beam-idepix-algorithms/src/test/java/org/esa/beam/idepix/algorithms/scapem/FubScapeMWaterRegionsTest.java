@@ -0,0 +1,309 @@
+package org.esa.beam.idepix.algorithms.scapem;
+
+import org.junit.Test;
+
+import javax.media.jai.TiledImage;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FubScapeMWaterRegions} on synthetic rasters, tiled so that water regions and coastline buffers
+ * cross tile borders. The results are compared with the previous full-scene implementation of FubScapeMLakesOp,
+ * which is reproduced here as reference.
+ */
+public class FubScapeMWaterRegionsTest {
+
+    private static final int TILE_WIDTH = 16;
+    private static final int TILE_HEIGHT = 12;
+
+    @Test
+    public void testLakeVsOceanSizeThreshold() {
+        // two water regions of 12 and 11 pixels, separated by land
+        final String[] scene = {
+                "WWWW.....",
+                "WWWW..WWW",
+                "WWWW..WWW",
+                "......WWW",
+                "......WW.",
+        };
+        final FubScapeMWaterRegions regions = computeLakes(scene, 12);
+        assertRegionFlags(regions, 0, 0, FubScapeMWaterRegions.WATER_BIT);
+        assertRegionFlags(regions, 3, 2, FubScapeMWaterRegions.WATER_BIT);
+        assertRegionFlags(regions, 6, 1, FubScapeMWaterRegions.WATER_BIT | FubScapeMWaterRegions.LAKE_BIT);
+        assertRegionFlags(regions, 7, 4, FubScapeMWaterRegions.WATER_BIT | FubScapeMWaterRegions.LAKE_BIT);
+        assertRegionFlags(regions, 4, 0, 0);
+
+        // with a threshold of 11 both are ocean, with 13 both are lakes
+        assertRegionFlags(computeLakes(scene, 11), 6, 1, FubScapeMWaterRegions.WATER_BIT);
+        assertRegionFlags(computeLakes(scene, 13), 0, 0,
+                          FubScapeMWaterRegions.WATER_BIT | FubScapeMWaterRegions.LAKE_BIT);
+    }
+
+    @Test
+    public void testLabelsMergedAcrossRows() {
+        // the teeth of the comb are labelled separately and joined by row 2, all others only by the last row
+        final String[] scene = {
+                "W.W.W.W...W..W",
+                "W.W.W.W...W..W",
+                "W.WWWWW...W..W",
+                "W.W.......W..W",
+                "WWWWWWWWWWWWWW",
+        };
+        // 38 pixels in one region
+        final FubScapeMWaterRegions regions = computeLakes(scene, 38);
+        for (int y = 0; y < scene.length; y++) {
+            for (int x = 0; x < scene[y].length(); x++) {
+                final int expected = scene[y].charAt(x) == 'W' ? FubScapeMWaterRegions.WATER_BIT : 0;
+                assertRegionFlags(regions, x, y, expected);
+            }
+        }
+        assertRegionFlags(computeLakes(scene, 39), 0, 0,
+                          FubScapeMWaterRegions.WATER_BIT | FubScapeMWaterRegions.LAKE_BIT);
+    }
+
+    @Test
+    public void testCoastBufferThickness() {
+        final int width = 15;
+        final int height = 11;
+        final TiledImage coastlineImage = createImage(DataBuffer.TYPE_INT, width, height);
+        coastlineImage.setSample(7, 5, 0, 1);
+        for (int thickness = 0; thickness <= 4; thickness++) {
+            final FubScapeMWaterRegions regions = new FubScapeMWaterRegions(width, height);
+            regions.computeCoastBuffer(coastlineImage, thickness);
+            int numCoastPixels = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    // the diamond of the coastline pixel and its left neighbour
+                    final int dx = x - 7;
+                    final int dy = Math.abs(y - 5);
+                    final boolean expected = dy < thickness && dx >= -(thickness - dy) && dx < thickness - dy;
+                    assertEquals("coast at " + x + "," + y + ", thickness " + thickness,
+                                 expected, (regions.getFlags(x, y) & FubScapeMWaterRegions.COAST_BIT) != 0);
+                    if (expected) {
+                        numCoastPixels++;
+                    }
+                }
+            }
+            // 2 * thickness^2 pixels
+            assertEquals(2 * thickness * thickness, numCoastPixels);
+        }
+    }
+
+    @Test
+    public void testRandomSceneEqualsPreviousImplementation() {
+        final int width = 61;
+        final int height = 47;
+        final Random random = new Random(26);
+        final boolean[] isWater = new boolean[width * height];
+        for (int i = 0; i < 25; i++) {
+            final int cx = random.nextInt(width);
+            final int cy = random.nextInt(height);
+            final int r = 1 + random.nextInt(7);
+            for (int y = Math.max(0, cy - r); y < Math.min(height, cy + r + 1); y++) {
+                for (int x = Math.max(0, cx - r); x < Math.min(width, cx + r + 1); x++) {
+                    if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= r * r) {
+                        isWater[y * width + x] = true;
+                    }
+                }
+            }
+        }
+        final TiledImage waterFractionImage = createImage(DataBuffer.TYPE_FLOAT, width, height);
+        final TiledImage coastlineImage = createImage(DataBuffer.TYPE_INT, width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final boolean water = isWater[y * width + x];
+                waterFractionImage.setSample(x, y, 0, water ? 50.0f + random.nextInt(51) : random.nextInt(50));
+                final boolean isCoastline = water && (x == 0 || !isWater[y * width + x - 1] ||
+                        y == 0 || !isWater[(y - 1) * width + x]);
+                coastlineImage.setSample(x, y, 0, isCoastline ? 1 : 0);
+            }
+        }
+
+        final PreviousImplementation previous = new PreviousImplementation(waterFractionImage, coastlineImage);
+        for (int minimumOceanSize : new int[]{1, 20, 60, 150, 400}) {
+            for (int thickness : new int[]{1, 2, 5}) {
+                final FubScapeMWaterRegions regions = new FubScapeMWaterRegions(width, height);
+                regions.computeLakes(waterFractionImage, minimumOceanSize);
+                regions.computeCoastBuffer(coastlineImage, thickness);
+                final boolean[] previousCoast = previous.computeCoastRegions(thickness);
+                int numLakePixels = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        final int flags = regions.getFlags(x, y);
+                        final String pos = x + "," + y + " (" + minimumOceanSize + ", " + thickness + ")";
+                        assertEquals("coast at " + pos, previousCoast[y * width + x],
+                                     (flags & FubScapeMWaterRegions.COAST_BIT) != 0);
+                        assertEquals("water at " + pos, previous.getRegionId(x, y) != 0,
+                                     (flags & FubScapeMWaterRegions.WATER_BIT) != 0);
+                        final boolean isLake = (flags & FubScapeMWaterRegions.LAKE_BIT) != 0;
+                        if (previous.getRegionId(x, y) != 0) {
+                            // all pixels are counted now, the previous version missed the pixels joining regions
+                            assertEquals("lake at " + pos, previous.getPixelCount(x, y) < minimumOceanSize, isLake);
+                            if (previous.getRegionSize(x, y) >= minimumOceanSize ||
+                                    previous.getPixelCount(x, y) < minimumOceanSize) {
+                                assertEquals("previous lake at " + pos,
+                                             previous.getRegionSize(x, y) < minimumOceanSize, isLake);
+                            }
+                        }
+                        if (isLake) {
+                            numLakePixels++;
+                        }
+                    }
+                }
+                if (minimumOceanSize > 1) {
+                    assertTrue(numLakePixels > 0);
+                }
+            }
+        }
+    }
+
+    private static FubScapeMWaterRegions computeLakes(String[] scene, int minimumOceanSize) {
+        final int width = scene[0].length();
+        final int height = scene.length;
+        // tiles of 4x2 pixels, so that the regions cross tile borders
+        final TiledImage image = new TiledImage(0, 0, width, height, 0, 0,
+                                                new BandedSampleModel(DataBuffer.TYPE_FLOAT, 4, 2, 1), null);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setSample(x, y, 0, scene[y].charAt(x) == 'W' ? 75.0f : 10.0f);
+            }
+        }
+        final FubScapeMWaterRegions regions = new FubScapeMWaterRegions(width, height);
+        regions.computeLakes(image, minimumOceanSize);
+        return regions;
+    }
+
+    private static void assertRegionFlags(FubScapeMWaterRegions regions, int x, int y, int expected) {
+        assertEquals("flags at " + x + "," + y, expected, regions.getFlags(x, y));
+    }
+
+    private static TiledImage createImage(int dataType, int width, int height) {
+        return new TiledImage(0, 0, width, height, 0, 0,
+                              new BandedSampleModel(dataType, TILE_WIDTH, TILE_HEIGHT, 1), null);
+    }
+
+    /**
+     * The lake and coast computation of FubScapeMLakesOp before the water regions were computed tile-wise.
+     */
+    private static class PreviousImplementation {
+
+        private final TiledImage waterFractionImage;
+        private final TiledImage coastlineImage;
+        private final int width;
+        private final int height;
+        private final int[][] lakeRegionMatrix;
+        private final List<Integer> regionSizes;
+        private final List<List<Integer>> regions;
+
+        private PreviousImplementation(TiledImage waterFractionImage, TiledImage coastlineImage) {
+            this.waterFractionImage = waterFractionImage;
+            this.coastlineImage = coastlineImage;
+            width = waterFractionImage.getWidth();
+            height = waterFractionImage.getHeight();
+            lakeRegionMatrix = new int[width][height];
+            regionSizes = new ArrayList<>();
+            regionSizes.add(0);
+            regions = new ArrayList<>();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (waterFractionImage.getSampleFloat(x, y, 0) >= 50.0) {
+                        checkPixel(x, y);
+                    }
+                }
+            }
+        }
+
+        int getRegionId(int x, int y) {
+            return lakeRegionMatrix[x][y];
+        }
+
+        // the size as computed by the previous version
+        int getRegionSize(int x, int y) {
+            int size = 0;
+            for (Integer subRegion : getRegion(lakeRegionMatrix[x][y])) {
+                size += regionSizes.get(subRegion);
+            }
+            return size;
+        }
+
+        // the number of pixels of the region
+        int getPixelCount(int x, int y) {
+            final List<Integer> region = getRegion(lakeRegionMatrix[x][y]);
+            int count = 0;
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    if (region.contains(lakeRegionMatrix[i][j])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        boolean[] computeCoastRegions(int thicknessOfCoastInPixels) {
+            final boolean[] coast = new boolean[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (coastlineImage.getSample(x, y, 0) != 0) {
+                        for (int i = -thicknessOfCoastInPixels; i < thicknessOfCoastInPixels; i++) {
+                            int offset = -Math.abs(i) + thicknessOfCoastInPixels;
+                            for (int j = -offset; j < offset; j++) {
+                                if (isInBounds(x + j, y + i)) {
+                                    coast[(y + i) * width + x + j] = true;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return coast;
+        }
+
+        private List<Integer> getRegion(int regionID) {
+            for (List<Integer> region : regions) {
+                if (region.contains(regionID)) {
+                    return region;
+                }
+            }
+            throw new IllegalStateException("No region " + regionID);
+        }
+
+        private void checkPixel(int x, int y) {
+            int leftPixelRegionID = (isInBounds(x - 1, y)) ? lakeRegionMatrix[x - 1][y] : 0;
+            int upperPixelRegionID = (isInBounds(x, y - 1)) ? lakeRegionMatrix[x][y - 1] : 0;
+            if (leftPixelRegionID == 0 && upperPixelRegionID == 0) {
+                int regionID = regionSizes.size();
+                lakeRegionMatrix[x][y] = regionID;
+                regionSizes.add(1);
+                final List<Integer> region = new ArrayList<>();
+                region.add(regionID);
+                regions.add(region);
+            } else if (leftPixelRegionID == 0) {
+                lakeRegionMatrix[x][y] = upperPixelRegionID;
+                regionSizes.set(upperPixelRegionID, regionSizes.get(upperPixelRegionID) + 1);
+            } else if (upperPixelRegionID == 0 || leftPixelRegionID == upperPixelRegionID) {
+                lakeRegionMatrix[x][y] = leftPixelRegionID;
+                regionSizes.set(leftPixelRegionID, regionSizes.get(leftPixelRegionID) + 1);
+            } else {
+                // the joining pixel was not counted
+                lakeRegionMatrix[x][y] = upperPixelRegionID;
+                final List<Integer> firstRegion = getRegion(upperPixelRegionID);
+                final List<Integer> secondRegion = getRegion(leftPixelRegionID);
+                if (firstRegion != secondRegion) {
+                    firstRegion.addAll(secondRegion);
+                    regions.remove(secondRegion);
+                }
+            }
+        }
+
+        private boolean isInBounds(int x, int y) {
+            return x >= 0 && y >= 0 && x < width && y < height;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.esa.beam.idepix.batch;
+
+import org.esa.beam.idepix.AlgorithmSelector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of an Idepix batch run, parsed from the command line arguments of {@link IdepixBatchMain}.
+ */
+public class IdepixBatchConfig {
+
+    static final String DEFAULT_FORMAT_NAME = "BEAM-DIMAP";
+
+    static final String USAGE =
+            "Usage: idepix-batch -a <algorithm> [options] <input> [<input> ...]\n" +
+            "\n" +
+            "  <input>              input product file, the file name may contain the glob wildcards * ? [ ] { }\n" +
+            "  -a <algorithm>       algorithm (" + getAlgorithmNames() + ") or operator alias\n" +
+            "  -P <name>=<value>    operator parameter, may be given several times\n" +
+            "  -l <file>            file with one input product per line\n" +
+            "  -o <dir>             output directory, default is the current directory\n" +
+            "  -f <format>          output format, default is " + DEFAULT_FORMAT_NAME + "\n" +
+            "  -j <int>             number of products processed in parallel, default is 1\n" +
+            "  -c <int>             JAI tile cache size in MB\n";
+
+    private static final Map<AlgorithmSelector, String> OPERATOR_ALIASES = new LinkedHashMap<>();
+
+    static {
+        OPERATOR_ALIASES.put(AlgorithmSelector.IPF, "idepix.ipf");
+        OPERATOR_ALIASES.put(AlgorithmSelector.GlobAlbedo, "Idepix.Land");
+        OPERATOR_ALIASES.put(AlgorithmSelector.AvhrrAc, "idepix.avhrrac");
+        OPERATOR_ALIASES.put(AlgorithmSelector.Cawa, "idepix.cawa");
+        OPERATOR_ALIASES.put(AlgorithmSelector.GlobCover, "idepix.globcover");
+        OPERATOR_ALIASES.put(AlgorithmSelector.CoastColour, "Idepix.Water");
+        OPERATOR_ALIASES.put(AlgorithmSelector.MagicStick, "idepix.magicstick");
+        OPERATOR_ALIASES.put(AlgorithmSelector.Schiller, "idepix.schiller");
+        OPERATOR_ALIASES.put(AlgorithmSelector.Occci, "idepix.occci");
+        OPERATOR_ALIASES.put(AlgorithmSelector.Landsat8, "idepix.landsat8");
+        OPERATOR_ALIASES.put(AlgorithmSelector.FubScapeM, "idepix.scapem");
+    }
+
+    private String operatorAlias;
+    private final Map<String, String> parameters = new LinkedHashMap<>();
+    private final List<File> inputFiles = new ArrayList<>();
+    private File outputDir = new File(".");
+    private String formatName = DEFAULT_FORMAT_NAME;
+    private int numParallelProducts = 1;
+    private int tileCacheSizeMB = -1;
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args - the command line arguments
+     *
+     * @return the batch configuration
+     * @throws IllegalArgumentException if the arguments are invalid
+     * @throws IOException              if an input list or an input directory cannot be read
+     */
+    public static IdepixBatchConfig parse(String[] args) throws IOException {
+        final IdepixBatchConfig config = new IdepixBatchConfig();
+        final List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.startsWith("-") && arg.length() > 1) {
+                final String value = getOptionValue(args, ++i, arg);
+                switch (arg) {
+                    case "-a":
+                        config.operatorAlias = getOperatorAlias(value);
+                        break;
+                    case "-P":
+                        final int index = value.indexOf('=');
+                        if (index <= 0) {
+                            throw new IllegalArgumentException("Parameter must be given as <name>=<value>: " + value);
+                        }
+                        config.parameters.put(value.substring(0, index), value.substring(index + 1));
+                        break;
+                    case "-l":
+                        inputs.addAll(readInputList(new File(value)));
+                        break;
+                    case "-o":
+                        config.outputDir = new File(value);
+                        break;
+                    case "-f":
+                        config.formatName = value;
+                        break;
+                    case "-j":
+                        config.numParallelProducts = getPositiveInt(value, arg);
+                        break;
+                    case "-c":
+                        config.tileCacheSizeMB = getPositiveInt(value, arg);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (config.operatorAlias == null) {
+            throw new IllegalArgumentException("No algorithm given.");
+        }
+        for (String input : inputs) {
+            config.inputFiles.addAll(expandInput(input));
+        }
+        if (config.inputFiles.isEmpty()) {
+            throw new IllegalArgumentException("No input products given.");
+        }
+        return config;
+    }
+
+    /**
+     * Returns the operator alias for an algorithm name (see {@link AlgorithmSelector}). Other names are taken as
+     * operator aliases, so that any Idepix operator can be run in batch mode.
+     *
+     * @param algorithm - the algorithm name or operator alias
+     *
+     * @return the operator alias
+     */
+    static String getOperatorAlias(String algorithm) {
+        for (Map.Entry<AlgorithmSelector, String> entry : OPERATOR_ALIASES.entrySet()) {
+            if (entry.getKey().name().equalsIgnoreCase(algorithm)) {
+                return entry.getValue();
+            }
+        }
+        return algorithm;
+    }
+
+    /**
+     * Expands an input argument to the product files. A file name containing glob wildcards is matched against the
+     * files of its directory, the matches are sorted by name. Other arguments are taken as they are.
+     *
+     * @param input - the input argument
+     *
+     * @return the input product files
+     * @throws IOException if the directory cannot be read
+     */
+    static List<File> expandInput(String input) throws IOException {
+        final File file = new File(input);
+        final String name = file.getName();
+        if (!isGlob(name)) {
+            return Collections.singletonList(file);
+        }
+        final File dir = file.getParentFile() != null ? file.getParentFile() : new File(".");
+        final List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), name)) {
+            for (Path path : stream) {
+                files.add(path.toFile());
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static boolean isGlob(String name) {
+        for (char c : "*?[{".toCharArray()) {
+            if (name.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> readInputList(File listFile) throws IOException {
+        final List<String> inputs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(listFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    inputs.add(line);
+                }
+            }
+        }
+        return inputs;
+    }
+
+    private static String getOptionValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for option " + option);
+        }
+        return args[index];
+    }
+
+    private static int getPositiveInt(String value, String option) {
+        try {
+            final int intValue = Integer.parseInt(value);
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException ignored) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Value of option " + option + " must be a positive integer: " + value);
+    }
+
+    private static String getAlgorithmNames() {
+        final StringBuilder names = new StringBuilder();
+        for (AlgorithmSelector algorithm : AlgorithmSelector.values()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(algorithm.name());
+        }
+        return names.toString();
+    }
+
+    public String getOperatorAlias() {
+        return operatorAlias;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public List<File> getInputFiles() {
+        return inputFiles;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public int getNumParallelProducts() {
+        return numParallelProducts;
+    }
+
+    public int getTileCacheSizeMB() {
+        return tileCacheSizeMB;
+    }
+}
@@ -0,0 +1,50 @@
+package org.esa.beam.idepix.batch;
+
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.idepix.batch.IdepixBatchProcessor.Result;
+
+import javax.media.jai.JAI;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Command line tool which processes many L1 products with the same Idepix algorithm in one JVM, instead of one
+ * {@code gpt} call per product. See {@link IdepixBatchConfig#USAGE} for the arguments.
+ * <p/>
+ * Exits with 0 if all products have been processed, with 1 if a product failed and with 2 for invalid arguments.
+ */
+public class IdepixBatchMain {
+
+    public static void main(String[] args) {
+        final IdepixBatchConfig config;
+        try {
+            config = IdepixBatchConfig.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.print(IdepixBatchConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+        if (config.getTileCacheSizeMB() > 0) {
+            JAI.getDefaultInstance().getTileCache().setMemoryCapacity(config.getTileCacheSizeMB() * 1024L * 1024L);
+        }
+
+        final List<Result> results;
+        try {
+            results = new IdepixBatchProcessor(config, System.out).process();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        for (Result result : results) {
+            if (!result.isSucceeded()) {
+                System.exit(1);
+            }
+        }
+        System.exit(0);
+    }
+}
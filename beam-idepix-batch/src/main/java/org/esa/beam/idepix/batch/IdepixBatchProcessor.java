@@ -0,0 +1,249 @@
+package org.esa.beam.idepix.batch;
+
+import com.bc.ceres.binding.Property;
+import com.bc.ceres.binding.PropertyContainer;
+import com.bc.ceres.binding.PropertySet;
+import com.bc.ceres.binding.ValidationException;
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.dataio.ProductIOPlugInManager;
+import org.esa.beam.framework.dataio.ProductWriterPlugIn;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.annotations.ParameterDescriptorFactory;
+import org.esa.beam.idepix.util.NeuralNetWrapper;
+import org.esa.beam.idepix.util.SchillerNeuralNetWrapper;
+import org.esa.beam.util.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes a list of products with one Idepix operator in the same JVM, so that start-up, operator registration,
+ * neural nets and auxiliary data are paid once for the whole batch. The neural nets and auxdata tables are kept in
+ * their process-wide caches (see e.g. {@link SchillerNeuralNetWrapper#create}), the net caches are cleared at the
+ * end of the batch.
+ * <p/>
+ * Products are processed in a bounded pipeline: at most {@code numParallelProducts} products are opened at the same
+ * time, their tiles are computed by the shared JAI tile scheduler.
+ */
+public class IdepixBatchProcessor {
+
+    private static final String OUTPUT_NAME_SUFFIX = "_idepix";
+
+    private final IdepixBatchConfig config;
+    private final Map<String, Object> parameters;
+    private final String outputExtension;
+    private final PrintStream out;
+
+    public IdepixBatchProcessor(IdepixBatchConfig config, PrintStream out) {
+        this.config = config;
+        this.out = out;
+        parameters = convertParameters(config.getOperatorAlias(), config.getParameters());
+        outputExtension = getOutputExtension(config.getFormatName());
+    }
+
+    /**
+     * Processes all input products of the configuration and prints one report line per product and a summary.
+     *
+     * @return the results in the order of the input products
+     */
+    public List<Result> process() {
+        final List<File> inputFiles = config.getInputFiles();
+        if (!config.getOutputDir().isDirectory() && !config.getOutputDir().mkdirs()) {
+            throw new OperatorException("Cannot create output directory " + config.getOutputDir());
+        }
+
+        final long startTime = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(config.getNumParallelProducts());
+        final List<Future<Result>> futures = new ArrayList<>(inputFiles.size());
+        for (final File inputFile : inputFiles) {
+            futures.add(executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return processProduct(inputFile);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        final List<Result> results = new ArrayList<>(inputFiles.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Result result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new OperatorException("Batch processing interrupted", e);
+            } catch (ExecutionException e) {
+                result = new Result(inputFiles.get(i), null, 0L, e.getCause());
+            }
+            results.add(result);
+            out.println(result);
+        }
+        printSummary(results, System.nanoTime() - startTime);
+        // products of a later batch run in the same JVM read the nets again, the per-thread copies are only
+        // released when the tile scheduler threads end or expunge their stale thread local entries
+        SchillerNeuralNetWrapper.clearCache();
+        NeuralNetWrapper.clearCache();
+        return results;
+    }
+
+    private Result processProduct(File inputFile) {
+        final long startTime = System.nanoTime();
+        final File outputFile = new File(config.getOutputDir(),
+                                         FileUtils.getFilenameWithoutExtension(inputFile) +
+                                                 OUTPUT_NAME_SUFFIX + outputExtension);
+        Product sourceProduct = null;
+        Product targetProduct = null;
+        boolean writing = false;
+        try {
+            sourceProduct = ProductIO.readProduct(inputFile);
+            if (sourceProduct == null) {
+                throw new IOException("No reader found for " + inputFile);
+            }
+            targetProduct = GPF.createProduct(config.getOperatorAlias(), new HashMap<>(parameters), sourceProduct);
+            writing = true;
+            ProductIO.writeProduct(targetProduct, outputFile, config.getFormatName(), false, ProgressMonitor.NULL);
+            writing = false;
+            return new Result(inputFile, outputFile, System.nanoTime() - startTime, null);
+        } catch (Exception e) {
+            return new Result(inputFile, outputFile, System.nanoTime() - startTime, e);
+        } finally {
+            if (targetProduct != null) {
+                targetProduct.dispose();
+            }
+            if (sourceProduct != null) {
+                sourceProduct.dispose();
+            }
+            if (writing) {
+                deleteOutput(outputFile);
+            }
+        }
+    }
+
+    // a partly written product must not be mistaken for a result, for BEAM-DIMAP also the data directory is deleted
+    private static void deleteOutput(File outputFile) {
+        if (outputFile.isFile()) {
+            outputFile.delete();
+        }
+        final File dataDir = new File(outputFile.getParentFile(),
+                                      FileUtils.getFilenameWithoutExtension(outputFile) + ".data");
+        if (dataDir.isDirectory()) {
+            FileUtils.deleteTree(dataDir);
+        }
+    }
+
+    private void printSummary(List<Result> results, long nanos) {
+        int numSucceeded = 0;
+        long productNanos = 0L;
+        for (Result result : results) {
+            if (result.isSucceeded()) {
+                numSucceeded++;
+                productNanos += result.getNanos();
+            }
+        }
+        final double seconds = nanos * 1.0e-9;
+        out.printf("Processed %d of %d products in %.1f s with %d in parallel: %.1f products/hour",
+                   numSucceeded, results.size(), seconds, config.getNumParallelProducts(),
+                   numSucceeded * 3600.0 / seconds);
+        if (numSucceeded > 0) {
+            out.printf(", %.1f s per product", productNanos * 1.0e-9 / numSucceeded);
+        }
+        out.println();
+    }
+
+    // converts the parameter texts like gpt does, so that the operators get their parameter types
+    private static Map<String, Object> convertParameters(String operatorAlias, Map<String, String> parameterTexts) {
+        final OperatorSpi operatorSpi = GPF.getDefaultInstance().getOperatorSpiRegistry().getOperatorSpi(operatorAlias);
+        if (operatorSpi == null) {
+            throw new IllegalArgumentException("Unknown operator: " + operatorAlias);
+        }
+        final Map<String, Object> parameters = new HashMap<>();
+        final PropertySet propertySet = PropertyContainer.createMapBacked(parameters,
+                                                                          operatorSpi.getOperatorClass(),
+                                                                          new ParameterDescriptorFactory());
+        for (Map.Entry<String, String> entry : parameterTexts.entrySet()) {
+            final Property property = propertySet.getProperty(entry.getKey());
+            if (property == null) {
+                throw new IllegalArgumentException("Unknown parameter of operator " + operatorAlias + ": " +
+                                                           entry.getKey());
+            }
+            try {
+                property.setValueFromText(entry.getValue());
+            } catch (ValidationException e) {
+                throw new IllegalArgumentException("Invalid value of parameter " + entry.getKey() + ": " +
+                                                           e.getMessage(), e);
+            }
+        }
+        return parameters;
+    }
+
+    private static String getOutputExtension(String formatName) {
+        final Iterator<ProductWriterPlugIn> writerPlugIns =
+                ProductIOPlugInManager.getInstance().getWriterPlugIns(formatName);
+        if (!writerPlugIns.hasNext()) {
+            throw new IllegalArgumentException("Unknown output format: " + formatName);
+        }
+        final String[] extensions = writerPlugIns.next().getDefaultFileExtensions();
+        return extensions != null && extensions.length > 0 ? extensions[0] : "";
+    }
+
+    /**
+     * The outcome of processing one product.
+     */
+    public static class Result {
+
+        private final File inputFile;
+        private final File outputFile;
+        private final long nanos;
+        private final Throwable error;
+
+        Result(File inputFile, File outputFile, long nanos, Throwable error) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public File getInputFile() {
+            return inputFile;
+        }
+
+        public File getOutputFile() {
+            return outputFile;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSucceeded() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s\t%.1f s\t%s", inputFile.getName(), nanos * 1.0e-9,
+                                 isSucceeded() ? outputFile.getPath() : "FAILED: " + error.getMessage());
+        }
+    }
+}
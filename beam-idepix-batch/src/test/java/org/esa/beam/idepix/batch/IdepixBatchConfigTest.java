@@ -0,0 +1,94 @@
+package org.esa.beam.idepix.batch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdepixBatchConfigTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("idepix-batch").toFile();
+        for (String name : new String[]{"MER_RR_2.N1", "MER_RR_1.N1", "MER_FR_1.N1", "readme.txt"}) {
+            assertEquals(true, new File(dir, name).createNewFile());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testGetOperatorAlias() {
+        assertEquals("Idepix.Land", IdepixBatchConfig.getOperatorAlias("GlobAlbedo"));
+        assertEquals("idepix.cawa", IdepixBatchConfig.getOperatorAlias("cawa"));
+        assertEquals("idepix.avhrrac", IdepixBatchConfig.getOperatorAlias("AvhrrAc"));
+        assertEquals("idepix.globalbedo.meris.fused", IdepixBatchConfig.getOperatorAlias("idepix.globalbedo.meris.fused"));
+    }
+
+    @Test
+    public void testExpandInput() throws IOException {
+        final List<File> files = IdepixBatchConfig.expandInput(new File(dir, "MER_RR_*.N1").getPath());
+        assertEquals(2, files.size());
+        assertEquals("MER_RR_1.N1", files.get(0).getName());
+        assertEquals("MER_RR_2.N1", files.get(1).getName());
+
+        assertEquals(3, IdepixBatchConfig.expandInput(new File(dir, "*.N1").getPath()).size());
+        assertEquals(0, IdepixBatchConfig.expandInput(new File(dir, "*.dim").getPath()).size());
+        // no wildcards: taken as it is, also if the file does not exist
+        assertEquals(1, IdepixBatchConfig.expandInput(new File(dir, "MER_RR_3.N1").getPath()).size());
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        final File listFile = new File(dir, "inputs.txt");
+        try (Writer writer = new FileWriter(listFile)) {
+            writer.write("# products of the second day\n\n" + new File(dir, "MER_FR_1.N1").getPath() + "\n");
+        }
+        final IdepixBatchConfig config = IdepixBatchConfig.parse(new String[]{
+                "-a", "CoastColour", "-P", "ccOutputCloudProbabilityFeatureValue=true", "-P", "ccCloudBufferWidth=3",
+                "-j", "2", "-o", "out", "-l", listFile.getPath(), new File(dir, "MER_RR_*.N1").getPath()
+        });
+        assertEquals("Idepix.Water", config.getOperatorAlias());
+        assertEquals(2, config.getParameters().size());
+        assertEquals("3", config.getParameters().get("ccCloudBufferWidth"));
+        assertEquals(2, config.getNumParallelProducts());
+        assertEquals(new File("out"), config.getOutputDir());
+        assertEquals(IdepixBatchConfig.DEFAULT_FORMAT_NAME, config.getFormatName());
+        assertEquals(3, config.getInputFiles().size());
+        assertEquals("MER_FR_1.N1", config.getInputFiles().get(0).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithoutAlgorithm() throws IOException {
+        IdepixBatchConfig.parse(new String[]{new File(dir, "*.N1").getPath()});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithInvalidParameter() throws IOException {
+        IdepixBatchConfig.parse(new String[]{"-a", "Cawa", "-P", "=true", new File(dir, "*.N1").getPath()});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithInvalidNumParallelProducts() throws IOException {
+        IdepixBatchConfig.parse(new String[]{"-a", "Cawa", "-j", "0", new File(dir, "*.N1").getPath()});
+    }
+}
@@ -0,0 +1,88 @@
+package org.esa.beam.idepix.batch;
+
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.idepix.AlgorithmSelector;
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixUtils;
+
+import javax.media.jai.JAI;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Benchmark for the invalid pixel fast paths of the classification operators: computes the cloud flag band tile
+ * by tile and prints the number of tiles and the mean time per tile separately for tiles without, with some and with
+ * only invalid pixels. Meant for products with large invalid parts, e.g. with the swath edges of a MERIS orbit, a
+ * Landsat 8 scene with its fill border or MODIS swaths in polar night.
+ * <p/>
+ * Usage: IdepixInvalidPixelBenchmarkMain &lt;algorithm&gt; &lt;product&gt;
+ * <p/>
+ * e.g. IdepixInvalidPixelBenchmarkMain Landsat8 LC81960222013195LGN00_MTL.txt
+ */
+public class IdepixInvalidPixelBenchmarkMain {
+
+    private static final String[] TILE_KINDS = {"valid", "partly invalid", "invalid"};
+
+    public static void main(String[] args) throws IOException {
+        final String operatorAlias = IdepixBatchConfig.getOperatorAlias(AlgorithmSelector.valueOf(args[0]).name());
+        final File productFile = new File(args[1]);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+
+        System.out.println("run;tiles;millis;millisPerTile");
+        for (int run = 0; run < 2; run++) {
+            JAI.getDefaultInstance().getTileCache().flush();
+            final Product sourceProduct = ProductIO.readProduct(productFile);
+            final Product targetProduct = GPF.createProduct(operatorAlias, new HashMap<String, Object>(),
+                                                            sourceProduct);
+            final RenderedImage image = getCloudFlagBand(targetProduct).getSourceImage();
+            final int[] numTiles = new int[TILE_KINDS.length];
+            final long[] nanos = new long[TILE_KINDS.length];
+            for (int tileY = image.getMinTileY(); tileY < image.getMinTileY() + image.getNumYTiles(); tileY++) {
+                for (int tileX = image.getMinTileX(); tileX < image.getMinTileX() + image.getNumXTiles(); tileX++) {
+                    final long t0 = System.nanoTime();
+                    final Raster tile = image.getTile(tileX, tileY);
+                    final long t1 = System.nanoTime();
+                    final int kind = getTileKind(tile);
+                    numTiles[kind]++;
+                    nanos[kind] += t1 - t0;
+                }
+            }
+            for (int kind = 0; kind < TILE_KINDS.length; kind++) {
+                final long millis = nanos[kind] / 1000000;
+                System.out.println(run + ";" + numTiles[kind] + " " + TILE_KINDS[kind] + ";" + millis + ";" +
+                                           (numTiles[kind] > 0 ? millis / (double) numTiles[kind] : 0.0));
+            }
+            targetProduct.dispose();
+            sourceProduct.dispose();
+        }
+    }
+
+    private static Band getCloudFlagBand(Product targetProduct) {
+        for (String name : new String[]{IdepixUtils.IDEPIX_CLOUD_FLAGS, "pixel_classif_flags"}) {
+            final Band band = targetProduct.getBand(name);
+            if (band != null) {
+                return band;
+            }
+        }
+        throw new IllegalArgumentException("No cloud flag band in " + targetProduct.getName());
+    }
+
+    // 0 - no invalid pixel, 1 - some invalid pixels, 2 - all pixels invalid
+    private static int getTileKind(Raster tile) {
+        final int[] flags = tile.getSamples(tile.getMinX(), tile.getMinY(), tile.getWidth(), tile.getHeight(), 0,
+                                            (int[]) null);
+        int numInvalid = 0;
+        for (int flag : flags) {
+            if ((flag & (1 << IdepixConstants.F_INVALID)) != 0) {
+                numInvalid++;
+            }
+        }
+        return numInvalid == 0 ? 0 : numInvalid < flags.length ? 1 : 2;
+    }
+}
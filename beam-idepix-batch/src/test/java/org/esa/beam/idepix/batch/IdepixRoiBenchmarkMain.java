@@ -0,0 +1,94 @@
+package org.esa.beam.idepix.batch;
+
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.idepix.AlgorithmSelector;
+
+import javax.media.jai.JAI;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmark for the region of interest parameter of the Idepix algorithms: computes all tiles of all bands of the
+ * target product once for the whole scene and once with a <code>roiWkt</code> covering about 5% of the scene around
+ * its centre, and prints the times.
+ * <p/>
+ * Usage: IdepixRoiBenchmarkMain &lt;algorithm&gt; &lt;product&gt;
+ * <p/>
+ * e.g. IdepixRoiBenchmarkMain CoastColour MER_RR__1P.N1
+ */
+public class IdepixRoiBenchmarkMain {
+
+    // side length of the ROI relative to the scene, sqrt(0.05)
+    private static final double ROI_SIDE_FRACTION = Math.sqrt(0.05);
+
+    public static void main(String[] args) throws IOException {
+        final String operatorAlias = IdepixBatchConfig.getOperatorAlias(AlgorithmSelector.valueOf(args[0]).name());
+        final File productFile = new File(args[1]);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+
+        final Product product = ProductIO.readProduct(productFile);
+        final String roiWkt = createCentralRoiWkt(product);
+        product.dispose();
+        System.out.println("ROI: " + roiWkt);
+
+        System.out.println("run;roi;millis");
+        for (int run = 0; run < 2; run++) {
+            System.out.println(run + ";none;" + computeAllTiles(operatorAlias, productFile, null));
+            System.out.println(run + ";5%;" + computeAllTiles(operatorAlias, productFile, roiWkt));
+        }
+    }
+
+    private static long computeAllTiles(String operatorAlias, File productFile, String roiWkt) throws IOException {
+        JAI.getDefaultInstance().getTileCache().flush();
+        final long t0 = System.nanoTime();
+        final Product sourceProduct = ProductIO.readProduct(productFile);
+        final Map<String, Object> parameters = new HashMap<>();
+        if (roiWkt != null) {
+            parameters.put("roiWkt", roiWkt);
+        }
+        final Product targetProduct = GPF.createProduct(operatorAlias, parameters, sourceProduct);
+        for (Band band : targetProduct.getBands()) {
+            final RenderedImage image = band.getSourceImage();
+            for (int tileY = 0; tileY < image.getNumYTiles(); tileY++) {
+                for (int tileX = 0; tileX < image.getNumXTiles(); tileX++) {
+                    image.getTile(image.getMinTileX() + tileX, image.getMinTileY() + tileY);
+                }
+            }
+        }
+        final long t1 = System.nanoTime();
+        targetProduct.dispose();
+        sourceProduct.dispose();
+        return (t1 - t0) / 1000000;
+    }
+
+    private static String createCentralRoiWkt(Product product) {
+        final GeoCoding geoCoding = product.getGeoCoding();
+        final double w = product.getSceneRasterWidth();
+        final double h = product.getSceneRasterHeight();
+        final double x0 = 0.5 * w * (1.0 - ROI_SIDE_FRACTION);
+        final double y0 = 0.5 * h * (1.0 - ROI_SIDE_FRACTION);
+        final double x1 = w - x0;
+        final double y1 = h - y0;
+        final double[][] corners = {{x0, y0}, {x1, y0}, {x1, y1}, {x0, y1}, {x0, y0}};
+        final StringBuilder wkt = new StringBuilder("POLYGON((");
+        for (int i = 0; i < corners.length; i++) {
+            final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos((float) corners[i][0], (float) corners[i][1]),
+                                                      null);
+            if (i > 0) {
+                wkt.append(", ");
+            }
+            wkt.append(String.format(Locale.ENGLISH, "%.5f %.5f", geoPos.getLon(), geoPos.getLat()));
+        }
+        return wkt.append("))").toString();
+    }
+}
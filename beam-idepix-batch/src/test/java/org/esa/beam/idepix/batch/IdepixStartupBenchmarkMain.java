@@ -0,0 +1,67 @@
+package org.esa.beam.idepix.batch;
+
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.idepix.AlgorithmSelector;
+import org.esa.beam.idepix.util.IdepixUtils;
+
+import javax.media.jai.JAI;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Benchmark for the start-up time of the Idepix algorithms: measures the time from <code>GPF.createProduct</code> to
+ * the first tile of the cloud flag band (or of the first band if there is none) for each {@link AlgorithmSelector}
+ * value a product is given for. Every algorithm is run twice in the same JVM, the first run includes the loading of
+ * the nets and auxdata which the second run finds in the process-wide caches.
+ * <p/>
+ * Usage: IdepixStartupBenchmarkMain &lt;algorithm&gt;=&lt;product&gt; [&lt;algorithm&gt;=&lt;product&gt; ...]
+ * <p/>
+ * e.g. IdepixStartupBenchmarkMain Cawa=MER_RR__1P.N1 CoastColour=MER_RR__1P.N1 AvhrrAc=ao11_20010101.nc
+ */
+public class IdepixStartupBenchmarkMain {
+
+    public static void main(String[] args) throws IOException {
+        final Map<AlgorithmSelector, File> products = new LinkedHashMap<>();
+        for (String arg : args) {
+            final int index = arg.indexOf('=');
+            products.put(AlgorithmSelector.valueOf(arg.substring(0, index)), new File(arg.substring(index + 1)));
+        }
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+
+        System.out.println("algorithm;run;readMillis;createProductMillis;firstTileMillis;startupMillis");
+        for (AlgorithmSelector algorithm : AlgorithmSelector.values()) {
+            final File productFile = products.get(algorithm);
+            if (productFile == null) {
+                System.out.println(algorithm + ";no product given");
+                continue;
+            }
+            final String operatorAlias = IdepixBatchConfig.getOperatorAlias(algorithm.name());
+            for (int run = 0; run < 2; run++) {
+                JAI.getDefaultInstance().getTileCache().flush();
+                final long t0 = System.nanoTime();
+                final Product sourceProduct = ProductIO.readProduct(productFile);
+                final long t1 = System.nanoTime();
+                final Product targetProduct = GPF.createProduct(operatorAlias, new HashMap<String, Object>(),
+                                                                sourceProduct);
+                final long t2 = System.nanoTime();
+                getFirstTileBand(targetProduct).getSourceImage().getTile(0, 0);
+                final long t3 = System.nanoTime();
+                System.out.println(algorithm + ";" + run + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 +
+                                           ";" + (t3 - t2) / 1000000 + ";" + (t3 - t1) / 1000000);
+                targetProduct.dispose();
+                sourceProduct.dispose();
+            }
+        }
+    }
+
+    private static Band getFirstTileBand(Product targetProduct) {
+        final Band cloudFlagBand = targetProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        return cloudFlagBand != null ? cloudFlagBand : targetProduct.getBandAt(0);
+    }
+}
@@ -9,6 +9,11 @@ package org.esa.beam.idepix;
  * @author olafd
  */
 import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.morphology.FlagPlanes;
+import org.esa.beam.idepix.morphology.Morphology;
+import org.esa.beam.idepix.morphology.StructuringElement;
+import org.esa.beam.idepix.util.TileAccess;
 
 import java.awt.*;
 
@@ -37,6 +42,36 @@ public class CloudBuffer {
         }
     }
 
+    /**
+     * Tile-wide version of the simple cloud buffer: sets the cloud buffer flag for all target pixels within
+     * a square of half width <code>cloudBufferWidth</code> around a cloudy pixel of the source tile.
+     *
+     * @param sourceFlagTile     - the flag tile of the extended source rectangle
+     * @param targetTile         - the target tile, its rectangle must be contained in the source rectangle
+     * @param cloudBufferWidth   - the cloud buffer width
+     * @param cloudFlagBit       - the cloud flag bit
+     * @param cloudBufferFlagBit - the cloud buffer flag bit
+     */
+    public static void computeSimpleCloudBuffer(Tile sourceFlagTile,
+                                                Tile targetTile,
+                                                int cloudBufferWidth,
+                                                int cloudFlagBit,
+                                                int cloudBufferFlagBit) {
+        final Rectangle sourceRectangle = sourceFlagTile.getRectangle();
+        final Rectangle targetRectangle = targetTile.getRectangle();
+        final BitPlane cloud = BitPlane.createFromFlags(TileAccess.getInts(sourceFlagTile), sourceRectangle,
+                                                        sourceRectangle, cloudFlagBit);
+        if (cloud.isEmpty()) {
+            return;
+        }
+        final FlagPlanes buffer = new FlagPlanes(sourceRectangle);
+        buffer.set(cloudBufferFlagBit, Morphology.dilate(cloud, StructuringElement.square(cloudBufferWidth)));
+        // packs the buffer word by word instead of a setSample call per buffer pixel
+        final int[] targetFlags = targetTile.getSamplesInt();
+        buffer.orFlags(targetFlags, targetRectangle);
+        targetTile.setSamples(targetFlags);
+    }
+
     public static void computeCloudBufferLC(Tile targetTile, int cloudFlagBit, int cloudBufferFlagBit) {
         //  set alternative cloud buffer flag as used in LC-CCI project:
         // 1. use 2x2 square with reference pixel in upper left
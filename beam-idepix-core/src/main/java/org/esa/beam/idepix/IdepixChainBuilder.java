@@ -0,0 +1,110 @@
+package org.esa.beam.idepix;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Creates the intermediate products of an Idepix processing chain via {@link GPF#createProduct}.
+ * <p/>
+ * Requests are memoised by operator alias, parameters and source products, so that an operator which is
+ * requested several times with identical inputs within one chain is created, initialised and computed only
+ * once. Parameters are compared by value, source products by identity.
+ * <p/>
+ * A builder is meant to be used for a single chain, i.e. by one operator during its initialisation.
+ */
+public class IdepixChainBuilder {
+
+    private final Map<Key, Product> products;
+    private int requestCount;
+
+    public IdepixChainBuilder() {
+        products = new HashMap<>();
+    }
+
+    public Product createProduct(String operatorAlias, Map<String, Object> parameters, Product sourceProduct) {
+        final Map<String, Product> sourceProducts = new HashMap<>(1);
+        sourceProducts.put(GPF.SOURCE_PRODUCT_FIELD_NAME, sourceProduct);
+        return createProduct(operatorAlias, parameters, sourceProducts);
+    }
+
+    public Product createProduct(String operatorAlias, Map<String, Object> parameters,
+                                 Map<String, Product> sourceProducts) {
+        requestCount++;
+        final Key key = new Key(operatorAlias, parameters, sourceProducts);
+        Product product = products.get(key);
+        if (product == null) {
+            product = GPF.createProduct(operatorAlias, parameters, sourceProducts);
+            products.put(key, product);
+        }
+        return product;
+    }
+
+    /**
+     * @return the number of products requested from this builder
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return the number of products (i.e. operator instances) actually created by this builder
+     */
+    public int getCreatedProductCount() {
+        return products.size();
+    }
+
+    private static class Key {
+
+        private final String operatorAlias;
+        private final Map<String, Object> parameters;
+        private final Map<String, Product> sourceProducts;
+
+        private Key(String operatorAlias, Map<String, Object> parameters, Map<String, Product> sourceProducts) {
+            this.operatorAlias = operatorAlias;
+            // copies, so that later changes of the caller's maps do not affect the key
+            this.parameters = new TreeMap<>(parameters);
+            this.sourceProducts = new TreeMap<>();
+            for (Map.Entry<String, Product> entry : sourceProducts.entrySet()) {
+                // a missing optional source is the same as no entry
+                if (entry.getValue() != null) {
+                    this.sourceProducts.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            if (!operatorAlias.equals(other.operatorAlias) || !parameters.equals(other.parameters) ||
+                    !sourceProducts.keySet().equals(other.sourceProducts.keySet())) {
+                return false;
+            }
+            for (Map.Entry<String, Product> entry : sourceProducts.entrySet()) {
+                if (entry.getValue() != other.sourceProducts.get(entry.getKey())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = operatorAlias.hashCode();
+            hash = 31 * hash + parameters.hashCode();
+            for (Map.Entry<String, Product> entry : sourceProducts.entrySet()) {
+                hash = 31 * hash + entry.getKey().hashCode() + System.identityHashCode(entry.getValue());
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.esa.beam.idepix.morphology;
+
+import java.awt.*;
+
+/**
+ * A binary mask of a tile (e.g. one flag of a classification flag band), packed into <code>long</code>
+ * words, row by row. Bit <code>x % 64</code> of word <code>x / 64</code> of a row holds the pixel at
+ * column <code>x</code>, so that neighbourhood operations work on 64 pixels per word operation.
+ * <p/>
+ * Pixel coordinates are relative to the upper left corner of the plane. Pixels outside the plane are
+ * considered as not set.
+ */
+public class BitPlane {
+
+    private final int width;
+    private final int height;
+    // package-local for the algorithms in Morphology
+    final int wordsPerRow;
+    final long lastWordMask;
+    final long[] words;
+
+    public BitPlane(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid bit plane size: " + width + " x " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        final int remainder = width & 63;
+        this.lastWordMask = remainder == 0 ? -1L : (1L << remainder) - 1;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Creates a bit plane for the given rectangle from a flag raster.
+     *
+     * @param flags          - the flag samples, line by line
+     * @param flagsRectangle - the rectangle covered by the flag samples
+     * @param planeRectangle - the rectangle of the plane, must be contained in the flags rectangle
+     * @param flagBit        - the flag bit to extract
+     *
+     * @return the bit plane
+     */
+    public static BitPlane createFromFlags(int[] flags, Rectangle flagsRectangle, Rectangle planeRectangle,
+                                           int flagBit) {
+        if (!flagsRectangle.contains(planeRectangle)) {
+            throw new IllegalArgumentException("Plane rectangle " + planeRectangle +
+                                                       " not contained in " + flagsRectangle);
+        }
+        final BitPlane plane = new BitPlane(planeRectangle.width, planeRectangle.height);
+        final int flagMask = 1 << flagBit;
+        for (int y = 0; y < plane.height; y++) {
+            final int srcOffset = (planeRectangle.y - flagsRectangle.y + y) * flagsRectangle.width +
+                    planeRectangle.x - flagsRectangle.x;
+            final int rowOffset = y * plane.wordsPerRow;
+            for (int x = 0; x < plane.width; x++) {
+                if ((flags[srcOffset + x] & flagMask) != 0) {
+                    plane.words[rowOffset + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return plane;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y, boolean value) {
+        final int index = y * wordsPerRow + (x >>> 6);
+        if (value) {
+            words[index] |= 1L << x;
+        } else {
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * @return the number of set pixels in the 3x3 box centered at (x, y), the center included
+     */
+    public int count3x3(int x, int y) {
+        int count = 0;
+        for (int j = y - 1; j <= y + 1; j++) {
+            for (int i = x - 1; i <= x + 1; i++) {
+                if (get(i, j)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the pixel at (x, y) is surrounded by set pixels, see {@link Morphology#isSurrounded(int)}
+     */
+    public boolean isSurrounded(int x, int y) {
+        return Morphology.isSurrounded(count3x3(x, y));
+    }
+
+    public BitPlane copy() {
+        final BitPlane copy = new BitPlane(width, height);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    /**
+     * @param x      - the left border of the part to copy
+     * @param y      - the upper border of the part to copy
+     * @param width  - the width of the part to copy
+     * @param height - the height of the part to copy
+     *
+     * @return a new plane holding the given part of this plane, pixels outside this plane are not set
+     */
+    public BitPlane crop(int x, int y, int width, int height) {
+        final BitPlane result = new BitPlane(width, height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                if (get(x + i, y + j)) {
+                    result.set(i, j, true);
+                }
+            }
+        }
+        return result;
+    }
+
+    public BitPlane and(BitPlane other) {
+        checkSize(other);
+        final BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] & other.words[i];
+        }
+        return result;
+    }
+
+    public BitPlane or(BitPlane other) {
+        checkSize(other);
+        final BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] | other.words[i];
+        }
+        return result;
+    }
+
+    public BitPlane andNot(BitPlane other) {
+        checkSize(other);
+        final BitPlane result = new BitPlane(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] & ~other.words[i];
+        }
+        return result;
+    }
+
+    /**
+     * Dilation with a 3x3 box: a pixel is set if any pixel of its 3x3 neighbourhood is set.
+     *
+     * @return the dilated plane
+     */
+    public BitPlane dilate3x3() {
+        final long[] horizontal = new long[words.length];
+        for (int y = 0; y < height; y++) {
+            shiftOrRow(words, y * wordsPerRow, horizontal);
+        }
+        final BitPlane result = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            final int offset = y * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                long value = horizontal[offset + w];
+                if (y > 0) {
+                    value |= horizontal[offset - wordsPerRow + w];
+                }
+                if (y < height - 1) {
+                    value |= horizontal[offset + wordsPerRow + w];
+                }
+                result.words[offset + w] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Erosion with a 3x3 box: a pixel stays set if all pixels of its 3x3 neighbourhood which are inside
+     * the plane are set (i.e. the neighbourhood is clipped at the plane border).
+     *
+     * @return the eroded plane
+     */
+    public BitPlane erode3x3() {
+        return complement().dilate3x3().complement();
+    }
+
+    /**
+     * @return the plane with all pixels inverted
+     */
+    public BitPlane complement() {
+        final BitPlane result = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            final int offset = y * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                result.words[offset + w] = ~words[offset + w];
+            }
+            result.words[offset + wordsPerRow - 1] &= lastWordMask;
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if all pixels of the plane are set
+     */
+    public boolean isFull() {
+        for (int y = 0; y < height; y++) {
+            final int offset = y * wordsPerRow;
+            for (int w = 0; w < wordsPerRow - 1; w++) {
+                if (words[offset + w] != -1L) {
+                    return false;
+                }
+            }
+            if (words[offset + wordsPerRow - 1] != lastWordMask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ORs each pixel of a row with its left and right neighbour
+    private void shiftOrRow(long[] src, int offset, long[] dst) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            final long word = src[offset + w];
+            final long fromLeft = (word << 1) | (w > 0 ? src[offset + w - 1] >>> 63 : 0L);
+            final long fromRight = (word >>> 1) | (w < wordsPerRow - 1 ? src[offset + w + 1] << 63 : 0L);
+            dst[offset + w] = word | fromLeft | fromRight;
+        }
+        dst[offset + wordsPerRow - 1] &= lastWordMask;
+    }
+
+    private void checkSize(BitPlane other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Bit planes differ in size");
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.esa.beam.idepix.morphology;
+
+import java.awt.*;
+
+/**
+ * The flags of a tile of a classification flag band (e.g. <code>cloud_classif_flags</code>), unpacked into
+ * one {@link BitPlane} per flag bit. Unpacking and packing work on the whole raster in one pass, so that
+ * tile-wide flag logic can be done with word-parallel plane operations instead of per-pixel
+ * <code>Tile.getSampleBit</code> and <code>Tile.setSample</code> calls, e.g. for the cloud buffer:
+ * <pre>
+ *     final FlagPlanes planes = FlagPlanes.createFromFlags(flags, rectangle, rectangle, F_CLOUD, F_CLOUD_BUFFER);
+ *     final BitPlane cloud = planes.get(F_CLOUD);
+ *     final BitPlane buffer = Morphology.dilate(cloud, StructuringElement.square(2));
+ *     planes.set(F_CLOUD_BUFFER, planes.get(F_CLOUD_BUFFER).or(buffer).andNot(cloud));
+ *     planes.writeFlags(flags, rectangle);
+ * </pre>
+ */
+public class FlagPlanes {
+
+    private static final int NUM_FLAG_BITS = 32;
+
+    private final Rectangle rectangle;
+    private final BitPlane[] planes;
+
+    /**
+     * Creates flag planes without any flag bit.
+     *
+     * @param rectangle - the rectangle covered by the planes (image coordinates)
+     */
+    public FlagPlanes(Rectangle rectangle) {
+        this.rectangle = new Rectangle(rectangle);
+        this.planes = new BitPlane[NUM_FLAG_BITS];
+    }
+
+    /**
+     * Unpacks flag bits from a flag raster.
+     *
+     * @param flags          - the flag samples, line by line
+     * @param flagsRectangle - the rectangle covered by the flag samples
+     * @param planeRectangle - the rectangle of the planes, must be contained in the flags rectangle
+     * @param flagBits       - the flag bits to unpack, all 32 bits if none are given
+     *
+     * @return the flag planes
+     */
+    public static FlagPlanes createFromFlags(int[] flags, Rectangle flagsRectangle, Rectangle planeRectangle,
+                                             int... flagBits) {
+        if (!flagsRectangle.contains(planeRectangle)) {
+            throw new IllegalArgumentException("Plane rectangle " + planeRectangle +
+                                                       " not contained in " + flagsRectangle);
+        }
+        final FlagPlanes flagPlanes = new FlagPlanes(planeRectangle);
+        final int flagMask = flagBits.length == 0 ? -1 : getFlagMask(flagBits);
+        final long[][] words = new long[NUM_FLAG_BITS][];
+        for (int bit = 0; bit < NUM_FLAG_BITS; bit++) {
+            if ((flagMask & (1 << bit)) != 0) {
+                flagPlanes.planes[bit] = new BitPlane(planeRectangle.width, planeRectangle.height);
+                words[bit] = flagPlanes.planes[bit].words;
+            }
+        }
+        final int wordsPerRow = (planeRectangle.width + 63) >>> 6;
+        for (int y = 0; y < planeRectangle.height; y++) {
+            final int srcOffset = (planeRectangle.y - flagsRectangle.y + y) * flagsRectangle.width +
+                    planeRectangle.x - flagsRectangle.x;
+            final int rowOffset = y * wordsPerRow;
+            for (int x = 0; x < planeRectangle.width; x++) {
+                // visit only the bits which are set
+                int value = flags[srcOffset + x] & flagMask;
+                while (value != 0) {
+                    words[Integer.numberOfTrailingZeros(value)][rowOffset + (x >>> 6)] |= 1L << x;
+                    value &= value - 1;
+                }
+            }
+        }
+        return flagPlanes;
+    }
+
+    public Rectangle getRectangle() {
+        return new Rectangle(rectangle);
+    }
+
+    /**
+     * @param flagBit - the flag bit
+     *
+     * @return true if the planes hold the given flag bit
+     */
+    public boolean contains(int flagBit) {
+        return planes[flagBit] != null;
+    }
+
+    /**
+     * @param flagBit - the flag bit
+     *
+     * @return the plane of the flag bit, an empty plane if the flag bit is not contained
+     */
+    public BitPlane get(int flagBit) {
+        final BitPlane plane = planes[flagBit];
+        return plane != null ? plane : new BitPlane(rectangle.width, rectangle.height);
+    }
+
+    /**
+     * Sets (or replaces) the plane of a flag bit.
+     *
+     * @param flagBit - the flag bit
+     * @param plane   - the plane, must have the size of the rectangle
+     */
+    public void set(int flagBit, BitPlane plane) {
+        if (plane.getWidth() != rectangle.width || plane.getHeight() != rectangle.height) {
+            throw new IllegalArgumentException("Bit plane differs in size from " + rectangle);
+        }
+        planes[flagBit] = plane;
+    }
+
+    /**
+     * Packs the contained flag bits into a flag raster: within the intersection of the flags rectangle with the
+     * rectangle of the planes, the contained flag bits are replaced by the planes. All other flag bits and all
+     * samples outside of the planes are left untouched.
+     *
+     * @param flags          - the flag samples, line by line
+     * @param flagsRectangle - the rectangle covered by the flag samples
+     */
+    public void writeFlags(int[] flags, Rectangle flagsRectangle) {
+        writeFlags(flags, flagsRectangle, true);
+    }
+
+    /**
+     * Like {@link #writeFlags(int[], Rectangle)}, but the contained flag bits are only set where the planes are set
+     * and kept otherwise, i.e. the planes are ORed into the flag raster.
+     *
+     * @param flags          - the flag samples, line by line
+     * @param flagsRectangle - the rectangle covered by the flag samples
+     */
+    public void orFlags(int[] flags, Rectangle flagsRectangle) {
+        writeFlags(flags, flagsRectangle, false);
+    }
+
+    /**
+     * @return the contained flag bits packed into a new flag raster covering the rectangle of the planes
+     */
+    public int[] toFlags() {
+        final int[] flags = new int[rectangle.width * rectangle.height];
+        writeFlags(flags, rectangle);
+        return flags;
+    }
+
+    private void writeFlags(int[] flags, Rectangle flagsRectangle, boolean replace) {
+        final Rectangle area = flagsRectangle.intersection(rectangle);
+        if (area.isEmpty()) {
+            return;
+        }
+        int containedMask = 0;
+        for (int bit = 0; bit < NUM_FLAG_BITS; bit++) {
+            if (planes[bit] != null) {
+                containedMask |= 1 << bit;
+            }
+        }
+        if (containedMask == 0) {
+            return;
+        }
+        final int px0 = area.x - rectangle.x;
+        final int px1 = px0 + area.width;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            // flags index of plane column 0
+            final int dstOffset = (y - flagsRectangle.y) * flagsRectangle.width + rectangle.x - flagsRectangle.x;
+            if (replace) {
+                for (int i = dstOffset + px0; i < dstOffset + px1; i++) {
+                    flags[i] &= ~containedMask;
+                }
+            }
+            for (int bit = 0; bit < NUM_FLAG_BITS; bit++) {
+                final BitPlane plane = planes[bit];
+                if (plane != null) {
+                    orRow(plane, y - rectangle.y, px0, px1, flags, dstOffset, 1 << bit);
+                }
+            }
+        }
+    }
+
+    // sets the flag mask in the flags of all set pixels in [px0, px1) of a plane row
+    private static void orRow(BitPlane plane, int py, int px0, int px1, int[] flags, int dstOffset, int flagMask) {
+        final int rowOffset = py * plane.wordsPerRow;
+        for (int w = px0 >>> 6; w <= (px1 - 1) >>> 6; w++) {
+            long word = plane.words[rowOffset + w];
+            final int wordStart = w << 6;
+            if (wordStart < px0) {
+                word &= -1L << (px0 - wordStart);
+            }
+            if (wordStart + 64 > px1) {
+                word &= (1L << (px1 - wordStart)) - 1;
+            }
+            while (word != 0L) {
+                flags[dstOffset + wordStart + Long.numberOfTrailingZeros(word)] |= flagMask;
+                word &= word - 1;
+            }
+        }
+    }
+
+    private static int getFlagMask(int[] flagBits) {
+        int flagMask = 0;
+        for (int flagBit : flagBits) {
+            flagMask |= 1 << flagBit;
+        }
+        return flagMask;
+    }
+}
@@ -0,0 +1,313 @@
+package org.esa.beam.idepix.morphology;
+
+/**
+ * Binary morphology on {@link BitPlane}s. The cost per pixel does not depend on the radius of the
+ * structuring element:
+ * <ul>
+ * <li>squares are decomposed into a horizontal and a vertical line. The horizontal line works on packed
+ * words by shift/OR doubling, the vertical line uses the van Herk/Gil-Werman algorithm.</li>
+ * <li>diamonds and discs are derived from a city-block resp. exact euclidean (Meijster) distance transform.</li>
+ * </ul>
+ * Neighbourhoods are clipped at the plane border: pixels outside the plane are ignored, i.e. they count as
+ * not set for a dilation and as set for an erosion.
+ */
+public class Morphology {
+
+    /**
+     * The minimum number of set pixels in the 3x3 box around a pixel, the pixel itself included, for the pixel to
+     * be surrounded (i.e. 70% of the box).
+     */
+    public static final int MIN_SURROUNDING_COUNT_3X3 = 7;
+
+    private Morphology() {
+    }
+
+    /**
+     * The test used by the post-processing operators whether a pixel is surrounded by flagged pixels, e.g. a
+     * cloud by other clouds.
+     *
+     * @param count3x3 - the number of set pixels in the 3x3 box around the pixel, the pixel itself included
+     *
+     * @return true if at least {@link #MIN_SURROUNDING_COUNT_3X3} pixels are set
+     */
+    public static boolean isSurrounded(int count3x3) {
+        return count3x3 >= MIN_SURROUNDING_COUNT_3X3;
+    }
+
+    /**
+     * A pixel is set in the result if any pixel of the structuring element around it is set.
+     */
+    public static BitPlane dilate(BitPlane plane, StructuringElement element) {
+        final int radius = element.getRadius();
+        if (radius == 0) {
+            return plane.copy();
+        }
+        switch (element.getShape()) {
+            case SQUARE:
+                return dilateSquare(plane, radius);
+            case DIAMOND:
+                return dilateDiamond(plane, radius);
+            case DISC:
+                return dilateDisc(plane, radius);
+            default:
+                throw new IllegalArgumentException("Unsupported structuring element " + element);
+        }
+    }
+
+    /**
+     * A pixel is set in the result if all pixels of the structuring element around it are set.
+     */
+    public static BitPlane erode(BitPlane plane, StructuringElement element) {
+        // structuring elements are symmetric, so erosion is the dual of dilation
+        return dilate(plane.complement(), element).complement();
+    }
+
+    /**
+     * Erosion followed by dilation, removes structures smaller than the structuring element.
+     */
+    public static BitPlane open(BitPlane plane, StructuringElement element) {
+        return dilate(erode(plane, element), element);
+    }
+
+    /**
+     * Dilation followed by erosion, fills gaps smaller than the structuring element.
+     */
+    public static BitPlane close(BitPlane plane, StructuringElement element) {
+        return erode(dilate(plane, element), element);
+    }
+
+    static BitPlane dilateSquare(BitPlane plane, int radius) {
+        final BitPlane horizontal = dilateHorizontal(plane, radius);
+        return dilateVertical(horizontal, radius);
+    }
+
+    static BitPlane dilateDiamond(BitPlane plane, int radius) {
+        final int width = plane.getWidth();
+        final int height = plane.getHeight();
+        // larger than any distance within the plane and than the radius
+        final int infinity = width + height + radius + 1;
+        final int[] distance = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                distance[y * width + x] = plane.get(x, y) ? 0 : infinity;
+            }
+        }
+        // two-pass city-block distance transform
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int index = y * width + x;
+                int d = distance[index];
+                if (x > 0) {
+                    d = Math.min(d, distance[index - 1] + 1);
+                }
+                if (y > 0) {
+                    d = Math.min(d, distance[index - width] + 1);
+                }
+                distance[index] = d;
+            }
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--) {
+                final int index = y * width + x;
+                int d = distance[index];
+                if (x < width - 1) {
+                    d = Math.min(d, distance[index + 1] + 1);
+                }
+                if (y < height - 1) {
+                    d = Math.min(d, distance[index + width] + 1);
+                }
+                distance[index] = d;
+            }
+        }
+        return threshold(distance, width, height, radius);
+    }
+
+    static BitPlane dilateDisc(BitPlane plane, int radius) {
+        final int width = plane.getWidth();
+        final int height = plane.getHeight();
+        // larger than any distance within the plane and than the radius
+        final long infinity = width + height + radius + 1;
+
+        // phase 1: distance to the nearest set pixel within each column
+        final long[] columnDistance = new long[width * height];
+        for (int x = 0; x < width; x++) {
+            columnDistance[x] = plane.get(x, 0) ? 0 : infinity;
+            for (int y = 1; y < height; y++) {
+                columnDistance[y * width + x] = plane.get(x, y) ? 0 : Math.min(infinity,
+                                                                               columnDistance[(y - 1) * width + x] + 1);
+            }
+            for (int y = height - 2; y >= 0; y--) {
+                final long below = columnDistance[(y + 1) * width + x];
+                if (below < columnDistance[y * width + x]) {
+                    columnDistance[y * width + x] = below + 1;
+                }
+            }
+        }
+
+        // phase 2: lower envelope of parabolas along each row (Meijster et al.)
+        final long radiusSquare = (long) radius * radius;
+        final BitPlane result = new BitPlane(width, height);
+        final int[] s = new int[width];
+        final int[] t = new int[width];
+        for (int y = 0; y < height; y++) {
+            final int offset = y * width;
+            int q = 0;
+            s[0] = 0;
+            t[0] = 0;
+            for (int u = 1; u < width; u++) {
+                while (q >= 0 && parabola(t[q], s[q], columnDistance, offset) >
+                        parabola(t[q], u, columnDistance, offset)) {
+                    q--;
+                }
+                if (q < 0) {
+                    q = 0;
+                    s[0] = u;
+                } else {
+                    final long w = 1 + separation(s[q], u, columnDistance, offset);
+                    if (w < width) {
+                        q++;
+                        s[q] = u;
+                        t[q] = (int) w;
+                    }
+                }
+            }
+            for (int u = width - 1; u >= 0; u--) {
+                if (parabola(u, s[q], columnDistance, offset) <= radiusSquare) {
+                    result.set(u, y, true);
+                }
+                if (u == t[q]) {
+                    q--;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long parabola(int x, int i, long[] columnDistance, int offset) {
+        final long g = columnDistance[offset + i];
+        return (long) (x - i) * (x - i) + g * g;
+    }
+
+    private static long separation(int i, int u, long[] columnDistance, int offset) {
+        final long gi = columnDistance[offset + i];
+        final long gu = columnDistance[offset + u];
+        final long numerator = (long) u * u - (long) i * i + gu * gu - gi * gi;
+        final long denominator = 2L * (u - i);
+        // floor division
+        long quotient = numerator / denominator;
+        if (numerator % denominator != 0 && numerator < 0) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    private static BitPlane threshold(int[] distance, int width, int height, int radius) {
+        final BitPlane result = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (distance[y * width + x] <= radius) {
+                    result.set(x, y, true);
+                }
+            }
+        }
+        return result;
+    }
+
+    // OR over the horizontal window [x - radius, x + radius], computed on packed words by doubling
+    private static BitPlane dilateHorizontal(BitPlane plane, int radius) {
+        final int wordsPerRow = plane.wordsPerRow;
+        final BitPlane result = new BitPlane(plane.getWidth(), plane.getHeight());
+        final long[] window = new long[wordsPerRow];
+        final long[] left = new long[wordsPerRow];
+        final long[] right = new long[wordsPerRow];
+        for (int y = 0; y < plane.getHeight(); y++) {
+            final int offset = y * wordsPerRow;
+            // window[x] = OR of [x - halfWidth, x + halfWidth]
+            System.arraycopy(plane.words, offset, window, 0, wordsPerRow);
+            int halfWidth = 0;
+            while (halfWidth < radius) {
+                // two windows shifted by +-step overlap or touch as long as step <= halfWidth + 1
+                final int step = Math.min(halfWidth + 1, radius - halfWidth);
+                shiftRow(window, left, step, plane.lastWordMask);
+                shiftRow(window, right, -step, plane.lastWordMask);
+                for (int w = 0; w < wordsPerRow; w++) {
+                    window[w] |= left[w] | right[w];
+                }
+                halfWidth += step;
+            }
+            System.arraycopy(window, 0, result.words, offset, wordsPerRow);
+        }
+        return result;
+    }
+
+    // van Herk/Gil-Werman: OR over the vertical window [y - radius, y + radius] with 3 ORs per word
+    private static BitPlane dilateVertical(BitPlane plane, int radius) {
+        final int wordsPerRow = plane.wordsPerRow;
+        final int height = plane.getHeight();
+        final int blockLength = 2 * radius + 1;
+        // rows of the source padded by radius empty rows at both ends
+        final int paddedHeight = height + 2 * radius;
+        final long[] prefix = new long[paddedHeight * wordsPerRow];
+        final long[] suffix = new long[paddedHeight * wordsPerRow];
+        for (int i = 0; i < paddedHeight; i++) {
+            final boolean blockStart = i % blockLength == 0;
+            for (int w = 0; w < wordsPerRow; w++) {
+                final long value = getPaddedRowWord(plane, i - radius, w);
+                prefix[i * wordsPerRow + w] = blockStart ? value : prefix[(i - 1) * wordsPerRow + w] | value;
+            }
+        }
+        for (int i = paddedHeight - 1; i >= 0; i--) {
+            final boolean blockEnd = i % blockLength == blockLength - 1 || i == paddedHeight - 1;
+            for (int w = 0; w < wordsPerRow; w++) {
+                final long value = getPaddedRowWord(plane, i - radius, w);
+                suffix[i * wordsPerRow + w] = blockEnd ? value : suffix[(i + 1) * wordsPerRow + w] | value;
+            }
+        }
+        final BitPlane result = new BitPlane(plane.getWidth(), height);
+        for (int y = 0; y < height; y++) {
+            // window [y - radius, y + radius] is [y, y + 2 * radius] in padded rows
+            final int first = y * wordsPerRow;
+            final int last = (y + 2 * radius) * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                result.words[y * wordsPerRow + w] = suffix[first + w] | prefix[last + w];
+            }
+        }
+        return result;
+    }
+
+    private static long getPaddedRowWord(BitPlane plane, int y, int w) {
+        if (y < 0 || y >= plane.getHeight()) {
+            return 0L;
+        }
+        return plane.words[y * plane.wordsPerRow + w];
+    }
+
+    // dst[x] = src[x - shift], pixels shifted in from outside are not set
+    private static void shiftRow(long[] src, long[] dst, int shift, long lastWordMask) {
+        final int n = src.length;
+        final int wordShift = Math.abs(shift) >>> 6;
+        final int bitShift = Math.abs(shift) & 63;
+        for (int w = 0; w < n; w++) {
+            long value = 0L;
+            if (shift >= 0) {
+                final int s = w - wordShift;
+                if (s >= 0) {
+                    value = src[s] << bitShift;
+                    if (bitShift > 0 && s - 1 >= 0) {
+                        value |= src[s - 1] >>> (64 - bitShift);
+                    }
+                }
+            } else {
+                final int s = w + wordShift;
+                if (s < n) {
+                    value = src[s] >>> bitShift;
+                    if (bitShift > 0 && s + 1 < n) {
+                        value |= src[s + 1] << (64 - bitShift);
+                    }
+                }
+            }
+            dst[w] = value;
+        }
+        dst[n - 1] &= lastWordMask;
+    }
+}
@@ -0,0 +1,74 @@
+package org.esa.beam.idepix.morphology;
+
+/**
+ * Symmetric structuring element for the operations in {@link Morphology}, centered at the origin.
+ */
+public class StructuringElement {
+
+    public enum Shape {
+        /**
+         * (2r+1) x (2r+1) box, i.e. max(|dx|, |dy|) <= r
+         */
+        SQUARE,
+        /**
+         * city-block disc, i.e. |dx| + |dy| <= r
+         */
+        DIAMOND,
+        /**
+         * euclidean disc, i.e. dx^2 + dy^2 <= r^2
+         */
+        DISC
+    }
+
+    private final Shape shape;
+    private final int radius;
+
+    private StructuringElement(Shape shape, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        this.shape = shape;
+        this.radius = radius;
+    }
+
+    public static StructuringElement square(int radius) {
+        return new StructuringElement(Shape.SQUARE, radius);
+    }
+
+    public static StructuringElement diamond(int radius) {
+        return new StructuringElement(Shape.DIAMOND, radius);
+    }
+
+    public static StructuringElement disc(int radius) {
+        return new StructuringElement(Shape.DISC, radius);
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return true if the offset (dx, dy) belongs to the structuring element
+     */
+    public boolean contains(int dx, int dy) {
+        switch (shape) {
+            case SQUARE:
+                return Math.abs(dx) <= radius && Math.abs(dy) <= radius;
+            case DIAMOND:
+                return Math.abs(dx) + Math.abs(dy) <= radius;
+            case DISC:
+                return dx * dx + dy * dy <= radius * radius;
+            default:
+                throw new IllegalStateException("Unknown shape " + shape);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return shape + "(" + radius + ")";
+    }
+}
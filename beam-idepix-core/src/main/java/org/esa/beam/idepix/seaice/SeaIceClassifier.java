@@ -32,8 +32,32 @@ import java.util.zip.ZipInputStream;
  */
 public class SeaIceClassifier {
 
+    private static final SeaIceClassifier[] INSTANCES = new SeaIceClassifier[12];
+
     private final double[][][] map = new double[180][360][4];
 
+    /**
+     * Returns the process-wide shared instance of SeaIceClassifier for the given month, the classification file is
+     * loaded on the first request of the month only. The instances are read-only and can be used by all threads.
+     *
+     * @param month The month the data shall be loaded for.
+     *
+     * @return The SeaIceClassifier for the month.
+     *
+     * @throws java.io.IOException If resource cannot be found or read from.
+     */
+    public static SeaIceClassifier getInstance(int month) throws IOException {
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("month must be in between 1 and 12.");
+        }
+        synchronized (INSTANCES) {
+            if (INSTANCES[month - 1] == null) {
+                INSTANCES[month - 1] = new SeaIceClassifier(month);
+            }
+            return INSTANCES[month - 1];
+        }
+    }
+
     /**
      * Creates a new instance of SeaIceClassifier and loads the classification file.
      *
@@ -0,0 +1,146 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.util.math.MathUtils;
+
+import java.awt.*;
+
+/**
+ * Provides sine and cosine of sun and view zenith angles and the azimuth difference for the pixels of a tile.
+ * The trigonometric functions are evaluated at the tie-point nodes covering the tile only and bilinearly
+ * interpolated to the pixels, as the tie-point grids themselves are (for MERIS, the tie-points are 64 pixels
+ * apart in FR and 16 pixels in RR products).
+ * <p/>
+ * The azimuth difference (between 0 and 180 degree) is not smooth where the signed difference of view and sun
+ * azimuth changes its sign, e.g. where the view azimuth flips at nadir. In tie-point cells where this happens, it
+ * is computed per pixel from the interpolated azimuth angles.
+ */
+public class GeometryTileProvider {
+
+    private final TiePointGrid szaGrid;
+    private final TiePointGrid vzaGrid;
+    private final TiePointGrid saaGrid;
+    private final TiePointGrid vaaGrid;
+
+    public GeometryTileProvider(TiePointGrid szaGrid, TiePointGrid vzaGrid, TiePointGrid saaGrid,
+                                TiePointGrid vaaGrid) {
+        this.szaGrid = szaGrid;
+        this.vzaGrid = vzaGrid;
+        this.saaGrid = saaGrid;
+        this.vaaGrid = vaaGrid;
+    }
+
+    /**
+     * Computes the geometry for the pixels of the given rectangle. The arrays are filled line by line and
+     * must have at least <code>rectangle.width * rectangle.height</code> elements.
+     *
+     * @param rectangle    - the tile rectangle
+     * @param sins         - sine of the sun zenith angle (output)
+     * @param coss         - cosine of the sun zenith angle (output)
+     * @param sinv         - sine of the view zenith angle (output)
+     * @param cosv         - cosine of the view zenith angle (output)
+     * @param deltaAzimuth - the azimuth difference in degree (output)
+     */
+    public void computeGeometry(Rectangle rectangle, float[] sins, float[] coss, float[] sinv, float[] cosv,
+                                float[] deltaAzimuth) {
+        final int gridWidth = szaGrid.getGridWidth();
+        final int gridHeight = szaGrid.getGridHeight();
+        final double offsetX = szaGrid.getOffsetX();
+        final double offsetY = szaGrid.getOffsetY();
+        final double subSamplingX = szaGrid.getSubSamplingX();
+        final double subSamplingY = szaGrid.getSubSamplingY();
+
+        // the tie-point nodes covering the tile
+        final int i0 = getLowerNode(getGridCoordinate(rectangle.x, offsetX, subSamplingX), gridWidth);
+        final int i1 = getLowerNode(getGridCoordinate(rectangle.x + rectangle.width - 1, offsetX, subSamplingX),
+                                    gridWidth) + 1;
+        final int j0 = getLowerNode(getGridCoordinate(rectangle.y, offsetY, subSamplingY), gridHeight);
+        final int j1 = getLowerNode(getGridCoordinate(rectangle.y + rectangle.height - 1, offsetY, subSamplingY),
+                                    gridHeight) + 1;
+        final int nodesX = i1 - i0 + 1;
+        final int nodesY = j1 - j0 + 1;
+
+        final float[] szaNodes = szaGrid.getTiePoints();
+        final float[] vzaNodes = vzaGrid.getTiePoints();
+        final float[] saaNodes = saaGrid.getTiePoints();
+        final float[] vaaNodes = vaaGrid.getTiePoints();
+        final double[] nodeSins = new double[nodesX * nodesY];
+        final double[] nodeCoss = new double[nodesX * nodesY];
+        final double[] nodeSinv = new double[nodesX * nodesY];
+        final double[] nodeCosv = new double[nodesX * nodesY];
+        final double[] nodeAzimuthDifference = new double[nodesX * nodesY];
+        for (int j = 0; j < nodesY; j++) {
+            for (int i = 0; i < nodesX; i++) {
+                final int gridIndex = (j0 + j) * gridWidth + i0 + i;
+                final int nodeIndex = j * nodesX + i;
+                final double szaRad = szaNodes[gridIndex] * MathUtils.DTOR;
+                final double vzaRad = vzaNodes[gridIndex] * MathUtils.DTOR;
+                nodeSins[nodeIndex] = Math.sin(szaRad);
+                nodeCoss[nodeIndex] = Math.cos(szaRad);
+                nodeSinv[nodeIndex] = Math.sin(vzaRad);
+                nodeCosv[nodeIndex] = Math.cos(vzaRad);
+                nodeAzimuthDifference[nodeIndex] = computeSignedAzimuthDifference(vaaNodes[gridIndex],
+                                                                                  saaNodes[gridIndex]);
+            }
+        }
+
+        for (int y = 0; y < rectangle.height; y++) {
+            final double fj = getGridCoordinate(rectangle.y + y, offsetY, subSamplingY);
+            final int j = getLowerNode(fj, gridHeight) - j0;
+            final double wj = fj - (j + j0);
+            for (int x = 0; x < rectangle.width; x++) {
+                final double fi = getGridCoordinate(rectangle.x + x, offsetX, subSamplingX);
+                final int i = getLowerNode(fi, gridWidth) - i0;
+                final double wi = fi - (i + i0);
+                final int n00 = j * nodesX + i;
+                final int n10 = n00 + 1;
+                final int n01 = n00 + nodesX;
+                final int n11 = n01 + 1;
+                final double w00 = (1.0 - wi) * (1.0 - wj);
+                final double w10 = wi * (1.0 - wj);
+                final double w01 = (1.0 - wi) * wj;
+                final double w11 = wi * wj;
+
+                final int index = y * rectangle.width + x;
+                sins[index] = (float) (w00 * nodeSins[n00] + w10 * nodeSins[n10] +
+                        w01 * nodeSins[n01] + w11 * nodeSins[n11]);
+                coss[index] = (float) (w00 * nodeCoss[n00] + w10 * nodeCoss[n10] +
+                        w01 * nodeCoss[n01] + w11 * nodeCoss[n11]);
+                sinv[index] = (float) (w00 * nodeSinv[n00] + w10 * nodeSinv[n10] +
+                        w01 * nodeSinv[n01] + w11 * nodeSinv[n11]);
+                cosv[index] = (float) (w00 * nodeCosv[n00] + w10 * nodeCosv[n10] +
+                        w01 * nodeCosv[n01] + w11 * nodeCosv[n11]);
+
+                final double d00 = nodeAzimuthDifference[n00];
+                final double d10 = nodeAzimuthDifference[n10];
+                final double d01 = nodeAzimuthDifference[n01];
+                final double d11 = nodeAzimuthDifference[n11];
+                final boolean positive = d00 >= 0.0;
+                if (d10 >= 0.0 != positive || d01 >= 0.0 != positive || d11 >= 0.0 != positive) {
+                    deltaAzimuth[index] = (float) HelperFunctions.computeAzimuthDifference(
+                            vaaGrid.getPixelFloat(rectangle.x + x, rectangle.y + y),
+                            saaGrid.getPixelFloat(rectangle.x + x, rectangle.y + y));
+                } else {
+                    deltaAzimuth[index] = (float) Math.abs(w00 * d00 + w10 * d10 + w01 * d01 + w11 * d11);
+                }
+            }
+        }
+    }
+
+    // view minus sun azimuth in degree, between -180 and 180
+    private static double computeSignedAzimuthDifference(double viewAzimuth, double sunAzimuth) {
+        final double difference = viewAzimuth - sunAzimuth;
+        return difference - 360.0 * Math.round(difference / 360.0);
+    }
+
+    // grid coordinate of the pixel centre
+    private static double getGridCoordinate(int pixel, double offset, double subSampling) {
+        return (pixel + 0.5 - offset) / subSampling;
+    }
+
+    // the last node belongs to the last cell, beyond the grid the border cells are extrapolated
+    private static int getLowerNode(double gridCoordinate, int gridSize) {
+        return Math.max(0, Math.min((int) Math.floor(gridCoordinate), gridSize - 2));
+    }
+}
@@ -0,0 +1,501 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.gpf.Operator;
+
+import java.awt.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tile level metrics of the IdePix operators: number of tiles, tile latency (mean, 95th and 99th percentile),
+ * pixel throughput and neural net invocations per operator.
+ * <p/>
+ * Operators enclose the body of <code>computeTile</code> or <code>computeTileStack</code> in a {@link Scope},
+ * which also records tiles left by an early return or an exception:
+ * <pre>
+ * try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
+ *     ...
+ * }
+ * </pre>
+ * Neural net invocations are counted by {@link SchillerNeuralNetWrapper} for the invoking operator: within the
+ * operator's own tile computation they are part of the tile counters, otherwise (e.g. in a <code>PixelOperator</code>,
+ * whose tile method cannot be enclosed) they are added to the operator's counters directly.
+ * <p/>
+ * Metrics are only recorded if the system property <code>idepix.metrics.dir</code> is set to the directory for the
+ * report files, e.g. in <code>config/beam.config</code> or as JVM option of <code>gpt</code>. Otherwise all static
+ * methods return immediately. The report covers the whole run and is written once, when the JVM shuts down.
+ * <p/>
+ * The latency of a tile includes the computation of source tiles of other operators triggered on the same thread,
+ * the self time excludes them. The pixel throughput refers to the self time.
+ */
+public class IdepixMetrics {
+
+    public static final String METRICS_DIR_PROPERTY = "idepix.metrics.dir";
+    public static final String NET_INVOCATIONS = "nnInvocations";
+
+    private static final int MAX_LATENCY_SAMPLES = 100000;
+    private static final Logger LOG = Logger.getLogger("idepix");
+
+    private static final IdepixMetrics DEFAULT = createDefault();
+
+    private final ConcurrentMap<String, OperatorMetrics> operatorMetrics;
+    private final ThreadLocal<Deque<Frame>> frames;
+    private final String reportName;
+
+    public IdepixMetrics() {
+        operatorMetrics = new ConcurrentSkipListMap<>();
+        frames = new ThreadLocal<Deque<Frame>>() {
+            @Override
+            protected Deque<Frame> initialValue() {
+                return new ArrayDeque<>();
+            }
+        };
+        reportName = "idepix-metrics-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    }
+
+    /**
+     * @return true if metrics are recorded, i.e. the system property <code>idepix.metrics.dir</code> is set
+     */
+    public static boolean isEnabled() {
+        return DEFAULT != null;
+    }
+
+    /**
+     * @return the metrics recorded by the operators, or null if not enabled
+     */
+    public static IdepixMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Begins a tile computation of the given operator, which is recorded when the returned scope is closed.
+     *
+     * @param operator  - the operator
+     * @param rectangle - the target rectangle
+     *
+     * @return the scope of the tile computation, to be closed at its end
+     */
+    public static Scope tile(Operator operator, Rectangle rectangle) {
+        if (DEFAULT == null) {
+            return Scope.NONE;
+        }
+        DEFAULT.enter(operator);
+        return new Scope(DEFAULT, operator, rectangle);
+    }
+
+    /**
+     * Counts a neural net invocation of the given operator.
+     *
+     * @param operator - the operator invoking the net
+     */
+    public static void countNetInvocation(Operator operator) {
+        if (DEFAULT != null) {
+            DEFAULT.count(operator, getName(operator), NET_INVOCATIONS, 1L);
+        }
+    }
+
+    /**
+     * Writes the JSON and CSV report of the metrics recorded so far to the directory given by the system property
+     * <code>idepix.metrics.dir</code>. This is done once per run when the JVM shuts down, subsequent calls
+     * overwrite the files of previous calls.
+     */
+    public static void writeReport() {
+        if (DEFAULT != null) {
+            final File dir = new File(System.getProperty(METRICS_DIR_PROPERTY));
+            try {
+                final File[] files = DEFAULT.writeReport(dir);
+                LOG.info("IdePix metrics written to " + files[0] + " and " + files[1]);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot write IdePix metrics to " + dir + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Begins a tile computation of the given owner on the calling thread.
+     *
+     * @param owner - the computing operator
+     */
+    public void enter(Object owner) {
+        frames.get().push(new Frame(owner, System.nanoTime()));
+    }
+
+    /**
+     * Ends the innermost tile computation of the given owner on the calling thread and records it. Computations
+     * entered later and not exited (e.g. because of an exception) are discarded.
+     *
+     * @param owner        - the computing operator
+     * @param operatorName - the name the computation is recorded for
+     * @param pixelCount   - the number of pixels of the tile
+     */
+    public void exit(Object owner, String operatorName, long pixelCount) {
+        final long stopTime = System.nanoTime();
+        final Deque<Frame> threadFrames = frames.get();
+        if (!containsOwner(threadFrames, owner)) {
+            return;
+        }
+        Frame frame = threadFrames.pop();
+        while (frame.owner != owner) {
+            frame = threadFrames.pop();
+        }
+        final long elapsed = stopTime - frame.startTime;
+        final Frame parent = threadFrames.peek();
+        if (parent != null) {
+            parent.childNanos += elapsed;
+        }
+        getOperatorMetrics(operatorName).record(pixelCount, elapsed, elapsed - frame.childNanos, frame.counts);
+    }
+
+    /**
+     * Adds to a counter of the innermost tile computation on the calling thread. Without tile computation in
+     * progress, the value is not counted.
+     *
+     * @param counterName - the counter name
+     * @param value       - the value to add
+     */
+    public void count(String counterName, long value) {
+        final Frame frame = frames.get().peek();
+        if (frame != null) {
+            if (frame.counts == null) {
+                frame.counts = new HashMap<>();
+            }
+            final long[] count = frame.counts.get(counterName);
+            if (count == null) {
+                frame.counts.put(counterName, new long[]{value});
+            } else {
+                count[0] += value;
+            }
+        }
+    }
+
+    /**
+     * Adds to a counter of the given owner: to the innermost tile computation on the calling thread if it is one
+     * of the owner, otherwise directly to the metrics of the owner.
+     *
+     * @param owner        - the counting operator
+     * @param operatorName - the name the counter is recorded for
+     * @param counterName  - the counter name
+     * @param value        - the value to add
+     */
+    public void count(Object owner, String operatorName, String counterName, long value) {
+        final Frame frame = frames.get().peek();
+        if (frame != null && frame.owner == owner) {
+            count(counterName, value);
+        } else {
+            getOperatorMetrics(operatorName).add(counterName, value);
+        }
+    }
+
+    /**
+     * @param operatorName - the operator name
+     *
+     * @return the metrics of the given operator, created if not yet recorded
+     */
+    public OperatorMetrics getOperatorMetrics(String operatorName) {
+        OperatorMetrics metrics = operatorMetrics.get(operatorName);
+        if (metrics == null) {
+            final OperatorMetrics newMetrics = new OperatorMetrics(operatorName);
+            metrics = operatorMetrics.putIfAbsent(operatorName, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of all operators recorded so far, sorted by name
+     */
+    public List<OperatorMetrics> getAllOperatorMetrics() {
+        return new ArrayList<>(operatorMetrics.values());
+    }
+
+    /**
+     * Writes the report as <code>idepix-metrics-&lt;creation time&gt;.json</code> and <code>.csv</code>.
+     *
+     * @param dir - the target directory, created if needed
+     *
+     * @return the JSON and the CSV file
+     *
+     * @throws IOException - if the files cannot be written
+     */
+    public File[] writeReport(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        final File jsonFile = new File(dir, reportName + ".json");
+        final File csvFile = new File(dir, reportName + ".csv");
+        try (Writer writer = new FileWriter(jsonFile)) {
+            writeJson(writer);
+        }
+        try (Writer writer = new FileWriter(csvFile)) {
+            writeCsv(writer);
+        }
+        return new File[]{jsonFile, csvFile};
+    }
+
+    /**
+     * Writes the report as JSON array with one object per operator.
+     *
+     * @param writer - the writer
+     *
+     * @throws IOException - if writing fails
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("[");
+        final Iterator<OperatorMetrics> iterator = getAllOperatorMetrics().iterator();
+        while (iterator.hasNext()) {
+            final OperatorMetrics metrics = iterator.next();
+            writer.write("\n  {\"operator\": \"" + metrics.getName() + "\"");
+            writer.write(", \"tiles\": " + metrics.getTileCount());
+            writer.write(", \"pixels\": " + metrics.getPixelCount());
+            writer.write(", \"meanLatencyMillis\": " + format(metrics.getMeanLatencyMillis()));
+            writer.write(", \"p95LatencyMillis\": " + format(metrics.getLatencyPercentileMillis(95.0)));
+            writer.write(", \"p99LatencyMillis\": " + format(metrics.getLatencyPercentileMillis(99.0)));
+            writer.write(", \"selfMillis\": " + format(metrics.getSelfMillis()));
+            writer.write(", \"pixelsPerSecond\": " + format(metrics.getPixelsPerSecond()));
+            for (Map.Entry<String, Long> entry : metrics.getCounts().entrySet()) {
+                writer.write(", \"" + entry.getKey() + "\": " + entry.getValue());
+            }
+            writer.write(iterator.hasNext() ? "}," : "}");
+        }
+        writer.write("\n]\n");
+    }
+
+    /**
+     * Writes the report as CSV table with one line per operator. All counters are written as columns.
+     *
+     * @param writer - the writer
+     *
+     * @throws IOException - if writing fails
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        final List<OperatorMetrics> allMetrics = getAllOperatorMetrics();
+        final Set<String> counterNames = new TreeSet<>();
+        for (OperatorMetrics metrics : allMetrics) {
+            counterNames.addAll(metrics.getCounts().keySet());
+        }
+        writer.write("operator,tiles,pixels,meanLatencyMillis,p95LatencyMillis,p99LatencyMillis,selfMillis," +
+                             "pixelsPerSecond");
+        for (String counterName : counterNames) {
+            writer.write("," + counterName);
+        }
+        writer.write("\n");
+        for (OperatorMetrics metrics : allMetrics) {
+            writer.write(metrics.getName() + "," + metrics.getTileCount() + "," + metrics.getPixelCount() + "," +
+                                 format(metrics.getMeanLatencyMillis()) + "," +
+                                 format(metrics.getLatencyPercentileMillis(95.0)) + "," +
+                                 format(metrics.getLatencyPercentileMillis(99.0)) + "," +
+                                 format(metrics.getSelfMillis()) + "," + format(metrics.getPixelsPerSecond()));
+            final Map<String, Long> counts = metrics.getCounts();
+            for (String counterName : counterNames) {
+                final Long count = counts.get(counterName);
+                writer.write("," + (count != null ? count : 0L));
+            }
+            writer.write("\n");
+        }
+    }
+
+    private static IdepixMetrics createDefault() {
+        final String dir = System.getProperty(METRICS_DIR_PROPERTY);
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        // the operators of a run are disposed one by one, so the report is written once for all of them at the end
+        Runtime.getRuntime().addShutdownHook(new Thread("IdePix metrics report") {
+            @Override
+            public void run() {
+                writeReport();
+            }
+        });
+        return new IdepixMetrics();
+    }
+
+    private static String getName(Operator operator) {
+        return operator.getClass().getSimpleName();
+    }
+
+    private static boolean containsOwner(Deque<Frame> threadFrames, Object owner) {
+        for (Frame frame : threadFrames) {
+            if (frame.owner == owner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+    /**
+     * The metrics recorded for one operator.
+     */
+    public static class OperatorMetrics {
+
+        private final String name;
+        private long tileCount;
+        private long pixelCount;
+        private long latencyNanos;
+        private long selfNanos;
+        private long[] latencySamples;
+        private int latencySampleCount;
+        private final ConcurrentMap<String, AtomicLong> counts;
+
+        private OperatorMetrics(String name) {
+            this.name = name;
+            latencySamples = new long[64];
+            counts = new ConcurrentSkipListMap<>();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getTileCount() {
+            return tileCount;
+        }
+
+        public synchronized long getPixelCount() {
+            return pixelCount;
+        }
+
+        public synchronized double getMeanLatencyMillis() {
+            return tileCount > 0 ? latencyNanos / (tileCount * 1.0E6) : 0.0;
+        }
+
+        /**
+         * @param percentile - the percentile, between 0 and 100
+         *
+         * @return the nearest-rank percentile of the tile latency, from the first 100000 tiles
+         */
+        public synchronized double getLatencyPercentileMillis(double percentile) {
+            if (latencySampleCount == 0) {
+                return 0.0;
+            }
+            final long[] sorted = Arrays.copyOf(latencySamples, latencySampleCount);
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(rank, sorted.length) - 1)] / 1.0E6;
+        }
+
+        public synchronized double getSelfMillis() {
+            return selfNanos / 1.0E6;
+        }
+
+        public synchronized double getPixelsPerSecond() {
+            return selfNanos > 0 ? pixelCount / (selfNanos / 1.0E9) : 0.0;
+        }
+
+        /**
+         * @param counterName - the counter name
+         *
+         * @return the value of the counter, 0 if never counted
+         */
+        public long getCount(String counterName) {
+            final AtomicLong count = counts.get(counterName);
+            return count != null ? count.get() : 0L;
+        }
+
+        /**
+         * @return the values of all counters, sorted by name
+         */
+        public Map<String, Long> getCounts() {
+            final Map<String, Long> countValues = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+                countValues.put(entry.getKey(), entry.getValue().get());
+            }
+            return countValues;
+        }
+
+        // not synchronized, as it is called per pixel by the operators counting outside of tile computations
+        private void add(String counterName, long value) {
+            AtomicLong count = counts.get(counterName);
+            if (count == null) {
+                final AtomicLong newCount = new AtomicLong();
+                count = counts.putIfAbsent(counterName, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.addAndGet(value);
+        }
+
+        private synchronized void record(long pixels, long latency, long self, Map<String, long[]> tileCounts) {
+            tileCount++;
+            pixelCount += pixels;
+            latencyNanos += latency;
+            selfNanos += self;
+            if (latencySampleCount < MAX_LATENCY_SAMPLES) {
+                if (latencySampleCount == latencySamples.length) {
+                    latencySamples = Arrays.copyOf(latencySamples, 2 * latencySamples.length);
+                }
+                latencySamples[latencySampleCount++] = latency;
+            }
+            if (tileCounts != null) {
+                for (Map.Entry<String, long[]> entry : tileCounts.entrySet()) {
+                    add(entry.getKey(), entry.getValue()[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The scope of a tile computation, records the computation when closed.
+     */
+    public static class Scope implements AutoCloseable {
+
+        private static final Scope NONE = new Scope(null, null, null);
+
+        private final IdepixMetrics metrics;
+        private final Operator operator;
+        private final Rectangle rectangle;
+
+        private Scope(IdepixMetrics metrics, Operator operator, Rectangle rectangle) {
+            this.metrics = metrics;
+            this.operator = operator;
+            this.rectangle = rectangle;
+        }
+
+        @Override
+        public void close() {
+            if (metrics != null) {
+                metrics.exit(operator, getName(operator), (long) rectangle.width * rectangle.height);
+            }
+        }
+    }
+
+    private static class Frame {
+
+        private final Object owner;
+        private final long startTime;
+        private long childNanos;
+        private Map<String, long[]> counts;
+
+        private Frame(Object owner, long startTime) {
+            this.owner = owner;
+            this.startTime = startTime;
+        }
+    }
+}
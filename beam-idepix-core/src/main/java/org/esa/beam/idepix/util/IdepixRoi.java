@@ -0,0 +1,186 @@
+package org.esa.beam.idepix.util;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.jai.ResolutionLevel;
+import org.esa.beam.jai.VirtualBandOpImage;
+import org.esa.beam.util.BitSetter;
+import org.esa.beam.util.StringUtils;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Restricts the computation of an Idepix target product to a region of interest, given either as WKT geometry in
+ * geographic coordinates or as band maths expression (e.g. a mask name) of the source product. The band images of
+ * the target product are replaced by {@link RoiOpImage}s, so the tiles outside of the ROI are set to no-data
+ * without computing the operator chain behind them. The fill value is the no-data value of the band if used, the
+ * F_INVALID flag for the classification flag band, NaN for other floating point bands and 0 otherwise. Only the
+ * band images are replaced, no other band properties are changed.
+ */
+public class IdepixRoi {
+
+    // # of points sampled along each side of a tile to approximate its geographic footprint
+    private static final int NUM_FOOTPRINT_STEPS = 4;
+
+    private IdepixRoi() {
+    }
+
+    /**
+     * Applies the ROI to the band images of the target product. Does nothing if no ROI is given.
+     *
+     * @param targetProduct       - the target product, with the band source images set
+     * @param sourceProduct       - the source product the ROI expression refers to
+     * @param roiWkt              - the ROI as WKT geometry in geographic coordinates, may be null
+     * @param roiExpression       - the ROI as band maths expression of the source product, may be null
+     * @param haloWidth           - the margin (# of pixels) around the ROI which is computed as well, e.g. the
+     *                            cloud buffer width
+     * @param classifFlagBandName - the classification flag band of the target product, filled with the F_INVALID
+     *                            flag (bit 0 in all Idepix flag codings)
+     * @return the tile selection, or null if no ROI is given
+     * @throws OperatorException if the ROI is invalid or does not intersect the product
+     */
+    public static RoiTileSelection apply(Product targetProduct, Product sourceProduct, String roiWkt,
+                                         String roiExpression, int haloWidth,
+                                         String classifFlagBandName) throws OperatorException {
+        final boolean useWkt = StringUtils.isNotNullAndNotEmpty(roiWkt);
+        final boolean useExpression = StringUtils.isNotNullAndNotEmpty(roiExpression);
+        if (!useWkt && !useExpression) {
+            return null;
+        }
+        if (useWkt && useExpression) {
+            throw new OperatorException("Only one of the ROI parameters 'roiWkt' and 'roiMask' can be given.");
+        }
+
+        final Dimension tileSize = ImageManager.getPreferredTileSize(targetProduct);
+        final RoiTileSelection selection;
+        if (useWkt) {
+            selection = createSelection(sourceProduct, parseWkt(roiWkt), tileSize, haloWidth);
+        } else {
+            selection = createSelection(sourceProduct, roiExpression, tileSize, haloWidth);
+        }
+        if (selection.getNumSelectedCells() == 0) {
+            throw new OperatorException("The region of interest does not intersect the source product.");
+        }
+
+        for (Band band : targetProduct.getBands()) {
+            if (band.isSourceImageSet()) {
+                band.setSourceImage(new RoiOpImage(band.getSourceImage().getImage(0), selection,
+                                                   getNoDataValue(band, classifFlagBandName)));
+            }
+        }
+        return selection;
+    }
+
+    private static Geometry parseWkt(String roiWkt) {
+        try {
+            return new WKTReader().read(roiWkt);
+        } catch (ParseException e) {
+            throw new OperatorException("Invalid ROI geometry '" + roiWkt + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static RoiTileSelection createSelection(Product sourceProduct, String roiExpression, Dimension tileSize,
+                                                    int haloWidth) {
+        if (!sourceProduct.isCompatibleBandArithmeticExpression(roiExpression)) {
+            throw new OperatorException("Invalid ROI expression '" + roiExpression + "'.");
+        }
+        final VirtualBandOpImage maskImage = VirtualBandOpImage.createMask(roiExpression, sourceProduct,
+                                                                           ResolutionLevel.MAXRES);
+        try {
+            return RoiTileSelection.fromMaskImage(maskImage, tileSize.width, tileSize.height, haloWidth);
+        } finally {
+            maskImage.dispose();
+        }
+    }
+
+    private static RoiTileSelection createSelection(Product sourceProduct, Geometry roiGeometry, Dimension tileSize,
+                                                    int haloWidth) {
+        final GeoCoding geoCoding = sourceProduct.getGeoCoding();
+        if (geoCoding == null || !geoCoding.canGetGeoPos()) {
+            throw new OperatorException("A ROI geometry needs a geo-coded source product.");
+        }
+        final RoiTileSelection selection = new RoiTileSelection(sourceProduct.getSceneRasterWidth(),
+                                                                sourceProduct.getSceneRasterHeight(),
+                                                                tileSize.width, tileSize.height, haloWidth);
+        final GeometryFactory geometryFactory = new GeometryFactory();
+        for (int cellY = 0; cellY < selection.getNumCellsY(); cellY++) {
+            for (int cellX = 0; cellX < selection.getNumCellsX(); cellX++) {
+                final Coordinate[] footprint = getFootprint(geoCoding, selection.getCellRectangle(cellX, cellY));
+                // cells whose footprint cannot be determined are computed, to be on the safe side
+                if (footprint == null ||
+                        geometryFactory.createPolygon(geometryFactory.createLinearRing(footprint), null)
+                                .intersects(roiGeometry)) {
+                    selection.select(cellX, cellY);
+                }
+            }
+        }
+        return selection;
+    }
+
+    // the closed ring of geographic positions (lon, lat) along the border of the rectangle, or null if not geo-coded
+    private static Coordinate[] getFootprint(GeoCoding geoCoding, Rectangle rectangle) {
+        final float x0 = rectangle.x;
+        final float y0 = rectangle.y;
+        final float x1 = rectangle.x + rectangle.width;
+        final float y1 = rectangle.y + rectangle.height;
+        final List<Coordinate> coordinates = new ArrayList<>(4 * NUM_FOOTPRINT_STEPS + 1);
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int side = 0; side < 4; side++) {
+            for (int step = 0; step < NUM_FOOTPRINT_STEPS; step++) {
+                final float f = (float) step / NUM_FOOTPRINT_STEPS;
+                switch (side) {
+                    case 0:
+                        pixelPos.setLocation(x0 + f * (x1 - x0), y0);
+                        break;
+                    case 1:
+                        pixelPos.setLocation(x1, y0 + f * (y1 - y0));
+                        break;
+                    case 2:
+                        pixelPos.setLocation(x1 - f * (x1 - x0), y1);
+                        break;
+                    default:
+                        pixelPos.setLocation(x0, y1 - f * (y1 - y0));
+                        break;
+                }
+                geoCoding.getGeoPos(pixelPos, geoPos);
+                if (!geoPos.isValid()) {
+                    return null;
+                }
+                coordinates.add(new Coordinate(geoPos.getLon(), geoPos.getLat()));
+            }
+        }
+        coordinates.add(coordinates.get(0));
+        return coordinates.toArray(new Coordinate[coordinates.size()]);
+    }
+
+    static double getNoDataValue(Band band, String classifFlagBandName) {
+        if (band.isNoDataValueUsed()) {
+            return band.getNoDataValue();
+        }
+        if (band.getName().equals(classifFlagBandName)) {
+            return BitSetter.setFlag(0, IdepixConstants.F_INVALID);
+        }
+        if (band.isFlagBand()) {
+            return 0.0;
+        }
+        if (band.isFloatingPointType()) {
+            // distinguishable from computed values, the no-data properties of the band are left as they are
+            return Double.NaN;
+        }
+        return 0.0;
+    }
+}
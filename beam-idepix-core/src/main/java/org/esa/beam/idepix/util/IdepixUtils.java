@@ -5,12 +5,16 @@ import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.idepix.AlgorithmSelector;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.morphology.FlagPlanes;
 import org.esa.beam.unmixing.Endmember;
 import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
 
 import javax.swing.*;
 import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Random;
@@ -588,12 +592,110 @@ public class IdepixUtils {
         }
     }
 
+    /**
+     * Tile-wide version of {@link #consolidateCloudAndBuffer(Tile, int, int)}: clears the cloud buffer flag of all
+     * cloudy pixels.
+     *
+     * @param flagPlanes - the flag planes, the cloud buffer plane is replaced
+     */
+    public static void consolidateCloudAndBuffer(FlagPlanes flagPlanes) {
+        flagPlanes.set(IdepixConstants.F_CLOUD_BUFFER,
+                       flagPlanes.get(IdepixConstants.F_CLOUD_BUFFER).andNot(flagPlanes.get(IdepixConstants.F_CLOUD)));
+    }
+
     public static void combineFlags(int x, int y, Tile sourceFlagTile, Tile targetTile) {
         int sourceFlags = sourceFlagTile.getSampleInt(x, y);
         int computedFlags = targetTile.getSampleInt(x, y);
         targetTile.setSample(x, y, sourceFlags | computedFlags);
     }
 
+    /**
+     * Tile-wide version of {@link #consolidateCloudAndBuffer(Tile, int, int)}: clears the cloud buffer flag of all
+     * cloudy pixels of the tile in one loop over the flag samples.
+     *
+     * @param targetTile - the flag tile
+     */
+    public static void consolidateCloudAndBuffer(Tile targetTile) {
+        final Rectangle rectangle = targetTile.getRectangle();
+        final TileAccess target = TileAccess.forInts(targetTile);
+        final int cloudMask = 1 << IdepixConstants.F_CLOUD;
+        final int bufferMask = 1 << IdepixConstants.F_CLOUD_BUFFER;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            final int lineIndex = target.getLineIndex(y);
+            for (int i = lineIndex; i < lineIndex + rectangle.width; i++) {
+                final int flags = target.getInt(i);
+                if ((flags & cloudMask) != 0) {
+                    target.setInt(i, flags & ~bufferMask);
+                }
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * Tile-wide version of {@link #combineFlags(int, int, Tile, Tile)}: ORs the source flags into all flags of the
+     * target tile in one loop over the flag samples.
+     *
+     * @param sourceFlagTile - the source flag tile, its rectangle must contain the target rectangle
+     * @param targetTile     - the target flag tile
+     */
+    public static void combineFlags(Tile sourceFlagTile, Tile targetTile) {
+        final Rectangle sourceRectangle = sourceFlagTile.getRectangle();
+        final Rectangle targetRectangle = targetTile.getRectangle();
+        final int[] sourceFlags = TileAccess.getInts(sourceFlagTile);
+        final TileAccess target = TileAccess.forInts(targetTile);
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+            final int sourceIndex = (y - sourceRectangle.y) * sourceRectangle.width +
+                    targetRectangle.x - sourceRectangle.x;
+            final int lineIndex = target.getLineIndex(y);
+            for (int i = 0; i < targetRectangle.width; i++) {
+                target.setInt(lineIndex + i, target.getInt(lineIndex + i) | sourceFlags[sourceIndex + i]);
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * Sets all samples of a rectangle of the target tile to one value in a single pass, e.g. the invalid flag
+     * resp. NaN for tiles without any valid pixel. Integer bands get the value casted to int.
+     *
+     * @param targetTile - the target tile
+     * @param rectangle  - the rectangle, must be contained in the tile rectangle
+     * @param value      - the value
+     */
+    public static void fillTile(Tile targetTile, Rectangle rectangle, double value) {
+        final TileAccess access;
+        if (targetTile.getRasterDataNode().isFloatingPointType()) {
+            access = TileAccess.forFloats(targetTile);
+            access.fill(rectangle, (float) value);
+        } else {
+            access = TileAccess.forInts(targetTile);
+            access.fill(rectangle, (int) value);
+        }
+        access.flush();
+    }
+
+    /**
+     * Computes the SHA-256 digest of a text, e.g. as compact cache key of a neural net read from a resource.
+     *
+     * @param text - the text
+     *
+     * @return the digest as hexadecimal string
+     */
+    public static String computeDigest(String text) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder hex = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
 
     private static Color getRandomColour(Random random) {
         int rColor = random.nextInt(256);
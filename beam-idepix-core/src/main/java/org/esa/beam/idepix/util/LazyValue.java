@@ -0,0 +1,60 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.gpf.OperatorException;
+
+/**
+ * A value which is computed on the first call of {@link #get()} only and then kept, e.g. auxiliary data which an
+ * operator needs for its tile computations but not for <code>initialize()</code>. Products which are set up but never
+ * computed, or only computed for bands or regions which don't need the value, don't pay for it.
+ * <p/>
+ * The value is computed once also if several tile threads ask for it at the same time. If the computation fails,
+ * the next call of {@link #get()} tries again.
+ *
+ * @param <T> the type of the value
+ */
+public abstract class LazyValue<T> {
+
+    private volatile T value;
+
+    /**
+     * @return the value, computed on the first call
+     * @throws OperatorException if the value cannot be computed
+     */
+    public T get() throws OperatorException {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    try {
+                        result = compute();
+                    } catch (OperatorException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new OperatorException(e.getMessage(), e);
+                    }
+                    if (result == null) {
+                        throw new OperatorException("Lazy value computed as null: " + getClass().getName());
+                    }
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the value has been computed
+     */
+    public boolean isComputed() {
+        return value != null;
+    }
+
+    /**
+     * Computes the value. Called once, on the first call of {@link #get()}.
+     *
+     * @return the value, must not be null
+     * @throws Exception if the value cannot be computed
+     */
+    protected abstract T compute() throws Exception;
+}
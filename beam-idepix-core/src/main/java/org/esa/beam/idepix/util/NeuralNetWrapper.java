@@ -20,18 +20,30 @@ import com.bc.jnn.Jnn;
 import com.bc.jnn.JnnException;
 import com.bc.jnn.JnnNet;
 import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.util.io.FileUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A wrapper around a neural net together with its input and output vector.
  * This wrapper support 'NNA' nets.
- *
+ * <p/>
+ * The wrappers are cached process-wide by the digest of the net text and the vector sizes: {@link #create} returns
+ * the same thread local for the same net, so that a net is read only once and each thread reuses its own clone,
+ * also over many operator instances and products. The clones of a thread live as long as the thread, see
+ * {@link #clearCache()}.
  */
 public class NeuralNetWrapper {
 
+    // key is the digest of the net text, so the cache does not keep the texts of all nets read
+    private static final Map<String, ThreadLocal<NeuralNetWrapper>> NET_CACHE = new HashMap<>();
+
     private final JnnNet neuralNet;
     private final double[] nnIn;
     private final double[] nnOut;
@@ -46,6 +58,13 @@ public class NeuralNetWrapper {
         return neuralNet;
     }
 
+    /**
+     * The input vector is owned by the wrapper of the calling thread, hence it is shared by all users of the same
+     * net on this thread. It must be filled and used within one pixel computation and must not be kept across
+     * pixels. The same applies to the output vector.
+     *
+     * @return the input vector of the calling thread
+     */
     public double[] getInputVector() {
         return nnIn;
     }
@@ -54,18 +73,57 @@ public class NeuralNetWrapper {
         return nnOut;
     }
 
+    /**
+     * Provides the thread local net wrappers for the given net. Nets with the same text and vector sizes share the
+     * thread local instances within the process.
+     *
+     * @param inputStream - the stream of the net text
+     * @param in          - the size of the input vector
+     * @param out         - the size of the output vector
+     *
+     * @return the thread local net wrappers
+     */
     public static ThreadLocal<NeuralNetWrapper> create(InputStream inputStream, final int in, final int out) {
-        final JnnNet jnnNet = loadNeuralNet(inputStream);
-        return new ThreadLocal<NeuralNetWrapper>() {
-            @Override
-            protected NeuralNetWrapper initialValue() {
-                return new NeuralNetWrapper(jnnNet.clone(), in, out);
+        final String netAsString = readNeuralNetFromStream(inputStream);
+        final String key = in + ";" + out + ";" + IdepixUtils.computeDigest(netAsString);
+        synchronized (NET_CACHE) {
+            ThreadLocal<NeuralNetWrapper> wrapper = NET_CACHE.get(key);
+            if (wrapper == null) {
+                final JnnNet jnnNet = loadNeuralNet(netAsString);
+                wrapper = new ThreadLocal<NeuralNetWrapper>() {
+                    @Override
+                    protected NeuralNetWrapper initialValue() {
+                        return new NeuralNetWrapper(jnnNet.clone(), in, out);
+                    }
+                };
+                NET_CACHE.put(key, wrapper);
             }
-        };
+            return wrapper;
+        }
+    }
+
+    /**
+     * Removes all nets from the cache, so that the nets are read again by later calls of {@link #create}. Thread
+     * locals obtained before stay usable. The per-thread clones are not released by this: a thread still alive
+     * keeps its clone as a stale entry of its thread local map until the entry is expunged by a later thread local
+     * access of that thread, which is not guaranteed to happen. Only a thread that ends releases them for sure.
+     */
+    public static void clearCache() {
+        synchronized (NET_CACHE) {
+            NET_CACHE.clear();
+        }
+    }
+
+    private static String readNeuralNetFromStream(InputStream inputStream) {
+        try (Reader reader = new InputStreamReader(inputStream)) {
+            return FileUtils.readText(reader);
+        } catch (IOException ioe) {
+            throw new OperatorException("Could not initialize neural net", ioe);
+        }
     }
 
-    private static JnnNet loadNeuralNet(InputStream inputStream) {
-        try (InputStreamReader reader = new InputStreamReader(inputStream)) {
+    private static JnnNet loadNeuralNet(String netAsString) {
+        try (Reader reader = new StringReader(netAsString)) {
             Jnn.setOptimizing(true);
             return Jnn.readNna(reader);
         } catch (JnnException | IOException jnne) {
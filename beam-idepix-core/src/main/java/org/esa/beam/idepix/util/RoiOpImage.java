@@ -0,0 +1,53 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.jai.ResolutionLevel;
+import org.esa.beam.jai.SingleBandedOpImage;
+
+import javax.media.jai.PlanarImage;
+import java.awt.*;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Passes the tiles of a band image which intersect a region of interest through and fills all other tiles with a
+ * constant no-data value. The source image is not asked for the tiles outside of the ROI, so the operator chain
+ * behind it is not computed there.
+ */
+public class RoiOpImage extends SingleBandedOpImage {
+
+    private final RenderedImage sourceImage;
+    private final RoiTileSelection selection;
+    private final double noDataValue;
+
+    /**
+     * @param sourceImage - the single banded band image to pass through
+     * @param selection   - the ROI tile selection, for the scene size of the source image
+     * @param noDataValue - the (raw) value of the tiles outside of the ROI
+     */
+    public RoiOpImage(RenderedImage sourceImage, RoiTileSelection selection, double noDataValue) {
+        super(sourceImage.getSampleModel().getDataType(),
+              sourceImage.getWidth(),
+              sourceImage.getHeight(),
+              new Dimension(sourceImage.getTileWidth(), sourceImage.getTileHeight()),
+              null,
+              ResolutionLevel.MAXRES);
+        this.sourceImage = sourceImage;
+        this.selection = selection;
+        this.noDataValue = noDataValue;
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] sourceImages, WritableRaster tile, Rectangle destRect) {
+        if (selection.intersects(destRect)) {
+            sourceImage.copyData(tile.createWritableChild(destRect.x, destRect.y, destRect.width, destRect.height,
+                                                          destRect.x, destRect.y, null));
+        } else {
+            final double[] line = new double[destRect.width];
+            Arrays.fill(line, noDataValue);
+            for (int y = destRect.y; y < destRect.y + destRect.height; y++) {
+                tile.setSamples(destRect.x, y, destRect.width, 1, 0, line);
+            }
+        }
+    }
+}
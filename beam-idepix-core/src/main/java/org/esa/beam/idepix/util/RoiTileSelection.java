@@ -0,0 +1,140 @@
+package org.esa.beam.idepix.util;
+
+import java.awt.*;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+
+/**
+ * The cells of a regular grid over the scene (usually the tiles of the product) which intersect a region of
+ * interest. Rectangles are tested against the selected cells after growing them by a halo, so that e.g. the cloud
+ * buffer of clouds inside the region is also computed where it reaches into the neighbouring tiles.
+ */
+public class RoiTileSelection {
+
+    private final int width;
+    private final int height;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int haloWidth;
+    private final int numCellsX;
+    private final int numCellsY;
+    private final boolean[] selected;
+
+    /**
+     * Creates a selection with no cell selected.
+     *
+     * @param width      - the scene width
+     * @param height     - the scene height
+     * @param cellWidth  - the cell width, usually the tile width
+     * @param cellHeight - the cell height, usually the tile height
+     * @param haloWidth  - the margin (# of pixels) by which tested rectangles are grown
+     */
+    public RoiTileSelection(int width, int height, int cellWidth, int cellHeight, int haloWidth) {
+        if (width <= 0 || height <= 0 || cellWidth <= 0 || cellHeight <= 0 || haloWidth < 0) {
+            throw new IllegalArgumentException("Invalid scene or cell size");
+        }
+        this.width = width;
+        this.height = height;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.haloWidth = haloWidth;
+        numCellsX = (width + cellWidth - 1) / cellWidth;
+        numCellsY = (height + cellHeight - 1) / cellHeight;
+        selected = new boolean[numCellsX * numCellsY];
+    }
+
+    /**
+     * Creates a selection of the cells which contain at least one non-zero sample of the given mask image.
+     *
+     * @param maskImage  - the ROI mask, single banded, non-zero inside the ROI
+     * @param cellWidth  - the cell width, usually the tile width
+     * @param cellHeight - the cell height, usually the tile height
+     * @param haloWidth  - the margin (# of pixels) by which tested rectangles are grown
+     * @return the selection
+     */
+    public static RoiTileSelection fromMaskImage(RenderedImage maskImage, int cellWidth, int cellHeight,
+                                                 int haloWidth) {
+        final RoiTileSelection selection = new RoiTileSelection(maskImage.getWidth(), maskImage.getHeight(),
+                                                                cellWidth, cellHeight, haloWidth);
+        int[] samples = null;
+        for (int cellY = 0; cellY < selection.numCellsY; cellY++) {
+            for (int cellX = 0; cellX < selection.numCellsX; cellX++) {
+                final Rectangle cell = selection.getCellRectangle(cellX, cellY);
+                final Raster raster = maskImage.getData(cell);
+                samples = raster.getSamples(cell.x, cell.y, cell.width, cell.height, 0, samples);
+                final int numSamples = cell.width * cell.height;
+                for (int i = 0; i < numSamples; i++) {
+                    if (samples[i] != 0) {
+                        selection.select(cellX, cellY);
+                        break;
+                    }
+                }
+            }
+        }
+        return selection;
+    }
+
+    public int getNumCellsX() {
+        return numCellsX;
+    }
+
+    public int getNumCellsY() {
+        return numCellsY;
+    }
+
+    /**
+     * @param cellX - the cell column
+     * @param cellY - the cell row
+     * @return the pixel rectangle of the cell, clipped to the scene
+     */
+    public Rectangle getCellRectangle(int cellX, int cellY) {
+        final int x = cellX * cellWidth;
+        final int y = cellY * cellHeight;
+        return new Rectangle(x, y, Math.min(cellWidth, width - x), Math.min(cellHeight, height - y));
+    }
+
+    public void select(int cellX, int cellY) {
+        selected[cellY * numCellsX + cellX] = true;
+    }
+
+    public boolean isSelected(int cellX, int cellY) {
+        return selected[cellY * numCellsX + cellX];
+    }
+
+    /**
+     * @return the number of selected cells
+     */
+    public int getNumSelectedCells() {
+        int count = 0;
+        for (boolean cellSelected : selected) {
+            if (cellSelected) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests if the given rectangle, grown by the halo, intersects a selected cell.
+     *
+     * @param rectangle - the rectangle in pixel coordinates, e.g. a target tile
+     * @return true if the rectangle must be computed
+     */
+    public boolean intersects(Rectangle rectangle) {
+        final int x0 = Math.max(0, rectangle.x - haloWidth);
+        final int y0 = Math.max(0, rectangle.y - haloWidth);
+        final int x1 = Math.min(width, rectangle.x + rectangle.width + haloWidth) - 1;
+        final int y1 = Math.min(height, rectangle.y + rectangle.height + haloWidth) - 1;
+        if (x1 < x0 || y1 < y0) {
+            return false;
+        }
+        for (int cellY = y0 / cellHeight; cellY <= y1 / cellHeight; cellY++) {
+            for (int cellX = x0 / cellWidth; cellX <= x1 / cellWidth; cellX++) {
+                if (selected[cellY * numCellsX + cellX]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
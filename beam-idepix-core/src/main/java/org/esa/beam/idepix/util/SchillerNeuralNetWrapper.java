@@ -16,6 +16,7 @@
 
 package org.esa.beam.idepix.util;
 
+import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.nn.NNffbpAlphaTabFast;
 import org.esa.beam.util.io.FileUtils;
@@ -24,13 +25,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * A wrapper around a neural net together with its input.
  * This wrapper support 'Schiller' nets.
+ * <p/>
+ * The wrappers are cached process-wide by the digest of the net text: {@link #create(InputStream)} returns the same
+ * thread local for the same net, so that each thread parses a net only once and then reuses its own wrapper, also
+ * over many operator instances and products. The wrappers of a thread live as long as the thread (e.g. a JAI tile
+ * scheduler thread), see {@link #clearCache()}.
  */
 public class SchillerNeuralNetWrapper {
 
+    // key is the digest of the net text, so the cache does not keep the texts of all nets read
+    private static final Map<String, ThreadLocal<SchillerNeuralNetWrapper>> NET_CACHE = new HashMap<>();
+
     private final NNffbpAlphaTabFast neuralNet;
     private final double[] nnIn;
 
@@ -43,12 +54,65 @@ public class SchillerNeuralNetWrapper {
         return neuralNet;
     }
 
+    /**
+     * The input vector is owned by the wrapper of the calling thread, hence it is shared by all operators using
+     * the same net on this thread. It must be filled and passed to {@link #calc} within one pixel computation and
+     * must not be kept across pixels.
+     *
+     * @return the input vector of the calling thread
+     */
     public double[] getInputVector() {
         return nnIn;
     }
 
+    /**
+     * Computes the output of the neural net and counts the invocation for the given operator in
+     * {@link IdepixMetrics}.
+     *
+     * @param operator - the operator invoking the net
+     * @param input    - the input vector
+     *
+     * @return the output vector
+     */
+    public double[] calc(Operator operator, double[] input) {
+        IdepixMetrics.countNetInvocation(operator);
+        return neuralNet.calc(input);
+    }
+
+    /**
+     * Provides the thread local net wrappers for the given net. Nets with the same text share the thread local
+     * instances within the process.
+     *
+     * @param inputStream - the stream of the net text
+     *
+     * @return the thread local net wrappers
+     */
     public static ThreadLocal<SchillerNeuralNetWrapper> create(InputStream inputStream) {
         final String netAsString = readNeuralNetFromStream(inputStream);
+        final String key = IdepixUtils.computeDigest(netAsString);
+        synchronized (NET_CACHE) {
+            ThreadLocal<SchillerNeuralNetWrapper> wrapper = NET_CACHE.get(key);
+            if (wrapper == null) {
+                wrapper = createThreadLocal(netAsString);
+                NET_CACHE.put(key, wrapper);
+            }
+            return wrapper;
+        }
+    }
+
+    /**
+     * Removes all nets from the cache, so that the nets are read again by later calls of {@link #create}. Thread
+     * locals obtained before stay usable. The per-thread wrappers are not released by this: a thread still alive
+     * keeps its wrapper as a stale entry of its thread local map until the entry is expunged by a later thread local
+     * access of that thread, which is not guaranteed to happen. Only a thread that ends releases them for sure.
+     */
+    public static void clearCache() {
+        synchronized (NET_CACHE) {
+            NET_CACHE.clear();
+        }
+    }
+
+    private static ThreadLocal<SchillerNeuralNetWrapper> createThreadLocal(final String netAsString) {
         return new ThreadLocal<SchillerNeuralNetWrapper>() {
             @Override
             protected SchillerNeuralNetWrapper initialValue() {
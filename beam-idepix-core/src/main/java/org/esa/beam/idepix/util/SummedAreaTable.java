@@ -0,0 +1,79 @@
+package org.esa.beam.idepix.util;
+
+import java.awt.*;
+
+/**
+ * Summed-area table (integral image) for counting the pixels of a given class in arbitrary
+ * rectangular windows of a tile. Once the table is built, each count takes four array reads,
+ * independent of the window size.
+ */
+public class SummedAreaTable {
+
+    private final Rectangle rectangle;
+    private final int stride;
+    private final int[] table;
+
+    private SummedAreaTable(Rectangle rectangle) {
+        this.rectangle = new Rectangle(rectangle);
+        this.stride = rectangle.width + 1;
+        this.table = new int[stride * (rectangle.height + 1)];
+    }
+
+    /**
+     * Creates a table counting the samples which are equal to the given class value.
+     *
+     * @param samples    - the samples of the rectangle, line by line
+     * @param rectangle  - the rectangle (in image coordinates) covered by the samples
+     * @param classValue - the class value to count
+     *
+     * @return the summed-area table
+     */
+    public static SummedAreaTable createClassCount(int[] samples, Rectangle rectangle, int classValue) {
+        if (samples.length < rectangle.width * rectangle.height) {
+            throw new IllegalArgumentException("Number of samples does not match rectangle " + rectangle);
+        }
+        final SummedAreaTable sat = new SummedAreaTable(rectangle);
+        final int[] table = sat.table;
+        final int stride = sat.stride;
+        for (int y = 0; y < rectangle.height; y++) {
+            int rowSum = 0;
+            final int srcOffset = y * rectangle.width;
+            final int upperOffset = y * stride + 1;
+            final int offset = upperOffset + stride;
+            for (int x = 0; x < rectangle.width; x++) {
+                if (samples[srcOffset + x] == classValue) {
+                    rowSum++;
+                }
+                table[offset + x] = table[upperOffset + x] + rowSum;
+            }
+        }
+        return sat;
+    }
+
+    public Rectangle getRectangle() {
+        return new Rectangle(rectangle);
+    }
+
+    /**
+     * Provides the number of counted pixels in the window [x1, x2] x [y1, y2] (bounds included,
+     * image coordinates). The window is clipped to the rectangle of the table.
+     *
+     * @param x1 - left window border
+     * @param y1 - upper window border
+     * @param x2 - right window border
+     * @param y2 - lower window border
+     *
+     * @return the pixel count, 0 if the window does not intersect the table rectangle
+     */
+    public int getCount(int x1, int y1, int x2, int y2) {
+        final int left = Math.max(x1, rectangle.x) - rectangle.x;
+        final int top = Math.max(y1, rectangle.y) - rectangle.y;
+        final int right = Math.min(x2, rectangle.x + rectangle.width - 1) - rectangle.x + 1;
+        final int bottom = Math.min(y2, rectangle.y + rectangle.height - 1) - rectangle.y + 1;
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+        return table[bottom * stride + right] - table[top * stride + right]
+                - table[bottom * stride + left] + table[top * stride + left];
+    }
+}
@@ -0,0 +1,217 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.gpf.Tile;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Array based access to the samples of a tile for use in per-pixel loops.
+ * <p/>
+ * {@link Tile#getSampleFloat(int, int)} and {@link Tile#setSample(int, int, float)} check bounds, apply the
+ * scaling of the raster and go through the raster for every single call. <code>TileAccess</code> resolves
+ * this once per tile: samples are addressed by an index computed from the precomputed scanline offset and
+ * stride, see {@link #getIndex(int, int)}.
+ * <ul>
+ * <li>If the raster holds unscaled samples of the requested type (<code>float32</code> resp.
+ * <code>int32</code>), the data buffer of the tile is used directly, without copying.</li>
+ * <li>Otherwise (scaled bands, other {@link ProductData} types) the geophysical samples are copied into an
+ * array covering the tile rectangle. Changes are written back to the tile by {@link #flush()}.</li>
+ * </ul>
+ */
+public class TileAccess {
+
+    private final Tile tile;
+    private final Rectangle rectangle;
+    private final int offset;
+    private final int stride;
+    private final float[] floats;
+    private final int[] ints;
+    private final boolean direct;
+
+    private TileAccess(Tile tile, int offset, int stride, float[] floats, int[] ints, boolean direct) {
+        this.tile = tile;
+        this.rectangle = tile.getRectangle();
+        this.offset = offset;
+        this.stride = stride;
+        this.floats = floats;
+        this.ints = ints;
+        this.direct = direct;
+    }
+
+    /**
+     * Creates an access to the geophysical samples of the tile as <code>float</code> values.
+     *
+     * @param tile - the tile
+     *
+     * @return the tile access
+     */
+    public static TileAccess forFloats(Tile tile) {
+        if (!isScaled(tile)) {
+            final float[] buffer = tile.getDataBufferFloat();
+            if (buffer != null) {
+                return new TileAccess(tile, tile.getScanlineOffset(), tile.getScanlineStride(), buffer, null, true);
+            }
+        }
+        return new TileAccess(tile, 0, tile.getWidth(), tile.getSamplesFloat(), null, false);
+    }
+
+    /**
+     * Creates an access to the samples of the tile as <code>int</code> values, e.g. for flag bands.
+     *
+     * @param tile - the tile
+     *
+     * @return the tile access
+     */
+    public static TileAccess forInts(Tile tile) {
+        if (!isScaled(tile)) {
+            final int[] buffer = tile.getDataBufferInt();
+            if (buffer != null) {
+                return new TileAccess(tile, tile.getScanlineOffset(), tile.getScanlineStride(), null, buffer, true);
+            }
+        }
+        return new TileAccess(tile, 0, tile.getWidth(), null, tile.getSamplesInt(), false);
+    }
+
+    /**
+     * Provides the geophysical samples of the tile line by line, i.e. the sample at (x, y) is found at
+     * <code>(y - tile.getMinY()) * tile.getWidth() + x - tile.getMinX()</code>. The raw samples are returned
+     * without conversion if they are unscaled <code>float32</code> values.
+     *
+     * @param tile - the tile
+     *
+     * @return the samples, must not be modified
+     */
+    public static float[] getFloats(Tile tile) {
+        if (!isScaled(tile)) {
+            final ProductData rawSamples = tile.getRawSamples();
+            if (rawSamples.getType() == ProductData.TYPE_FLOAT32) {
+                return (float[]) rawSamples.getElems();
+            }
+        }
+        return tile.getSamplesFloat();
+    }
+
+    /**
+     * Provides the samples of the tile as <code>int</code> values line by line, see {@link #getFloats(Tile)}.
+     *
+     * @param tile - the tile
+     *
+     * @return the samples, must not be modified
+     */
+    public static int[] getInts(Tile tile) {
+        if (!isScaled(tile)) {
+            final ProductData rawSamples = tile.getRawSamples();
+            if (rawSamples.getType() == ProductData.TYPE_INT32) {
+                return (int[]) rawSamples.getElems();
+            }
+        }
+        return tile.getSamplesInt();
+    }
+
+    public Rectangle getRectangle() {
+        return new Rectangle(rectangle);
+    }
+
+    /**
+     * @return true if the samples are accessed in the data buffer of the tile, false if they are a copy
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @param x - the x coordinate (image coordinates)
+     * @param y - the y coordinate (image coordinates)
+     *
+     * @return the index of the sample at (x, y)
+     */
+    public int getIndex(int x, int y) {
+        return offset + (y - rectangle.y) * stride + (x - rectangle.x);
+    }
+
+    /**
+     * @param y - the y coordinate (image coordinates)
+     *
+     * @return the index of the first sample of the tile in line y, consecutive samples of the line follow
+     */
+    public int getLineIndex(int y) {
+        return offset + (y - rectangle.y) * stride;
+    }
+
+    public float getFloat(int index) {
+        return floats[index];
+    }
+
+    public void setFloat(int index, float value) {
+        floats[index] = value;
+    }
+
+    public int getInt(int index) {
+        return ints[index];
+    }
+
+    public void setInt(int index, int value) {
+        ints[index] = value;
+    }
+
+    public boolean getBit(int index, int bitIndex) {
+        return (ints[index] & (1 << bitIndex)) != 0;
+    }
+
+    public void setBit(int index, int bitIndex, boolean value) {
+        if (value) {
+            ints[index] |= 1 << bitIndex;
+        } else {
+            ints[index] &= ~(1 << bitIndex);
+        }
+    }
+
+    /**
+     * Sets all samples of the given rectangle to the same value, e.g. the invalid flag of a tile without any
+     * valid pixel.
+     *
+     * @param rectangle - the rectangle (image coordinates), must be contained in the tile rectangle
+     * @param value     - the value
+     */
+    public void fill(Rectangle rectangle, int value) {
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            final int index = getIndex(rectangle.x, y);
+            Arrays.fill(ints, index, index + rectangle.width, value);
+        }
+    }
+
+    /**
+     * Sets all samples of the given rectangle to the same value, e.g. NaN for a tile without any valid pixel.
+     *
+     * @param rectangle - the rectangle (image coordinates), must be contained in the tile rectangle
+     * @param value     - the value
+     */
+    public void fill(Rectangle rectangle, float value) {
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            final int index = getIndex(rectangle.x, y);
+            Arrays.fill(floats, index, index + rectangle.width, value);
+        }
+    }
+
+    /**
+     * Writes modified samples back to the tile. Does nothing if the samples are accessed directly.
+     */
+    public void flush() {
+        if (direct) {
+            return;
+        }
+        if (floats != null) {
+            tile.setSamples(floats);
+        } else {
+            tile.setSamples(ints);
+        }
+    }
+
+    private static boolean isScaled(Tile tile) {
+        final RasterDataNode rasterDataNode = tile.getRasterDataNode();
+        return rasterDataNode != null && rasterDataNode.isScalingApplied();
+    }
+}
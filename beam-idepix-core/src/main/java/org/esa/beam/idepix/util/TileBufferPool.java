@@ -0,0 +1,112 @@
+package org.esa.beam.idepix.util;
+
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of per tile buffers (e.g. the source data holders of the MERIS classification operators), which are
+ * reused by subsequent tile computations instead of being allocated for every tile.
+ * <p/>
+ * Buffers are thread-confined: each thread gets its own buffer per tile size, so a buffer must not be used
+ * after the tile computation which got it has finished. Only the buffers of the most recently used tile sizes
+ * are kept, which are usually the regular tile size and the sizes of the tiles at the product borders.
+ * <p/>
+ * The per-thread buffers live as long as the worker threads (e.g. the JAI tile scheduler threads), so
+ * <ul>
+ * <li>the buffers must only hold the arrays they allocate themselves, references to source tiles or their
+ * sample arrays have to be cleared after each tile computation,</li>
+ * <li>the {@link Factory} and the buffers must not refer to the operator (use static classes), otherwise
+ * the operator is kept reachable by every worker thread,</li>
+ * <li>the owner calls {@link #dispose()} when it is disposed.</li>
+ * </ul>
+ */
+public class TileBufferPool<T> {
+
+    private static final int MAX_SIZES_PER_THREAD = 4;
+
+    private final Factory<T> factory;
+    private final ThreadLocal<Map<Dimension, T>> buffers;
+    private final AtomicInteger createdCount;
+
+    /**
+     * @param factory - creates the buffers, must not refer to the owner of the pool
+     */
+    public TileBufferPool(Factory<T> factory) {
+        this.factory = factory;
+        this.buffers = new BufferMaps<>();
+        this.createdCount = new AtomicInteger();
+    }
+
+    /**
+     * @param rectangle - the tile rectangle
+     *
+     * @return the buffer of the current thread for the size of the given rectangle
+     */
+    public T get(Rectangle rectangle) {
+        final Map<Dimension, T> threadBuffers = buffers.get();
+        final Dimension size = rectangle.getSize();
+        T buffer = threadBuffers.get(size);
+        if (buffer == null) {
+            buffer = factory.create(rectangle.width, rectangle.height);
+            createdCount.incrementAndGet();
+            threadBuffers.put(size, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * @return the number of buffers created so far, by all threads
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Releases the buffers of the current thread. The buffers of other threads still alive are not released by
+     * this: once the pool is no longer reachable they remain as stale entries of the thread local maps of those
+     * threads, until a later thread local access of the thread expunges them or the thread ends. Since the
+     * buffers do not refer back to the pool, at least the pool and its owner are not kept reachable by them.
+     */
+    public void dispose() {
+        buffers.remove();
+    }
+
+    /**
+     * Creates the buffers of a pool.
+     */
+    public interface Factory<T> {
+
+        /**
+         * Creates a new buffer for tiles of the given size.
+         *
+         * @param width  - the tile width
+         * @param height - the tile height
+         *
+         * @return the buffer
+         */
+        T create(int width, int height);
+    }
+
+    // static, so the thread-local values do not refer to the pool (which would keep their key from being cleared)
+    private static class BufferMaps<T> extends ThreadLocal<Map<Dimension, T>> {
+
+        @Override
+        protected Map<Dimension, T> initialValue() {
+            return new LeastRecentlyUsedMap<>();
+        }
+    }
+
+    private static class LeastRecentlyUsedMap<T> extends LinkedHashMap<Dimension, T> {
+
+        private LeastRecentlyUsedMap() {
+            super(MAX_SIZES_PER_THREAD + 1, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Dimension, T> eldest) {
+            return size() > MAX_SIZES_PER_THREAD;
+        }
+    }
+}
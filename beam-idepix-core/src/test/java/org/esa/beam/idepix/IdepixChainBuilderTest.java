@@ -0,0 +1,156 @@
+package org.esa.beam.idepix;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.esa.beam.framework.gpf.annotations.Parameter;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for class {@link IdepixChainBuilder}: counts the operator instances and tile computations of a
+ * chain in which a step is requested twice, as in the CoastColour post-processing.
+ */
+public class IdepixChainBuilderTest {
+
+    private static final CountingOp.Spi SPI = new CountingOp.Spi();
+
+    private Product sourceProduct;
+
+    @BeforeClass
+    public static void registerOperator() {
+        GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(SPI);
+    }
+
+    @AfterClass
+    public static void unregisterOperator() {
+        GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(SPI);
+    }
+
+    @Before
+    public void setUp() {
+        sourceProduct = new Product("source", "test", 20, 10);
+        sourceProduct.addBand("band", ProductData.TYPE_FLOAT32);
+        CountingOp.INSTANCES.set(0);
+        CountingOp.TILES.set(0);
+    }
+
+    @Test
+    public void testIdenticalRequestsCreateOneOperator() {
+        final IdepixChainBuilder chainBuilder = new IdepixChainBuilder();
+        final Product first = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2), sourceProduct);
+        final Product second = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2), sourceProduct);
+
+        assertSame(first, second);
+        assertEquals(2, chainBuilder.getRequestCount());
+        assertEquals(1, chainBuilder.getCreatedProductCount());
+        assertEquals(1, CountingOp.INSTANCES.get());
+
+        second.getBand("band").getSourceImage().getData();
+        assertEquals(1, CountingOp.TILES.get());
+    }
+
+    @Test
+    public void testDifferentParametersOrSourcesCreateSeparateOperators() {
+        final IdepixChainBuilder chainBuilder = new IdepixChainBuilder();
+        final Product first = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2), sourceProduct);
+        final Product otherParameter = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(3), sourceProduct);
+
+        final Product otherSource = new Product("source", "test", 20, 10);
+        otherSource.addBand("band", ProductData.TYPE_FLOAT32);
+        final Product otherSourceProduct = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2),
+                                                                      otherSource);
+
+        assertNotSame(first, otherParameter);
+        assertNotSame(first, otherSourceProduct);
+        assertEquals(3, chainBuilder.getCreatedProductCount());
+        assertEquals(3, CountingOp.INSTANCES.get());
+    }
+
+    @Test
+    public void testChainWithRepeatedStep() {
+        // the CoastColour post-processing used to request the same step twice before buffering the result
+        final IdepixChainBuilder chainBuilder = new IdepixChainBuilder();
+        final Map<String, Product> input = new HashMap<>();
+        input.put("sourceProduct", sourceProduct);
+        input.put("optional", null);
+        chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2), input);
+        final Product classified = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(2), input);
+        final Product buffered = chainBuilder.createProduct(CountingOp.ALIAS, createParameters(5), classified);
+
+        buffered.getBand("band").getSourceImage().getData();
+
+        assertEquals(3, chainBuilder.getRequestCount());
+        assertEquals(2, CountingOp.INSTANCES.get());
+        assertEquals(2, CountingOp.TILES.get());
+    }
+
+    private static Map<String, Object> createParameters(int width) {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("width", width);
+        return parameters;
+    }
+
+    @OperatorMetadata(alias = CountingOp.ALIAS, internal = true)
+    public static class CountingOp extends Operator {
+
+        static final String ALIAS = "Idepix.Test.Counting";
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+        static final AtomicInteger TILES = new AtomicInteger();
+
+        @SourceProduct
+        private Product sourceProduct;
+
+        @SourceProduct(optional = true)
+        private Product optional;
+
+        @TargetProduct
+        private Product targetProduct;
+
+        @Parameter(defaultValue = "1")
+        private int width;
+
+        @Override
+        public void initialize() throws OperatorException {
+            INSTANCES.incrementAndGet();
+            targetProduct = new Product("target", "test", sourceProduct.getSceneRasterWidth(),
+                                        sourceProduct.getSceneRasterHeight());
+            targetProduct.addBand("band", ProductData.TYPE_FLOAT32);
+        }
+
+        @Override
+        public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+            TILES.incrementAndGet();
+            final Tile sourceTile = getSourceTile(sourceProduct.getBand("band"), targetTile.getRectangle());
+            for (Tile.Pos pos : targetTile) {
+                targetTile.setSample(pos.x, pos.y, sourceTile.getSampleFloat(pos.x, pos.y) + width);
+            }
+        }
+
+        public static class Spi extends OperatorSpi {
+
+            public Spi() {
+                super(CountingOp.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.esa.beam.idepix.morphology;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for class {@link FlagPlanes}.
+ */
+public class FlagPlanesTest {
+
+    @Test
+    public void testCreateFromFlags() {
+        final int[] flags = {
+                0, 6, 5, 0,
+                4, 0, 1, 6,
+                0, 2, 4, 4
+        };
+        final FlagPlanes planes = FlagPlanes.createFromFlags(flags, new Rectangle(10, 20, 4, 3),
+                                                             new Rectangle(11, 21, 3, 2), 1, 2);
+        assertTrue(planes.contains(1));
+        assertTrue(planes.contains(2));
+        assertFalse(planes.contains(0));
+        assertEquals(new Rectangle(11, 21, 3, 2), planes.getRectangle());
+
+        final BitPlane plane1 = planes.get(1);
+        assertFalse(plane1.get(0, 0));
+        assertTrue(plane1.get(2, 0));
+        assertTrue(plane1.get(0, 1));
+        final BitPlane plane2 = planes.get(2);
+        assertTrue(plane2.get(2, 0));
+        assertTrue(plane2.get(1, 1));
+        assertTrue(plane2.get(2, 1));
+        assertFalse(plane2.get(0, 1));
+        // not contained, hence empty
+        assertTrue(planes.get(0).isEmpty());
+    }
+
+    @Test
+    public void testCreateFromFlags_allBits() {
+        final Random random = new Random(5);
+        final Rectangle rectangle = new Rectangle(3, 4, 130, 5);
+        final int[] flags = createRandomFlags(random, rectangle);
+        final FlagPlanes planes = FlagPlanes.createFromFlags(flags, rectangle, rectangle);
+        for (int bit = 0; bit < 32; bit++) {
+            assertTrue(planes.contains(bit));
+            final BitPlane plane = planes.get(bit);
+            for (int y = 0; y < rectangle.height; y++) {
+                for (int x = 0; x < rectangle.width; x++) {
+                    assertEquals((flags[y * rectangle.width + x] & (1 << bit)) != 0, plane.get(x, y));
+                }
+            }
+        }
+        assertArrayEquals(flags, planes.toFlags());
+    }
+
+    @Test
+    public void testWriteFlags() {
+        final Random random = new Random(11);
+        final Rectangle flagsRectangle = new Rectangle(0, 0, 150, 6);
+        // the planes overlap the flags at the right border
+        final Rectangle planeRectangle = new Rectangle(70, 1, 100, 4);
+        final int[] flags = createRandomFlags(random, flagsRectangle);
+        final int[] expected = flags.clone();
+
+        final FlagPlanes planes = new FlagPlanes(planeRectangle);
+        final BitPlane plane = new BitPlane(planeRectangle.width, planeRectangle.height);
+        for (int y = 0; y < planeRectangle.height; y++) {
+            for (int x = 0; x < planeRectangle.width; x++) {
+                plane.set(x, y, random.nextBoolean());
+            }
+        }
+        planes.set(4, plane);
+        planes.writeFlags(flags, flagsRectangle);
+
+        for (int y = planeRectangle.y; y < planeRectangle.y + planeRectangle.height; y++) {
+            for (int x = planeRectangle.x; x < flagsRectangle.width; x++) {
+                final int index = y * flagsRectangle.width + x;
+                expected[index] &= ~(1 << 4);
+                if (plane.get(x - planeRectangle.x, y - planeRectangle.y)) {
+                    expected[index] |= 1 << 4;
+                }
+            }
+        }
+        assertArrayEquals(expected, flags);
+    }
+
+    @Test
+    public void testOrFlags() {
+        final int[] flags = {
+                0, 2, 0,
+                3, 0, 8
+        };
+        final Rectangle rectangle = new Rectangle(0, 0, 3, 2);
+        final FlagPlanes planes = new FlagPlanes(new Rectangle(1, 0, 2, 2));
+        final BitPlane plane = new BitPlane(2, 2);
+        plane.set(1, 0, true);
+        plane.set(1, 1, true);
+        planes.set(1, plane);
+        planes.orFlags(flags, rectangle);
+        assertArrayEquals(new int[]{
+                0, 2, 2,
+                3, 0, 10
+        }, flags);
+    }
+
+    @Test
+    public void testCloudBuffer() {
+        final int cloud = 1;
+        final int snow = 7;
+        final int buffer = 4;
+        final Rectangle rectangle = new Rectangle(0, 0, 5, 3);
+        final int[] flags = {
+                0, 0, 0, 0, 1 << snow,
+                0, 1 << cloud, 0, 0, 0,
+                0, 0, 0, 1 << buffer | 1 << cloud, 0
+        };
+        final FlagPlanes planes = FlagPlanes.createFromFlags(flags, rectangle, rectangle, cloud, snow, buffer);
+        final BitPlane cloudPlane = planes.get(cloud).andNot(planes.get(snow));
+        final BitPlane bufferPlane = Morphology.dilate(cloudPlane, StructuringElement.square(1));
+        planes.set(buffer, planes.get(buffer).or(bufferPlane).andNot(cloudPlane));
+        planes.writeFlags(flags, rectangle);
+
+        final int b = 1 << buffer;
+        assertArrayEquals(new int[]{
+                b, b, b, 0, 1 << snow,
+                b, 1 << cloud, b, b, b,
+                b, b, b, 1 << cloud, b
+        }, flags);
+    }
+
+    private static int[] createRandomFlags(Random random, Rectangle rectangle) {
+        final int[] flags = new int[rectangle.width * rectangle.height];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = random.nextInt();
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,237 @@
+package org.esa.beam.idepix.morphology;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for classes {@link Morphology} and {@link BitPlane} against brute-force reference implementations.
+ */
+public class MorphologyTest {
+
+    private static final int[] WIDTHS = {1, 5, 63, 64, 65, 130};
+    private static final int[] HEIGHTS = {1, 7, 20};
+    private static final int[] RADII = {0, 1, 2, 3, 5, 8, 70};
+
+    @Test
+    public void testCreateFromFlags() {
+        final int[] flags = {
+                0, 4, 5, 0,
+                4, 0, 1, 4,
+                0, 0, 4, 4
+        };
+        final BitPlane plane = BitPlane.createFromFlags(flags, new Rectangle(10, 20, 4, 3),
+                                                        new Rectangle(11, 21, 3, 2), 2);
+        assertEquals(3, plane.getWidth());
+        assertEquals(2, plane.getHeight());
+        assertFalse(plane.get(0, 0));
+        assertFalse(plane.get(1, 0));
+        assertTrue(plane.get(2, 0));
+        assertFalse(plane.get(0, 1));
+        assertTrue(plane.get(1, 1));
+        assertTrue(plane.get(2, 1));
+        assertFalse(plane.get(3, 1));
+        assertFalse(plane.get(-1, 0));
+    }
+
+    @Test
+    public void testBooleanOperations() {
+        final Random random = new Random(7);
+        for (int width : WIDTHS) {
+            final BitPlane a = createRandomPlane(random, width, 3, 0.5);
+            final BitPlane b = createRandomPlane(random, width, 3, 0.5);
+            final BitPlane and = a.and(b);
+            final BitPlane or = a.or(b);
+            final BitPlane andNot = a.andNot(b);
+            final BitPlane complement = a.complement();
+            for (int y = 0; y < 3; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(a.get(x, y) && b.get(x, y), and.get(x, y));
+                    assertEquals(a.get(x, y) || b.get(x, y), or.get(x, y));
+                    assertEquals(a.get(x, y) && !b.get(x, y), andNot.get(x, y));
+                    assertEquals(!a.get(x, y), complement.get(x, y));
+                }
+            }
+            assertTrue(a.andNot(a).isEmpty());
+            assertTrue(a.or(complement).complement().isEmpty());
+        }
+    }
+
+    @Test
+    public void testIsFull() {
+        for (int width : WIDTHS) {
+            final BitPlane plane = new BitPlane(width, 3);
+            assertFalse(plane.isFull());
+            final BitPlane full = plane.complement();
+            assertTrue(full.isFull());
+            full.set(width - 1, 2, false);
+            assertFalse(full.isFull());
+        }
+    }
+
+    @Test
+    public void testIsSurrounded() {
+        assertFalse(Morphology.isSurrounded(6));
+        assertTrue(Morphology.isSurrounded(7));
+        assertTrue(Morphology.isSurrounded(9));
+
+        final BitPlane plane = new BitPlane(5, 4);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                plane.set(x, y, true);
+            }
+        }
+        plane.set(0, 0, false);
+        plane.set(2, 2, false);
+        // 7 of 9 pixels set, the center included
+        assertTrue(plane.isSurrounded(1, 1));
+        // only 6 of 9 pixels set once the center is cleared
+        plane.set(1, 1, false);
+        assertFalse(plane.isSurrounded(1, 1));
+        // pixels outside of the plane count as not set
+        assertFalse(plane.complement().isSurrounded(0, 3));
+        assertTrue(plane.complement().isSurrounded(3, 2));
+    }
+
+    @Test
+    public void testDilate3x3AndErode3x3() {
+        final Random random = new Random(11);
+        for (int width : WIDTHS) {
+            for (int height : HEIGHTS) {
+                final BitPlane plane = createRandomPlane(random, width, height, 0.2);
+                assertPlaneEquals(bruteForceDilate(plane, StructuringElement.square(1)), plane.dilate3x3(),
+                                  "dilate3x3");
+                assertPlaneEquals(bruteForceErode(plane, StructuringElement.square(1)), plane.erode3x3(),
+                                  "erode3x3");
+            }
+        }
+    }
+
+    @Test
+    public void testDilateAndErode() {
+        final Random random = new Random(42);
+        for (StructuringElement.Shape shape : StructuringElement.Shape.values()) {
+            for (int radius : RADII) {
+                final StructuringElement element = createElement(shape, radius);
+                for (int width : WIDTHS) {
+                    for (int height : HEIGHTS) {
+                        final BitPlane plane = createRandomPlane(random, width, height, 0.05);
+                        final String message = element + " " + width + "x" + height;
+                        assertPlaneEquals(bruteForceDilate(plane, element), Morphology.dilate(plane, element),
+                                          "dilate " + message);
+                        final BitPlane densePlane = createRandomPlane(random, width, height, 0.9);
+                        assertPlaneEquals(bruteForceErode(densePlane, element), Morphology.erode(densePlane, element),
+                                          "erode " + message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpenAndClose() {
+        final Random random = new Random(4711);
+        for (StructuringElement.Shape shape : StructuringElement.Shape.values()) {
+            for (int radius = 0; radius <= 3; radius++) {
+                final StructuringElement element = createElement(shape, radius);
+                for (int width : WIDTHS) {
+                    final BitPlane plane = createRandomPlane(random, width, 20, 0.5);
+                    final String message = element + " " + width + "x20";
+                    assertPlaneEquals(bruteForceDilate(bruteForceErode(plane, element), element),
+                                      Morphology.open(plane, element), "open " + message);
+                    assertPlaneEquals(bruteForceErode(bruteForceDilate(plane, element), element),
+                                      Morphology.close(plane, element), "close " + message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDilateSinglePixelWithDisc() {
+        final BitPlane plane = new BitPlane(11, 11);
+        plane.set(5, 5, true);
+        final BitPlane dilated = Morphology.dilate(plane, StructuringElement.disc(3));
+        assertTrue(dilated.get(5, 2));
+        assertTrue(dilated.get(8, 5));
+        assertTrue(dilated.get(7, 7));   // 2^2 + 2^2 <= 9
+        assertFalse(dilated.get(8, 6));  // 3^2 + 1^2 > 9
+        assertFalse(dilated.get(5, 1));
+    }
+
+    private static StructuringElement createElement(StructuringElement.Shape shape, int radius) {
+        switch (shape) {
+            case SQUARE:
+                return StructuringElement.square(radius);
+            case DIAMOND:
+                return StructuringElement.diamond(radius);
+            default:
+                return StructuringElement.disc(radius);
+        }
+    }
+
+    private static BitPlane createRandomPlane(Random random, int width, int height, double probability) {
+        final BitPlane plane = new BitPlane(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane.set(x, y, random.nextDouble() < probability);
+            }
+        }
+        return plane;
+    }
+
+    private static BitPlane bruteForceDilate(BitPlane plane, StructuringElement element) {
+        final int r = element.getRadius();
+        final BitPlane result = new BitPlane(plane.getWidth(), plane.getHeight());
+        for (int y = 0; y < plane.getHeight(); y++) {
+            for (int x = 0; x < plane.getWidth(); x++) {
+                boolean value = false;
+                for (int dy = -r; dy <= r && !value; dy++) {
+                    for (int dx = -r; dx <= r && !value; dx++) {
+                        value = element.contains(dx, dy) && plane.get(x + dx, y + dy);
+                    }
+                }
+                result.set(x, y, value);
+            }
+        }
+        return result;
+    }
+
+    private static BitPlane bruteForceErode(BitPlane plane, StructuringElement element) {
+        final int r = element.getRadius();
+        final BitPlane result = new BitPlane(plane.getWidth(), plane.getHeight());
+        for (int y = 0; y < plane.getHeight(); y++) {
+            for (int x = 0; x < plane.getWidth(); x++) {
+                boolean value = true;
+                for (int dy = -r; dy <= r && value; dy++) {
+                    for (int dx = -r; dx <= r && value; dx++) {
+                        final int i = x + dx;
+                        final int j = y + dy;
+                        final boolean inside = i >= 0 && j >= 0 && i < plane.getWidth() && j < plane.getHeight();
+                        if (element.contains(dx, dy) && inside) {
+                            value = plane.get(i, j);
+                        }
+                    }
+                }
+                result.set(x, y, value);
+            }
+        }
+        return result;
+    }
+
+    private static void assertPlaneEquals(BitPlane expected, BitPlane actual, String message) {
+        assertEquals(message, expected.getWidth(), actual.getWidth());
+        assertEquals(message, expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(message + " at (" + x + "," + y + ")", expected.get(x, y), actual.get(x, y));
+            }
+        }
+        // padding bits beyond the plane width must stay clear
+        assertTrue(message, actual.complement().complement().and(actual).or(actual).andNot(expected).isEmpty());
+    }
+}
@@ -82,4 +82,17 @@ public class SeaIceClassifierTest {
         new SeaIceClassifier(0);
     }
 
+    @Test
+    public void testGetInstance() throws Exception {
+        final SeaIceClassifier seaIceClassifier = SeaIceClassifier.getInstance(1);
+        assertSame(seaIceClassifier, SeaIceClassifier.getInstance(1));
+        assertNotSame(seaIceClassifier, SeaIceClassifier.getInstance(3));
+        assertEquals(99.6923, seaIceClassifier.getClassification(0.156, 16.856).mean, 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetInstance_FailHighMonth() throws Exception {
+        SeaIceClassifier.getInstance(13);
+    }
+
 }
@@ -0,0 +1,101 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Random;
+
+/**
+ * Benchmark for the tile-wide {@link IdepixUtils#combineFlags(Tile, Tile)} and
+ * {@link IdepixUtils#consolidateCloudAndBuffer(Tile)}: compares them with the per-pixel variants as called by the
+ * post-processing operators, on a 512x512 <code>int32</code> flag tile combined from a source tile extended by a
+ * 16 pixel margin.
+ * <p/>
+ * Usage: CombineFlagsBenchmarkMain [iterations]
+ */
+public class CombineFlagsBenchmarkMain {
+
+    private static final int TILE_SIZE = 512;
+    private static final int MARGIN = 16;
+
+    public static void main(String[] args) {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final Product product = new Product("benchmark", "benchmark", TILE_SIZE + 2 * MARGIN, TILE_SIZE + 2 * MARGIN);
+        final Band flagBand = product.addBand(IdepixUtils.IDEPIX_CLOUD_FLAGS, ProductData.TYPE_INT32);
+        final Rectangle sourceRectangle = new Rectangle(0, 0, TILE_SIZE + 2 * MARGIN, TILE_SIZE + 2 * MARGIN);
+        final Rectangle targetRectangle = new Rectangle(MARGIN, MARGIN, TILE_SIZE, TILE_SIZE);
+
+        final Tile sourceTile = createTile(flagBand, sourceRectangle);
+        final Random random = new Random(1234);
+        for (int y = sourceRectangle.y; y < sourceRectangle.y + sourceRectangle.height; y++) {
+            for (int x = sourceRectangle.x; x < sourceRectangle.x + sourceRectangle.width; x++) {
+                // random flags, i.e. half of the pixels cloudy and half of the cloudy pixels with buffer flag
+                sourceTile.setSample(x, y, random.nextInt(1 << 19));
+            }
+        }
+        final Tile perPixelTile = createTile(flagBand, targetRectangle);
+        final Tile tileWideTile = createTile(flagBand, targetRectangle);
+
+        // warm up
+        combinePerPixel(sourceTile, perPixelTile);
+        combineTileWide(sourceTile, tileWideTile);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            combinePerPixel(sourceTile, perPixelTile);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            combineTileWide(sourceTile, tileWideTile);
+        }
+        long t2 = System.nanoTime();
+
+        System.out.println("case;perPixelMillis;tileWideMillis;resultsEqual");
+        System.out.println("combineFlags + consolidateCloudAndBuffer;" + (t1 - t0) / 1000000 + ";" +
+                                   (t2 - t1) / 1000000 + ";" + isEqual(perPixelTile, tileWideTile));
+    }
+
+    private static void combinePerPixel(Tile sourceTile, Tile targetTile) {
+        final Rectangle rectangle = targetTile.getRectangle();
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                IdepixUtils.combineFlags(x, y, sourceTile, targetTile);
+            }
+        }
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                IdepixUtils.consolidateCloudAndBuffer(targetTile, x, y);
+            }
+        }
+    }
+
+    private static void combineTileWide(Tile sourceTile, Tile targetTile) {
+        IdepixUtils.combineFlags(sourceTile, targetTile);
+        IdepixUtils.consolidateCloudAndBuffer(targetTile);
+    }
+
+    private static boolean isEqual(Tile tile1, Tile tile2) {
+        final Rectangle rectangle = tile1.getRectangle();
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                if (tile1.getSampleInt(x, y) != tile2.getSampleInt(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Tile createTile(Band band, Rectangle rectangle) {
+        return new TileImpl(band, Raster.createWritableRaster(
+                new BandedSampleModel(DataBuffer.TYPE_INT, rectangle.width, rectangle.height, 1),
+                rectangle.getLocation()));
+    }
+}
@@ -0,0 +1,143 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.util.math.MathUtils;
+import org.junit.Test;
+
+import java.awt.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for class {@link GeometryTileProvider}: compares the interpolated trigonometric functions with the ones
+ * computed per pixel from the interpolated tie-point grids, for a MERIS like geometry with the view azimuth
+ * flipping at nadir, in RR (tie-points 16 pixels apart) and FR (64 pixels apart).
+ */
+public class GeometryTileProviderTest {
+
+    private static final int RR_WIDTH = 1121;
+    private static final int RR_HEIGHT = 400;
+    private static final int RR_SUB_SAMPLING = 16;
+    private static final int FR_WIDTH = 2241;
+    private static final int FR_HEIGHT = 1600;
+    private static final int FR_SUB_SAMPLING = 64;
+
+    // The bilinear interpolation of sine or cosine differs from the function of the interpolated angle by at most
+    // d^2 / 8, d being the angle change (rad) across a tie-point cell. The view zenith angle changes most, by 40 deg
+    // from nadir to the swath border, i.e. d = 0.020 in RR (5.0E-5) and d = 0.040 in FR (2.0E-4).
+    private static final double RR_TRIG_ERROR_BOUND = 1.0E-4;
+    private static final double FR_TRIG_ERROR_BOUND = 2.5E-4;
+    private static final double AZIMUTH_ERROR_BOUND = 1.0E-2;
+
+    private Product product;
+    private GeometryTileProvider provider;
+
+    @Test
+    public void testErrorBoundForTiles() {
+        createScene("MER_RR__1P", RR_WIDTH, RR_HEIGHT, RR_SUB_SAMPLING);
+        assertErrorBound(new Rectangle(0, 0, 256, 256), RR_TRIG_ERROR_BOUND);
+        // the tile containing nadir
+        assertErrorBound(new Rectangle(512, 0, 256, 256), RR_TRIG_ERROR_BOUND);
+        // a border tile, not aligned with the tie-point grid
+        assertErrorBound(new Rectangle(1000, 300, 121, 100), RR_TRIG_ERROR_BOUND);
+    }
+
+    @Test
+    public void testErrorBoundForTiles_fullResolution() {
+        createScene("MER_FR__1P", FR_WIDTH, FR_HEIGHT, FR_SUB_SAMPLING);
+        assertErrorBound(new Rectangle(0, 0, 512, 512), FR_TRIG_ERROR_BOUND);
+        // the tile containing nadir
+        assertErrorBound(new Rectangle(1024, 512, 512, 512), FR_TRIG_ERROR_BOUND);
+        // a border tile, not aligned with the tie-point grid
+        assertErrorBound(new Rectangle(2000, 1500, 241, 100), FR_TRIG_ERROR_BOUND);
+    }
+
+    @Test
+    public void testSinglePixelTile() {
+        createScene("MER_RR__1P", RR_WIDTH, RR_HEIGHT, RR_SUB_SAMPLING);
+        assertErrorBound(new Rectangle(17, 33, 1, 1), RR_TRIG_ERROR_BOUND);
+    }
+
+    @Test
+    public void testAzimuthDifferenceConvention() {
+        // the per pixel azimuth difference used at the nadir flip is between 0 and 180 degree
+        assertEquals(40.0, HelperFunctions.computeAzimuthDifference(100.0, 140.0), 1.0E-10);
+        assertEquals(140.0, HelperFunctions.computeAzimuthDifference(280.0, 140.0), 1.0E-10);
+        assertEquals(20.0, HelperFunctions.computeAzimuthDifference(350.0, 10.0), 1.0E-10);
+    }
+
+    private void createScene(String productType, int width, int height, int subSampling) {
+        final int nadirX = (width - 1) / 2;
+        final int gridWidth = (width - 1) / subSampling + 2;
+        final int gridHeight = (height - 1) / subSampling + 2;
+        final float[] sza = new float[gridWidth * gridHeight];
+        final float[] vza = new float[gridWidth * gridHeight];
+        final float[] saa = new float[gridWidth * gridHeight];
+        final float[] vaa = new float[gridWidth * gridHeight];
+        for (int j = 0; j < gridHeight; j++) {
+            for (int i = 0; i < gridWidth; i++) {
+                final int index = j * gridWidth + i;
+                final double x = i * subSampling;
+                final double y = j * subSampling;
+                sza[index] = (float) (20.0 + 20.0 * y / height + 3.0 * x / width);
+                vza[index] = (float) (Math.abs(x - nadirX) * 40.0 / nadirX);
+                saa[index] = (float) (150.0 + 20.0 * y / height);
+                vaa[index] = (float) ((x < nadirX ? 100.0 : 280.0) + 5.0 * y / height);
+            }
+        }
+        product = new Product("test", productType, width, height);
+        final TiePointGrid szaGrid = addGrid("sun_zenith", gridWidth, gridHeight, subSampling, sza,
+                                             TiePointGrid.DISCONT_NONE);
+        final TiePointGrid vzaGrid = addGrid("view_zenith", gridWidth, gridHeight, subSampling, vza,
+                                             TiePointGrid.DISCONT_NONE);
+        final TiePointGrid saaGrid = addGrid("sun_azimuth", gridWidth, gridHeight, subSampling, saa,
+                                             TiePointGrid.DISCONT_AT_360);
+        final TiePointGrid vaaGrid = addGrid("view_azimuth", gridWidth, gridHeight, subSampling, vaa,
+                                             TiePointGrid.DISCONT_AT_360);
+        provider = new GeometryTileProvider(szaGrid, vzaGrid, saaGrid, vaaGrid);
+    }
+
+    private void assertErrorBound(Rectangle rectangle, double trigErrorBound) {
+        final int size = rectangle.width * rectangle.height;
+        final float[] sins = new float[size];
+        final float[] coss = new float[size];
+        final float[] sinv = new float[size];
+        final float[] cosv = new float[size];
+        final float[] deltaAzimuth = new float[size];
+        provider.computeGeometry(rectangle, sins, coss, sinv, cosv, deltaAzimuth);
+
+        double maxTrigError = 0.0;
+        double maxAzimuthError = 0.0;
+        for (int y = 0; y < rectangle.height; y++) {
+            for (int x = 0; x < rectangle.width; x++) {
+                final int px = rectangle.x + x;
+                final int py = rectangle.y + y;
+                final int index = y * rectangle.width + x;
+                final double sza = product.getTiePointGrid("sun_zenith").getPixelFloat(px, py) * MathUtils.DTOR;
+                final double vza = product.getTiePointGrid("view_zenith").getPixelFloat(px, py) * MathUtils.DTOR;
+                final double saa = product.getTiePointGrid("sun_azimuth").getPixelFloat(px, py);
+                final double vaa = product.getTiePointGrid("view_azimuth").getPixelFloat(px, py);
+                maxTrigError = Math.max(maxTrigError, Math.abs(Math.sin(sza) - sins[index]));
+                maxTrigError = Math.max(maxTrigError, Math.abs(Math.cos(sza) - coss[index]));
+                maxTrigError = Math.max(maxTrigError, Math.abs(Math.sin(vza) - sinv[index]));
+                maxTrigError = Math.max(maxTrigError, Math.abs(Math.cos(vza) - cosv[index]));
+                maxAzimuthError = Math.max(maxAzimuthError,
+                                           Math.abs(HelperFunctions.computeAzimuthDifference(vaa, saa) -
+                                                            deltaAzimuth[index]));
+            }
+        }
+        assertTrue("trigonometric error " + maxTrigError, maxTrigError < trigErrorBound);
+        assertTrue("azimuth difference error " + maxAzimuthError, maxAzimuthError < AZIMUTH_ERROR_BOUND);
+    }
+
+    private TiePointGrid addGrid(String name, int gridWidth, int gridHeight, int subSampling, float[] tiePoints,
+                                 int discontinuity) {
+        final TiePointGrid grid = new TiePointGrid(name, gridWidth, gridHeight, 0.5f, 0.5f,
+                                                   subSampling, subSampling, tiePoints, discontinuity);
+        product.addTiePointGrid(grid);
+        return grid;
+    }
+}
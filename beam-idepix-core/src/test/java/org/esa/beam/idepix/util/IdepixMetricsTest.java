@@ -0,0 +1,161 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class IdepixMetricsTest {
+
+    private IdepixMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new IdepixMetrics();
+    }
+
+    @Test
+    public void testTileCountPixelsAndCounters() {
+        final Object op = new Object();
+        for (int i = 0; i < 3; i++) {
+            metrics.enter(op);
+            metrics.count(IdepixMetrics.NET_INVOCATIONS, 10L);
+            metrics.count(IdepixMetrics.NET_INVOCATIONS, 5L);
+            metrics.exit(op, "ClassificationOp", 100L);
+        }
+
+        final IdepixMetrics.OperatorMetrics operatorMetrics = metrics.getOperatorMetrics("ClassificationOp");
+        assertEquals(3L, operatorMetrics.getTileCount());
+        assertEquals(300L, operatorMetrics.getPixelCount());
+        assertEquals(45L, operatorMetrics.getCount(IdepixMetrics.NET_INVOCATIONS));
+        assertEquals(0L, operatorMetrics.getCount("unknown"));
+    }
+
+    @Test
+    public void testNestedTileComputations() throws Exception {
+        final Object outerOp = new Object();
+        final Object innerOp = new Object();
+        metrics.enter(outerOp);
+        metrics.enter(innerOp);
+        metrics.count(IdepixMetrics.NET_INVOCATIONS, 7L);
+        Thread.sleep(20);
+        metrics.exit(innerOp, "InnerOp", 10L);
+        metrics.exit(outerOp, "OuterOp", 10L);
+
+        final IdepixMetrics.OperatorMetrics inner = metrics.getOperatorMetrics("InnerOp");
+        final IdepixMetrics.OperatorMetrics outer = metrics.getOperatorMetrics("OuterOp");
+        // counters go to the innermost computation, its time is excluded from the self time of the outer one
+        assertEquals(7L, inner.getCount(IdepixMetrics.NET_INVOCATIONS));
+        assertEquals(0L, outer.getCount(IdepixMetrics.NET_INVOCATIONS));
+        assertTrue(outer.getMeanLatencyMillis() >= inner.getMeanLatencyMillis());
+        assertTrue(inner.getSelfMillis() >= 15.0);
+        assertTrue(outer.getSelfMillis() < 15.0);
+    }
+
+    @Test
+    public void testExitDiscardsUnfinishedInnerComputations() {
+        final Object outerOp = new Object();
+        final Object failingOp = new Object();
+        metrics.enter(outerOp);
+        metrics.enter(failingOp);
+        metrics.exit(outerOp, "OuterOp", 1L);
+        metrics.exit(failingOp, "FailingOp", 1L);
+
+        assertEquals(1L, metrics.getOperatorMetrics("OuterOp").getTileCount());
+        assertEquals(1, metrics.getAllOperatorMetrics().size());
+    }
+
+    @Test
+    public void testCountWithoutTileComputationIsIgnored() {
+        metrics.count(IdepixMetrics.NET_INVOCATIONS, 1L);
+        assertTrue(metrics.getAllOperatorMetrics().isEmpty());
+    }
+
+    @Test
+    public void testCountOfOwner() {
+        final Object op = new Object();
+        final Object pixelOp = new Object();
+        // within the tile computation of the owner, the count is part of the tile
+        metrics.enter(op);
+        metrics.count(op, "Op", IdepixMetrics.NET_INVOCATIONS, 2L);
+        // e.g. a PixelOperator computing a source tile of op, without tile computation of its own
+        metrics.count(pixelOp, "PixelOp", IdepixMetrics.NET_INVOCATIONS, 3L);
+        metrics.exit(op, "Op", 1L);
+        metrics.count(pixelOp, "PixelOp", IdepixMetrics.NET_INVOCATIONS, 4L);
+
+        assertEquals(2L, metrics.getOperatorMetrics("Op").getCount(IdepixMetrics.NET_INVOCATIONS));
+        final IdepixMetrics.OperatorMetrics pixelOpMetrics = metrics.getOperatorMetrics("PixelOp");
+        assertEquals(7L, pixelOpMetrics.getCount(IdepixMetrics.NET_INVOCATIONS));
+        assertEquals(0L, pixelOpMetrics.getTileCount());
+    }
+
+    @Test
+    public void testCountOfOwnerFromManyThreads() throws Exception {
+        final Object pixelOp = new Object();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        metrics.count(pixelOp, "PixelOp", IdepixMetrics.NET_INVOCATIONS, 1L);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000L, metrics.getOperatorMetrics("PixelOp").getCount(IdepixMetrics.NET_INVOCATIONS));
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        final IdepixMetrics.OperatorMetrics operatorMetrics = metrics.getOperatorMetrics("Op");
+        assertEquals(0.0, operatorMetrics.getLatencyPercentileMillis(95.0), 0.0);
+
+        final Object op = new Object();
+        for (int i = 0; i < 100; i++) {
+            metrics.enter(op);
+            metrics.exit(op, "Op", 1L);
+        }
+        final double p95 = operatorMetrics.getLatencyPercentileMillis(95.0);
+        final double p99 = operatorMetrics.getLatencyPercentileMillis(99.0);
+        assertTrue(p95 >= 0.0);
+        assertTrue(p99 >= p95);
+        assertTrue(operatorMetrics.getLatencyPercentileMillis(100.0) >= p99);
+    }
+
+    @Test
+    public void testReports() throws Exception {
+        final Object op = new Object();
+        metrics.enter(op);
+        metrics.count(IdepixMetrics.NET_INVOCATIONS, 4L);
+        metrics.exit(op, "BOp", 16L);
+        metrics.enter(op);
+        metrics.exit(op, "AOp", 8L);
+
+        final StringWriter csv = new StringWriter();
+        metrics.writeCsv(csv);
+        final String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("operator,tiles,pixels,meanLatencyMillis,p95LatencyMillis,p99LatencyMillis"));
+        assertTrue(lines[0].endsWith(",nnInvocations"));
+        assertTrue(lines[1].startsWith("AOp,1,8,"));
+        assertTrue(lines[1].endsWith(",0"));
+        assertTrue(lines[2].startsWith("BOp,1,16,"));
+        assertTrue(lines[2].endsWith(",4"));
+
+        final StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+        final String jsonString = json.toString();
+        assertTrue(jsonString.startsWith("["));
+        assertTrue(jsonString.trim().endsWith("]"));
+        assertTrue(jsonString.contains("{\"operator\": \"AOp\", \"tiles\": 1, \"pixels\": 8,"));
+        assertTrue(jsonString.contains("\"nnInvocations\": 4}"));
+        assertTrue(jsonString.indexOf("AOp") < jsonString.indexOf("BOp"));
+    }
+}
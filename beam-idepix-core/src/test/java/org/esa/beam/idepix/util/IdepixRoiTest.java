@@ -0,0 +1,140 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.util.BitSetter;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.media.jai.TiledImage;
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class {@link org.esa.beam.idepix.util.IdepixRoi}.
+ */
+public class IdepixRoiTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int TILE_SIZE = 10;
+
+    private Product product;
+
+    @Before
+    public void setUp() throws Exception {
+        // 0.1 deg pixels from 10E/50N, i.e. each tile covers 1 x 1 deg
+        product = new Product("P", "T", WIDTH, HEIGHT);
+        product.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, WIDTH, HEIGHT, 10.0, 50.0, 0.1, 0.1));
+        product.setPreferredTileSize(TILE_SIZE, TILE_SIZE);
+        final Band reflBand = product.addBand("refl", ProductData.TYPE_FLOAT32);
+        reflBand.setSourceImage(createImage(DataBuffer.TYPE_FLOAT, 0.5));
+        final Band flagBand = product.addBand(IdepixUtils.IDEPIX_CLOUD_FLAGS, ProductData.TYPE_INT16);
+        flagBand.setSourceImage(createImage(DataBuffer.TYPE_SHORT, 0.0));
+    }
+
+    @Test
+    public void testApply_noRoi() {
+        assertNull(IdepixRoi.apply(product, product, null, "", 0, IdepixUtils.IDEPIX_CLOUD_FLAGS));
+        assertFalse(product.getBand("refl").getSourceImage().getImage(0) instanceof RoiOpImage);
+    }
+
+    @Test(expected = OperatorException.class)
+    public void testApply_wktAndMask() {
+        IdepixRoi.apply(product, product, "POINT (10.5 49.5)", "refl > 0", 0,
+                        IdepixUtils.IDEPIX_CLOUD_FLAGS);
+    }
+
+    @Test(expected = OperatorException.class)
+    public void testApply_wktOutsideProduct() {
+        IdepixRoi.apply(product, product, "POINT (20.5 49.5)", null, 0, IdepixUtils.IDEPIX_CLOUD_FLAGS);
+    }
+
+    @Test
+    public void testApply_wktSelectsTilesByFootprint() {
+        final RoiTileSelection pointSelection = IdepixRoi.apply(product, product, "POINT (10.05 49.95)", null, 0,
+                                                                IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        assertEquals(1, pointSelection.getNumSelectedCells());
+        assertTrue(pointSelection.isSelected(0, 0));
+    }
+
+    @Test
+    public void testApply_wktAcrossTileBorder() {
+        // pixels x 12..25, y 14..15, i.e. the tiles (1, 1) and (2, 1)
+        final String wkt = "POLYGON ((11.2 48.6, 12.5 48.6, 12.5 48.5, 11.2 48.5, 11.2 48.6))";
+        final RoiTileSelection selection = IdepixRoi.apply(product, product, wkt, null, 0,
+                                                           IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        assertEquals(2, selection.getNumSelectedCells());
+        assertTrue(selection.isSelected(1, 1));
+        assertTrue(selection.isSelected(2, 1));
+
+        final Band reflBand = product.getBand("refl");
+        final Band flagBand = product.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS);
+        assertTrue(reflBand.getSourceImage().getImage(0) instanceof RoiOpImage);
+        assertTrue(flagBand.getSourceImage().getImage(0) instanceof RoiOpImage);
+
+        // computed inside, filled outside the ROI
+        assertEquals(0.5f, getSampleFloat(reflBand, 15, 15), 0.0f);
+        assertTrue(Float.isNaN(getSampleFloat(reflBand, 5, 5)));
+        assertEquals(0, getSampleFloat(flagBand, 25, 12), 0.0f);
+        assertEquals(BitSetter.setFlag(0, IdepixConstants.F_INVALID), getSampleFloat(flagBand, 35, 25), 0.0f);
+
+        // only the images are replaced
+        assertFalse(reflBand.isNoDataValueUsed());
+        assertFalse(flagBand.isNoDataValueUsed());
+    }
+
+    @Test
+    public void testGetNoDataValue() {
+        final Band reflBand = product.getBand("refl");
+        assertTrue(Double.isNaN(IdepixRoi.getNoDataValue(reflBand, IdepixUtils.IDEPIX_CLOUD_FLAGS)));
+        reflBand.setNoDataValue(-1.0);
+        reflBand.setNoDataValueUsed(true);
+        assertEquals(-1.0, IdepixRoi.getNoDataValue(reflBand, IdepixUtils.IDEPIX_CLOUD_FLAGS), 0.0);
+
+        assertEquals(BitSetter.setFlag(0, IdepixConstants.F_INVALID),
+                     IdepixRoi.getNoDataValue(product.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS),
+                                              IdepixUtils.IDEPIX_CLOUD_FLAGS), 0.0);
+        assertEquals(0.0, IdepixRoi.getNoDataValue(product.addBand("count", ProductData.TYPE_INT32),
+                                                   IdepixUtils.IDEPIX_CLOUD_FLAGS), 0.0);
+    }
+
+    @Test
+    public void testApply_pixelClassifFlags() {
+        // e.g. OC-CCI, whose classification flag band is not the cloud flag band of the other algorithms
+        final Band classifBand = product.addBand("pixel_classif_flags", ProductData.TYPE_INT16);
+        classifBand.setSourceImage(createImage(DataBuffer.TYPE_SHORT, 0.0));
+        IdepixRoi.apply(product, product, "POINT (10.05 49.95)", null, 0, "pixel_classif_flags");
+
+        final int invalid = BitSetter.setFlag(0, IdepixConstants.F_INVALID);
+        assertEquals(0, getSampleFloat(classifBand, 5, 5), 0.0f);
+        assertEquals(invalid, getSampleFloat(classifBand, 35, 25), 0.0f);
+        // the cloud flags are an ordinary band in this case
+        assertEquals(0, getSampleFloat(product.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS), 35, 25), 0.0f);
+    }
+
+    private static float getSampleFloat(Band band, int x, int y) {
+        final Raster data = band.getSourceImage().getData(new Rectangle(x, y, 1, 1));
+        return data.getSampleFloat(x, y, 0);
+    }
+
+    private static TiledImage createImage(int dataType, double value) {
+        final TiledImage image = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0,
+                                                new BandedSampleModel(dataType, TILE_SIZE, TILE_SIZE, 1), null);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setSample(x, y, 0, value);
+            }
+        }
+        return image;
+    }
+}
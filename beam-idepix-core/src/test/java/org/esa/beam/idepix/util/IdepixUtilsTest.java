@@ -4,8 +4,17 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.beam.idepix.IdepixConstants;
 import org.junit.Test;
 
+import java.awt.*;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -201,4 +210,48 @@ public class IdepixUtilsTest {
         assertTrue(IdepixUtils.isValidLandsat8Product(product));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCombineFlagsAndConsolidateCloudAndBuffer_tileWide() {
+        final Product product = new Product("flags", "flags", 20, 10);
+        final Band flagBand = product.addBand(IdepixUtils.IDEPIX_CLOUD_FLAGS, ProductData.TYPE_INT32);
+        final Rectangle sourceRectangle = new Rectangle(2, 1, 15, 8);
+        final Rectangle targetRectangle = new Rectangle(5, 3, 7, 4);
+        final Tile sourceTile = createFlagTile(flagBand, sourceRectangle);
+        final Tile perPixelTile = createFlagTile(flagBand, targetRectangle);
+        final Tile tileWideTile = createFlagTile(flagBand, targetRectangle);
+        final Random random = new Random(3);
+        for (int y = sourceRectangle.y; y < sourceRectangle.y + sourceRectangle.height; y++) {
+            for (int x = sourceRectangle.x; x < sourceRectangle.x + sourceRectangle.width; x++) {
+                sourceTile.setSample(x, y, random.nextInt(1 << 8));
+                if (targetRectangle.contains(x, y)) {
+                    final int computedFlags = random.nextInt(1 << 8);
+                    perPixelTile.setSample(x, y, computedFlags);
+                    tileWideTile.setSample(x, y, computedFlags);
+                }
+            }
+        }
+
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                IdepixUtils.combineFlags(x, y, sourceTile, perPixelTile);
+                IdepixUtils.consolidateCloudAndBuffer(perPixelTile, x, y);
+            }
+        }
+        IdepixUtils.combineFlags(sourceTile, tileWideTile);
+        IdepixUtils.consolidateCloudAndBuffer(tileWideTile);
+
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                assertEquals(perPixelTile.getSampleInt(x, y), tileWideTile.getSampleInt(x, y));
+                assertFalse(tileWideTile.getSampleBit(x, y, IdepixConstants.F_CLOUD) &&
+                                    tileWideTile.getSampleBit(x, y, IdepixConstants.F_CLOUD_BUFFER));
+            }
+        }
+    }
+
+    private static Tile createFlagTile(Band band, Rectangle rectangle) {
+        return new TileImpl(band, Raster.createWritableRaster(
+                new BandedSampleModel(DataBuffer.TYPE_INT, rectangle.width, rectangle.height, 1),
+                rectangle.getLocation()));
+    }
+}
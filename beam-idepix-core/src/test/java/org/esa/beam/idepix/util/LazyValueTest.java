@@ -0,0 +1,100 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.gpf.OperatorException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LazyValueTest {
+
+    @Test
+    public void testComputedOnFirstGetOnly() {
+        final AtomicInteger numComputations = new AtomicInteger();
+        final LazyValue<int[]> lazyValue = new LazyValue<int[]>() {
+            @Override
+            protected int[] compute() {
+                numComputations.incrementAndGet();
+                return new int[]{42};
+            }
+        };
+        assertFalse(lazyValue.isComputed());
+        assertEquals(0, numComputations.get());
+
+        final int[] value = lazyValue.get();
+        assertTrue(lazyValue.isComputed());
+        assertSame(value, lazyValue.get());
+        assertEquals(42, value[0]);
+        assertEquals(1, numComputations.get());
+    }
+
+    @Test
+    public void testComputedOnceForConcurrentGets() throws Exception {
+        final AtomicInteger numComputations = new AtomicInteger();
+        final LazyValue<Object> lazyValue = new LazyValue<Object>() {
+            @Override
+            protected Object compute() throws Exception {
+                numComputations.incrementAndGet();
+                Thread.sleep(50);
+                return new Object();
+            }
+        };
+        final int numThreads = 8;
+        final Object[] values = new Object[numThreads];
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        values[index] = lazyValue.get();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, numComputations.get());
+        for (Object value : values) {
+            assertSame(values[0], value);
+        }
+    }
+
+    @Test
+    public void testFailedComputationIsRepeated() {
+        final AtomicInteger numComputations = new AtomicInteger();
+        final LazyValue<String> lazyValue = new LazyValue<String>() {
+            @Override
+            protected String compute() throws IOException {
+                if (numComputations.incrementAndGet() == 1) {
+                    throw new IOException("auxdata not found");
+                }
+                return "auxdata";
+            }
+        };
+        try {
+            lazyValue.get();
+            fail("OperatorException expected");
+        } catch (OperatorException e) {
+            assertEquals("auxdata not found", e.getMessage());
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertFalse(lazyValue.isComputed());
+        assertEquals("auxdata", lazyValue.get());
+        assertEquals(2, numComputations.get());
+    }
+}
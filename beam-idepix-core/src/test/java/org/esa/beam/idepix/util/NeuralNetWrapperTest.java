@@ -0,0 +1,41 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.idepix.algorithms.SchillerAlgorithm;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class NeuralNetWrapperTest {
+
+    private static final String NET_NAME = "schiller_7x3_526.2_water.nna";
+
+    @After
+    public void tearDown() {
+        NeuralNetWrapper.clearCache();
+    }
+
+    @Test
+    public void testCreateReturnsCachedInstance() {
+        final ThreadLocal<NeuralNetWrapper> net1 = NeuralNetWrapper.create(getNetStream(), 15, 1);
+        final ThreadLocal<NeuralNetWrapper> net2 = NeuralNetWrapper.create(getNetStream(), 15, 1);
+        assertSame(net1, net2);
+        assertSame(net1.get(), net2.get());
+        // other vector sizes need other wrappers
+        assertNotSame(net1, NeuralNetWrapper.create(getNetStream(), 15, 2));
+    }
+
+    @Test
+    public void testClearCache() {
+        final ThreadLocal<NeuralNetWrapper> net1 = NeuralNetWrapper.create(getNetStream(), 15, 1);
+        NeuralNetWrapper.clearCache();
+        assertNotSame(net1, NeuralNetWrapper.create(getNetStream(), 15, 1));
+    }
+
+    private static InputStream getNetStream() {
+        return SchillerAlgorithm.class.getResourceAsStream(NET_NAME);
+    }
+}
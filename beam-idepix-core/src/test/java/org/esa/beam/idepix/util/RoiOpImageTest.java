@@ -0,0 +1,76 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.media.jai.TiledImage;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for class {@link org.esa.beam.idepix.util.RoiOpImage}.
+ */
+public class RoiOpImageTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 50;
+
+    private TiledImage sourceImage;
+
+    @Before
+    public void setUp() {
+        sourceImage = new TiledImage(0, 0, WIDTH, HEIGHT, 0, 0,
+                                     new BandedSampleModel(DataBuffer.TYPE_SHORT, 32, 16, 1), null);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                sourceImage.setSample(x, y, 0, x + y);
+            }
+        }
+    }
+
+    @Test
+    public void testTilesArePassedThroughOrFilled() {
+        final RoiTileSelection selection = new RoiTileSelection(WIDTH, HEIGHT, 32, 16, 0);
+        selection.select(1, 1);
+        final RoiOpImage roiImage = new RoiOpImage(sourceImage, selection, -1.0);
+        assertEquals(DataBuffer.TYPE_SHORT, roiImage.getSampleModel().getDataType());
+        assertEquals(32, roiImage.getTileWidth());
+        assertEquals(16, roiImage.getTileHeight());
+
+        for (int tileY = 0; tileY < roiImage.getNumYTiles(); tileY++) {
+            for (int tileX = 0; tileX < roiImage.getNumXTiles(); tileX++) {
+                final boolean passThrough = tileX == 1 && tileY == 1;
+                assertTile(roiImage.getTile(tileX, tileY), passThrough, -1);
+            }
+        }
+    }
+
+    @Test
+    public void testTilesWithinHaloArePassedThrough() {
+        final RoiTileSelection selection = new RoiTileSelection(WIDTH, HEIGHT, 32, 16, 2);
+        selection.select(0, 0);
+        final RoiOpImage roiImage = new RoiOpImage(sourceImage, selection, 0.0);
+
+        assertTile(roiImage.getTile(0, 0), true, 0);
+        assertTile(roiImage.getTile(1, 0), true, 0);
+        assertTile(roiImage.getTile(1, 1), true, 0);
+        assertTile(roiImage.getTile(2, 0), false, 0);
+        assertTile(roiImage.getTile(0, 2), false, 0);
+        // the partial tile at the scene corner
+        assertTile(roiImage.getTile(3, 3), false, 0);
+    }
+
+    private static void assertTile(Raster tile, boolean passThrough, int noDataValue) {
+        final int maxX = Math.min(tile.getMinX() + tile.getWidth(), WIDTH);
+        final int maxY = Math.min(tile.getMinY() + tile.getHeight(), HEIGHT);
+        for (int y = tile.getMinY(); y < maxY; y++) {
+            for (int x = tile.getMinX(); x < maxX; x++) {
+                final int expected = passThrough ? x + y : noDataValue;
+                assertEquals("sample at " + x + "," + y, expected, tile.getSample(x, y, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for class {@link org.esa.beam.idepix.util.RoiTileSelection}.
+ */
+public class RoiTileSelectionTest {
+
+    @Test
+    public void testCellGrid() {
+        final RoiTileSelection selection = new RoiTileSelection(100, 50, 32, 16, 0);
+        assertEquals(4, selection.getNumCellsX());
+        assertEquals(4, selection.getNumCellsY());
+        assertEquals(new Rectangle(96, 48, 4, 2), selection.getCellRectangle(3, 3));
+        assertEquals(0, selection.getNumSelectedCells());
+    }
+
+    @Test
+    public void testFromMaskImage() {
+        final BufferedImage maskImage = new BufferedImage(100, 50, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = maskImage.getRaster();
+        raster.setSample(40, 20, 0, 255);
+        raster.setSample(99, 49, 0, 1);
+
+        final RoiTileSelection selection = RoiTileSelection.fromMaskImage(maskImage, 32, 16, 0);
+        assertEquals(2, selection.getNumSelectedCells());
+        assertTrue(selection.isSelected(1, 1));
+        assertTrue(selection.isSelected(3, 3));
+        assertFalse(selection.isSelected(0, 0));
+    }
+
+    @Test
+    public void testIntersects() {
+        final RoiTileSelection selection = new RoiTileSelection(100, 50, 32, 16, 0);
+        selection.select(1, 1);
+
+        assertTrue(selection.intersects(new Rectangle(32, 16, 32, 16)));
+        assertTrue(selection.intersects(new Rectangle(0, 0, 40, 20)));
+        assertFalse(selection.intersects(new Rectangle(0, 0, 32, 16)));
+        assertFalse(selection.intersects(new Rectangle(64, 32, 36, 18)));
+        assertFalse(selection.intersects(new Rectangle(200, 0, 10, 10)));
+    }
+
+    @Test
+    public void testIntersects_withHalo() {
+        final RoiTileSelection selection = new RoiTileSelection(100, 50, 32, 16, 2);
+        selection.select(1, 1);
+
+        // the neighbouring tiles are computed because of the halo
+        assertTrue(selection.intersects(new Rectangle(0, 0, 32, 16)));
+        assertTrue(selection.intersects(new Rectangle(64, 32, 32, 16)));
+        // too far off for the halo
+        assertFalse(selection.intersects(new Rectangle(0, 0, 29, 13)));
+        assertFalse(selection.intersects(new Rectangle(67, 35, 29, 13)));
+    }
+}
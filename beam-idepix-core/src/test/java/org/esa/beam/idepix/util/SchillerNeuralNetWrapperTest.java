@@ -0,0 +1,41 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SchillerNeuralNetWrapperTest {
+
+    @After
+    public void tearDown() {
+        SchillerNeuralNetWrapper.clearCache();
+    }
+
+    @Test
+    public void testCreateReturnsCachedInstance() {
+        // the net is parsed lazily per thread, so any text will do here
+        final ThreadLocal<SchillerNeuralNetWrapper> net1 = SchillerNeuralNetWrapper.create(createStream("net A"));
+        final ThreadLocal<SchillerNeuralNetWrapper> net2 = SchillerNeuralNetWrapper.create(createStream("net A"));
+        final ThreadLocal<SchillerNeuralNetWrapper> net3 = SchillerNeuralNetWrapper.create(createStream("net B"));
+        assertSame(net1, net2);
+        assertNotSame(net1, net3);
+    }
+
+    @Test
+    public void testClearCache() {
+        final ThreadLocal<SchillerNeuralNetWrapper> net1 = SchillerNeuralNetWrapper.create(createStream("net A"));
+        SchillerNeuralNetWrapper.clearCache();
+        final ThreadLocal<SchillerNeuralNetWrapper> net2 = SchillerNeuralNetWrapper.create(createStream("net A"));
+        assertNotSame(net1, net2);
+    }
+
+    private static InputStream createStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,78 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for class {@link org.esa.beam.idepix.util.SummedAreaTable}.
+ */
+public class SummedAreaTableTest {
+
+    @Test
+    public void testGetCount() {
+        // 4x3 rectangle at offset (10, 20)
+        final int[] samples = new int[]{
+                1, 0, 1, 1,
+                0, 1, 2, 1,
+                1, 1, 0, 0
+        };
+        final Rectangle rectangle = new Rectangle(10, 20, 4, 3);
+        final SummedAreaTable sat = SummedAreaTable.createClassCount(samples, rectangle, 1);
+
+        assertEquals(7, sat.getCount(10, 20, 13, 22));
+        assertEquals(1, sat.getCount(10, 20, 10, 20));
+        assertEquals(0, sat.getCount(11, 20, 11, 20));
+        assertEquals(2, sat.getCount(11, 21, 12, 22));
+        assertEquals(3, sat.getCount(12, 20, 13, 21));
+
+        final SummedAreaTable sat2 = SummedAreaTable.createClassCount(samples, rectangle, 2);
+        assertEquals(1, sat2.getCount(10, 20, 13, 22));
+    }
+
+    @Test
+    public void testGetCount_clippedWindow() {
+        final int[] samples = new int[]{
+                1, 1,
+                1, 1
+        };
+        final SummedAreaTable sat = SummedAreaTable.createClassCount(samples, new Rectangle(5, 5, 2, 2), 1);
+
+        assertEquals(4, sat.getCount(0, 0, 100, 100));
+        assertEquals(2, sat.getCount(6, 0, 100, 100));
+        assertEquals(0, sat.getCount(0, 0, 4, 100));
+        assertEquals(0, sat.getCount(7, 7, 10, 10));
+        assertEquals(0, sat.getCount(6, 6, 5, 5));
+    }
+
+    @Test
+    public void testGetCount_againstBruteForce() {
+        final Random random = new Random(42);
+        final Rectangle rectangle = new Rectangle(3, 7, 37, 29);
+        final int[] samples = new int[rectangle.width * rectangle.height];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextInt(3);
+        }
+        final SummedAreaTable sat = SummedAreaTable.createClassCount(samples, rectangle, 1);
+
+        for (int k = 0; k < 500; k++) {
+            final int x1 = rectangle.x - 2 + random.nextInt(rectangle.width + 4);
+            final int y1 = rectangle.y - 2 + random.nextInt(rectangle.height + 4);
+            final int x2 = x1 + random.nextInt(10);
+            final int y2 = y1 + random.nextInt(10);
+            int expected = 0;
+            for (int y = y1; y <= y2; y++) {
+                for (int x = x1; x <= x2; x++) {
+                    if (rectangle.contains(x, y) &&
+                            samples[(y - rectangle.y) * rectangle.width + x - rectangle.x] == 1) {
+                        expected++;
+                    }
+                }
+            }
+            assertEquals(expected, sat.getCount(x1, y1, x2, y2));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.esa.beam.idepix.util;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+/**
+ * Benchmark for {@link TileAccess}: compares per-pixel {@link Tile#getSampleFloat(int, int)} and
+ * {@link Tile#setSample(int, int, int, boolean)} with array access on 512x512 tiles, for an unscaled
+ * <code>float32</code> band (direct buffer access), a scaled <code>int16</code> band (copy) and an
+ * <code>int32</code> flag band.
+ * <p/>
+ * Usage: TileAccessBenchmarkMain [iterations]
+ */
+public class TileAccessBenchmarkMain {
+
+    private static final int TILE_SIZE = 512;
+
+    public static void main(String[] args) {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final Product product = new Product("benchmark", "benchmark", TILE_SIZE, TILE_SIZE);
+
+        final Band floatBand = product.addBand("float", ProductData.TYPE_FLOAT32);
+        final Tile floatTile = new TileImpl(floatBand, createRaster(DataBuffer.TYPE_FLOAT));
+
+        final Band scaledBand = product.addBand("scaled", ProductData.TYPE_INT16);
+        scaledBand.setScalingFactor(0.01);
+        final Tile scaledTile = new TileImpl(scaledBand, createRaster(DataBuffer.TYPE_SHORT));
+
+        final Band flagBand = product.addBand("flags", ProductData.TYPE_INT32);
+        final Tile flagTile = new TileImpl(flagBand, createRaster(DataBuffer.TYPE_INT));
+
+        System.out.println("case;tileMillis;arrayMillis;resultsEqual");
+        runReadBenchmark("float32 read", floatTile, iterations);
+        runReadBenchmark("scaled int16 read", scaledTile, iterations);
+        runFlagBenchmark("int32 flag read/write", flagTile, iterations);
+    }
+
+    private static WritableRaster createRaster(int dataType) {
+        final Random random = new Random(1234);
+        final WritableRaster raster = Raster.createWritableRaster(
+                new BandedSampleModel(dataType, TILE_SIZE, TILE_SIZE, 1), null);
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                raster.setSample(x, y, 0, random.nextInt(10000));
+            }
+        }
+        return raster;
+    }
+
+    private static void runReadBenchmark(String name, Tile tile, int iterations) {
+        // warm up
+        sumWithTile(tile);
+        sumWithTileAccess(tile);
+
+        double tileSum = 0.0;
+        double arraySum = 0.0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tileSum = sumWithTile(tile);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            arraySum = sumWithTileAccess(tile);
+        }
+        long t2 = System.nanoTime();
+        System.out.println(name + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" + (tileSum == arraySum));
+    }
+
+    private static double sumWithTile(Tile tile) {
+        double sum = 0.0;
+        for (int y = tile.getMinY(); y <= tile.getMaxY(); y++) {
+            for (int x = tile.getMinX(); x <= tile.getMaxX(); x++) {
+                sum += tile.getSampleFloat(x, y);
+            }
+        }
+        return sum;
+    }
+
+    private static double sumWithTileAccess(Tile tile) {
+        final TileAccess access = TileAccess.forFloats(tile);
+        double sum = 0.0;
+        for (int y = tile.getMinY(); y <= tile.getMaxY(); y++) {
+            int index = access.getLineIndex(y);
+            for (int x = tile.getMinX(); x <= tile.getMaxX(); x++) {
+                sum += access.getFloat(index++);
+            }
+        }
+        return sum;
+    }
+
+    private static void runFlagBenchmark(String name, Tile tile, int iterations) {
+        // warm up
+        toggleFlagsWithTile(tile);
+        toggleFlagsWithTileAccess(tile);
+
+        long tileCount = 0;
+        long arrayCount = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tileCount = toggleFlagsWithTile(tile);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            arrayCount = toggleFlagsWithTileAccess(tile);
+        }
+        long t2 = System.nanoTime();
+        // both variants toggle the flag the same number of times, so the counts must match
+        System.out.println(name + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" +
+                                   (tileCount == arrayCount));
+    }
+
+    // reads two flags and sets a third one, as the classification operators do
+    private static long toggleFlagsWithTile(Tile tile) {
+        long count = 0;
+        for (int y = tile.getMinY(); y <= tile.getMaxY(); y++) {
+            for (int x = tile.getMinX(); x <= tile.getMaxX(); x++) {
+                final boolean value = tile.getSampleBit(x, y, 0) ^ tile.getSampleBit(x, y, 1);
+                tile.setSample(x, y, 2, value);
+                if (value) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long toggleFlagsWithTileAccess(Tile tile) {
+        final TileAccess access = TileAccess.forInts(tile);
+        long count = 0;
+        for (int y = tile.getMinY(); y <= tile.getMaxY(); y++) {
+            int index = access.getLineIndex(y);
+            for (int x = tile.getMinX(); x <= tile.getMaxX(); x++) {
+                final boolean value = access.getBit(index, 0) ^ access.getBit(index, 1);
+                access.setBit(index, 2, value);
+                if (value) {
+                    count++;
+                }
+                index++;
+            }
+        }
+        access.flush();
+        return count;
+    }
+}
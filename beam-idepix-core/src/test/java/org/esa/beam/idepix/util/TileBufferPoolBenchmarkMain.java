@@ -0,0 +1,161 @@
+package org.esa.beam.idepix.util;
+
+import java.awt.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Benchmark for {@link TileBufferPool}: processes the tiles of a MERIS FR orbit (4481 x 14945 pixels, 512 x 512
+ * tiles) several times with the source data buffers of the MERIS classification operators (holder arrays and five
+ * geometry arrays per tile) either allocated per tile or taken from the pool, and reports time, allocated bytes
+ * and garbage collection time.
+ * <p/>
+ * Usage: TileBufferPoolBenchmarkMain [numPasses] [numThreads]
+ * <p/>
+ * Run with a fixed heap, e.g. -Xmx1g, for comparable GC figures.
+ */
+public class TileBufferPoolBenchmarkMain {
+
+    private static final int WIDTH = 4481;
+    private static final int HEIGHT = 14945;
+    private static final int TILE_SIZE = 512;
+    private static final int NUM_BANDS = 15;
+
+    public static void main(String[] args) throws Exception {
+        final int numPasses = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        final TileBufferPool<Buffers> pool = new TileBufferPool<>(new TileBufferPool.Factory<Buffers>() {
+            @Override
+            public Buffers create(int width, int height) {
+                return new Buffers(width * height);
+            }
+        });
+
+        System.out.println("mode;millis;allocatedMBytes;gcCount;gcMillis;checksum");
+        for (int run = 0; run < 2; run++) {
+            runPasses("allocating", null, numPasses, numThreads);
+            runPasses("pooled", pool, numPasses, numThreads);
+        }
+    }
+
+    private static void runPasses(String mode, final TileBufferPool<Buffers> pool, int numPasses, int numThreads)
+            throws Exception {
+        final List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < HEIGHT; y += TILE_SIZE) {
+            for (int x = 0; x < WIDTH; x += TILE_SIZE) {
+                tiles.add(new Rectangle(x, y, Math.min(TILE_SIZE, WIDTH - x), Math.min(TILE_SIZE, HEIGHT - y)));
+            }
+        }
+        final List<Thread> workers = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                synchronized (workers) {
+                    workers.add(thread);
+                }
+                return thread;
+            }
+        });
+        final long[] gcBefore = getGcCountAndMillis();
+        final long t0 = System.nanoTime();
+        double checksum = 0.0;
+        final long t1;
+        final long[] gcAfter;
+        final long allocatedAfter;
+        try {
+            final List<Future<Double>> results = new ArrayList<>();
+            for (int pass = 0; pass < numPasses; pass++) {
+                for (final Rectangle tile : tiles) {
+                    results.add(executor.submit(new Callable<Double>() {
+                        @Override
+                        public Double call() {
+                            final Buffers buffers = pool != null ? pool.get(tile) : new Buffers(tile.width * tile.height);
+                            return processTile(buffers, tile);
+                        }
+                    }));
+                }
+            }
+            for (Future<Double> result : results) {
+                checksum += result.get();
+            }
+            // measure before shutdown, as the allocations of terminated threads are not reported
+            t1 = System.nanoTime();
+            gcAfter = getGcCountAndMillis();
+            allocatedAfter = getAllocatedBytes(workers);
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println(mode + ";" + (t1 - t0) / 1000000 + ";" + allocatedAfter / (1024 * 1024) +
+                                   ";" + (gcAfter[0] - gcBefore[0]) + ";" + (gcAfter[1] - gcBefore[1]) + ";" + checksum);
+    }
+
+    // stands in for the geometry computation and classification of a tile
+    private static double processTile(Buffers buffers, Rectangle tile) {
+        final int size = tile.width * tile.height;
+        for (int i = 0; i < size; i++) {
+            buffers.sins[i] = i;
+            buffers.coss[i] = i;
+            buffers.sinv[i] = i;
+            buffers.cosv[i] = i;
+            buffers.deltaAzimuth[i] = i;
+        }
+        return buffers.sins[size - 1] + buffers.deltaAzimuth[size / 2];
+    }
+
+    // allocated bytes of the worker threads, where supported by the JVM
+    private static long getAllocatedBytes(List<Thread> workers) {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0L;
+        }
+        final com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        long allocated = 0L;
+        synchronized (workers) {
+            for (Thread worker : workers) {
+                final long threadAllocated = sunThreadBean.getThreadAllocatedBytes(worker.getId());
+                if (threadAllocated > 0) {
+                    allocated += threadAllocated;
+                }
+            }
+        }
+        return allocated;
+    }
+
+    private static long[] getGcCountAndMillis() {
+        long count = 0L;
+        long millis = 0L;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gcBean.getCollectionCount();
+            millis += gcBean.getCollectionTime();
+        }
+        return new long[]{count, millis};
+    }
+
+    private static class Buffers {
+
+        private final float[][] rhoToa;
+        private final float[] sins;
+        private final float[] coss;
+        private final float[] sinv;
+        private final float[] cosv;
+        private final float[] deltaAzimuth;
+
+        private Buffers(int pixelCount) {
+            rhoToa = new float[NUM_BANDS][];
+            sins = new float[pixelCount];
+            coss = new float[pixelCount];
+            sinv = new float[pixelCount];
+            cosv = new float[pixelCount];
+            deltaAzimuth = new float[pixelCount];
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.esa.beam.idepix.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for class {@link TileBufferPool}.
+ */
+public class TileBufferPoolTest {
+
+    private static final TileBufferPool.Factory<float[]> FLOAT_ARRAY_FACTORY =
+            new TileBufferPool.Factory<float[]>() {
+                @Override
+                public float[] create(int width, int height) {
+                    return new float[width * height];
+                }
+            };
+
+    private TileBufferPool<float[]> pool;
+
+    @Before
+    public void setUp() {
+        pool = new TileBufferPool<>(FLOAT_ARRAY_FACTORY);
+    }
+
+    @Test
+    public void testBufferIsReusedForSameSize() {
+        final float[] first = pool.get(new Rectangle(0, 0, 64, 32));
+        final float[] second = pool.get(new Rectangle(64, 32, 64, 32));
+
+        assertEquals(64 * 32, first.length);
+        assertSame(first, second);
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testBufferPerSize() {
+        final float[] regular = pool.get(new Rectangle(0, 0, 64, 32));
+        final float[] border = pool.get(new Rectangle(64, 0, 17, 32));
+
+        assertNotSame(regular, border);
+        assertEquals(17 * 32, border.length);
+        assertSame(regular, pool.get(new Rectangle(0, 32, 64, 32)));
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testBufferPerThread() throws Exception {
+        final Rectangle rectangle = new Rectangle(0, 0, 64, 32);
+        final float[] buffer = pool.get(rectangle);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final float[] otherThreadBuffer = executor.submit(new Callable<float[]>() {
+                @Override
+                public float[] call() {
+                    return pool.get(rectangle);
+                }
+            }).get();
+            assertNotSame(buffer, otherThreadBuffer);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSizesAreDropped() {
+        final float[] regular = pool.get(new Rectangle(0, 0, 64, 64));
+        for (int width = 1; width <= 10; width++) {
+            pool.get(new Rectangle(0, 0, width, 64));
+            // the regular size is used in between and kept
+            assertSame(regular, pool.get(new Rectangle(0, 0, 64, 64)));
+        }
+        assertEquals(11, pool.getCreatedCount());
+
+        pool.get(new Rectangle(0, 0, 1, 64));
+        assertEquals(12, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testDispose() {
+        final float[] buffer = pool.get(new Rectangle(0, 0, 64, 32));
+        pool.dispose();
+
+        assertNotSame(buffer, pool.get(new Rectangle(0, 0, 64, 32)));
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testPoolIsNotKeptReachableByThreadBuffers() throws Exception {
+        // the current thread keeps its buffers, but they must not keep the pool reachable
+        TileBufferPool<float[]> otherPool = new TileBufferPool<>(FLOAT_ARRAY_FACTORY);
+        otherPool.get(new Rectangle(0, 0, 64, 32));
+        final WeakReference<TileBufferPool<float[]>> reference = new WeakReference<>(otherPool);
+        //noinspection UnusedAssignment
+        otherPool = null;
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
+}
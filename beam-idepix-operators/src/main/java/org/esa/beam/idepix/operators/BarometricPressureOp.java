@@ -18,6 +18,7 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.gpf.operators.meris.MerisBasisOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.VirtualBandOpImage;
 
@@ -182,7 +183,7 @@ public class BarometricPressureOp extends MerisBasisOp {
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor ignored) throws
                                                                                                                   OperatorException {
-        try {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetRectangle)) {
             Tile slpTile = getSourceTile(sourceProduct.getTiePointGrid("atm_press"), targetRectangle);    // MSLP
             Tile altitudeTile = getSourceTile(sourceProduct.getTiePointGrid("dem_alt"), targetRectangle);
 
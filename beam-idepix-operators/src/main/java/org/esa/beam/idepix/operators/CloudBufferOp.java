@@ -12,7 +12,13 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.idepix.CloudBuffer;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.morphology.BitPlane;
+import org.esa.beam.idepix.morphology.FlagPlanes;
+import org.esa.beam.idepix.morphology.Morphology;
+import org.esa.beam.idepix.morphology.StructuringElement;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
+import org.esa.beam.idepix.util.TileAccess;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.RectangleExtender;
 
@@ -80,38 +86,42 @@ public class CloudBufferOp extends Operator {
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-
-        Rectangle targetRectangle = targetTile.getRectangle();
-        final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
-
-        final Tile sourceFlagTile = getSourceTile(origClassifFlagBand, srcRectangle);
-
-        for (int y = srcRectangle.y; y < srcRectangle.y + srcRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = srcRectangle.x; x < srcRectangle.x + srcRectangle.width; x++) {
-
-                if (targetRectangle.contains(x, y)) {
-                    IdepixUtils.combineFlags(x, y, sourceFlagTile, targetTile);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+
+            Rectangle targetRectangle = targetTile.getRectangle();
+            final Rectangle srcRectangle = rectCalculator.extend(targetRectangle);
+
+            final Tile sourceFlagTile = getSourceTile(origClassifFlagBand, srcRectangle);
+
+            if (gaLcCloudBuffer) {
+                IdepixUtils.combineFlags(sourceFlagTile, targetTile);
+                CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
+                IdepixUtils.consolidateCloudAndBuffer(targetTile);
+            } else {
+                checkForCancellation();
+                // the source flags with the buffer flag replaced by (buffer | dilated cloud) & ~cloud
+                final int[] sourceFlags = TileAccess.getInts(sourceFlagTile);
+                final FlagPlanes flagPlanes = FlagPlanes.createFromFlags(sourceFlags, srcRectangle, srcRectangle,
+                                                                         IdepixConstants.F_CLOUD,
+                                                                         IdepixConstants.F_CLOUD_BUFFER);
+                final BitPlane cloud = flagPlanes.get(IdepixConstants.F_CLOUD);
+                if (!cloud.isEmpty()) {
+                    final BitPlane buffer = Morphology.dilate(cloud, StructuringElement.square(cloudBufferWidth));
+                    flagPlanes.set(IdepixConstants.F_CLOUD_BUFFER,
+                                   flagPlanes.get(IdepixConstants.F_CLOUD_BUFFER).or(buffer));
                 }
-                boolean isCloud = sourceFlagTile.getSampleBit(x, y, IdepixConstants.F_CLOUD);
-                if (isCloud) {
-                    if (gaLcCloudBuffer) {
-                        CloudBuffer.computeCloudBufferLC(targetTile, IdepixConstants.F_CLOUD, IdepixConstants.F_CLOUD_BUFFER);
-                    } else {
-                        CloudBuffer.computeSimpleCloudBuffer(x, y,
-                                                             targetTile,
-                                                             srcRectangle,
-                                                             cloudBufferWidth,
-                                                             IdepixConstants.F_CLOUD_BUFFER);
-                    }
+                IdepixUtils.consolidateCloudAndBuffer(flagPlanes);
+
+                final int[] targetFlags = new int[targetRectangle.width * targetRectangle.height];
+                for (int y = 0; y < targetRectangle.height; y++) {
+                    System.arraycopy(sourceFlags,
+                                     (targetRectangle.y - srcRectangle.y + y) * srcRectangle.width +
+                                             targetRectangle.x - srcRectangle.x,
+                                     targetFlags, y * targetRectangle.width, targetRectangle.width);
                 }
-            }
-        }
-
-        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
-            checkForCancellation();
-            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
-                IdepixUtils.consolidateCloudAndBuffer(targetTile, x, y);
+                // writes the target part of the planes only
+                flagPlanes.writeFlags(targetFlags, targetRectangle);
+                targetTile.setSamples(targetFlags);
             }
         }
     }
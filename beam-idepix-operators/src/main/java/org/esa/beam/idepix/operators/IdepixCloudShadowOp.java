@@ -19,6 +19,7 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.IdepixUtils;
 import org.esa.beam.util.BitSetter;
 import org.esa.beam.util.ProductUtils;
@@ -152,79 +153,81 @@ public class IdepixCloudShadowOp extends Operator {
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+
+            if (band == cloudFlagBand) {
+
+                // copy flags from input cloud band...
+                Rectangle targetRectangle = targetTile.getRectangle();
+                Rectangle sourceRectangle = rectCalculator.extend(targetRectangle);
+
+                Tile inputCloudTile = getSourceTile(cloudProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS),
+                        sourceRectangle);
+                copyInputCloudFlags(targetTile, targetRectangle, inputCloudTile);
+
+                // compute cloud shadow and add to cloud classification band...
+                Tile szaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME),
+                        sourceRectangle);
+                Tile saaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME),
+                        sourceRectangle);
+                Tile vzaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME),
+                        sourceRectangle);
+                Tile vaaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME),
+                        sourceRectangle);
+
+                Tile altTile = getSourceTile(altitudeRDN, sourceRectangle);
+                Tile ctpTile = null;
+                float ctp = 500.0f;
+                if (ctpProduct != null && ctpMode.equals(IdepixConstants.CTP_MODE_DEFAULT)) {
+                    ctpTile = getSourceTile(ctpProduct.getBand("cloud_top_press"), sourceRectangle);
+                } else if (!ctpMode.equals(IdepixConstants.CTP_MODE_DEFAULT)) {
+                    ctp = Integer.parseInt(ctpMode.substring(0, 3));
+                }
 
-        if (band == cloudFlagBand) {
-
-            // copy flags from input cloud band...
-            Rectangle targetRectangle = targetTile.getRectangle();
-            Rectangle sourceRectangle = rectCalculator.extend(targetRectangle);
-
-            Tile inputCloudTile = getSourceTile(cloudProduct.getBand(IdepixUtils.IDEPIX_CLOUD_FLAGS),
-                    sourceRectangle);
-            copyInputCloudFlags(targetTile, targetRectangle, inputCloudTile);
-
-            // compute cloud shadow and add to cloud classification band...
-            Tile szaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME),
-                    sourceRectangle);
-            Tile saaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME),
-                    sourceRectangle);
-            Tile vzaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME),
-                    sourceRectangle);
-            Tile vaaTile = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME),
-                    sourceRectangle);
-
-            Tile altTile = getSourceTile(altitudeRDN, sourceRectangle);
-            Tile ctpTile = null;
-            float ctp = 500.0f;
-            if (ctpProduct != null && ctpMode.equals(IdepixConstants.CTP_MODE_DEFAULT)) {
-                ctpTile = getSourceTile(ctpProduct.getBand("cloud_top_press"), sourceRectangle);
-            } else if (!ctpMode.equals(IdepixConstants.CTP_MODE_DEFAULT)) {
-                ctp = Integer.parseInt(ctpMode.substring(0, 3));
-            }
-
-            for (int y = sourceRectangle.y; y < sourceRectangle.y + sourceRectangle.height; y++) {
-                for (int x = sourceRectangle.x; x < sourceRectangle.x + sourceRectangle.width; x++) {
-                    int cloudFlag = inputCloudTile.getSampleInt(x, y);
-                    if (BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD) ||
-                            (shadowForCloudBuffer && BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD_BUFFER))) {
-                        final float sza = szaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
-                        final float saa = saaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
-                        final float vza = vzaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
-                        final float vaa = vaaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
-
-                        PixelPos pixelPos = new PixelPos(x, y);
-                        final GeoPos geoPos = geoCoding.getGeoPos(pixelPos, null);
-                        // use ctp as taken from user option (value set)
-                        if (ctpTile != null) {
-                            ctp = ctpTile.getSampleFloat(x, y);
-                        }
-                        if (ctp > 0) {
-                            float cloudAlt = computeHeightFromPressure(ctp);
-                            GeoPos shadowPos = getCloudShadow(altTile, geoCoding, sza, saa, vza, vaa, cloudAlt, geoPos);
-                            if (shadowPos != null) {
-                                pixelPos = geoCoding.getPixelPos(shadowPos, pixelPos);
-
-                                if (targetRectangle.contains(pixelPos)) {
-                                    final int pixelX = MathUtils.floorInt(pixelPos.x);
-                                    final int pixelY = MathUtils.floorInt(pixelPos.y);
-                                    targetTile.setSample(pixelX, pixelY, IdepixConstants.F_CLOUD_SHADOW, true);
+                for (int y = sourceRectangle.y; y < sourceRectangle.y + sourceRectangle.height; y++) {
+                    for (int x = sourceRectangle.x; x < sourceRectangle.x + sourceRectangle.width; x++) {
+                        int cloudFlag = inputCloudTile.getSampleInt(x, y);
+                        if (BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD) ||
+                                (shadowForCloudBuffer && BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD_BUFFER))) {
+                            final float sza = szaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
+                            final float saa = saaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
+                            final float vza = vzaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
+                            final float vaa = vaaTile.getSampleFloat(x, y) * MathUtils.DTOR_F;
+
+                            PixelPos pixelPos = new PixelPos(x, y);
+                            final GeoPos geoPos = geoCoding.getGeoPos(pixelPos, null);
+                            // use ctp as taken from user option (value set)
+                            if (ctpTile != null) {
+                                ctp = ctpTile.getSampleFloat(x, y);
+                            }
+                            if (ctp > 0) {
+                                float cloudAlt = computeHeightFromPressure(ctp);
+                                GeoPos shadowPos = getCloudShadow(altTile, geoCoding, sza, saa, vza, vaa, cloudAlt, geoPos);
+                                if (shadowPos != null) {
+                                    pixelPos = geoCoding.getPixelPos(shadowPos, pixelPos);
+
+                                    if (targetRectangle.contains(pixelPos)) {
+                                        final int pixelX = MathUtils.floorInt(pixelPos.x);
+                                        final int pixelY = MathUtils.floorInt(pixelPos.y);
+                                        targetTile.setSample(pixelX, pixelY, IdepixConstants.F_CLOUD_SHADOW, true);
+                                    }
                                 }
                             }
                         }
                     }
                 }
-            }
 
-            // keep cloud shadow only for non-cloudy pixels
-            for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
-                for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
-                    int cloudFlag = inputCloudTile.getSampleInt(x, y);
-                    if (BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD)) {
-                        targetTile.setSample(x, y, IdepixConstants.F_CLOUD_SHADOW, false);
+                // keep cloud shadow only for non-cloudy pixels
+                for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y++) {
+                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++) {
+                        int cloudFlag = inputCloudTile.getSampleInt(x, y);
+                        if (BitSetter.isFlagSet(cloudFlag, IdepixConstants.F_CLOUD)) {
+                            targetTile.setSample(x, y, IdepixConstants.F_CLOUD_SHADOW, false);
+                        }
                     }
                 }
-            }
 
+            }
         }
     }
 
@@ -15,6 +15,8 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.gpf.operators.meris.MerisBasisOp;
 import org.esa.beam.gpf.operators.standard.BandMathsOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.meris.brr.*;
 import org.esa.beam.meris.l2auxdata.Constants;
 import org.esa.beam.meris.l2auxdata.L2AuxData;
@@ -80,6 +82,15 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
     // these bands are needed as input for the spectral unmixing to retrieve mixed pixel flag:
     @Parameter
     boolean exportBrrNormalized = false;
+    @Parameter(defaultValue = "false",
+               description = "Interpolate the Rayleigh reflectance in a precomputed lookup table. Faster, but " +
+                       "the reflectances differ from the exact computation by up to the tolerance.")
+    boolean useRayleighLut = false;
+    @Parameter(defaultValue = "2.0E-3",
+               description = "Maximum absolute error of the Rayleigh reflectance taken from the lookup table.")
+    double rayleighLutTolerance = 2.0E-3;
+
+    private LazyValue<ThreadLocal<RayleighKernel>> rayleighKernel;
 
 
     @Override
@@ -90,9 +101,29 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
         } catch (Exception e) {
             throw new OperatorException("could not load L2Auxdata", e);
         }
+        // the lookup table is generated on the first tile computation
+        rayleighKernel = new LazyValue<ThreadLocal<RayleighKernel>>() {
+            @Override
+            protected ThreadLocal<RayleighKernel> compute() {
+                return RayleighKernel.createThreadLocal(rayleighCorrection, getRayleighLut());
+            }
+        };
         createTargetProduct();
     }
 
+    private RayleighLut getRayleighLut() {
+        if (!useRayleighLut) {
+            return null;
+        }
+        final RayleighLut rayleighLut = RayleighLut.getInstance(auxData, rayleighLutTolerance);
+        if (!rayleighLut.isAccurate()) {
+            getLogger().warning("Rayleigh lookup table error " + rayleighLut.getMaxError() +
+                                        " exceeds tolerance " + rayleighLutTolerance + ", using exact computation.");
+            return null;
+        }
+        return rayleighLut;
+    }
+
     private void createTargetProduct() throws OperatorException {
         targetProduct = createCompatibleProduct(l1bProduct, "MER", "MER_L2");
 
@@ -155,7 +186,7 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle rectangle, ProgressMonitor pm) throws
                                                                                                        OperatorException {
-        try {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
             Tile sza = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME), rectangle);
             Tile vza = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME), rectangle);
             Tile saa = getSourceTile(l1bProduct.getTiePointGrid(EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME), rectangle);
@@ -206,18 +237,13 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
             Tile brrFlags = targetTiles.get(flagBand);
 
             boolean[][] do_corr = new boolean[SUBWIN_HEIGHT][SUBWIN_WIDTH];
-            // rayleigh phase function coefficients, PR in DPM
-            double[] phaseR = new double[3];
-            // rayleigh optical thickness, tauR0 in DPM
-            double[] tauR = new double[L1_BAND_NUM];
+            final RayleighKernel kernel = rayleighKernel.get().get();
+            final double[] tauR = kernel.getTauR();
             // rayleigh reflectance, rhoR4x4 in DPM
-            double[] rhoR = new double[L1_BAND_NUM];
-            // rayleigh down transmittance, T_R_thetas_4x4
-            double[] transRs = new double[L1_BAND_NUM];
-            // rayleigh up transmittance, T_R_thetav_4x4
-            double[] transRv = new double[L1_BAND_NUM];
-            // rayleigh spherical albedo, SR_4x4
-            double[] sphAlbR = new double[L1_BAND_NUM];
+            final double[] rhoR = kernel.getRhoR();
+            final double[] transRs = kernel.getTransRs();
+            final double[] transRv = kernel.getTransRv();
+            final double[] sphAlbR = kernel.getSphAlbR();
 
             Tile surfacePressureTile = null;
             Tile cloudTopPressureTile = null;
@@ -261,13 +287,6 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
                         /* average geometry, ozone for window DPM : just use corner pixel ! */
                         final float szaSampleFloat = sza.getSampleFloat(x, y);
                         final float vzaSampleFloat = vza.getSampleFloat(x, y);
-
-                        final double szaRad = szaSampleFloat * MathUtils.DTOR;
-                        final double vzaRad = vzaSampleFloat * MathUtils.DTOR;
-                        final double sins = Math.sin(szaRad);
-                        final double sinv = Math.sin(vzaRad);
-                        final double mus = Math.cos(szaRad);
-                        final double muv = Math.cos(vzaRad);
                         final double deltaAzimuth = HelperFunctions.computeAzimuthDifference(vaa.getSampleFloat(x, y),
                                                                                              saa.getSampleFloat(x, y));
 
@@ -277,7 +296,6 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
                         double press = HelperFunctions.correctEcmwfPressure(ecmwfPressure.getSampleFloat(x, y),
                                                                             altitude.getSampleFloat(x, y),
                                                                             auxData.press_scale_height); /* DPM #2.6.15.1-3 */
-                        final double airMass = HelperFunctions.calculateAirMassMusMuv(muv, mus);
 
                         /* correct pressure in presence of clouds */
                         if (cloudProduct != null) {
@@ -290,22 +308,11 @@ public class IdepixRayleighCorrectionOp extends MerisBasisOp implements Constant
                             }
                         }
 
-                        /* Rayleigh phase function Fourier decomposition */
-                        rayleighCorrection.phase_rayleigh(mus, muv, sins, sinv, phaseR);
-
-                        /* Rayleigh optical thickness */
-                        rayleighCorrection.tau_rayleigh(press, tauR);
-
-                        /* Rayleigh reflectance*/
-                        rayleighCorrection.ref_rayleigh(deltaAzimuth, szaSampleFloat, vzaSampleFloat, mus, muv,
-                                                        airMass, phaseR, tauR, rhoR);
-
-                        /* Rayleigh transmittance */
-                        rayleighCorrection.trans_rayleigh(mus, tauR, transRs);
-                        rayleighCorrection.trans_rayleigh(muv, tauR, transRv);
+                        /* Rayleigh optical thickness and reflectance */
+                        kernel.computeReflectance(szaSampleFloat, vzaSampleFloat, deltaAzimuth, press);
 
-                        /* Rayleigh spherical albedo */
-                        rayleighCorrection.sphAlb_rayleigh(tauR, sphAlbR);
+                        /* Rayleigh transmittance and spherical albedo */
+                        kernel.computeTransmittance();
 
                         /* process each pixel */
                         for (int iy = y; iy <= yWinEnd; iy++) {
@@ -26,6 +26,8 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.LazyValue;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.VirtualBandOpImage;
 import org.esa.beam.meris.brr.HelperFunctions;
@@ -164,7 +166,23 @@ public class LisePressureOp extends BasisOp {
 //    private double[] band11CentralWavelengths = new double[3];
 
 
-    private L2AuxData auxData;
+    // the auxdata are only loaded when the first tile is computed
+    private final LazyValue<L2AuxData> lazyAuxData = new LazyValue<L2AuxData>() {
+        @Override
+        protected L2AuxData compute() throws OperatorException {
+            try {
+                final L2AuxData auxData = initL2AuxData();
+                readLiseAuxData();
+                if (straylightCorr) {
+                    readStraylightCoeff();
+                    readStraylightCorrWavelengths();
+                }
+                return auxData;
+            } catch (Exception e) {
+                throw new OperatorException("Failed to load aux data:\n" + e.getMessage());
+            }
+        }
+    };
     private VirtualBandOpImage invalidImage;
     private VirtualBandOpImage invalidLandImage;
     private LUT coeffLUT;
@@ -179,17 +197,6 @@ public class LisePressureOp extends BasisOp {
         if (sourceProduct != null) {
             createTargetProduct();
         }
-
-        try {
-            initL2AuxData();
-            readLiseAuxData();
-            if (straylightCorr) {
-                readStraylightCoeff();
-                readStraylightCorrWavelengths();
-            }
-        } catch (Exception e) {
-            throw new OperatorException("Failed to load aux data:\n" + e.getMessage());
-        }
     }
 
     /**
@@ -367,10 +374,10 @@ public class LisePressureOp extends BasisOp {
     /*
     * This method initialises the L2 auxdata.
     */
-    private void initL2AuxData() throws OperatorException {
+    private L2AuxData initL2AuxData() throws OperatorException {
         try {
             L2AuxDataProvider auxdataProvider = L2AuxDataProvider.getInstance();
-            auxData = auxdataProvider.getAuxdata(sourceProduct);
+            return auxdataProvider.getAuxdata(sourceProduct);
 //            rayleighCorrection = new RayleighCorrection(auxData);
         } catch (Exception e) {
             throw new OperatorException("Failed to load L2AuxData:\n" + e.getMessage(), e);
@@ -965,7 +972,8 @@ public class LisePressureOp extends BasisOp {
     }
 
 
-    private double getPressureResult(RayleighCorrection rayleighCorrection, int pressureResultIndex, Tile sza,
+    private double getPressureResult(RayleighCorrection rayleighCorrection, L2AuxData auxData,
+                                     int pressureResultIndex, Tile sza,
                                      Tile vza, Tile saa, Tile vaa,
                                      Tile rhoToa10Tile, Tile rhoToa11Tile, Tile rhoToa12Tile,
                                      int y, int x,
@@ -995,7 +1003,7 @@ public class LisePressureOp extends BasisOp {
                                     airMass);
     }
 
-    private void computePressureResult(RayleighCorrection rayleighCorrection, Tile targetTile,
+    private void computePressureResult(RayleighCorrection rayleighCorrection, L2AuxData auxData, Tile targetTile,
                                        int pressureResultIndex, Rectangle rectangle, Tile detector, Tile sza,
                                        Tile vza, Tile saa, Tile vaa,
                                        Tile rhoToa10Tile, Tile rhoToa11Tile, Tile rhoToa12Tile,
@@ -1006,7 +1014,7 @@ public class LisePressureOp extends BasisOp {
                     targetTile.setSample(x, y, 0);
                 } else {
                     final int detectorIndex = detector.getSampleInt(x, y);
-                    final double pressureResult = getPressureResult(rayleighCorrection,
+                    final double pressureResult = getPressureResult(rayleighCorrection, auxData,
                                                                     pressureResultIndex, sza, vza, saa, vaa,
                                                                     rhoToa10Tile,
                                                                     rhoToa11Tile, rhoToa12Tile, y, x,
@@ -1052,8 +1060,9 @@ public class LisePressureOp extends BasisOp {
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        final L2AuxData auxData = lazyAuxData.get();
 
-        try {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
             Rectangle rectangle = targetTile.getRectangle();
             RayleighCorrection rayleighCorrection = new RayleighCorrection(auxData);
 
@@ -1103,7 +1112,7 @@ public class LisePressureOp extends BasisOp {
                 isInvalid = invalidImage.getData(rectangle);
             }
             if (pressureResultIndex >= 0) {
-                computePressureResult(rayleighCorrection, targetTile, pressureResultIndex, rectangle, detector,
+                computePressureResult(rayleighCorrection, auxData, targetTile, pressureResultIndex, rectangle, detector,
                                       sza, vza, saa, vaa,
                                       rhoToa10, rhoToa11, rhoToa12, isInvalid);
             }
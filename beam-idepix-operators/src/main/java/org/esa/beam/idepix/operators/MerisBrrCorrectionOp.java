@@ -12,6 +12,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.gpf.operators.standard.BandMathsOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
 import org.esa.beam.idepix.util.OperatorUtils;
 import org.esa.beam.meris.brr.LandClassificationOp;
 import org.esa.beam.util.ProductUtils;
@@ -74,41 +75,43 @@ public class MerisBrrCorrectionOp extends Operator {
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle rectangle = targetTile.getRectangle();
-        final int bandNumber = band.getSpectralBandIndex() + 1;
-
-        Tile brrTile = getSourceTile(brrProduct.getBand("brr_" + bandNumber), rectangle);
-        Tile rad2reflTile = getSourceTile(rad2reflProduct.getBand("rho_toa_" + bandNumber), rectangle);
-        Tile isInvalid = getSourceTile(invalidBand, rectangle);
-
-        Tile surfacePressureTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.PRESSURE_SURFACE),
-                                                 rectangle);
-        Tile cloudTopPressureTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.PRESSURE_CTP),
-                                                  rectangle);
-        Tile cloudFlagsTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.CLOUD_FLAGS), rectangle);
-        Tile landFlagsTile = getSourceTile(landProduct.getBand(LandClassificationOp.LAND_FLAGS), rectangle);
-
-        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                final float brrCorr;
-                if (isInvalid.getSampleBoolean(x, y)) {
-                    brrCorr = -1.0f;
-                } else {
-                    if (cloudFlagsTile.getSampleBit(x, y, MerisClassificationOp.F_CLOUD)) {
-                        final float surfacePressure = surfacePressureTile.getSampleFloat(x, y);
-                        final float cloudTopPressure = cloudTopPressureTile.getSampleFloat(x, y);
-                        final float rad2refl = rad2reflTile.getSampleFloat(x, y);
-                        brrCorr = rad2refl * cloudTopPressure / surfacePressure;
-                    } else if (landFlagsTile.getSampleBit(x, y, LandClassificationOp.F_ICE)) {
-                        brrCorr = rad2reflTile.getSampleFloat(x, y);
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, targetTile.getRectangle())) {
+            Rectangle rectangle = targetTile.getRectangle();
+            final int bandNumber = band.getSpectralBandIndex() + 1;
+
+            Tile brrTile = getSourceTile(brrProduct.getBand("brr_" + bandNumber), rectangle);
+            Tile rad2reflTile = getSourceTile(rad2reflProduct.getBand("rho_toa_" + bandNumber), rectangle);
+            Tile isInvalid = getSourceTile(invalidBand, rectangle);
+
+            Tile surfacePressureTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.PRESSURE_SURFACE),
+                                                     rectangle);
+            Tile cloudTopPressureTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.PRESSURE_CTP),
+                                                      rectangle);
+            Tile cloudFlagsTile = getSourceTile(cloudProduct.getBand(MerisClassificationOp.CLOUD_FLAGS), rectangle);
+            Tile landFlagsTile = getSourceTile(landProduct.getBand(LandClassificationOp.LAND_FLAGS), rectangle);
+
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    final float brrCorr;
+                    if (isInvalid.getSampleBoolean(x, y)) {
+                        brrCorr = -1.0f;
                     } else {
-                        // leave original value
-                        brrCorr = brrTile.getSampleFloat(x, y);
+                        if (cloudFlagsTile.getSampleBit(x, y, MerisClassificationOp.F_CLOUD)) {
+                            final float surfacePressure = surfacePressureTile.getSampleFloat(x, y);
+                            final float cloudTopPressure = cloudTopPressureTile.getSampleFloat(x, y);
+                            final float rad2refl = rad2reflTile.getSampleFloat(x, y);
+                            brrCorr = rad2refl * cloudTopPressure / surfacePressure;
+                        } else if (landFlagsTile.getSampleBit(x, y, LandClassificationOp.F_ICE)) {
+                            brrCorr = rad2reflTile.getSampleFloat(x, y);
+                        } else {
+                            // leave original value
+                            brrCorr = brrTile.getSampleFloat(x, y);
+                        }
                     }
+                    targetTile.setSample(x, y, brrCorr);
                 }
-                targetTile.setSample(x, y, brrCorr);
+                checkForCancellation();
             }
-            checkForCancellation();
         }
     }
 
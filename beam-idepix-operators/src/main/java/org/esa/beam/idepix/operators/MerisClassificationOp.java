@@ -27,6 +27,8 @@ import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.gpf.operators.meris.MerisBasisOp;
+import org.esa.beam.idepix.util.IdepixMetrics;
+import org.esa.beam.idepix.util.TileAccess;
 import org.esa.beam.meris.brr.HelperFunctions;
 import org.esa.beam.meris.brr.Rad2ReflOp;
 import org.esa.beam.meris.brr.RayleighCorrection;
@@ -168,22 +170,22 @@ public class MerisClassificationOp extends MerisBasisOp {
 
         SourceData sd = new SourceData();
         sd.rhoToa = new float[EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS][0];
-        sd.radiance = new Tile[3];
+        sd.radiance = new float[3][0];
 
         for (int i = 0; i < EnvisatConstants.MERIS_L1B_NUM_SPECTRAL_BANDS; i++) {
             sd.rhoToa[i] = (float[]) getSourceTile(
                     rhoToaProduct.getBand(Rad2ReflOp.RHO_TOA_BAND_PREFIX + "_" + (i + 1)),
                     rectangle).getRawSamples().getElems();
         }
-        sd.radiance[BAND_BRIGHT_N] = getSourceTile(
+        sd.radiance[BAND_BRIGHT_N] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_bright_n]),
-                rectangle);
-        sd.radiance[BAND_SLOPE_N_1] = getSourceTile(
+                rectangle));
+        sd.radiance[BAND_SLOPE_N_1] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_slope_n_1]),
-                rectangle);
-        sd.radiance[BAND_SLOPE_N_2] = getSourceTile(
+                rectangle));
+        sd.radiance[BAND_SLOPE_N_2] = TileAccess.getFloats(getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_L1B_SPECTRAL_BAND_NAMES[auxData.band_slope_n_2]),
-                rectangle);
+                rectangle));
         sd.detectorIndex = (short[]) getSourceTile(
                 l1bProduct.getBand(EnvisatConstants.MERIS_DETECTOR_INDEX_DS_NAME),
                 rectangle).getRawSamples().getElems();
@@ -199,23 +201,27 @@ public class MerisClassificationOp extends MerisBasisOp {
                                               rectangle).getRawSamples().getElems();
         sd.ecmwfPressure = (float[]) getSourceTile(l1bProduct.getTiePointGrid("atm_press"),
                                                    rectangle).getRawSamples().getElems();
-        sd.l1Flags = getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME), rectangle);
+        sd.l1Flags = TileAccess.getInts(getSourceTile(l1bProduct.getBand(EnvisatConstants.MERIS_L1B_FLAGS_DS_NAME),
+                                                      rectangle));
 
         return sd;
     }
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-
         Rectangle rectangle = targetTile.getRectangle();
-        try {
+        try (IdepixMetrics.Scope scope = IdepixMetrics.tile(this, rectangle)) {
             SourceData sd = loadSourceTiles(rectangle);
 
-            Tile ctpTile = getSourceTile(ctpProduct.getBand("cloud_top_press"), rectangle);
-            Tile pbaroTile = getSourceTile(pbaroProduct.getBand(BarometricPressureOp.PRESSURE_BAROMETRIC), rectangle);
-            Tile liseP1Tile = getSourceTile(lisePressureProduct.getBand(LisePressureOp.PRESSURE_LISE_P1), rectangle);
-            Tile lisePScattTile = getSourceTile(lisePressureProduct.getBand(LisePressureOp.PRESSURE_LISE_PSCATT),
-                                                rectangle);
+            float[] ctp = TileAccess.getFloats(getSourceTile(ctpProduct.getBand("cloud_top_press"), rectangle));
+            float[] pbaro = TileAccess.getFloats(
+                    getSourceTile(pbaroProduct.getBand(BarometricPressureOp.PRESSURE_BAROMETRIC), rectangle));
+            float[] liseP1 = TileAccess.getFloats(
+                    getSourceTile(lisePressureProduct.getBand(LisePressureOp.PRESSURE_LISE_P1), rectangle));
+            float[] lisePScatt = TileAccess.getFloats(
+                    getSourceTile(lisePressureProduct.getBand(LisePressureOp.PRESSURE_LISE_PSCATT), rectangle));
+            // cloud flags are combined bit by bit, so they are set in an array and written once per tile
+            TileAccess cloudFlags = band == cloudFlagBand ? TileAccess.forInts(targetTile) : null;
 
             PixelInfo pixelInfo = new PixelInfo();
             int i = 0;
@@ -223,11 +229,11 @@ public class MerisClassificationOp extends MerisBasisOp {
                 checkForCancellation();
                 pixelInfo.y = y;
                 for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                    if (!sd.l1Flags.getSampleBit(x, y, L1_F_INVALID)) {
+                    if (!isL1FlagSet(sd, i, L1_F_INVALID)) {
                         pixelInfo.x = x;
                         pixelInfo.index = i;
                         pixelInfo.airMass = HelperFunctions.calculateAirMass(sd.vza[i], sd.sza[i]);
-                        if (sd.l1Flags.getSampleBit(x, y, L1_F_LAND)) {
+                        if (isL1FlagSet(sd, i, L1_F_LAND)) {
                             // ECMWF pressure is only corrected for positive
                             // altitudes and only for land pixels
                             pixelInfo.ecmwfPressure = HelperFunctions.correctEcmwfPressure(sd.ecmwfPressure[i],
@@ -236,14 +242,14 @@ public class MerisClassificationOp extends MerisBasisOp {
                         } else {
                             pixelInfo.ecmwfPressure = sd.ecmwfPressure[i];
                         }
-                        pixelInfo.pbaroPressure = pbaroTile.getSampleFloat(x, y);
-                        pixelInfo.p1Pressure = liseP1Tile.getSampleFloat(x, y);
-                        pixelInfo.pscattPressure = lisePScattTile.getSampleFloat(x, y);
-                        pixelInfo.ctp = ctpTile.getSampleFloat(x, y);
+                        pixelInfo.pbaroPressure = pbaro[i];
+                        pixelInfo.p1Pressure = liseP1[i];
+                        pixelInfo.pscattPressure = lisePScatt[i];
+                        pixelInfo.ctp = ctp[i];
                         pixelInfo.angleInfo = getAngleInfo(sd, pixelInfo);
 
                         if (band == cloudFlagBand) {
-                            classifyCloud(sd, pixelInfo, targetTile);
+                            classifyCloud(sd, pixelInfo, cloudFlags, cloudFlags.getIndex(x, y));
                         }
                         if (band == psurfOutputBand && l2Pressures) {
                             setCloudPressureSurface(sd, pixelInfo, targetTile);
@@ -270,6 +276,9 @@ public class MerisClassificationOp extends MerisBasisOp {
                     i++;
                 }
             }
+            if (cloudFlags != null) {
+                cloudFlags.flush();
+            }
         } catch (Exception e) {
             throw new OperatorException(e);
         }
@@ -288,7 +297,7 @@ public class MerisClassificationOp extends MerisBasisOp {
         targetTile.setSample(pixelInfo.x, pixelInfo.y, pixelInfo.ctp);
     }
 
-    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, Tile targetTile) {
+    public void classifyCloud(SourceData sd, PixelInfo pixelInfo, TileAccess cloudFlags, int flagIndex) {
         final boolean[] resultFlags = new boolean[6];
 
         // Compute slopes- step 2.1.7
@@ -296,38 +305,38 @@ public class MerisClassificationOp extends MerisBasisOp {
         boolean bright_f = resultFlags[0];
         boolean slope_1_f = resultFlags[1];
         boolean slope_2_f = resultFlags[2];
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_BRIGHT, bright_f);
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_SLOPE_1, slope_1_f);
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_SLOPE_2, slope_2_f);
+        cloudFlags.setBit(flagIndex, F_BRIGHT, bright_f);
+        cloudFlags.setBit(flagIndex, F_SLOPE_1, slope_1_f);
+        cloudFlags.setBit(flagIndex, F_SLOPE_2, slope_2_f);
 
         // table-driven classification- step 2.1.8
         // DPM #2.1.8-1
-        boolean land_f = sd.l1Flags.getSampleBit(pixelInfo.x, pixelInfo.y, L1_F_LAND);
+        boolean land_f = isL1FlagSet(sd, pixelInfo.index, L1_F_LAND);
         boolean is_cloud;
 
         boolean bright_toa_f = resultFlags[3];
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_BRIGHT_TOA, bright_toa_f);
+        cloudFlags.setBit(flagIndex, F_BRIGHT_TOA, bright_toa_f);
         boolean high_mdsi = resultFlags[4];
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_HIGH_MDSI, high_mdsi);
+        cloudFlags.setBit(flagIndex, F_HIGH_MDSI, high_mdsi);
         boolean bright_rc = resultFlags[5];
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_BRIGHT_RC, bright_rc);
+        cloudFlags.setBit(flagIndex, F_BRIGHT_RC, bright_rc);
 
         // new #2.1.8:
         if (!land_f) {
             boolean low_p_p1 = (pixelInfo.p1Pressure < pixelInfo.pbaroPressure - userDefinedP1PressureThreshold) &&
                                (sd.rhoToa[bb753][pixelInfo.index] > userDefinedRhoToa753Threshold);
             is_cloud = (bright_f || low_p_p1) && (!high_mdsi);
-            targetTile.setSample(pixelInfo.x, pixelInfo.y, F_LOW_P_P1, low_p_p1);
+            cloudFlags.setBit(flagIndex, F_LOW_P_P1, low_p_p1);
         } else {
             float rhoToaRatio = sd.rhoToa[bb753][pixelInfo.index] / sd.rhoToa[bb775][pixelInfo.index];
             boolean low_p_pscatt = (pixelInfo.pscattPressure < userDefinedPScattPressureThreshold) &&
                                    (rhoToaRatio > userDefinedRhoToaRatio753775Threshold);
             is_cloud = (bright_f || low_p_pscatt) && (!(high_mdsi && bright_f));
-            targetTile.setSample(pixelInfo.x, pixelInfo.y, F_LOW_P_PSCATT, low_p_pscatt);
+            cloudFlags.setBit(flagIndex, F_LOW_P_PSCATT, low_p_pscatt);
         }
         boolean snow_ice = (high_mdsi && bright_f);
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_SNOW_ICE, snow_ice);
-        targetTile.setSample(pixelInfo.x, pixelInfo.y, F_CLOUD, is_cloud);
+        cloudFlags.setBit(flagIndex, F_SNOW_ICE, snow_ice);
+        cloudFlags.setBit(flagIndex, F_CLOUD, is_cloud);
     }
 
     private void setMdsi(SourceData sd, PixelInfo pixelInfo, Tile targetTile) {
@@ -402,7 +411,7 @@ public class MerisClassificationOp extends MerisBasisOp {
         }
 
         PixelId pixelId = new PixelId(auxData);
-        boolean isLand = dc.l1Flags.getSampleBit(pixelInfo.x, pixelInfo.y, L1_F_LAND);
+        boolean isLand = isL1FlagSet(dc, pixelInfo.index, L1_F_LAND);
         /* Interpolate threshold on rayleigh corrected reflectance - DPM #2.1.7-9 */
         double rhorc_442_thr = pixelId.getRhoRC442thr(dc.sza[pixelInfo.index], dc.vza[pixelInfo.index], ai.deltaAzimuth, isLand);
 
@@ -410,14 +419,14 @@ public class MerisClassificationOp extends MerisBasisOp {
         boolean bright_f;
 
         /* Spectral slope processor.brr 1 */
-        boolean slope1_f = pixelId.isSpectraSlope1Flag(rhoAg, dc.radiance[BAND_SLOPE_N_1].getSampleFloat(pixelInfo.x, pixelInfo.y));
+        boolean slope1_f = pixelId.isSpectraSlope1Flag(rhoAg, dc.radiance[BAND_SLOPE_N_1][pixelInfo.index]);
         /* Spectral slope processor.brr 2 */
-        boolean slope2_f = pixelId.isSpectraSlope2Flag(rhoAg, dc.radiance[BAND_SLOPE_N_2].getSampleFloat(pixelInfo.x, pixelInfo.y));
+        boolean slope2_f = pixelId.isSpectraSlope2Flag(rhoAg, dc.radiance[BAND_SLOPE_N_2][pixelInfo.index]);
 
         boolean bright_toa_f = false;
         boolean bright_rc = (rhoAg[auxData.band_bright_n] > rhorc_442_thr)
-                            || isSaturated(dc, pixelInfo.x, pixelInfo.y, BAND_BRIGHT_N, auxData.band_bright_n);
-        if (dc.l1Flags.getSampleBit(pixelInfo.x, pixelInfo.y, L1_F_LAND)) {   /* land pixel */
+                            || isSaturated(dc, pixelInfo.index, BAND_BRIGHT_N, auxData.band_bright_n);
+        if (isL1FlagSet(dc, pixelInfo.index, L1_F_LAND)) {   /* land pixel */
             bright_f = bright_rc && slope1_f && slope2_f;
         } else {
 
@@ -442,8 +451,12 @@ public class MerisClassificationOp extends MerisBasisOp {
         return (rhoToa865 - rhoToa885) / (rhoToa865 + rhoToa885);
     }
 
-    private boolean isSaturated(SourceData sd, int x, int y, int radianceBandId, int bandId) {
-        return sd.radiance[radianceBandId].getSampleFloat(x, y) > auxData.Saturation_L[bandId];
+    private boolean isSaturated(SourceData sd, int index, int radianceBandId, int bandId) {
+        return sd.radiance[radianceBandId][index] > auxData.Saturation_L[bandId];
+    }
+
+    private static boolean isL1FlagSet(SourceData sd, int index, int flagBit) {
+        return (sd.l1Flags[index] & (1 << flagBit)) != 0;
     }
     public static void addBitmasks(Product sourceProduct, Product targetProduct) {
         Mask[] bitmaskDefs = createBitmaskDefs(sourceProduct);
@@ -489,7 +502,7 @@ public class MerisClassificationOp extends MerisBasisOp {
     private static class SourceData {
 
         private float[][] rhoToa;
-        private Tile[] radiance;
+        private float[][] radiance;
         private short[] detectorIndex;
         private float[] sza;
         private float[] vza;
@@ -497,7 +510,7 @@ public class MerisClassificationOp extends MerisBasisOp {
         private float[] vaa;
         private float[] altitude;
         private float[] ecmwfPressure;
-        private Tile l1Flags;
+        private int[] l1Flags;
     }
 
     private static class PixelInfo {
@@ -0,0 +1,128 @@
+package org.esa.beam.idepix.operators;
+
+import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.meris.brr.RayleighCorrection;
+import org.esa.beam.meris.l2auxdata.Constants;
+import org.esa.beam.util.math.MathUtils;
+
+/**
+ * Per pixel (or pixel window) Rayleigh correction of MERIS reflectances: optical thickness, reflectance,
+ * transmittances and spherical albedo, computed into scratch arrays which are reused for every call.
+ * <p/>
+ * A kernel is not thread safe. Operators computing tiles concurrently should hold one kernel per thread,
+ * see {@link #createThreadLocal(RayleighCorrection, RayleighLut)}.
+ */
+public class RayleighKernel {
+
+    private final RayleighCorrection rayleighCorrection;
+    private final RayleighLut rayleighLut;
+
+    // Rayleigh phase function coefficients, PR in DPM
+    private final double[] phaseR = new double[Constants.RAYSCATT_NUM_SER];
+    // Rayleigh optical thickness, tauR0 in DPM
+    private final double[] tauR = new double[Constants.L1_BAND_NUM];
+    // Rayleigh reflectance
+    private final double[] rhoR = new double[Constants.L1_BAND_NUM];
+    // Rayleigh down transmittance, T_R_thetas in DPM
+    private final double[] transRs = new double[Constants.L1_BAND_NUM];
+    // Rayleigh up transmittance, T_R_thetav in DPM
+    private final double[] transRv = new double[Constants.L1_BAND_NUM];
+    // Rayleigh spherical albedo, SR in DPM
+    private final double[] sphAlbR = new double[Constants.L1_BAND_NUM];
+
+    private double mus;
+    private double muv;
+
+    /**
+     * @param rayleighCorrection - the Rayleigh correction for the MERIS L2 auxiliary data
+     * @param rayleighLut        - the lookup table for the Rayleigh reflectance, may be null to always use the
+     *                           exact computation
+     */
+    public RayleighKernel(RayleighCorrection rayleighCorrection, RayleighLut rayleighLut) {
+        this.rayleighCorrection = rayleighCorrection;
+        this.rayleighLut = rayleighLut;
+    }
+
+    public static ThreadLocal<RayleighKernel> createThreadLocal(final RayleighCorrection rayleighCorrection,
+                                                                final RayleighLut rayleighLut) {
+        return new ThreadLocal<RayleighKernel>() {
+            @Override
+            protected RayleighKernel initialValue() {
+                return new RayleighKernel(rayleighCorrection, rayleighLut);
+            }
+        };
+    }
+
+    /**
+     * Computes the Rayleigh optical thickness and reflectance (DPM #2.1.7-2, #2.1.7-3).
+     *
+     * @param sza          - sun zenith angle in degree
+     * @param vza          - view zenith angle in degree
+     * @param deltaAzimuth - azimuth difference in degree
+     * @param pressure     - surface pressure in hPa
+     */
+    public void computeReflectance(double sza, double vza, double deltaAzimuth, double pressure) {
+        final double szaRad = sza * MathUtils.DTOR;
+        final double vzaRad = vza * MathUtils.DTOR;
+        mus = Math.cos(szaRad);
+        muv = Math.cos(vzaRad);
+
+        rayleighCorrection.tau_rayleigh(pressure, tauR);
+        if (rayleighLut == null || !rayleighLut.getRayleighReflectance(sza, vza, deltaAzimuth, pressure, rhoR)) {
+            final double sins = Math.sin(szaRad);
+            final double sinv = Math.sin(vzaRad);
+            final double airMass = HelperFunctions.calculateAirMassMusMuv(muv, mus);
+            rayleighCorrection.phase_rayleigh(mus, muv, sins, sinv, phaseR);
+            rayleighCorrection.ref_rayleigh(deltaAzimuth, sza, vza, mus, muv, airMass, phaseR, tauR, rhoR);
+        }
+    }
+
+    /**
+     * Computes the Rayleigh transmittances and spherical albedo for the geometry and optical thickness of
+     * the last call of {@link #computeReflectance(double, double, double, double)}.
+     */
+    public void computeTransmittance() {
+        rayleighCorrection.trans_rayleigh(mus, tauR, transRs);
+        rayleighCorrection.trans_rayleigh(muv, tauR, transRv);
+        rayleighCorrection.sphAlb_rayleigh(tauR, sphAlbR);
+    }
+
+    public double[] getTauR() {
+        return tauR;
+    }
+
+    public double[] getRhoR() {
+        return rhoR;
+    }
+
+    public double[] getTransRs() {
+        return transRs;
+    }
+
+    public double[] getTransRv() {
+        return transRv;
+    }
+
+    public double[] getSphAlbR() {
+        return sphAlbR;
+    }
+
+    /**
+     * Computes the Rayleigh corrected reflectances (BRR) as TOA reflectance minus Rayleigh reflectance for
+     * the MERIS bands except the absorption bands 11 and 15 (DPM #2.1.7-4).
+     *
+     * @param rhoToa - the TOA reflectances of all 15 MERIS bands
+     * @param rhoR   - the Rayleigh reflectances of all 15 MERIS bands
+     * @param brr    - the BRR of the 13 corrected bands (output), see
+     *               {@link org.esa.beam.idepix.IdepixConstants#MERIS_BRR_BAND_NAMES}
+     */
+    public static void computeBrr(float[] rhoToa, double[] rhoR, float[] brr) {
+        int brrIndex = 0;
+        for (int band = Constants.bb412; band <= Constants.bb900; band++) {
+            if (band != Constants.bb11 && band != Constants.bb15) {
+                brr[brrIndex] = (float) (rhoToa[band] - rhoR[band]);
+                brrIndex++;
+            }
+        }
+    }
+}
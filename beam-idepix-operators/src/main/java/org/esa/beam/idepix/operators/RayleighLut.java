@@ -0,0 +1,327 @@
+package org.esa.beam.idepix.operators;
+
+import org.esa.beam.idepix.util.LazyValue;
+import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.meris.brr.RayleighCorrection;
+import org.esa.beam.meris.l2auxdata.Constants;
+import org.esa.beam.meris.l2auxdata.L2AuxData;
+import org.esa.beam.util.math.MathUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+/**
+ * Lookup table of the Rayleigh reflectance over sun zenith, view zenith, azimuth difference and
+ * surface pressure, replacing the evaluation of the Rayleigh phase function, optical thickness and
+ * reflectance by a multilinear interpolation.
+ * <p/>
+ * The table is generated from an exact reflectance function. After generation, the interpolation error is
+ * checked at random cell centres, where it is usually largest, and at random points spread over the whole table.
+ * If it exceeds the given tolerance, the zenith angle and pressure grids are refined once. If the tolerance is
+ * still not met, {@link #isAccurate()} returns false and the exact path should be used instead. Sun zenith angles
+ * above {@link #MAX_SZA} are not covered, the reflectance varies too strongly towards grazing illumination; the
+ * exact path has to be used for them as well.
+ * <p/>
+ * Tables for MERIS L2 auxiliary data are cached, see {@link #getInstance(L2AuxData, double)}. Generating a table
+ * takes some seconds, so operators should ask for it on their first tile computation, not in
+ * <code>initialize()</code>.
+ */
+public class RayleighLut {
+
+    /**
+     * The exact computation of the Rayleigh reflectance for all bands.
+     */
+    public interface ReflectanceFunction {
+
+        int getBandCount();
+
+        void compute(double sza, double vza, double deltaAzimuth, double pressure, double[] rhoR);
+    }
+
+    static final double MAX_SZA = 80.0;
+    static final double MAX_VZA = 60.0;
+    static final double MAX_DELTA_AZIMUTH = 180.0;
+    static final double MIN_PRESSURE = 100.0;
+    static final double MAX_PRESSURE = 1100.0;
+
+    private static final double SZA_STEP = 4.0;
+    private static final double VZA_STEP = 4.0;
+    private static final double DELTA_AZIMUTH_STEP = 10.0;
+    private static final double PRESSURE_STEP = 100.0;
+    private static final int NUM_VALIDATION_POINTS = 8000;
+
+    private static final Map<L2AuxData, Map<Double, LazyValue<RayleighLut>>> CACHE = new WeakHashMap<>();
+
+    private final int bandCount;
+    private final Axis szaAxis;
+    private final Axis vzaAxis;
+    private final Axis deltaAzimuthAxis;
+    private final Axis pressureAxis;
+    private final float[] table;
+    private double maxError;
+    private double tolerance;
+
+    private RayleighLut(ReflectanceFunction function, double szaStep, double vzaStep, double pressureStep) {
+        bandCount = function.getBandCount();
+        szaAxis = new Axis(0.0, MAX_SZA, szaStep);
+        vzaAxis = new Axis(0.0, MAX_VZA, vzaStep);
+        deltaAzimuthAxis = new Axis(0.0, MAX_DELTA_AZIMUTH, DELTA_AZIMUTH_STEP);
+        pressureAxis = new Axis(MIN_PRESSURE, MAX_PRESSURE, pressureStep);
+        table = new float[pressureAxis.count * szaAxis.count * vzaAxis.count * deltaAzimuthAxis.count * bandCount];
+        fillTable(function);
+    }
+
+    /**
+     * Creates a table for the given reflectance function.
+     *
+     * @param function  - the exact reflectance function
+     * @param tolerance - the maximum absolute reflectance error of the interpolation
+     *
+     * @return the table
+     */
+    public static RayleighLut create(ReflectanceFunction function, double tolerance) {
+        return create(function, tolerance, SZA_STEP, VZA_STEP, PRESSURE_STEP);
+    }
+
+    // the grid steps are only given by tests, which use coarser grids
+    static RayleighLut create(ReflectanceFunction function, double tolerance,
+                              double szaStep, double vzaStep, double pressureStep) {
+        RayleighLut lut = new RayleighLut(function, szaStep, vzaStep, pressureStep);
+        lut.maxError = lut.computeMaxError(function);
+        if (lut.maxError > tolerance) {
+            lut = new RayleighLut(function, szaStep / 2, vzaStep / 2, pressureStep / 2);
+            lut.maxError = lut.computeMaxError(function);
+        }
+        lut.tolerance = tolerance;
+        return lut;
+    }
+
+    /**
+     * Provides the table for the MERIS Rayleigh correction with the given auxiliary data. Tables are generated
+     * once and shared by all operator instances using the same auxiliary data. Callers asking for a table which is
+     * being generated wait for it, callers asking for other tables don't.
+     *
+     * @param auxData   - the MERIS L2 auxiliary data
+     * @param tolerance - the maximum absolute reflectance error of the interpolation
+     *
+     * @return the table
+     */
+    public static RayleighLut getInstance(final L2AuxData auxData, final double tolerance) {
+        LazyValue<RayleighLut> lut;
+        synchronized (CACHE) {
+            Map<Double, LazyValue<RayleighLut>> luts = CACHE.get(auxData);
+            if (luts == null) {
+                luts = new HashMap<>();
+                CACHE.put(auxData, luts);
+            }
+            lut = luts.get(tolerance);
+            if (lut == null) {
+                lut = new LazyValue<RayleighLut>() {
+                    @Override
+                    protected RayleighLut compute() {
+                        return create(createReflectanceFunction(auxData), tolerance);
+                    }
+                };
+                luts.put(tolerance, lut);
+            }
+        }
+        // generated outside of the cache lock
+        return lut.get();
+    }
+
+    /**
+     * Creates the reflectance function of the MERIS Rayleigh correction, as used per pixel window in
+     * {@link IdepixRayleighCorrectionOp}.
+     *
+     * @param auxData - the MERIS L2 auxiliary data
+     *
+     * @return the exact reflectance function
+     */
+    public static ReflectanceFunction createReflectanceFunction(L2AuxData auxData) {
+        final RayleighCorrection rayleighCorrection = new RayleighCorrection(auxData);
+        return new ReflectanceFunction() {
+            private final double[] phaseR = new double[Constants.RAYSCATT_NUM_SER];
+            private final double[] tauR = new double[Constants.L1_BAND_NUM];
+
+            @Override
+            public int getBandCount() {
+                return Constants.L1_BAND_NUM;
+            }
+
+            @Override
+            public void compute(double sza, double vza, double deltaAzimuth, double pressure, double[] rhoR) {
+                final double szaRad = sza * MathUtils.DTOR;
+                final double vzaRad = vza * MathUtils.DTOR;
+                final double sins = Math.sin(szaRad);
+                final double sinv = Math.sin(vzaRad);
+                final double mus = Math.cos(szaRad);
+                final double muv = Math.cos(vzaRad);
+                final double airMass = HelperFunctions.calculateAirMassMusMuv(muv, mus);
+                rayleighCorrection.phase_rayleigh(mus, muv, sins, sinv, phaseR);
+                rayleighCorrection.tau_rayleigh(pressure, tauR);
+                rayleighCorrection.ref_rayleigh(deltaAzimuth, sza, vza, mus, muv, airMass, phaseR, tauR, rhoR);
+            }
+        };
+    }
+
+    /**
+     * @return true if the interpolation error is within the tolerance the table was created with
+     */
+    public boolean isAccurate() {
+        return maxError <= tolerance;
+    }
+
+    /**
+     * @return the maximum absolute interpolation error found when the table was created
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    /**
+     * @return true if the given values are covered by the table
+     */
+    public boolean contains(double sza, double vza, double deltaAzimuth, double pressure) {
+        return szaAxis.contains(sza) && vzaAxis.contains(vza) &&
+                deltaAzimuthAxis.contains(deltaAzimuth) && pressureAxis.contains(pressure);
+    }
+
+    /**
+     * Interpolates the Rayleigh reflectance.
+     *
+     * @param sza          - sun zenith angle in degree
+     * @param vza          - view zenith angle in degree
+     * @param deltaAzimuth - azimuth difference in degree
+     * @param pressure     - surface pressure in hPa
+     * @param rhoR         - the Rayleigh reflectance per band (output)
+     *
+     * @return false if the values are not covered by the table, rhoR is not changed then
+     */
+    public boolean getRayleighReflectance(double sza, double vza, double deltaAzimuth, double pressure,
+                                          double[] rhoR) {
+        if (!contains(sza, vza, deltaAzimuth, pressure)) {
+            return false;
+        }
+        final double fp = pressureAxis.getFractionalIndex(pressure);
+        final double fs = szaAxis.getFractionalIndex(sza);
+        final double fv = vzaAxis.getFractionalIndex(vza);
+        final double fd = deltaAzimuthAxis.getFractionalIndex(deltaAzimuth);
+        final int ip = pressureAxis.getLowerIndex(fp);
+        final int is = szaAxis.getLowerIndex(fs);
+        final int iv = vzaAxis.getLowerIndex(fv);
+        final int id = deltaAzimuthAxis.getLowerIndex(fd);
+        final double wp = fp - ip;
+        final double ws = fs - is;
+        final double wv = fv - iv;
+        final double wd = fd - id;
+
+        for (int b = 0; b < bandCount; b++) {
+            rhoR[b] = 0.0;
+        }
+        for (int corner = 0; corner < 16; corner++) {
+            final int dp = corner & 1;
+            final int ds = (corner >> 1) & 1;
+            final int dv = (corner >> 2) & 1;
+            final int dd = (corner >> 3) & 1;
+            final double weight = (dp == 0 ? 1.0 - wp : wp) * (ds == 0 ? 1.0 - ws : ws) *
+                    (dv == 0 ? 1.0 - wv : wv) * (dd == 0 ? 1.0 - wd : wd);
+            if (weight == 0.0) {
+                continue;
+            }
+            final int offset = getOffset(ip + dp, is + ds, iv + dv, id + dd);
+            for (int b = 0; b < bandCount; b++) {
+                rhoR[b] += weight * table[offset + b];
+            }
+        }
+        return true;
+    }
+
+    private void fillTable(ReflectanceFunction function) {
+        final double[] rhoR = new double[bandCount];
+        for (int ip = 0; ip < pressureAxis.count; ip++) {
+            for (int is = 0; is < szaAxis.count; is++) {
+                for (int iv = 0; iv < vzaAxis.count; iv++) {
+                    for (int id = 0; id < deltaAzimuthAxis.count; id++) {
+                        function.compute(szaAxis.getValue(is), vzaAxis.getValue(iv), deltaAzimuthAxis.getValue(id),
+                                         pressureAxis.getValue(ip), rhoR);
+                        final int offset = getOffset(ip, is, iv, id);
+                        for (int b = 0; b < bandCount; b++) {
+                            table[offset + b] = (float) rhoR[b];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // the interpolation error of a multilinear table is usually largest in the cell centres, every other
+    // validation point is taken anywhere in the table to cover functions for which this does not hold
+    private double computeMaxError(ReflectanceFunction function) {
+        final Random random = new Random(4711);
+        final double[] exact = new double[bandCount];
+        final double[] interpolated = new double[bandCount];
+        double maxError = 0.0;
+        for (int i = 0; i < NUM_VALIDATION_POINTS; i++) {
+            final boolean centre = i % 2 == 0;
+            final double sza = szaAxis.getValidationPoint(random, centre);
+            final double vza = vzaAxis.getValidationPoint(random, centre);
+            final double deltaAzimuth = deltaAzimuthAxis.getValidationPoint(random, centre);
+            final double pressure = pressureAxis.getValidationPoint(random, centre);
+            function.compute(sza, vza, deltaAzimuth, pressure, exact);
+            getRayleighReflectance(sza, vza, deltaAzimuth, pressure, interpolated);
+            for (int b = 0; b < bandCount; b++) {
+                maxError = Math.max(maxError, Math.abs(exact[b] - interpolated[b]));
+            }
+        }
+        return maxError;
+    }
+
+    private int getOffset(int ip, int is, int iv, int id) {
+        return (((ip * szaAxis.count + is) * vzaAxis.count + iv) * deltaAzimuthAxis.count + id) * bandCount;
+    }
+
+    private static class Axis {
+
+        private final double min;
+        private final double max;
+        private final double step;
+        private final int count;
+
+        private Axis(double min, double max, double step) {
+            this.min = min;
+            this.step = step;
+            this.count = (int) Math.ceil((max - min) / step) + 1;
+            this.max = min + (count - 1) * step;
+        }
+
+        double getValue(int index) {
+            return min + index * step;
+        }
+
+        boolean contains(double value) {
+            return value >= min && value <= max;
+        }
+
+        double getFractionalIndex(double value) {
+            return (value - min) / step;
+        }
+
+        int getLowerIndex(double fractionalIndex) {
+            // the last node belongs to the last cell
+            return Math.min((int) fractionalIndex, count - 2);
+        }
+
+        double getValidationPoint(Random random, boolean cellCentre) {
+            if (cellCentre) {
+                return min + (random.nextInt(count - 1) + 0.5) * step;
+            }
+            return min + random.nextDouble() * (max - min);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.esa.beam.idepix.operators;
+
+import org.esa.beam.dataio.envisat.EnvisatConstants;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.meris.brr.HelperFunctions;
+import org.esa.beam.meris.brr.RayleighCorrection;
+import org.esa.beam.meris.l2auxdata.Constants;
+import org.esa.beam.meris.l2auxdata.L2AuxData;
+import org.esa.beam.meris.l2auxdata.L2AuxDataProvider;
+import org.esa.beam.util.math.MathUtils;
+
+/**
+ * Throughput benchmark for the per pixel Rayleigh correction: compares the previous computation with arrays
+ * allocated for every pixel against {@link RayleighKernel} with reused scratch arrays, with and without
+ * {@link RayleighLut}, for the geometry and pressure of all pixels of a MERIS L1b product.
+ * <p/>
+ * Usage: RayleighKernelBenchmarkMain &lt;MERIS L1b product&gt;
+ */
+public class RayleighKernelBenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: RayleighKernelBenchmarkMain <MERIS L1b product>");
+            System.exit(1);
+        }
+        final Product product = ProductIO.readProduct(args[0]);
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        final float[] sza = readGrid(product, EnvisatConstants.MERIS_SUN_ZENITH_DS_NAME);
+        final float[] vza = readGrid(product, EnvisatConstants.MERIS_VIEW_ZENITH_DS_NAME);
+        final float[] saa = readGrid(product, EnvisatConstants.MERIS_SUN_AZIMUTH_DS_NAME);
+        final float[] vaa = readGrid(product, EnvisatConstants.MERIS_VIEW_AZIMUTH_DS_NAME);
+        final float[] press = readGrid(product, "atm_press");
+
+        final L2AuxData auxData = L2AuxDataProvider.getInstance().getAuxdata(product);
+        final RayleighCorrection rayleighCorrection = new RayleighCorrection(auxData);
+        final RayleighKernel exactKernel = new RayleighKernel(rayleighCorrection, null);
+        final RayleighKernel lutKernel = new RayleighKernel(rayleighCorrection, RayleighLut.getInstance(auxData, 2.0E-3));
+
+        System.out.println("pixels;allocatingMillis;kernelMillis;kernelLutMillis");
+        for (int run = 0; run < 3; run++) {
+            long t0 = System.nanoTime();
+            double checksum = 0.0;
+            for (int i = 0; i < width * height; i++) {
+                checksum += computeAllocating(rayleighCorrection, sza[i], vza[i], saa[i], vaa[i], press[i]);
+            }
+            long t1 = System.nanoTime();
+            checksum += computeWithKernel(exactKernel, sza, vza, saa, vaa, press);
+            long t2 = System.nanoTime();
+            checksum += computeWithKernel(lutKernel, sza, vza, saa, vaa, press);
+            long t3 = System.nanoTime();
+            System.out.println(width * height + ";" + (t1 - t0) / 1000000 + ";" + (t2 - t1) / 1000000 + ";" +
+                                       (t3 - t2) / 1000000 + " (checksum " + checksum + ")");
+        }
+        product.dispose();
+    }
+
+    private static float[] readGrid(Product product, String name) {
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        return product.getTiePointGrid(name).getPixels(0, 0, width, height, (float[]) null);
+    }
+
+    private static double computeAllocating(RayleighCorrection rayleighCorrection,
+                                            double sza, double vza, double saa, double vaa, double press) {
+        final double sins = Math.sin(sza * MathUtils.DTOR);
+        final double sinv = Math.sin(vza * MathUtils.DTOR);
+        final double coss = Math.cos(sza * MathUtils.DTOR);
+        final double cosv = Math.cos(vza * MathUtils.DTOR);
+        final double deltaAzimuth = HelperFunctions.computeAzimuthDifference(vaa, saa);
+        final double[] phaseR = new double[Constants.RAYSCATT_NUM_SER];
+        final double[] tauR = new double[Constants.L1_BAND_NUM];
+        final double[] rhoRay = new double[Constants.L1_BAND_NUM];
+        rayleighCorrection.phase_rayleigh(coss, cosv, sins, sinv, phaseR);
+        rayleighCorrection.tau_rayleigh(press, tauR);
+        final double airMass = HelperFunctions.calculateAirMass((float) vza, (float) sza);
+        rayleighCorrection.ref_rayleigh(deltaAzimuth, sza, vza, coss, cosv, airMass, phaseR, tauR, rhoRay);
+        return rhoRay[Constants.bb2];
+    }
+
+    private static double computeWithKernel(RayleighKernel kernel, float[] sza, float[] vza, float[] saa,
+                                            float[] vaa, float[] press) {
+        double checksum = 0.0;
+        for (int i = 0; i < sza.length; i++) {
+            final double deltaAzimuth = HelperFunctions.computeAzimuthDifference(vaa[i], saa[i]);
+            kernel.computeReflectance(sza[i], vza[i], deltaAzimuth, press[i]);
+            checksum += kernel.getRhoR()[Constants.bb2];
+        }
+        return checksum;
+    }
+}
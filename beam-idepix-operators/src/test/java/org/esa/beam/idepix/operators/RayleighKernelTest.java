@@ -0,0 +1,38 @@
+package org.esa.beam.idepix.operators;
+
+import org.esa.beam.idepix.IdepixConstants;
+import org.esa.beam.meris.l2auxdata.Constants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for class {@link RayleighKernel}.
+ */
+public class RayleighKernelTest {
+
+    @Test
+    public void testComputeBrrSkipsAbsorptionBands() {
+        final float[] rhoToa = new float[Constants.L1_BAND_NUM];
+        final double[] rhoR = new double[Constants.L1_BAND_NUM];
+        for (int band = 0; band < Constants.L1_BAND_NUM; band++) {
+            rhoToa[band] = 0.5f + 0.01f * band;
+            rhoR[band] = 0.001 * band;
+        }
+        final float[] brr = new float[IdepixConstants.MERIS_BRR_BAND_NAMES.length];
+
+        RayleighKernel.computeBrr(rhoToa, rhoR, brr);
+
+        assertEquals(13, brr.length);
+        // bands 1 to 10
+        for (int i = 0; i < 10; i++) {
+            assertEquals(rhoToa[i] - rhoR[i], brr[i], 1.0E-6);
+        }
+        // band 11 (index 10) is skipped, brr_11 to brr_13 hold bands 12 to 14
+        assertEquals(rhoToa[11] - rhoR[11], brr[10], 1.0E-6);
+        assertEquals(rhoToa[12] - rhoR[12], brr[11], 1.0E-6);
+        assertEquals(rhoToa[13] - rhoR[13], brr[12], 1.0E-6);
+        // brr for 442nm as used in the GlobAlbedo classification
+        assertEquals(rhoToa[Constants.bb2] - rhoR[Constants.bb2], brr[1], 1.0E-6);
+    }
+}
@@ -0,0 +1,105 @@
+package org.esa.beam.idepix.operators;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.meris.l2auxdata.L2AuxData;
+import org.esa.beam.meris.l2auxdata.L2AuxDataProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for class {@link RayleighLut}, comparing the interpolated reflectances with the exact MERIS Rayleigh
+ * reflectance computed from the L2 auxiliary data.
+ */
+public class RayleighLutTest {
+
+    private static final double TOLERANCE = 2.0E-3;
+
+    private static L2AuxData auxData;
+    private static RayleighLut.ReflectanceFunction function;
+    private static RayleighLut lut;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        final Product product = new Product("MER_RR", "MER_RR__1P", 1121, 1);
+        product.setStartTime(ProductData.UTC.parse("15-JUN-2005 10:00:00"));
+        auxData = L2AuxDataProvider.getInstance().getAuxdata(product);
+        function = RayleighLut.createReflectanceFunction(auxData);
+        lut = RayleighLut.create(function, TOLERANCE);
+    }
+
+    @Test
+    public void testInterpolationIsExactAtNodes() {
+        final double[] exact = new double[function.getBandCount()];
+        final double[] interpolated = new double[function.getBandCount()];
+        function.compute(40.0, 20.0, 90.0, 900.0, exact);
+        assertTrue(lut.getRayleighReflectance(40.0, 20.0, 90.0, 900.0, interpolated));
+        assertArrayEquals(exact, interpolated, 1.0E-6);
+
+        // upper bounds of the table
+        function.compute(RayleighLut.MAX_SZA, RayleighLut.MAX_VZA, RayleighLut.MAX_DELTA_AZIMUTH,
+                         RayleighLut.MAX_PRESSURE, exact);
+        assertTrue(lut.getRayleighReflectance(RayleighLut.MAX_SZA, RayleighLut.MAX_VZA,
+                                              RayleighLut.MAX_DELTA_AZIMUTH, RayleighLut.MAX_PRESSURE,
+                                              interpolated));
+        assertArrayEquals(exact, interpolated, 1.0E-6);
+    }
+
+    @Test
+    public void testAccuracyAgainstExactFunction() {
+        assertTrue(lut.isAccurate());
+        assertTrue(lut.getMaxError() <= TOLERANCE);
+
+        final Random random = new Random(1234);
+        final double[] exact = new double[function.getBandCount()];
+        final double[] interpolated = new double[function.getBandCount()];
+        double maxError = 0.0;
+        for (int i = 0; i < 10000; i++) {
+            // anywhere in the table, not only at the cell centres checked when the table is created
+            final double sza = random.nextDouble() * RayleighLut.MAX_SZA;
+            final double vza = random.nextDouble() * RayleighLut.MAX_VZA;
+            final double deltaAzimuth = random.nextDouble() * RayleighLut.MAX_DELTA_AZIMUTH;
+            final double pressure = RayleighLut.MIN_PRESSURE +
+                    random.nextDouble() * (RayleighLut.MAX_PRESSURE - RayleighLut.MIN_PRESSURE);
+            function.compute(sza, vza, deltaAzimuth, pressure, exact);
+            assertTrue(lut.getRayleighReflectance(sza, vza, deltaAzimuth, pressure, interpolated));
+            for (int b = 0; b < exact.length; b++) {
+                maxError = Math.max(maxError, Math.abs(exact[b] - interpolated[b]));
+            }
+        }
+        assertTrue("max error " + maxError, maxError <= TOLERANCE);
+    }
+
+    @Test
+    public void testToleranceNotReached() {
+        // a coarse grid, the refined one is not accurate either
+        final RayleighLut coarseLut = RayleighLut.create(function, 1.0E-9, 40.0, 30.0, 500.0);
+        assertFalse(coarseLut.isAccurate());
+        assertTrue(coarseLut.getMaxError() > 1.0E-9);
+    }
+
+    @Test
+    public void testValuesOutsideTable() {
+        final double[] rhoR = new double[function.getBandCount()];
+        rhoR[0] = -1.0;
+
+        assertFalse(lut.getRayleighReflectance(85.0, 20.0, 90.0, 900.0, rhoR));
+        assertFalse(lut.getRayleighReflectance(40.0, 20.0, 90.0, 50.0, rhoR));
+        assertFalse(lut.getRayleighReflectance(40.0, 20.0, -1.0, 900.0, rhoR));
+        assertEquals(-1.0, rhoR[0], 0.0);
+    }
+
+    @Test
+    public void testGetInstanceIsCached() {
+        final RayleighLut instance = RayleighLut.getInstance(auxData, TOLERANCE);
+        assertSame(instance, RayleighLut.getInstance(auxData, TOLERANCE));
+    }
+}